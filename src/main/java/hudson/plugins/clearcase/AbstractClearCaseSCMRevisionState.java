@@ -23,14 +23,16 @@
  */
 package hudson.plugins.clearcase;
 
+import hudson.plugins.clearcase.history.SeenEventStore;
 import hudson.scm.SCMRevisionState;
 
 import java.util.Date;
 
-public abstract class AbstractClearCaseSCMRevisionState extends SCMRevisionState implements BuildTimeBased, LoadRulesAware {
+public abstract class AbstractClearCaseSCMRevisionState extends SCMRevisionState implements BuildTimeBased, LoadRulesAware, SeenEventsAware {
 
-    protected final Date buildTime;
-    private String[]     loadRules;
+    protected final Date   buildTime;
+    private String[]       loadRules;
+    private SeenEventStore seenEvents;
 
     public AbstractClearCaseSCMRevisionState(Date buildTime) {
         super();
@@ -47,8 +49,18 @@ public abstract class AbstractClearCaseSCMRevisionState extends SCMRevisionState
         return loadRules;
     }
 
+    @Override
+    public SeenEventStore getSeenEvents() {
+        return seenEvents;
+    }
+
     public void setLoadRules(String[] loadRules) {
         this.loadRules = loadRules;
     }
 
+    @Override
+    public void setSeenEvents(SeenEventStore seenEvents) {
+        this.seenEvents = seenEvents;
+    }
+
 }
\ No newline at end of file
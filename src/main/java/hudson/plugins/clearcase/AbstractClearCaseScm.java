@@ -35,17 +35,29 @@ import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Computer;
 import hudson.model.Hudson;
+import hudson.model.Label;
 import hudson.model.Node;
 import hudson.model.Run;
+import hudson.plugins.clearcase.action.ChangeLogWriter;
 import hudson.plugins.clearcase.action.CheckoutAction;
 import hudson.plugins.clearcase.action.SaveChangeLogAction;
+import hudson.plugins.clearcase.action.SnapshotCheckoutAction;
+import hudson.plugins.clearcase.action.ViewPreUpdater;
 import hudson.plugins.clearcase.history.AbstractHistoryAction;
+import hudson.plugins.clearcase.history.ChangeDetection;
 import hudson.plugins.clearcase.history.DefaultFilter;
 import hudson.plugins.clearcase.history.DestroySubBranchFilter;
 import hudson.plugins.clearcase.history.FileFilter;
 import hudson.plugins.clearcase.history.Filter;
 import hudson.plugins.clearcase.history.FilterChain;
 import hudson.plugins.clearcase.history.HistoryAction;
+import hudson.plugins.clearcase.history.HistoryMirror;
+import hudson.plugins.clearcase.history.PolledHistory;
+import hudson.plugins.clearcase.history.SeenEventStore;
+import hudson.plugins.clearcase.polling.AdaptivePollingPolicy;
+import hudson.plugins.clearcase.polling.PollingScheduler;
+import hudson.plugins.clearcase.polling.ReplicaLagMonitor;
+import hudson.plugins.clearcase.polling.VobCircuitBreaker;
 import hudson.plugins.clearcase.ucm.UcmWorkflow;
 import hudson.plugins.clearcase.util.BuildUtils;
 import hudson.plugins.clearcase.util.BuildVariableResolver;
@@ -63,6 +75,7 @@ import hudson.scm.SCMDescriptor;
 import hudson.scm.SCMRevisionState;
 import hudson.scm.ChangeLogSet;
 import hudson.scm.SCM;
+import hudson.util.LogTaskListener;
 import hudson.util.StreamTaskListener;
 import hudson.util.VariableResolver;
 
@@ -78,6 +91,8 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -85,6 +100,7 @@ import java.util.regex.Pattern;
 import net.sf.json.JSONObject;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 import org.jenkinsci.remoting.Role;
@@ -203,6 +219,7 @@ public abstract class AbstractClearCaseScm extends SCM {
     protected static final String         REGEX_WHITESPACE          = "[\\s\\\\\\/:\\?\\*\\|]+";
 
     private static final Logger LOG = Logger.getLogger(AbstractClearCaseScm.class.getName());
+    private ChangeDetection               changeDetection;
     private ChangeSetLevel                changeset;
     private boolean                       createDynView;
     private String                        excludedRegions;
@@ -215,6 +232,11 @@ public abstract class AbstractClearCaseScm extends SCM {
     private int                           multiSitePollBuffer;
     private transient ThreadLocal<String> normalizedViewName;
     private transient ThreadLocal<String> normalizedViewPath;
+    /**
+     * The history read by the last poll that found changes, for the change log of the build it triggers.
+     */
+    private transient PolledHistory       polledHistory;
+    private boolean                       preUpdateView;
     private boolean                       recreateView;
     private boolean                       removeViewOnRename;
     /**
@@ -327,7 +349,7 @@ public abstract class AbstractClearCaseScm extends SCM {
         } else {
           referenceDate = new Date();
         }
-        return createRevisionState(build, launcher, taskListener, referenceDate);
+        return createRevisionState(build, launcher, taskListener, referenceDate, true);
     }
 
     private boolean isMultiSiteSupportEnabled() {
@@ -339,6 +361,15 @@ public abstract class AbstractClearCaseScm extends SCM {
       throw new IllegalStateException();
     }
 
+    /**
+     * @param forPolling
+     *            true if the revision state is compared to the one of the last build, in which case it may come from data shared between jobs
+     */
+    protected SCMRevisionState createRevisionState(AbstractBuild<?, ?> build, Launcher launcher, TaskListener taskListener, Date date, boolean forPolling)
+        throws IOException, InterruptedException {
+      return createRevisionState(build, launcher, taskListener, date);
+    }
+
     @Override
     public boolean checkout(AbstractBuild build, Launcher launcher, FilePath workspace, BuildListener listener, File changelogFile) throws IOException,
     InterruptedException {
@@ -386,6 +417,9 @@ public abstract class AbstractClearCaseScm extends SCM {
             returnValue = saveChangeLog(build, launcher, listener, changelogFile, clearToolLauncher, variableResolver, saveChangeLogAction,
                     coNormalizedViewName, returnValue, null);
         }
+        if (ViewPreUpdater.getInstance().await(build.getBuiltOnStr(), coNormalizedViewName)) {
+            logger.println("[INFO] View updated ahead of the build, loading the changes made since then");
+        }
         // --- CHECKOUT ---
         if (!checkoutAction.checkout(launcher, workspace, coNormalizedViewName)) {
             throw new AbortException();
@@ -515,6 +549,10 @@ public abstract class AbstractClearCaseScm extends SCM {
         return build.getBuiltOn().toComputer();
     }
 
+    public ChangeDetection getChangeDetection() {
+        return changeDetection == null ? ChangeDetection.defaultDetection() : changeDetection;
+    }
+
     public ChangeSetLevel getChangeset() {
         return changeset;
     }
@@ -715,6 +753,13 @@ public abstract class AbstractClearCaseScm extends SCM {
         return freezeCode;
     }
 
+    /**
+     * @return true if the snapshot view is updated as soon as a poll finds changes, instead of when the build starts
+     */
+    public boolean isPreUpdateView() {
+        return preUpdateView;
+    }
+
     public boolean isRecreateView() {
         return recreateView;
     }
@@ -808,7 +853,54 @@ public abstract class AbstractClearCaseScm extends SCM {
     }
 
     @Override
-    protected PollingResult compareRemoteRevisionWith(AbstractProject<?, ?> project, Launcher launcher, FilePath workspace, TaskListener listener,
+    protected PollingResult compareRemoteRevisionWith(final AbstractProject<?, ?> project, Launcher launcher, FilePath workspace, TaskListener listener,
+            SCMRevisionState baseline) throws IOException, InterruptedException {
+        if (Hudson.getInstance() != null) {
+            long jitter = PollingScheduler.getInstance().defer(project.getFullName(), PluginImpl.BASE_DESCRIPTOR.getPollingJitter(), new Runnable() {
+                @Override
+                public void run() {
+                    project.schedulePolling();
+                }
+            });
+            if (jitter > 0) {
+                listener.getLogger().println("Polling deferred by " + jitter + " ms (polling jitter)");
+                return new PollingResult(baseline, baseline, Change.NONE);
+            }
+        }
+        if (Hudson.getInstance() == null || !PluginImpl.BASE_DESCRIPTOR.isAdaptivePolling()) {
+            return pollChanges(project, launcher, workspace, listener, baseline);
+        }
+        ClearCaseSCM.ClearCaseScmDescriptor descriptor = PluginImpl.BASE_DESCRIPTOR;
+        AdaptivePollingPolicy policy = AdaptivePollingPolicy.getInstance();
+        String jobName = project.getFullName();
+        if (!policy.isKnown(jobName)) {
+            policy.seed(jobName, getLastBuildTimes(project));
+        }
+        long start = System.currentTimeMillis();
+        long delay = policy.acquire(jobName, start, descriptor.getAdaptivePollingMinInterval(), descriptor.getAdaptivePollingMaxInterval(),
+                descriptor.getAdaptivePollingCommandBudget());
+        if (delay > 0) {
+            listener.getLogger().println("Polling skipped: next poll due in " + delay / 1000 + " s (adaptive polling interval "
+                    + policy.getIntervalMillis(jobName, start, descriptor.getAdaptivePollingMinInterval(), descriptor.getAdaptivePollingMaxInterval()) / 1000
+                    + " s, " + policy.getBudgetLeft() + " cleartool command(s) left in the budget)");
+            return new PollingResult(baseline, baseline, Change.NONE);
+        }
+        int commandsBefore = HudsonClearToolLauncher.getCommandsRun();
+        PollingResult result = null;
+        try {
+            result = pollChanges(project, launcher, workspace, listener, baseline);
+            return result;
+        } finally {
+            long end = System.currentTimeMillis();
+            int commands = HudsonClearToolLauncher.getCommandsRun() - commandsBefore;
+            policy.record(jobName, end, end - start, commands, result != null && result.hasChanges());
+            listener.getLogger().println("Poll took " + (end - start) + " ms and " + commands + " cleartool command(s), next one due in "
+                    + policy.getIntervalMillis(jobName, end, descriptor.getAdaptivePollingMinInterval(), descriptor.getAdaptivePollingMaxInterval()) / 1000
+                    + " s");
+        }
+    }
+
+    private PollingResult pollChanges(AbstractProject<?, ?> project, Launcher launcher, FilePath workspace, TaskListener listener,
             SCMRevisionState baseline) throws IOException, InterruptedException {
         PrintStream logger = listener.getLogger();
         boolean isUnix = workspace.act(new IsUnix());
@@ -898,7 +990,18 @@ public abstract class AbstractClearCaseScm extends SCM {
         HistoryAction historyAction = createHistoryAction(variableResolver, clearToolLauncher, build, /* getUseRecurseForPolling() */
                 baseline, useOtherLoadRulesForPolling);
         Change change = Change.NONE;
+        SCMRevisionState remote = null;
         if (historyAction != null) {
+            historyAction.setSeenEvents(copySeenEvents(baseline));
+            if (historyAction instanceof AbstractHistoryAction) {
+                ((AbstractHistoryAction) historyAction).setChangeDetectionStrategy(getChangeDetection().createStrategy(project.getFullName()));
+                // Polls don't read the comments
+                ((AbstractHistoryAction) historyAction).setCommentsNeeded(false);
+            }
+            setHistoryMirror(historyAction, HistoryMirror.POLL_MAX_AGE);
+            if (historyAction instanceof AbstractHistoryAction && !isMultiSiteSupportEnabled()) {
+                ((AbstractHistoryAction) historyAction).setRecordHistory(true);
+            }
             String viewPath = getViewPath(variableResolver);
             String[] branchNames = getBranchNames(variableResolver);
             String[] viewPaths = getViewPaths(buildLauncher, baseline, build, variableResolver);
@@ -909,19 +1012,62 @@ public abstract class AbstractClearCaseScm extends SCM {
             } else {
                 buildTime = build.getTime();
             }
-            logger.println("Checking if there are changes in history");
-            if (historyAction.hasChanges(buildTime, viewPath, viewTag, branchNames, viewPaths)) {
-                logger.println("REASON: Found changes in history");
-                change = Change.SIGNIFICANT;
-            } else {
-                change = Change.NONE;
+            if (isCircuitOpen(viewPaths, logger)) {
+                return new PollingResult(baseline, baseline, Change.NONE);
+            }
+            PollingScheduler.Slot slot = acquirePollingSlot(project, viewPaths, logger);
+            try {
+                // Computed before the history check, so that events recorded meanwhile are checked again by the next poll
+                remote = calcRevisionsFromPoll(build, launcher, listener);
+                Change stateChange = compareRevisionStates(baseline, remote, logger);
+                if (stateChange != null) {
+                    change = stateChange;
+                } else {
+                    historyAction.setVobSince(computeVobSince(variableResolver, clearToolLauncher, buildTime, viewPaths, logger));
+                    logger.println("Checking if there are changes in history");
+                    if (historyAction.hasChanges(buildTime, viewPath, viewTag, branchNames, viewPaths)) {
+                        logger.println("REASON: Found changes in history");
+                        change = Change.SIGNIFICANT;
+                        if (historyAction instanceof AbstractHistoryAction) {
+                            setPolledHistory(((AbstractHistoryAction) historyAction).getRecordedHistory());
+                        }
+                        scheduleViewPreUpdate(project, build, variableResolver, workspace, viewTag, logger);
+                    } else {
+                        change = Change.NONE;
+                    }
+                }
+            } finally {
+                slot.release(change == Change.SIGNIFICANT);
             }
         } else {
             // Error when calculating the new baseline => Probably clearcase server error, not launching the build
             logger.println("WARNING: cannot createHistoryAction!");
             change = Change.NONE;
         }
-        return new PollingResult(baseline, calcRevisionsFromPoll(build, launcher, listener), change);
+        if (remote == null) {
+            remote = calcRevisionsFromPoll(build, launcher, listener);
+        }
+        if (baseline instanceof SeenEventsAware && remote instanceof SeenEventsAware) {
+            // Events seen by this poll are not attributed to any build yet
+            ((SeenEventsAware) remote).setSeenEvents(((SeenEventsAware) baseline).getSeenEvents());
+        }
+        return new PollingResult(baseline, remote, change);
+    }
+
+    /**
+     * Tells whether the view can be updated ahead of the build with its current config spec.
+     */
+    protected boolean canPreUpdateView() {
+        return true;
+    }
+
+    /**
+     * Compares the revision states of a poll without running the history, for SCMs whose revision state summarizes the changes they watch.
+     * 
+     * @return the change, or null if the history has to be checked
+     */
+    protected Change compareRevisionStates(SCMRevisionState baseline, SCMRevisionState remote, PrintStream logger) {
+        return null;
     }
 
     protected String computeExtendedViewPath(VariableResolver<String> variableResolver, ClearTool ct) {
@@ -1036,6 +1182,10 @@ public abstract class AbstractClearCaseScm extends SCM {
 
     protected abstract boolean isFirstBuild(SCMRevisionState baseline);
 
+    protected void setChangeDetection(ChangeDetection changeDetection) {
+        this.changeDetection = changeDetection;
+    }
+
     protected void setChangeset(ChangeSetLevel changeset) {
         this.changeset = changeset;
     }
@@ -1052,6 +1202,97 @@ public abstract class AbstractClearCaseScm extends SCM {
         getNormalizedViewPathThreadLocalWrapper().set(normalizedViewPath);
     }
 
+    protected void setPreUpdateView(boolean preUpdateView) {
+        this.preUpdateView = preUpdateView;
+    }
+
+    /**
+     * Waits for the VOB groups queried by the job to accept a new poll. The polling jitter is applied before, when the poll is deferred.
+     */
+    private PollingScheduler.Slot acquirePollingSlot(AbstractProject<?, ?> project, String[] viewPaths, PrintStream logger) throws InterruptedException {
+        PollingScheduler scheduler = PollingScheduler.getInstance();
+        String jobName = project.getFullName();
+        if (Hudson.getInstance() == null) {
+            // No global configuration available (e.g. polling outside of a running controller)
+            return scheduler.acquire(jobName, null, 0);
+        }
+        ClearCaseSCM.ClearCaseScmDescriptor descriptor = PluginImpl.BASE_DESCRIPTOR;
+        Set<String> groups = PollingScheduler.getVobGroups(viewPaths, descriptor.getPollingVobGroups());
+        int queueLength = scheduler.getQueueLength();
+        PollingScheduler.Slot slot = scheduler.acquire(jobName, groups, descriptor.getPollingMaxConcurrent());
+        if (descriptor.getPollingMaxConcurrent() > 0) {
+            logger.println("Polling slot acquired on VOB groups " + groups + " after " + slot.getWaitMillis() + " ms (" + queueLength
+                    + " poll(s) queued, average wait " + scheduler.getAverageWaitMillis() + " ms)");
+        }
+        return slot;
+    }
+
+    /**
+     * With an adaptive multisite lookback, the poll buffer is the maximum lookback. Each VOB looks back by its measured replication lag plus a margin.
+     * 
+     * @param time
+     *            the history start date, including the whole poll buffer
+     * @return history start dates keyed by VOB tag. VOBs whose lag is unknown are not listed and use the whole poll buffer.
+     */
+    private Map<String, Date> computeVobSince(VariableResolver<String> variableResolver, ClearToolLauncher clearToolLauncher, Date time, String[] viewPaths,
+            PrintStream logger) throws InterruptedException {
+        Map<String, Date> vobSince = new HashMap<String, Date>();
+        if (!isMultiSiteSupportEnabled() || viewPaths == null || Hudson.getInstance() == null
+                || !PluginImpl.BASE_DESCRIPTOR.isMultiSiteAdaptiveLookback()) {
+            return vobSince;
+        }
+        ClearTool ct = createClearTool(variableResolver, clearToolLauncher);
+        long bufferMillis = 60000L * getMultiSitePollBuffer();
+        long marginMillis = 60000L * PluginImpl.BASE_DESCRIPTOR.getMultiSiteLookbackMargin();
+        Set<String> vobTags = new TreeSet<String>();
+        for (String viewPath : viewPaths) {
+            String vobTag = PollingScheduler.getVobTag(viewPath);
+            if (vobTag != null) {
+                vobTags.add(vobTag);
+            }
+        }
+        for (String vobTag : vobTags) {
+            long lag = ReplicaLagMonitor.getInstance().getLagMillis(ct, vobTag);
+            if (lag < 0) {
+                logger.println("Multisite lookback for " + vobTag + ": " + getMultiSitePollBuffer() + " min (replication lag unknown)");
+                continue;
+            }
+            long lookback = Math.min(bufferMillis, lag + marginMillis);
+            vobSince.put(vobTag, new Date(time.getTime() + bufferMillis - lookback));
+            logger.println("Multisite lookback for " + vobTag + ": " + lookback / 60000 + " min (replication lag " + lag / 60000 + " min, margin "
+                    + marginMillis / 60000 + " min, poll buffer " + getMultiSitePollBuffer() + " min)");
+        }
+        return vobSince;
+    }
+
+    /**
+     * With a multisite poll buffer, history windows of consecutive builds overlap. The events already attributed to a build are kept in its revision state
+     * so that they are not reported again.
+     */
+    private SeenEventStore copySeenEvents(SCMRevisionState baseline) {
+        if (!isMultiSiteSupportEnabled()) {
+            return null;
+        }
+        if (baseline instanceof SeenEventsAware) {
+            SeenEventStore seenEvents = ((SeenEventsAware) baseline).getSeenEvents();
+            if (seenEvents != null) {
+                return seenEvents.copy();
+            }
+        }
+        return new SeenEventStore();
+    }
+
+    /**
+     * Returns the dates of the last builds of the project, most recent first.
+     */
+    private long[] getLastBuildTimes(AbstractProject<?, ?> project) {
+        List<Long> times = new ArrayList<Long>();
+        for (AbstractBuild<?, ?> build = project.getLastBuild(); build != null && times.size() < 10; build = build.getPreviousBuild()) {
+            times.add(build.getTimeInMillis());
+        }
+        return ArrayUtils.toPrimitive(times.toArray(new Long[times.size()]));
+    }
+
     private synchronized ThreadLocal<String> getNormalizedViewNameThreadLocalWrapper() {
         if (null == normalizedViewName) {
             this.normalizedViewName = new ThreadLocal<String>();
@@ -1083,6 +1324,25 @@ public abstract class AbstractClearCaseScm extends SCM {
         return viewPaths;
     }
 
+    private boolean isCircuitOpen(String[] viewPaths, PrintStream logger) {
+        if (Hudson.getInstance() == null || PluginImpl.BASE_DESCRIPTOR.getPollingFailureThreshold() <= 0) {
+            return false;
+        }
+        ClearCaseSCM.ClearCaseScmDescriptor descriptor = PluginImpl.BASE_DESCRIPTOR;
+        VobCircuitBreaker breaker = VobCircuitBreaker.getInstance();
+        for (String group : PollingScheduler.getVobGroups(viewPaths, descriptor.getPollingVobGroups())) {
+            if (!breaker.allowRequest(group, descriptor.getPollingCircuitOpenDelay())) {
+                logger.println("Polling skipped: circuit open for VOB group " + group + " after " + breaker.getFailures(group)
+                        + " consecutive failure(s), next attempt in " + breaker.getRetryInMillis(group) / 1000 + " s");
+                return true;
+            }
+            if (breaker.getState(group) == VobCircuitBreaker.State.HALF_OPEN) {
+                logger.println("Probing VOB group " + group + " (circuit half open)");
+            }
+        }
+        return false;
+    }
+
     private boolean isRunning(AbstractProject<?, ?> project) {
         return project.isBuilding() && !project.isConcurrentBuild();
     }
@@ -1096,25 +1356,106 @@ public abstract class AbstractClearCaseScm extends SCM {
     private boolean saveChangeLog(AbstractBuild build, Launcher launcher, BuildListener listener, File changelogFile, ClearToolLauncher clearToolLauncher,
             VariableResolver<String> variableResolver, SaveChangeLogAction saveChangeLogAction, String coNormalizedViewName, boolean returnValue,
             FilePath updtFile) throws IOException, InterruptedException {
-        List<? extends ChangeLogSet.Entry> changelogEntries;
         @SuppressWarnings("rawtypes")
         Run prevBuild = build.getPreviousBuild();
         Date lastBuildTime = getBuildTime(prevBuild);
         SCMRevisionState oldBaseline = getRevisionState(prevBuild);
         HistoryAction historyAction = createHistoryAction(variableResolver, clearToolLauncher, build, oldBaseline, /* getUseRecurseForChangelog() */false);
         historyAction.setUpdtFile(updtFile);
-        changelogEntries = historyAction.getChanges(lastBuildTime, getViewPath(variableResolver), coNormalizedViewName, getBranchNames(variableResolver),
-                getViewPaths(variableResolver, build, launcher, false));
-        // Save change log
-        if (CollectionUtils.isEmpty(changelogEntries)) {
+        SeenEventStore seenEvents = copySeenEvents(oldBaseline);
+        historyAction.setSeenEvents(seenEvents);
+        // The view was just updated, the change log must list everything up to now
+        setHistoryMirror(historyAction, 0);
+        PolledHistory polled = takePolledHistory();
+        if (polled != null && updtFile == null && historyAction instanceof AbstractHistoryAction) {
+            ((AbstractHistoryAction) historyAction).setPolledHistory(polled);
+            listener.getLogger().println("[INFO] History read by the poll at " + polled.getPolledAt() + " (" + polled.size()
+                    + " entries) available for the change log");
+        }
+        String[] viewPaths = getViewPaths(variableResolver, build, launcher, false);
+        historyAction.setVobSince(computeVobSince(variableResolver, clearToolLauncher, lastBuildTime, viewPaths, listener.getLogger()));
+        boolean hasChanges;
+        if (historyAction instanceof AbstractHistoryAction) {
+            // Stream the change log to the file instead of building it in memory
+            ChangeLogWriter writer = saveChangeLogAction.openChangeLog(changelogFile);
+            try {
+                hasChanges = ((AbstractHistoryAction) historyAction).writeChanges(lastBuildTime, getViewPath(variableResolver), coNormalizedViewName,
+                        getBranchNames(variableResolver), viewPaths, writer) > 0;
+            } finally {
+                writer.close();
+            }
+        } else {
+            List<? extends ChangeLogSet.Entry> changelogEntries = historyAction.getChanges(lastBuildTime, getViewPath(variableResolver),
+                    coNormalizedViewName, getBranchNames(variableResolver), viewPaths);
+            hasChanges = CollectionUtils.isNotEmpty(changelogEntries);
+            if (hasChanges) {
+                saveChangeLogAction.saveChangeLog(changelogFile, changelogEntries);
+            }
+        }
+        SCMRevisionState newBaseline = getRevisionState(build);
+        if (seenEvents != null && newBaseline instanceof SeenEventsAware) {
+            seenEvents.prune(getBuildTime(build));
+            ((SeenEventsAware) newBaseline).setSeenEvents(seenEvents);
+        }
+        if (!hasChanges) {
             // no changes
             returnValue = createEmptyChangeLog(changelogFile, listener, "changelog");
-        } else {
-            saveChangeLogAction.saveChangeLog(changelogFile, changelogEntries);
         }
         return returnValue;
     }
 
+    /**
+     * Starts updating the snapshot view on its node once a poll found changes, so that the build only has the changes made since then to load. The update
+     * log isn't kept, so it's not done for change logs based on it. Nothing is done while a build of the project runs in the view, or when the next build
+     * can't run on the node of the last one.
+     */
+    private void scheduleViewPreUpdate(AbstractProject<?, ?> project, AbstractBuild<?, ?> build, VariableResolver<String> variableResolver,
+            FilePath workspace, String viewTag, PrintStream logger) throws IOException, InterruptedException {
+        if (!isPreUpdateView() || isUseDynamicView() || ChangeSetLevel.UPDT.equals(getChangeset()) || project.isConcurrentBuild() || !canPreUpdateView()) {
+            return;
+        }
+        AbstractBuild<?, ?> lastBuild = project.getLastBuild();
+        if (project.isBuilding() || build.isBuilding() || (lastBuild != null && lastBuild.isBuilding())) {
+            return;
+        }
+        Node node = build.getBuiltOn();
+        if (node == null || node.toComputer() == null || node.toComputer().isOffline()) {
+            return;
+        }
+        Label label = project.getAssignedLabel();
+        if (label != null && !label.contains(node)) {
+            return;
+        }
+        // The poll log is closed before the update ends
+        TaskListener preUpdateListener = new LogTaskListener(LOG, Level.FINE);
+        Launcher preUpdateLauncher = node.createLauncher(preUpdateListener);
+        CheckoutAction checkoutAction = createCheckOutAction(variableResolver, createClearToolLauncher(preUpdateListener, workspace, preUpdateLauncher),
+                build);
+        if (checkoutAction instanceof SnapshotCheckoutAction
+                && ViewPreUpdater.getInstance().schedule(node.getNodeName(), viewTag, (SnapshotCheckoutAction) checkoutAction)) {
+            logger.println("Updating the view " + viewTag + " ahead of the build");
+        }
+    }
+
+    private void setHistoryMirror(HistoryAction historyAction, long maxAge) {
+        if (historyAction instanceof AbstractHistoryAction && Hudson.getInstance() != null && PluginImpl.BASE_DESCRIPTOR.isUseHistoryMirror()) {
+            ((AbstractHistoryAction) historyAction).setHistoryMirror(HistoryMirror.getInstance(), maxAge);
+        }
+    }
+
+    private synchronized void setPolledHistory(PolledHistory polledHistory) {
+        this.polledHistory = polledHistory;
+    }
+
+    /**
+     * Returns the history read by the last poll that found changes, once: only the first build after the poll may reuse it.
+     */
+    private synchronized PolledHistory takePolledHistory() {
+        PolledHistory taken = polledHistory;
+        polledHistory = null;
+        return taken;
+    }
+
     public static String getViewPathsRegexp(String[] loadRules, boolean isUnix) {
         // Note - the logic here to do ORing to match against *any* of the load rules is, quite frankly,
         // hackishly ugly. I'm embarassed by it. But it's what I've got for right now.
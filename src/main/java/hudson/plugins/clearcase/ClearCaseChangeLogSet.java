@@ -139,43 +139,59 @@ public class ClearCaseChangeLogSet extends ChangeLogSet<ClearCaseChangeLogEntry>
     public static void saveToChangeLog(OutputStream outputStream, List<ClearCaseChangeLogEntry> history) throws IOException {
         PrintStream stream = new PrintStream(outputStream, false, "UTF-8");
 
-        int tagcount = ClearCaseChangeLogSet.TAGS.length;
-        stream.println("<?xml version='1.0' encoding='UTF-8'?>");
-        stream.println("<history>");
+        writeHeader(stream);
         for (ClearCaseChangeLogEntry entry : history) {
-            stream.println("\t<entry>");
-            String[] strings = getEntryAsStrings(entry);
-            for (int tag = 0; tag < tagcount; tag++) {
-                stream.print("\t\t<");
-                stream.print(ClearCaseChangeLogSet.TAGS[tag]);
-                stream.print('>');
-                stream.print(escapeForXml(strings[tag]));
-                stream.print("</");
-                stream.print(ClearCaseChangeLogSet.TAGS[tag]);
-                stream.println('>');
-            }
-            for (ClearCaseChangeLogEntry.FileElement file : entry.getElements()) {
-                stream.println("\t\t<element>");
-                stream.println("\t\t\t<file>");
-                stream.println(escapeForXml(file.getFile()));
-                stream.println("\t\t\t</file>");
-                stream.println("\t\t\t<action>");
-                stream.println(escapeForXml(file.getAction()));
-                stream.println("\t\t\t</action>");
-                stream.println("\t\t\t<version>");
-                stream.println(escapeForXml(file.getVersion()));
-                stream.println("\t\t\t</version>");
-                stream.println("\t\t\t<operation>");
-                stream.println(escapeForXml(file.getOperation()));
-                stream.println("\t\t\t</operation>");
-                stream.println("\t\t</element>");
-            }
-            stream.println("\t</entry>");
+            writeEntry(stream, entry);
         }
-        stream.println("</history>");
+        writeFooter(stream);
         stream.close();
     }
 
+    /**
+     * Writes a single history object as xml. Entries are written between {@link #writeHeader(PrintStream)} and {@link #writeFooter(PrintStream)}, so that a
+     * change log can be written incrementally.
+     */
+    public static void writeEntry(PrintStream stream, ClearCaseChangeLogEntry entry) {
+        int tagcount = ClearCaseChangeLogSet.TAGS.length;
+        stream.println("\t<entry>");
+        String[] strings = getEntryAsStrings(entry);
+        for (int tag = 0; tag < tagcount; tag++) {
+            stream.print("\t\t<");
+            stream.print(ClearCaseChangeLogSet.TAGS[tag]);
+            stream.print('>');
+            stream.print(escapeForXml(strings[tag]));
+            stream.print("</");
+            stream.print(ClearCaseChangeLogSet.TAGS[tag]);
+            stream.println('>');
+        }
+        for (ClearCaseChangeLogEntry.FileElement file : entry.getElements()) {
+            stream.println("\t\t<element>");
+            stream.println("\t\t\t<file>");
+            stream.println(escapeForXml(file.getFile()));
+            stream.println("\t\t\t</file>");
+            stream.println("\t\t\t<action>");
+            stream.println(escapeForXml(file.getAction()));
+            stream.println("\t\t\t</action>");
+            stream.println("\t\t\t<version>");
+            stream.println(escapeForXml(file.getVersion()));
+            stream.println("\t\t\t</version>");
+            stream.println("\t\t\t<operation>");
+            stream.println(escapeForXml(file.getOperation()));
+            stream.println("\t\t\t</operation>");
+            stream.println("\t\t</element>");
+        }
+        stream.println("\t</entry>");
+    }
+
+    public static void writeFooter(PrintStream stream) {
+        stream.println("</history>");
+    }
+
+    public static void writeHeader(PrintStream stream) {
+        stream.println("<?xml version='1.0' encoding='UTF-8'?>");
+        stream.println("<history>");
+    }
+
     /**
      * Parses the change log stream and returns a ClearCase change log set.
      * 
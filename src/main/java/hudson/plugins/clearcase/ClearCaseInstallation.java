@@ -149,6 +149,86 @@ public class ClearCaseInstallation extends ToolInstallation implements NodeSpeci
         public int getEndViewDelay() {
             return getCCDescriptor().getEndViewDelay();
         }
+
+        public int getPollingJitter() {
+            return getCCDescriptor().getPollingJitter();
+        }
+
+        public int getPollingMaxConcurrent() {
+            return getCCDescriptor().getPollingMaxConcurrent();
+        }
+
+        public String getPollingVobGroups() {
+            return getCCDescriptor().getPollingVobGroups();
+        }
+
+        public int getPollingFailureThreshold() {
+            return getCCDescriptor().getPollingFailureThreshold();
+        }
+
+        public int getPollingCircuitOpenDelay() {
+            return getCCDescriptor().getPollingCircuitOpenDelay();
+        }
+
+        public boolean isMultiSiteAdaptiveLookback() {
+            return getCCDescriptor().isMultiSiteAdaptiveLookback();
+        }
+
+        public int getMultiSiteLookbackMargin() {
+            return getCCDescriptor().getMultiSiteLookbackMargin();
+        }
+
+        public boolean isUseHistoryMirror() {
+            return getCCDescriptor().isUseHistoryMirror();
+        }
+
+        public boolean isAdaptivePolling() {
+            return getCCDescriptor().isAdaptivePolling();
+        }
+
+        public int getAdaptivePollingMinInterval() {
+            return getCCDescriptor().getAdaptivePollingMinInterval();
+        }
+
+        public int getAdaptivePollingMaxInterval() {
+            return getCCDescriptor().getAdaptivePollingMaxInterval();
+        }
+
+        public int getAdaptivePollingCommandBudget() {
+            return getCCDescriptor().getAdaptivePollingCommandBudget();
+        }
+
+        public FormValidation doCheckPollingJitter(@QueryParameter String value) {
+            return doCheckEndViewDelay(value);
+        }
+
+        public FormValidation doCheckPollingMaxConcurrent(@QueryParameter String value) {
+            return doCheckEndViewDelay(value);
+        }
+
+        public FormValidation doCheckPollingFailureThreshold(@QueryParameter String value) {
+            return doCheckEndViewDelay(value);
+        }
+
+        public FormValidation doCheckPollingCircuitOpenDelay(@QueryParameter String value) {
+            return doCheckEndViewDelay(value);
+        }
+
+        public FormValidation doCheckMultiSiteLookbackMargin(@QueryParameter String value) {
+            return doCheckEndViewDelay(value);
+        }
+
+        public FormValidation doCheckAdaptivePollingMinInterval(@QueryParameter String value) {
+            return doCheckEndViewDelay(value);
+        }
+
+        public FormValidation doCheckAdaptivePollingMaxInterval(@QueryParameter String value) {
+            return doCheckEndViewDelay(value);
+        }
+
+        public FormValidation doCheckAdaptivePollingCommandBudget(@QueryParameter String value) {
+            return doCheckEndViewDelay(value);
+        }
         
         public FormValidation doCheckEndViewDelay(@QueryParameter String value) {
             try {
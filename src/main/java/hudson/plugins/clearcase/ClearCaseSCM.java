@@ -39,15 +39,20 @@ import hudson.plugins.clearcase.action.SaveChangeLogAction;
 import hudson.plugins.clearcase.base.BaseHistoryAction;
 import hudson.plugins.clearcase.base.BaseSaveChangeLogAction;
 import hudson.plugins.clearcase.base.ClearCaseSCMRevisionState;
+import hudson.plugins.clearcase.base.LabelWatcher;
+import hudson.plugins.clearcase.history.ChangeDetection;
 import hudson.plugins.clearcase.history.Filter;
 import hudson.plugins.clearcase.history.FilterChain;
 import hudson.plugins.clearcase.history.HistoryAction;
+import hudson.plugins.clearcase.history.HistoryMirror;
 import hudson.plugins.clearcase.history.LabelFilter;
+import hudson.plugins.clearcase.polling.AdaptivePollingPolicy;
 import hudson.plugins.clearcase.util.BuildUtils;
 import hudson.plugins.clearcase.util.BuildVariableResolver;
 import hudson.plugins.clearcase.util.PathUtil;
 import hudson.plugins.clearcase.viewstorage.ViewStorage;
 import hudson.scm.ChangeLogParser;
+import hudson.scm.PollingResult.Change;
 import hudson.scm.SCMRevisionState;
 import hudson.scm.SCM;
 import hudson.util.ArgumentListBuilder;
@@ -61,6 +66,7 @@ import java.text.NumberFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -69,6 +75,7 @@ import javax.servlet.ServletException;
 
 import net.sf.json.JSONObject;
 
+import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
@@ -104,6 +111,54 @@ public class ClearCaseSCM extends AbstractClearCaseScm {
          * see https://groups.google.com/d/msg/jenkinsci-users/cWNvmxBf1WI/Z_WHm_ay4VEJ
          */
         private int              endViewDelay;
+        /**
+         * Size in seconds of the window over which polls of jobs sharing the same cron spec are spread.
+         */
+        private int              pollingJitter;
+        /**
+         * Maximum number of concurrent polls per VOB group, 0 for unlimited.
+         */
+        private int              pollingMaxConcurrent;
+        /**
+         * Mapping of VOB tags to VOB groups (server or registry region), one <code>regexp=group</code> per line.
+         */
+        private String           pollingVobGroups;
+        /**
+         * Number of consecutive failures on a VOB group after which polls touching it are skipped, 0 to disable.
+         */
+        private int              pollingFailureThreshold;
+        /**
+         * Delay in seconds before a poll is allowed again on a VOB group once its circuit opened.
+         */
+        private int              pollingCircuitOpenDelay = 300;
+        /**
+         * If true, the multisite poll buffer of a job is the maximum lookback; the actual one is the measured replication lag plus a margin, per VOB.
+         */
+        private boolean          multiSiteAdaptiveLookback;
+        /**
+         * Margin in minutes added to the measured replication lag.
+         */
+        private int              multiSiteLookbackMargin = 10;
+        /**
+         * If true, the history is read from a local mirror of the VOB histories, see {@link HistoryMirror}.
+         */
+        private boolean          useHistoryMirror;
+        /**
+         * If true, the polls triggered by the cron spec of the jobs are skipped until they are due, see {@link AdaptivePollingPolicy}.
+         */
+        private boolean          adaptivePolling;
+        /**
+         * Minimum interval in minutes between two polls of a job with adaptive polling.
+         */
+        private int              adaptivePollingMinInterval = 1;
+        /**
+         * Maximum interval in minutes between two polls of a job with adaptive polling.
+         */
+        private int              adaptivePollingMaxInterval = 60;
+        /**
+         * Cleartool commands all the polls may run per minute with adaptive polling, 0 for unlimited.
+         */
+        private int              adaptivePollingCommandBudget;
 
         public ClearCaseScmDescriptor() {
             super(ClearCaseSCM.class, null);
@@ -264,6 +319,102 @@ public class ClearCaseSCM extends AbstractClearCaseScm {
             return endViewDelay;
         }
 
+        public int getPollingJitter() {
+            return pollingJitter;
+        }
+
+        public void setPollingJitter(int pollingJitter) {
+            this.pollingJitter = pollingJitter;
+        }
+
+        public int getPollingMaxConcurrent() {
+            return pollingMaxConcurrent;
+        }
+
+        public void setPollingMaxConcurrent(int pollingMaxConcurrent) {
+            this.pollingMaxConcurrent = pollingMaxConcurrent;
+        }
+
+        public String getPollingVobGroups() {
+            return pollingVobGroups;
+        }
+
+        public void setPollingVobGroups(String pollingVobGroups) {
+            this.pollingVobGroups = fixEmptyAndTrim(pollingVobGroups);
+        }
+
+        public int getPollingFailureThreshold() {
+            return pollingFailureThreshold;
+        }
+
+        public void setPollingFailureThreshold(int pollingFailureThreshold) {
+            this.pollingFailureThreshold = pollingFailureThreshold;
+        }
+
+        public boolean isMultiSiteAdaptiveLookback() {
+            return multiSiteAdaptiveLookback;
+        }
+
+        public void setMultiSiteAdaptiveLookback(boolean multiSiteAdaptiveLookback) {
+            this.multiSiteAdaptiveLookback = multiSiteAdaptiveLookback;
+        }
+
+        public int getMultiSiteLookbackMargin() {
+            return multiSiteLookbackMargin;
+        }
+
+        public void setMultiSiteLookbackMargin(int multiSiteLookbackMargin) {
+            this.multiSiteLookbackMargin = multiSiteLookbackMargin;
+        }
+
+        public boolean isUseHistoryMirror() {
+            return useHistoryMirror;
+        }
+
+        public void setUseHistoryMirror(boolean useHistoryMirror) {
+            this.useHistoryMirror = useHistoryMirror;
+        }
+
+        public int getPollingCircuitOpenDelay() {
+            return pollingCircuitOpenDelay;
+        }
+
+        public void setPollingCircuitOpenDelay(int pollingCircuitOpenDelay) {
+            this.pollingCircuitOpenDelay = pollingCircuitOpenDelay;
+        }
+
+        public boolean isAdaptivePolling() {
+            return adaptivePolling;
+        }
+
+        public void setAdaptivePolling(boolean adaptivePolling) {
+            this.adaptivePolling = adaptivePolling;
+        }
+
+        public int getAdaptivePollingMinInterval() {
+            return adaptivePollingMinInterval;
+        }
+
+        public void setAdaptivePollingMinInterval(int adaptivePollingMinInterval) {
+            this.adaptivePollingMinInterval = adaptivePollingMinInterval;
+        }
+
+        public int getAdaptivePollingMaxInterval() {
+            return adaptivePollingMaxInterval;
+        }
+
+        public void setAdaptivePollingMaxInterval(int adaptivePollingMaxInterval) {
+            this.adaptivePollingMaxInterval = adaptivePollingMaxInterval;
+        }
+
+        public int getAdaptivePollingCommandBudget() {
+            return adaptivePollingCommandBudget;
+        }
+
+        public void setAdaptivePollingCommandBudget(int adaptivePollingCommandBudget) {
+            this.adaptivePollingCommandBudget = adaptivePollingCommandBudget;
+        }
+
         @Override
         public SCM newInstance(StaplerRequest req, JSONObject formData) throws FormException {
             AbstractClearCaseScm scm = new ClearCaseSCM(req.getParameter("cc.branch"), req.getParameter("cc.label"),
@@ -277,12 +428,20 @@ public class ClearCaseSCM extends AbstractClearCaseScm {
                     fixEmpty(req.getParameter("cc.multiSitePollBuffer")), req.getParameter("cc.useTimeRule") != null,
                     req.getParameter("cc.createDynView") != null, req.getParameter("cc.viewpath"), ChangeSetLevel.fromString(req.getParameter("cc.changeset")),
                     extractViewStorage(req, formData));
+            scm.setChangeDetection(ChangeDetection.fromString(req.getParameter("cc.changeDetection")));
+            scm.setPreUpdateView(req.getParameter("cc.preUpdateView") != null);
             return scm;
         }
     }
     public static final String  CLEARCASE_CSFILENAME_ENVSTR       = "CLEARCASE_CSFILENAME";
 
     private static final String DEFAULT_VALUE_WIN_DYN_STORAGE_DIR = "\\views\\dynamic";
+
+    /**
+     * Set to true to poll label changes with lshistory -minor instead of {@link LabelWatcher} summaries.
+     */
+    private static final boolean LABEL_WATCHER_DISABLED = Boolean.getBoolean(ClearCaseSCM.class.getName() + ".disableLabelWatcher");
+
     private final String        branch;
     private String              configSpec;
     private String              configSpecFileName;
@@ -450,6 +609,14 @@ public class ClearCaseSCM extends AbstractClearCaseScm {
         return configSpec = scpec;
     }
 
+    /**
+     * With a time rule, the config spec of the view is older than the one of the next build.
+     */
+    @Override
+    protected boolean canPreUpdateView() {
+        return !useTimeRule;
+    }
+
     @Override
     protected CheckoutAction createCheckOutAction(VariableResolver<String> variableResolver, ClearToolLauncher launcher, AbstractBuild<?, ?> build)
             throws IOException, InterruptedException {
@@ -555,12 +722,41 @@ public class ClearCaseSCM extends AbstractClearCaseScm {
         return baseline == null || !(baseline instanceof ClearCaseSCMRevisionState);
     }
 
+    @Override
+    protected Change compareRevisionStates(SCMRevisionState baseline, SCMRevisionState remote, PrintStream logger) {
+        if (!(baseline instanceof ClearCaseSCMRevisionState) || !(remote instanceof ClearCaseSCMRevisionState)) {
+            return null;
+        }
+        Map<String, String> before = ((ClearCaseSCMRevisionState) baseline).getLabelSummaries();
+        Map<String, String> after = ((ClearCaseSCMRevisionState) remote).getLabelSummaries();
+        if (before == null || after == null) {
+            // Fall back to the history
+            return null;
+        }
+        List<String> changedLabels = LabelWatcher.getChangedLabels(before, after);
+        if (changedLabels.isEmpty()) {
+            logger.println("Labels unchanged: " + StringUtils.join(after.keySet(), ", "));
+            return Change.NONE;
+        }
+        logger.println("REASON: Label(s) changed: " + StringUtils.join(changedLabels, ", "));
+        return Change.SIGNIFICANT;
+    }
+
     @Override
     protected SCMRevisionState createRevisionState(AbstractBuild<?, ?> build, Launcher launcher, TaskListener taskListener, Date date)
             throws IOException, InterruptedException {
         ClearCaseSCMRevisionState revisionState = new ClearCaseSCMRevisionState(date);
         VariableResolver<String> variableResolver = new BuildVariableResolver(build);
         revisionState.setLoadRules(getViewPaths(variableResolver, build, launcher, true));
+        if (isLabelWatched(variableResolver) && !ArrayUtils.isEmpty(revisionState.getLoadRules())) {
+            ClearTool ct = createClearTool(variableResolver, createClearToolLauncher(taskListener, build.getWorkspace(), launcher));
+            LabelWatcher labelWatcher = new LabelWatcher(ct, getLabelNames(variableResolver));
+            try {
+                revisionState.setLabelSummaries(labelWatcher.summarize(getViewPath(variableResolver), revisionState.getLoadRules()));
+            } catch (IOException e) {
+                taskListener.getLogger().println("Couldn't summarize the labels, changes will be checked in the history: " + e.getMessage());
+            }
+        }
         return revisionState;
     }
 
@@ -618,4 +814,10 @@ public class ClearCaseSCM extends AbstractClearCaseScm {
         }
         return cs;
     }
+
+    private boolean isLabelWatched(VariableResolver<String> variableResolver) {
+        // Excluded regions can't be applied to label summaries
+        return !LABEL_WATCHER_DISABLED && StringUtils.isNotBlank(label) && StringUtils.isBlank(getExcludedRegions())
+                && LabelWatcher.canWatch(getLabelNames(variableResolver));
+    }
 }
@@ -32,6 +32,7 @@ import hudson.model.AbstractBuild;
 import hudson.plugins.clearcase.ClearCaseSCM.ClearCaseScmDescriptor;
 import hudson.plugins.clearcase.action.CheckoutAction;
 import hudson.plugins.clearcase.action.SaveChangeLogAction;
+import hudson.plugins.clearcase.history.ChangeDetection;
 import hudson.plugins.clearcase.ucm.FoundationBaselineUcmWorkflow;
 import hudson.plugins.clearcase.ucm.FreezeCodeStreamUcmWorkflow;
 import hudson.plugins.clearcase.ucm.StreamUcmWorkflow;
@@ -117,6 +118,8 @@ public class ClearCaseUcmSCM extends AbstractClearCaseScm {
                             req.getParameter("ucm.allocateViewName") != null, req.getParameter("ucm.viewpath"), req.getParameter("ucm.useManualLoadRules") != null,
                             ChangeSetLevel.fromString(req.getParameter("ucm.changeset")), extractViewStorage(req, formData),
                             formData.getBoolean("buildFoundationBaseline"));
+            scm.setChangeDetection(ChangeDetection.fromString(req.getParameter("ucm.changeDetection")));
+            scm.setPreUpdateView(req.getParameter("ucm.preUpdateView") != null);
             return scm;
         }
     }
@@ -231,7 +234,7 @@ public class ClearCaseUcmSCM extends AbstractClearCaseScm {
             }
             String streamSelector = getStream(variableResolver);
             ClearTool clearTool = createClearTool(build, launcher);
-            String[] rootDirs = getWorkflow().getAllRootDirsFor(clearTool, streamSelector);
+            String[] rootDirs = getWorkflow().getAllRootDirsFor(clearTool, streamSelector, forPolling ? build : null);
             for (int i = 0; i < rootDirs.length; i++) {
                 rootDirs[i] = StringUtils.stripStart(rootDirs[i], "\\/");
             }
@@ -316,11 +319,18 @@ public class ClearCaseUcmSCM extends AbstractClearCaseScm {
     @Override
     protected SCMRevisionState createRevisionState(AbstractBuild<?, ?> build, Launcher launcher, TaskListener taskListener, Date date) throws IOException,
     InterruptedException {
+        return createRevisionState(build, launcher, taskListener, date, false);
+    }
+
+    @Override
+    protected SCMRevisionState createRevisionState(AbstractBuild<?, ?> build, Launcher launcher, TaskListener taskListener, Date date, boolean forPolling)
+            throws IOException, InterruptedException {
         ClearTool clearTool = createClearTool(build, launcher);
         VariableResolver<String> variableResolver = new BuildVariableResolver(build);
         String resolvedStream = getStream(variableResolver);
-        String[] viewPaths = getViewPaths(variableResolver, build, launcher);
-        return getWorkflow().createRevisionState(clearTool, taskListener, date, resolvedStream, viewPaths);
+        // Manual load rules may differ for polling, while the recorded ones must stay the same
+        String[] viewPaths = getViewPaths(variableResolver, build, launcher, forPolling && !useManualLoadRules);
+        return getWorkflow().createRevisionState(clearTool, taskListener, date, resolvedStream, viewPaths, forPolling ? build : null);
     }
 
     private UcmWorkflow createWorkflow() {
@@ -341,6 +351,7 @@ public class ClearCaseUcmSCM extends AbstractClearCaseScm {
         streamWorkflow.setRecreateDynamicView(isRecreateView());
         streamWorkflow.setViewDrive(getViewDrive());
         streamWorkflow.setCreateDynamicView(isCreateDynView());
+        streamWorkflow.setActivityFingerprint(getChangeDetection() == ChangeDetection.ACTIVITIES);
         return streamWorkflow;
     }
 
@@ -68,6 +68,20 @@ public interface ClearTool {
      */
     public String lsbl(String baselineName, String format) throws IOException, InterruptedException;
 
+    /**
+     * List attributes of several baselines with a single lsbl
+     * 
+     * @param baselineNames
+     *            The baselines to list, as names or object selectors
+     * @param format
+     *            The output format to be used (-fmt &lt;format&gt;), printed once per baseline
+     * @return the output of lsbl
+     * @throws IOException
+     *             If cleartool throws an error code, for instance if one of the baselines doesn't exist
+     * @throws InterruptedException
+     */
+    public String lsbl(String[] baselineNames, String format) throws IOException, InterruptedException;
+
     /**
      * Retrieves the config spec for the specified view name
      * 
@@ -124,6 +138,21 @@ public interface ClearTool {
      */
     Reader describe(String format, String[] objectSelectors) throws IOException, InterruptedException;
 
+    /**
+     * Call the cleartool describe with the provided format on the specified object selectors, from the given view path. The objects are described in the
+     * given order. A failure is thrown without being reported on the listener, as the caller is expected to describe the objects again one at a time.
+     * 
+     * @param format
+     * @param viewPath
+     * @param objectSelectors
+     * @return A reader to the command output
+     * @throws IOException
+     *             If cleartool throws an error code, for instance if one of the objects can't be described
+     * @throws InterruptedException
+     *             If the process is interrupted
+     */
+    Reader describe(String format, String viewPath, String[] objectSelectors) throws IOException, InterruptedException;
+
     /**
      * Call diffbl using the two provided baselines (can be stream or baseline)
      * 
@@ -174,6 +203,19 @@ public interface ClearTool {
      */
     void endViewServer(String viewTag) throws IOException, InterruptedException;
 
+    /**
+     * Lists the versions matching a query below the given paths (cleartool find -version &lt;query&gt; -print).
+     * 
+     * @param viewPath
+     *            the view path, relative to the workspace
+     * @param pathsInView
+     *            the paths to search, relative to the view path
+     * @param versionQuery
+     *            the version selection query, e.g. lbtype(LABEL)
+     * @return a reader on the extended names of the matching versions, one per line
+     */
+    Reader findVersions(String viewPath, String[] pathsInView, String versionQuery) throws IOException, InterruptedException;
+
     /**
      * Gets the view UUID, for thorough view deletion.
      * 
@@ -217,6 +259,22 @@ public interface ClearTool {
      * @throws InterruptedException
      */
     Reader lsactivity(String activity, String commandFormat, String viewPath) throws IOException, InterruptedException;
+
+    /**
+     * Call lsactivity on several activities at once. The output of each activity follows the given format, in an order chosen by cleartool.
+     * 
+     * @param activities
+     *            The activities to list, as simple names or object selectors
+     * @param commandFormat
+     *            The output format to be used (-fmt &lt;commandFormat&gt;)
+     * @param viewPath
+     *            view path name to use in order to list activity
+     * @return A reader to the lsactivity command output
+     * @throws IOException
+     *             If cleartool throws an error code, for instance if one of the activities doesn't exist
+     * @throws InterruptedException
+     */
+    Reader lsactivity(String[] activities, String commandFormat, String viewPath) throws IOException, InterruptedException;
     
     Reader lsactivityIn(String streamSelector, String commandFormat, String viewPath) throws IOException, InterruptedException;
 
@@ -261,6 +319,18 @@ public interface ClearTool {
      */
     String lsproject(String viewTag, String format) throws InterruptedException, IOException;
 
+    /**
+     * Lists the replicas of a VOB
+     * 
+     * @param vobTag
+     *            the VOB tag
+     * @param format
+     * @return
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    String lsreplica(String vobTag, String format) throws IOException, InterruptedException;
+
     /**
      * List attributes of a stream
      * 
@@ -372,6 +442,15 @@ public interface ClearTool {
      */
     void mountVobs() throws IOException, InterruptedException;
 
+    /**
+     * Previews the update of a snapshot view (cleartool update -print), without updating it.
+     * 
+     * @param viewPath
+     *            the view path, relative to the workspace
+     * @return the update log describing the actions the update would take
+     */
+    CleartoolUpdateResult previewUpdate(String viewPath) throws IOException, InterruptedException;
+
     /**
      * Retrieves the canonical working directory for a given view.
      * 
@@ -447,6 +526,16 @@ public interface ClearTool {
      */
     void setBaselinePromotionLevel(String baselineName, String promotionLevel) throws IOException, InterruptedException;
 
+    /**
+     * Set the promotion level of several baselines with a single chbl.
+     * 
+     * @param baselineNames
+     * @param promotionLevel
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    void setBaselinePromotionLevel(String[] baselineNames, String promotionLevel) throws IOException, InterruptedException;
+
     /**
      * Sets the config spec of the view
      * 
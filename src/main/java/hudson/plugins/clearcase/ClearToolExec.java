@@ -27,8 +27,11 @@ package hudson.plugins.clearcase;
 import hudson.AbortException;
 import hudson.FilePath;
 import hudson.Util;
+import hudson.model.Hudson;
 import hudson.plugins.clearcase.command.CleartoolOutput;
 import hudson.plugins.clearcase.command.LsHistoryCommand;
+import hudson.plugins.clearcase.polling.PollingScheduler;
+import hudson.plugins.clearcase.polling.VobCircuitBreaker;
 import hudson.plugins.clearcase.util.DeleteOnCloseFileInputStream;
 import hudson.plugins.clearcase.util.PathUtil;
 import hudson.util.ArgumentListBuilder;
@@ -56,6 +59,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.LineIterator;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
@@ -127,6 +131,15 @@ public abstract class ClearToolExec implements ClearTool {
 
     @Override
     public Reader describe(String format, String[] objectSelectors) throws IOException, InterruptedException {
+        return describe(format, null, objectSelectors, true);
+    }
+
+    @Override
+    public Reader describe(String format, String viewPath, String[] objectSelectors) throws IOException, InterruptedException {
+        return describe(format, viewPath, objectSelectors, false);
+    }
+
+    private Reader describe(String format, String viewPath, String[] objectSelectors, boolean reportFailure) throws IOException, InterruptedException {
         Validate.notNull(objectSelectors);
         Validate.isTrue(objectSelectors.length > 0);
         ArgumentListBuilder cmd = new ArgumentListBuilder();
@@ -138,8 +151,11 @@ public abstract class ClearToolExec implements ClearTool {
             cmd.add(selector);
         }
         FilePath workingDirectory = null;
+        if (viewPath != null) {
+            workingDirectory = new FilePath(getRootViewPath(launcher), viewPath);
+        }
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        launcher.run(cmd.toCommandArray(), null, baos, workingDirectory, true);
+        launcher.run(cmd.toCommandArray(), null, baos, workingDirectory, true, reportFailure);
         Reader reader = new InputStreamReader(new ByteArrayInputStream(baos.toByteArray()));
         baos.close();
         return reader;
@@ -259,6 +275,27 @@ public abstract class ClearToolExec implements ClearTool {
         return launcher;
     }
 
+    @Override
+    public Reader findVersions(String viewPath, String[] pathsInView, String versionQuery) throws IOException, InterruptedException {
+        Validate.notEmpty(pathsInView);
+        ArgumentListBuilder cmd = new ArgumentListBuilder();
+        cmd.add("find");
+        cmd.add(pathsInView);
+        cmd.add("-version", versionQuery);
+        cmd.add("-print");
+        FilePath workingDirectory = null;
+        if (viewPath != null) {
+            workingDirectory = new FilePath(getRootViewPath(launcher), viewPath);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        if (!launcher.run(cmd.toCommandArray(), null, baos, workingDirectory, true)) {
+            throw new IOException("cleartool find failed: " + baos.toString());
+        }
+        Reader reader = new InputStreamReader(new ByteArrayInputStream(baos.toByteArray()));
+        baos.close();
+        return reader;
+    }
+
     @Override
     public Properties getViewData(String viewTag) throws IOException, InterruptedException {
         Properties resPrp = new Properties();
@@ -322,6 +359,17 @@ public abstract class ClearToolExec implements ClearTool {
         return lsactivity(viewPath, "-fmt", commandFormat, activity);
     }
 
+    @Override
+    public Reader lsactivity(String[] activities, String commandFormat, String viewPath) throws IOException, InterruptedException {
+        Validate.notNull(activities);
+        Validate.isTrue(activities.length > 0);
+        String[] args = new String[activities.length + 2];
+        args[0] = "-fmt";
+        args[1] = commandFormat;
+        System.arraycopy(activities, 0, args, 2, activities.length);
+        return lsactivity(viewPath, args);
+    }
+
     @Override
     public Reader lsactivityIn(String streamSelector, String commandFormat, String viewPath) throws IOException, InterruptedException {
         return lsactivity(viewPath, "-fmt", commandFormat, "-in", streamSelector);
@@ -354,6 +402,20 @@ public abstract class ClearToolExec implements ClearTool {
         return runAndProcessOutput(cmd, null, null, false, null, true);
     }
 
+    @Override
+    public String lsbl(String[] baselineNames, String format) throws IOException, InterruptedException {
+        Validate.notNull(baselineNames);
+        Validate.isTrue(baselineNames.length > 0);
+        ArgumentListBuilder cmd = new ArgumentListBuilder();
+        cmd.add("lsbl");
+        if (StringUtils.isNotEmpty(format)) {
+            cmd.add("-fmt");
+            cmd.add(format);
+        }
+        cmd.add(baselineNames);
+        return runAndProcessOutput(cmd, null, null, false, null, true);
+    }
+
     @Override
     public String lscurrentview(String viewPath) throws IOException, InterruptedException {
         ArgumentListBuilder cmd = new ArgumentListBuilder();
@@ -390,8 +452,17 @@ public abstract class ClearToolExec implements ClearTool {
         lsHistory.format(format).since(lastBuildDate).viewPath(getRootViewPath(launcher).child(viewPath)).branch(branch).pathsInView(pathsInView);
         lsHistory.setConsiderMinorEvents(getMinor);
         lsHistory.setUseRecurse(useRecurse);
+        long start = System.currentTimeMillis();
         CleartoolOutput output = lsHistory.execute(launcher, launcher.getListener());
-        return new InputStreamReader(output.getInputStream());
+        long latency = System.currentTimeMillis() - start;
+        if (output.isSuccessful()) {
+            recordVobHealth(pathsInView, true, null, latency);
+            return new InputStreamReader(output.getInputStream());
+        }
+        // The error is only read to tell whether it reached the VOB server
+        byte[] bytes = IOUtils.toByteArray(output.getInputStream());
+        recordVobHealth(pathsInView, false, new String(bytes), latency);
+        return new InputStreamReader(new ByteArrayInputStream(bytes));
     }
 
     @Override
@@ -416,6 +487,17 @@ public abstract class ClearToolExec implements ClearTool {
         return output;
     }
 
+    @Override
+    public String lsreplica(String vobTag, String format) throws IOException, InterruptedException {
+        ArgumentListBuilder cmd = new ArgumentListBuilder();
+        cmd.add("lsreplica");
+        cmd.add("-fmt");
+        cmd.add(format);
+        cmd.add("-invob");
+        cmd.add(vobTag);
+        return runAndProcessOutput(cmd, null, null, false, null, true);
+    }
+
     @Override
     public String lsstream(String stream, String viewTag, String format) throws IOException, InterruptedException {
         ArgumentListBuilder cmd = new ArgumentListBuilder();
@@ -649,6 +731,16 @@ public abstract class ClearToolExec implements ClearTool {
         }
     }
 
+    @Override
+    public CleartoolUpdateResult previewUpdate(String viewPath) throws IOException, InterruptedException {
+        FilePath workspace = getLauncher().getWorkspace();
+        ArgumentListBuilder cmd = new ArgumentListBuilder();
+        cmd.add("update");
+        cmd.add("-print");
+        String output = runAndProcessOutput(cmd, null, workspace.child(viewPath), false, null, true);
+        return new CleartoolUpdateResult(extractUpdtFile(workspace, output));
+    }
+
     @Override
     public String pwv(String viewPath) throws IOException, InterruptedException {
         ArgumentListBuilder cmd = new ArgumentListBuilder();
@@ -774,6 +866,23 @@ public abstract class ClearToolExec implements ClearTool {
         runAndProcessOutput(cmd, null, null, false, null, true);
     }
 
+    @Override
+    public void setBaselinePromotionLevel(String[] baselineNames, String promotionLevel) throws IOException, InterruptedException {
+        Validate.notNull(baselineNames);
+        Validate.isTrue(baselineNames.length > 0);
+        ArgumentListBuilder cmd = new ArgumentListBuilder();
+
+        cmd.add("chbl");
+        cmd.add("-c");
+        cmd.add("Hudson set baseline to promotion level " + promotionLevel);
+        cmd.add("-level");
+        cmd.add(promotionLevel);
+
+        cmd.add(baselineNames);
+
+        runAndProcessOutput(cmd, null, null, false, null, true);
+    }
+
     /**
      * To set the config spec of a snapshot view, you must be in or under the snapshot view root directory.
      *
@@ -887,9 +996,9 @@ public abstract class ClearToolExec implements ClearTool {
                 reader = new InputStreamReader(is);
                 version = CleartoolVersion.parseCmdOutput(reader);
             } finally {
-                org.apache.commons.io.IOUtils.closeQuietly(reader);
-                org.apache.commons.io.IOUtils.closeQuietly(is);
-                org.apache.commons.io.IOUtils.closeQuietly(baos);
+                IOUtils.closeQuietly(reader);
+                IOUtils.closeQuietly(is);
+                IOUtils.closeQuietly(baos);
             }
         }
         return version;
@@ -940,12 +1049,12 @@ public abstract class ClearToolExec implements ClearTool {
         if (logFile != null && logFile.exists()) {
             InputStream stream = logFile.read();
             try {
-                LineIterator it = org.apache.commons.io.IOUtils.lineIterator(stream, "UTF-8");
+                LineIterator it = IOUtils.lineIterator(stream, "UTF-8");
                 while (it.hasNext()) {
                     logger.println(it.nextLine());
                 }
             } finally {
-                org.apache.commons.io.IOUtils.closeQuietly(stream);
+                IOUtils.closeQuietly(stream);
             }
 
         }
@@ -1075,11 +1184,32 @@ public abstract class ClearToolExec implements ClearTool {
                 line = reader.readLine();
             }
         } finally {
-            org.apache.commons.io.IOUtils.closeQuietly(reader);
+            IOUtils.closeQuietly(reader);
         }
         return views;
     }
 
+    /**
+     * Feeds the VOB circuit breaker with the outcome of a history command. Only errors reaching the VOB server count as failures, errors on a given element
+     * don't tell anything about the server health.
+     */
+    private void recordVobHealth(String[] pathsInView, boolean successful, String output, long latencyMillis) {
+        if (Hudson.getInstance() == null) {
+            return;
+        }
+        ClearCaseSCM.ClearCaseScmDescriptor descriptor = PluginImpl.BASE_DESCRIPTOR;
+        VobCircuitBreaker breaker = VobCircuitBreaker.getInstance();
+        boolean failed = !successful && VobCircuitBreaker.isTransientError(output);
+        for (String group : PollingScheduler.getVobGroups(pathsInView, descriptor.getPollingVobGroups())) {
+            if (failed) {
+                LOGGER.warning("History command failed on VOB group " + group + " after " + latencyMillis + " ms");
+                breaker.recordFailure(group, latencyMillis, descriptor.getPollingFailureThreshold(), descriptor.getPollingCircuitOpenDelay());
+            } else {
+                breaker.recordSuccess(group, latencyMillis);
+            }
+        }
+    }
+
     private CleartoolUpdateResult setcs(String viewTag, String viewPath, SetcsOption option, String configSpec) throws IOException, InterruptedException {
         if (option == SetcsOption.CONFIGSPEC) {
             Validate.notNull(configSpec, "Using option CONFIGSPEC, you must provide a non-null config spec");
@@ -103,4 +103,24 @@ public interface ClearToolLauncher {
      * @return true if the command was successful, false otherwise
      */
     boolean run(String[] cmd, InputStream in, OutputStream out, FilePath execPath, boolean logCommand) throws IOException, InterruptedException;
+
+    /**
+     * Launches a cleartool command with arguments.
+     * 
+     * @param cmd
+     *            the command to launch using the clear tool executable
+     * @param in
+     *            optional, if the command should be able to receive input
+     * @param out
+     *            optional, can be used to gather the output stream
+     * @param execPath
+     *            optional, the path where the command should be launched
+     * @param logCommand
+     *            optional, log the command itself
+     * @param reportFailure
+     *            false if a failure of the command is handled by the caller, and must not be reported as fatal on the listener. It is thrown all the same.
+     * @return true if the command was successful, false otherwise
+     */
+    boolean run(String[] cmd, InputStream in, OutputStream out, FilePath execPath, boolean logCommand, boolean reportFailure) throws IOException,
+            InterruptedException;
 }
@@ -38,6 +38,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
@@ -47,12 +48,35 @@ import org.apache.commons.lang.StringUtils;
  */
 public class HudsonClearToolLauncher implements ClearToolLauncher {
 
-    private final String       executable;
-    private final Launcher     launcher;
-    private final TaskListener listener;
+    /**
+     * Cleartool commands run by the launchers each thread created, see {@link #getCommandsRun()}.
+     */
+    private static final ThreadLocal<AtomicInteger> COMMANDS_RUN = new ThreadLocal<AtomicInteger>() {
+                                                                     @Override
+                                                                     protected AtomicInteger initialValue() {
+                                                                         return new AtomicInteger();
+                                                                     }
+                                                                 };
 
-    private final String       scmName;
-    private final FilePath     workspace;
+    /**
+     * Returns the number of cleartool commands run so far by the launchers the current thread created, including the commands they ran on other threads,
+     * such as those of the thread pools looking up the history in parallel. Used to measure the cost of a poll.
+     */
+    public static int getCommandsRun() {
+        return COMMANDS_RUN.get().get();
+    }
+
+    /**
+     * The command counter of the thread that created the launcher.
+     */
+    private final AtomicInteger commandsRun = COMMANDS_RUN.get();
+
+    private final String        executable;
+    private final Launcher      launcher;
+    private final TaskListener  listener;
+
+    private final String        scmName;
+    private final FilePath      workspace;
 
     public HudsonClearToolLauncher(String executable, String scmName, TaskListener listener, FilePath workspace, Launcher launcher) {
         this.executable = executable;
@@ -109,6 +133,12 @@ public class HudsonClearToolLauncher implements ClearToolLauncher {
     @Override
     public boolean run(String[] cmd, InputStream inputStream, OutputStream outputStream, FilePath filePath, boolean logCommand) throws IOException,
     InterruptedException {
+        return run(cmd, inputStream, outputStream, filePath, logCommand, true);
+    }
+
+    @Override
+    public boolean run(String[] cmd, InputStream inputStream, OutputStream outputStream, FilePath filePath, boolean logCommand, boolean reportFailure)
+            throws IOException, InterruptedException {
         String ccVerbose = System.getenv("HUDSON_CLEARCASE_VERBOSE");
         logCommand |= StringUtils.equals("1", ccVerbose);
 
@@ -140,15 +170,18 @@ public class HudsonClearToolLauncher implements ClearToolLauncher {
             cmdWithExec[0] = executable;
             System.arraycopy(cmd, 0, cmdWithExec, 1, cmd.length);
 
+            commandsRun.incrementAndGet();
             int r = getLaunchedProc(cmdWithExec, env, inputStream, out, path).join();
             if (logCommand) {
                 listener.getLogger().println();
             }
             if (r != 0) {
-                if (!logCommand) {
-                    printToLogger(logFile);
+                if (reportFailure) {
+                    if (!logCommand) {
+                        printToLogger(logFile);
+                    }
+                    listener.fatalError(scmName + " failed. exit code=" + r);
                 }
-                listener.fatalError(scmName + " failed. exit code=" + r);
                 throw new IOException("cleartool did not return the expected exit code. Command line=\"" + getCmdString(cmd) + "\", actual exit code=" + r);
             }
         } finally {
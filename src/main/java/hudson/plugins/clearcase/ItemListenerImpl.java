@@ -34,6 +34,9 @@ import hudson.model.Computer;
 import hudson.model.FreeStyleProject;
 import hudson.model.Hudson;
 import hudson.model.listeners.ItemListener;
+import hudson.plugins.clearcase.history.AutoStrategy;
+import hudson.plugins.clearcase.polling.AdaptivePollingPolicy;
+import hudson.plugins.clearcase.polling.PollingScheduler;
 import hudson.plugins.clearcase.util.BuildVariableResolver;
 import hudson.scm.SCM;
 import hudson.util.StreamTaskListener;
@@ -66,12 +69,24 @@ public class ItemListenerImpl extends ItemListener {
     }
 
     /**
-     * Delete the view when the job is deleted
+     * Forget the change detection selected for the job, its polling statistics and its deferred poll when it is deleted
      */
     @Override
     public void onDeleted(Item item) {
-        // Don't do anything, it has already been processed by AbstractClearCaseScm#processWorkspaceBeforeDeletion
-        return;
+        // The view has already been processed by AbstractClearCaseScm#processWorkspaceBeforeDeletion
+        AutoStrategy.forget(item.getFullName());
+        AdaptivePollingPolicy.getInstance().forget(item.getFullName());
+        PollingScheduler.getInstance().forget(item.getFullName());
+    }
+
+    /**
+     * Keep the change detection selected for the job and its polling statistics when it is renamed or moved
+     */
+    @Override
+    public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+        AutoStrategy.rename(oldFullName, newFullName);
+        AdaptivePollingPolicy.getInstance().rename(oldFullName, newFullName);
+        PollingScheduler.getInstance().rename(oldFullName, newFullName);
     }
 
     /**
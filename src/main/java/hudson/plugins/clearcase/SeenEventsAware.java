@@ -0,0 +1,12 @@
+package hudson.plugins.clearcase;
+
+import hudson.plugins.clearcase.history.SeenEventStore;
+
+/**
+ * A revision state remembering the history events already attributed to builds, see {@link SeenEventStore}.
+ */
+public interface SeenEventsAware {
+    SeenEventStore getSeenEvents();
+
+    void setSeenEvents(SeenEventStore seenEvents);
+}
@@ -0,0 +1,49 @@
+package hudson.plugins.clearcase.action;
+
+import hudson.plugins.clearcase.ClearCaseChangeLogSet;
+import hudson.scm.ChangeLogSet.Entry;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Writes a change log file one entry at a time, so that the whole change log doesn't need to be held in memory.
+ */
+public abstract class ChangeLogWriter implements Closeable {
+
+    private int               entryCount;
+
+    private final PrintStream stream;
+
+    protected ChangeLogWriter(File changeLogFile) throws IOException {
+        stream = new PrintStream(new BufferedOutputStream(new FileOutputStream(changeLogFile)), false, "UTF-8");
+        ClearCaseChangeLogSet.writeHeader(stream);
+    }
+
+    /**
+     * Completes and closes the change log file.
+     */
+    @Override
+    public void close() throws IOException {
+        ClearCaseChangeLogSet.writeFooter(stream);
+        stream.close();
+        if (stream.checkError()) {
+            throw new IOException("Error while writing the change log");
+        }
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public void write(Entry entry) throws IOException {
+        writeEntry(stream, entry);
+        entryCount++;
+    }
+
+    protected abstract void writeEntry(PrintStream stream, Entry entry) throws IOException;
+}
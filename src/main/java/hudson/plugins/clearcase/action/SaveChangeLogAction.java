@@ -34,6 +34,15 @@ import java.util.List;
  * Action that stores a change log into a file.
  */
 public interface SaveChangeLogAction {
+    /**
+     * Opens the specified file to write a change log incrementally.
+     * 
+     * @param changeLogFile
+     *            file to write the change log to (as XML)
+     * @return a writer that must be closed once all entries are written
+     */
+    ChangeLogWriter openChangeLog(File changeLogFile) throws IOException;
+
     /**
      * Store the change log into the specified file.
      * 
@@ -28,6 +28,7 @@ import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.TaskListener;
 import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.ClearTool.SetcsOption;
 import hudson.plugins.clearcase.ConfigSpec;
 import hudson.plugins.clearcase.MkViewParameters;
 import hudson.plugins.clearcase.ViewType;
@@ -102,6 +103,22 @@ public abstract class SnapshotCheckoutAction extends CheckoutAction {
         return isViewValid(workspace, viewTag);
     }
 
+    /**
+     * Updates the existing view with its current config spec, ahead of the build. The checkout then only has the changes made since to load.
+     * 
+     * @see ViewPreUpdater
+     */
+    public void preUpdate(String viewTag) throws IOException, InterruptedException {
+        ClearTool ct = getCleartool();
+        // ends the view server, useful if a previous update has been killed
+        ct.endViewServer(viewTag);
+        try {
+            updateView(ct);
+        } finally {
+            ct.endViewServer(viewTag);
+        }
+    }
+
     /**
      * Manages the re-creation of the view if needed. If something exists but not referenced correctly as a view, it will be renamed and the view will be
      * created
@@ -204,6 +221,13 @@ public abstract class SnapshotCheckoutAction extends CheckoutAction {
         return new SnapshotCheckoutAction.LoadRulesDelta(removedLoadRules, addedLoadRules);
     }
 
+    /**
+     * Performs a full update of the view with its current config spec.
+     */
+    protected void updateView(ClearTool ct) throws IOException, InterruptedException {
+        ct.setcs2(viewPath, SetcsOption.CURRENT, null);
+    }
+
     private void rmviewtag(String viewTag) throws InterruptedException, IOException {
         try {
             getCleartool().rmviewtag(viewTag);
@@ -35,6 +35,7 @@ import hudson.plugins.clearcase.ClearTool.SetcsOption;
 import hudson.plugins.clearcase.MkViewParameters;
 import hudson.plugins.clearcase.ViewType;
 import hudson.plugins.clearcase.ucm.UcmCommon;
+import hudson.plugins.clearcase.ucm.service.StreamCache;
 import hudson.plugins.clearcase.viewstorage.ViewStorage;
 
 import java.io.IOException;
@@ -142,6 +143,9 @@ public class UcmDynamicCheckoutAction extends CheckoutAction {
             }
         }
 
+        // the cached latest baselines of the configured stream are outdated
+        StreamCache.getInstance().invalidate(stream);
+
         // rebase build stream
         UcmCommon.rebase(getCleartool(), viewName, latestBlsOnConfgiuredStream);
 
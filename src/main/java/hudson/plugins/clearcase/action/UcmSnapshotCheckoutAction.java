@@ -75,11 +75,7 @@ public class UcmSnapshotCheckoutAction extends SnapshotCheckoutAction {
                 }
 
                 // Perform a full update of the view to get changes due to rebase for instance.
-                if (ct.doesSetcsSupportOverride()) {
-                    ct.setcs2(viewPath, SetcsOption.STREAM, null);
-                } else {
-                    ct.update2(viewPath, null);
-                }
+                updateView(ct);
             }
         } catch (IOException e) {
             launcher.getListener().fatalError(e.toString());
@@ -114,4 +110,13 @@ public class UcmSnapshotCheckoutAction extends SnapshotCheckoutAction {
         }
         return viewCreated;
     }
+
+    @Override
+    protected void updateView(ClearTool ct) throws IOException, InterruptedException {
+        if (ct.doesSetcsSupportOverride()) {
+            ct.setcs2(viewPath, SetcsOption.STREAM, null);
+        } else {
+            ct.update2(viewPath, null);
+        }
+    }
 }
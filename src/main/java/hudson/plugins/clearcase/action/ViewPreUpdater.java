@@ -0,0 +1,187 @@
+package hudson.plugins.clearcase.action;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Updates snapshot views ahead of the builds. Once a poll finds changes, the view of the job is updated while the build waits for its quiet period and an
+ * executor; the checkout then only has the changes made since to load. At most {@link #MAX_PER_NODE} views are updated at the same time on a node, the
+ * others wait for their turn. Updates are kept per node and view, a build running on another node doesn't wait for them.
+ */
+public final class ViewPreUpdater {
+
+    private final class PreUpdate implements Runnable {
+        private boolean                      cancelled;
+        private final SnapshotCheckoutAction checkoutAction;
+        private boolean                      done;
+        private final String                 key;
+        private boolean                      started;
+        private Thread                       thread;
+        private boolean                      timedOut;
+        private final String                 viewTag;
+
+        PreUpdate(String key, String viewTag, SnapshotCheckoutAction checkoutAction) {
+            this.key = key;
+            this.viewTag = viewTag;
+            this.checkoutAction = checkoutAction;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                started = true;
+                thread = Thread.currentThread();
+            }
+            long start = System.currentTimeMillis();
+            try {
+                checkoutAction.preUpdate(viewTag);
+                LOG.log(Level.INFO, "View {0} updated ahead of the build in {1} ms", new Object[] { viewTag, System.currentTimeMillis() - start });
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to update the view " + viewTag + " ahead of the build", e);
+            } catch (InterruptedException e) {
+                LOG.log(Level.WARNING, "Update of the view " + viewTag + " ahead of the build interrupted", e);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Unable to update the view " + viewTag + " ahead of the build", e);
+            } finally {
+                synchronized (this) {
+                    done = true;
+                    thread = null;
+                    notifyAll();
+                }
+                pending.remove(key, this);
+            }
+        }
+
+        /**
+         * Cancels the update if it hasn't started, or waits for it. An update still running after the given timeout is interrupted, which kills its
+         * cleartool, so that the checkout can update the view itself.
+         *
+         * @return true if the update ran to its end, false if it was cancelled or interrupted
+         */
+        boolean cancelOrAwait(long timeout) throws InterruptedException {
+            synchronized (this) {
+                if (!started) {
+                    cancelled = true;
+                } else {
+                    waitUntilDone(timeout);
+                    if (!done) {
+                        LOG.log(Level.WARNING, "Update of the view {0} ahead of the build still running after {1} ms, interrupting it", new Object[] {
+                                viewTag, timeout });
+                        timedOut = true;
+                        thread.interrupt();
+                        waitUntilDone(INTERRUPT_GRACE);
+                    }
+                }
+            }
+            pending.remove(key, this);
+            return !cancelled && !timedOut;
+        }
+
+        private void waitUntilDone(long timeout) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            for (long left = timeout; !done && left > 0; left = deadline - System.currentTimeMillis()) {
+                wait(left);
+            }
+        }
+    }
+
+    /**
+     * How long a checkout waits for the update of its view, before interrupting it and updating the view itself.
+     */
+    static final long                   AWAIT_TIMEOUT   = TimeUnit.MINUTES.toMillis(Long.getLong(ViewPreUpdater.class.getName() + ".awaitTimeoutMinutes",
+                                                                30));
+
+    /**
+     * Views updated at the same time on a node.
+     */
+    static final int                    MAX_PER_NODE    = Integer.getInteger(ViewPreUpdater.class.getName() + ".maxPerNode", 2);
+
+    /**
+     * How long an interrupted update is given to end.
+     */
+    private static final long           INTERRUPT_GRACE = TimeUnit.MINUTES.toMillis(1);
+
+    private static final ViewPreUpdater INSTANCE        = new ViewPreUpdater();
+
+    private static final Logger         LOG             = Logger.getLogger(ViewPreUpdater.class.getName());
+
+    public static ViewPreUpdater getInstance() {
+        return INSTANCE;
+    }
+
+    private final Map<String, ThreadPoolExecutor> executors = new HashMap<String, ThreadPoolExecutor>();
+
+    private final ConcurrentMap<String, PreUpdate> pending  = new ConcurrentHashMap<String, PreUpdate>();
+
+    ViewPreUpdater() {
+    }
+
+    /**
+     * Called by the checkout of the view: waits for the update of the view on the node if it is running, or cancels it if it hasn't started yet, so that
+     * the checkout doesn't update the view at the same time. The wait is bounded by {@link #AWAIT_TIMEOUT}.
+     *
+     * @return true if the view was updated ahead of the build
+     */
+    public boolean await(String nodeName, String viewTag) throws InterruptedException {
+        return await(nodeName, viewTag, AWAIT_TIMEOUT);
+    }
+
+    public boolean isPending(String nodeName, String viewTag) {
+        return pending.containsKey(getKey(nodeName, viewTag));
+    }
+
+    /**
+     * Schedules the update of a snapshot view on the given node, unless it is already scheduled.
+     *
+     * @param checkoutAction
+     *            the checkout action of the view, bound to a launcher on the node
+     * @return true if the update was scheduled
+     */
+    public boolean schedule(String nodeName, String viewTag, SnapshotCheckoutAction checkoutAction) {
+        String key = getKey(nodeName, viewTag);
+        PreUpdate preUpdate = new PreUpdate(key, viewTag, checkoutAction);
+        if (pending.putIfAbsent(key, preUpdate) != null) {
+            return false;
+        }
+        getExecutor(nodeName).execute(preUpdate);
+        return true;
+    }
+
+    boolean await(String nodeName, String viewTag, long timeout) throws InterruptedException {
+        PreUpdate preUpdate = pending.get(getKey(nodeName, viewTag));
+        return preUpdate != null && preUpdate.cancelOrAwait(timeout);
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor(final String nodeName) {
+        ThreadPoolExecutor executor = executors.get(nodeName);
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(MAX_PER_NODE, MAX_PER_NODE, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ClearCase view update ahead of the build on " + nodeName);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            executors.put(nodeName, executor);
+        }
+        return executor;
+    }
+
+    private static String getKey(String nodeName, String viewTag) {
+        return nodeName + '/' + viewTag;
+    }
+}
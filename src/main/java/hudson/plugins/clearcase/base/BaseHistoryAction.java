@@ -35,22 +35,33 @@ import hudson.plugins.clearcase.AbstractClearCaseScm.ChangeSetLevel;
 import hudson.plugins.clearcase.ClearCaseChangeLogEntry;
 import hudson.plugins.clearcase.ClearTool;
 import hudson.plugins.clearcase.UpdtEntry;
+import hudson.plugins.clearcase.action.ChangeLogWriter;
 import hudson.plugins.clearcase.history.AbstractHistoryAction;
 import hudson.plugins.clearcase.history.Filter;
 import hudson.plugins.clearcase.history.HistoryEntry;
 import hudson.plugins.clearcase.util.ChangeLogEntryMerger;
+import hudson.plugins.clearcase.util.ClearCaseUtils;
 import hudson.plugins.clearcase.util.ClearToolFormatHandler;
+import hudson.plugins.clearcase.util.CommandExecutor;
+import hudson.plugins.clearcase.util.SpillingSorter;
+import hudson.plugins.clearcase.util.StreamingChangeLogEntryMerger;
 import hudson.scm.ChangeLogSet.Entry;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.LineIterator;
 import org.apache.commons.lang.Validate;
 
@@ -59,7 +70,19 @@ import org.apache.commons.lang.Validate;
  */
 public class BaseHistoryAction extends AbstractHistoryAction {
 
-    private static final String[]  HISTORY_FORMAT = { DATE_NUMERIC, USER_ID, NAME_ELEMENTNAME, NAME_VERSIONID, EVENT, OPERATION };
+    /**
+     * Most characters of object selectors passed to one describe, so that the command line stays below the 8191 characters accepted by Windows.
+     */
+    static final int               DESCRIBE_MAX_LENGTH = Integer.getInteger(BaseHistoryAction.class.getName() + ".describeMaxLength", 6000);
+
+    /**
+     * Describes run at the same time for one update log, within the limit of the {@link CommandExecutor} shared by all the jobs.
+     */
+    static final int               DESCRIBE_THREADS    = Integer.getInteger(BaseHistoryAction.class.getName() + ".describeThreads", 4);
+
+    private static final String[]  HISTORY_FORMAT      = { DATE_NUMERIC, USER_ID, NAME_ELEMENTNAME, NAME_VERSIONID, EVENT, OPERATION };
+
+    private static final Logger    LOG                 = Logger.getLogger(BaseHistoryAction.class.getName());
 
     private ClearToolFormatHandler historyHandler = new ClearToolFormatHandler(HISTORY_FORMAT);
     private int                    maxTimeDifferenceMillis;
@@ -74,22 +97,35 @@ public class BaseHistoryAction extends AbstractHistoryAction {
         this(cleartool, useDynamicView, filter, null, false, maxTimeDifferenceMillis);
     }
 
+    /**
+     * Merges the history on the fly when it comes from lshistory, so that the change log is never held in memory as a whole.
+     */
+    @Override
+    public int writeChanges(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths, ChangeLogWriter writer)
+            throws IOException, InterruptedException {
+        if (isUpdtChangeset() || !needsLsHistoryForGetChanges(viewTag, viewPaths)) {
+            return super.writeChanges(time, viewPath, viewTag, branchNames, viewPaths, writer);
+        }
+        final StreamingChangeLogEntryMerger entryMerger = new StreamingChangeLogEntryMerger(maxTimeDifferenceMillis);
+        try {
+            streamHistory(time, viewPath, viewTag, branchNames, viewPaths, new SpillingSorter.Sink<HistoryEntry>() {
+                @Override
+                public void accept(HistoryEntry entry) throws IOException {
+                    entryMerger.add(toChangeLogEntry(entry));
+                }
+            });
+            return entryMerger.writeTo(writer);
+        } finally {
+            entryMerger.close();
+        }
+    }
+
     @Override
     protected List<? extends Entry> buildChangelog(String viewPath, List<HistoryEntry> entries) {
         List<ClearCaseChangeLogEntry> fullList = new ArrayList<ClearCaseChangeLogEntry>();
 
         for (HistoryEntry entry : entries) {
-            ClearCaseChangeLogEntry changelogEntry = new ClearCaseChangeLogEntry();
-
-            changelogEntry.setDate(entry.getDate());
-            changelogEntry.setUser(entry.getUser());
-            changelogEntry.setComment(entry.getComment());
-
-            ClearCaseChangeLogEntry.FileElement fileElement = new ClearCaseChangeLogEntry.FileElement(entry.getElement(), entry.getVersionId(),
-                    entry.getEvent(), entry.getOperation());
-
-            changelogEntry.addElement(fileElement);
-            fullList.add(changelogEntry);
+            fullList.add(toChangeLogEntry(entry));
         }
         ChangeLogEntryMerger entryMerger = new ChangeLogEntryMerger(maxTimeDifferenceMillis);
         return entryMerger.getMergedList(fullList);
@@ -115,34 +151,47 @@ public class BaseHistoryAction extends AbstractHistoryAction {
         return entry;
     }
 
-    protected List<HistoryEntry> parseUpdt(FilePath updtFile, String viewPath) throws IOException, InterruptedException {
+    /**
+     * Describes the versions created or updated by the update. Versions are described in chunks, several chunks at a time, and their history is returned in
+     * the order of the update log.
+     */
+    protected List<HistoryEntry> parseUpdt(FilePath updtFile, final String viewPath) throws IOException, InterruptedException {
         Validate.notNull(updtFile);
         List<HistoryEntry> history = new ArrayList<HistoryEntry>();
-        List<UpdtEntry> updtEntries = new ArrayList<UpdtEntry>();
+        List<String> selectors = new ArrayList<String>();
         InputStream is = updtFile.read();
         try {
-            LineIterator it = org.apache.commons.io.IOUtils.lineIterator(is, "UTF-8");
+            LineIterator it = IOUtils.lineIterator(is, "UTF-8");
             while (it.hasNext()) {
                 String line = it.nextLine();
                 UpdtEntry entry = UpdtEntry.getEntryFromLine(line);
                 if (entry.getState() == UpdtEntry.State.NEW || entry.getState() == UpdtEntry.State.UPDATED) {
-                    updtEntries.add(entry);
+                    selectors.add(entry.getObjectSelectorNewVersion());
                 }
             }
         } finally {
-            org.apache.commons.io.IOUtils.closeQuietly(is);
+            IOUtils.closeQuietly(is);
         }
-        for (UpdtEntry entry : updtEntries) {
-            try {
-                BufferedReader reader = new BufferedReader(cleartool.describe(getLsHistoryFormat(), viewPath, entry.getObjectSelectorNewVersion()));
-                try {
-                    parseLsHistory(reader, history);
-                } catch (ParseException e) {
-                    // no op
+        if (selectors.isEmpty()) {
+            return history;
+        }
+        List<Callable<Reader>> tasks = new ArrayList<Callable<Reader>>();
+        for (final String[] chunk : ClearCaseUtils.chunkSelectors(selectors, DESCRIBE_MAX_LENGTH)) {
+            tasks.add(new Callable<Reader>() {
+                @Override
+                public Reader call() throws IOException, InterruptedException {
+                    return describe(viewPath, chunk);
                 }
+            });
+        }
+        for (Reader output : CommandExecutor.invokeAll(tasks, DESCRIBE_THREADS)) {
+            BufferedReader reader = new BufferedReader(output);
+            try {
+                parseLsHistory(reader, history);
+            } catch (ParseException e) {
+                // no op
+            } finally {
                 reader.close();
-            } catch (IOException e) {
-                // skip describe errors
             }
         }
         return history;
@@ -152,11 +201,59 @@ public class BaseHistoryAction extends AbstractHistoryAction {
     protected List<HistoryEntry> runLsHistory(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths) throws IOException,
     InterruptedException {
         List<HistoryEntry> entries = null;
-        if (ChangeSetLevel.UPDT.equals(getChangeset()) && getUpdtFile() != null) {
+        if (isUpdtChangeset()) {
             entries = parseUpdt(getUpdtFile(), viewPath);
         } else {
             entries = super.runLsHistory(time, viewPath, viewTag, branchNames, viewPaths);
         }
         return entries;
     }
+
+    /**
+     * Describes a chunk of versions. When one of them can't be described, the chunk is described again one version at a time, skipping the versions in
+     * error.
+     */
+    private Reader describe(String viewPath, String[] selectors) throws IOException, InterruptedException {
+        try {
+            return cleartool.describe(getLsHistoryFormat(), viewPath, selectors);
+        } catch (IOException e) {
+            if (selectors.length == 1) {
+                // skip describe errors
+                return new StringReader("");
+            }
+            LOG.log(Level.FINE, "Unable to describe a chunk of " + selectors.length + " versions, describing them one at a time", e);
+        }
+        StringBuilder output = new StringBuilder();
+        for (String selector : selectors) {
+            try {
+                Reader reader = cleartool.describe(getLsHistoryFormat(), viewPath, selector);
+                try {
+                    output.append(IOUtils.toString(reader));
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException e) {
+                // skip describe errors
+            }
+        }
+        return new StringReader(output.toString());
+    }
+
+    private boolean isUpdtChangeset() {
+        return ChangeSetLevel.UPDT.equals(getChangeset()) && getUpdtFile() != null;
+    }
+
+    private ClearCaseChangeLogEntry toChangeLogEntry(HistoryEntry entry) {
+        ClearCaseChangeLogEntry changelogEntry = new ClearCaseChangeLogEntry();
+
+        changelogEntry.setDate(entry.getDate());
+        changelogEntry.setUser(entry.getUser());
+        changelogEntry.setComment(entry.getComment());
+
+        ClearCaseChangeLogEntry.FileElement fileElement = new ClearCaseChangeLogEntry.FileElement(entry.getElement(), entry.getVersionId(),
+                entry.getEvent(), entry.getOperation());
+
+        changelogEntry.addElement(fileElement);
+        return changelogEntry;
+    }
 }
@@ -26,12 +26,14 @@ package hudson.plugins.clearcase.base;
 
 import hudson.plugins.clearcase.ClearCaseChangeLogEntry;
 import hudson.plugins.clearcase.ClearCaseChangeLogSet;
+import hudson.plugins.clearcase.action.ChangeLogWriter;
 import hudson.plugins.clearcase.action.SaveChangeLogAction;
 import hudson.scm.ChangeLogSet.Entry;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.List;
 
 /**
@@ -39,6 +41,16 @@ import java.util.List;
  */
 public class BaseSaveChangeLogAction implements SaveChangeLogAction {
 
+    @Override
+    public ChangeLogWriter openChangeLog(File changeLogFile) throws IOException {
+        return new ChangeLogWriter(changeLogFile) {
+            @Override
+            protected void writeEntry(PrintStream stream, Entry entry) {
+                ClearCaseChangeLogSet.writeEntry(stream, (ClearCaseChangeLogEntry) entry);
+            }
+        };
+    }
+
     @Override
     public void saveChangeLog(File changeLogFile, List<? extends Entry> entries) throws IOException, InterruptedException {
         FileOutputStream fileOutputStream = new FileOutputStream(changeLogFile);
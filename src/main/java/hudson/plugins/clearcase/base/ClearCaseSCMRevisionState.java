@@ -27,10 +27,24 @@ package hudson.plugins.clearcase.base;
 import hudson.plugins.clearcase.AbstractClearCaseSCMRevisionState;
 
 import java.util.Date;
+import java.util.Map;
 
 public class ClearCaseSCMRevisionState extends AbstractClearCaseSCMRevisionState {
 
+    private Map<String, String> labelSummaries;
+
     public ClearCaseSCMRevisionState(Date buildTime) {
         super(buildTime);
     }
+
+    /**
+     * @return the summaries of the watched label types, see {@link LabelWatcher}; null if they couldn't be computed.
+     */
+    public Map<String, String> getLabelSummaries() {
+        return labelSummaries;
+    }
+
+    public void setLabelSummaries(Map<String, String> labelSummaries) {
+        this.labelSummaries = labelSummaries;
+    }
 }
@@ -0,0 +1,115 @@
+package hudson.plugins.clearcase.base;
+
+import hudson.plugins.clearcase.ClearTool;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Detects label changes without scanning the minor events of the whole history (<code>lshistory -minor</code>). For each watched label type, the versions
+ * carrying the label are summarized as their count and an order independent checksum of their names; a label was applied, moved or removed when its summary
+ * differs between two revision states.
+ */
+public class LabelWatcher {
+
+    private static final Pattern LABEL_TYPE_NAME = Pattern.compile("[\\w.\\-]+");
+
+    /**
+     * Returns true if the given label names are plain label type names. Label names are patterns for the label filter, only literal names can be watched.
+     */
+    public static boolean canWatch(String[] labelNames) {
+        if (ArrayUtils.isEmpty(labelNames)) {
+            return false;
+        }
+        for (String labelName : labelNames) {
+            if (labelName == null || !LABEL_TYPE_NAME.matcher(labelName).matches()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the label types whose summary differs.
+     */
+    public static List<String> getChangedLabels(Map<String, String> before, Map<String, String> after) {
+        List<String> changed = new ArrayList<String>();
+        for (Map.Entry<String, String> entry : after.entrySet()) {
+            if (!ObjectUtils.equals(entry.getValue(), before.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String labelType : before.keySet()) {
+            if (!after.containsKey(labelType)) {
+                changed.add(labelType);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Summarizes the output of <code>find -version ... -print</code>.
+     */
+    static String summarize(Reader reader) throws IOException {
+        BufferedReader br = new BufferedReader(reader);
+        int count = 0;
+        long checksum = 0;
+        for (String line = br.readLine(); line != null; line = br.readLine()) {
+            if (line.startsWith("cleartool: Error:")) {
+                throw new IOException(line);
+            }
+            if (StringUtils.isBlank(line)) {
+                continue;
+            }
+            count++;
+            checksum += hash(line.trim());
+        }
+        return count + ":" + Long.toHexString(checksum);
+    }
+
+    private static long hash(String s) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private final ClearTool cleartool;
+
+    private final String[]  labelTypes;
+
+    public LabelWatcher(ClearTool cleartool, String[] labelTypes) {
+        this.cleartool = cleartool;
+        this.labelTypes = labelTypes;
+    }
+
+    /**
+     * Summarizes the versions carrying each watched label type below the given paths.
+     *
+     * @return the summaries, by label type
+     */
+    public Map<String, String> summarize(String viewPath, String[] pathsInView) throws IOException, InterruptedException {
+        Map<String, String> summaries = new TreeMap<String, String>();
+        for (String labelType : labelTypes) {
+            Reader reader = cleartool.findVersions(viewPath, pathsInView, "lbtype(" + labelType + ")");
+            try {
+                summaries.put(labelType, summarize(reader));
+            } finally {
+                reader.close();
+            }
+        }
+        return summaries;
+    }
+}
@@ -43,6 +43,11 @@ public class LsHistoryCommand implements CleartoolCommand {
      * Lists the specified number of events, starting with the most recent. This option is mutually exclusive with useRecurse = true
      */
     private int                 numberOfLastEvents;
+    /**
+     * if true, lists the history of the given objects only (neither -all nor -recurse is used). pathsInView may then be any object selector, e.g.
+     * replica:name@vob. This option is mutually exclusive with useRecurse = true
+     */
+    private boolean             objectsOnly;
     /**
      * view paths that should be added to the lshistory command. The view paths must be relative.
      */
@@ -93,6 +98,9 @@ public class LsHistoryCommand implements CleartoolCommand {
         if (useRecurse && numberOfLastEvents != 0) {
             throw new IllegalArgumentException("useRecurse and numberOfLastEvents != 0 are mutually exclusive");
         }
+        if (useRecurse && objectsOnly) {
+            throw new IllegalArgumentException("useRecurse and objectsOnly are mutually exclusive");
+        }
         if (numberOfLastEvents < 0) {
             throw new IllegalArgumentException("numberOfLastEvents must be positive");
         }
@@ -112,7 +120,7 @@ public class LsHistoryCommand implements CleartoolCommand {
         cmd.add("lshistory");
         if (useRecurse) {
             cmd.add("-recurse");
-        } else {
+        } else if (!objectsOnly) {
             cmd.add("-all");
         }
         if (since != null) {
@@ -183,6 +191,10 @@ public class LsHistoryCommand implements CleartoolCommand {
         return considerMinorEvents;
     }
 
+    public boolean isObjectsOnly() {
+        return objectsOnly;
+    }
+
     public boolean isUseRecurse() {
         return useRecurse;
     }
@@ -192,6 +204,11 @@ public class LsHistoryCommand implements CleartoolCommand {
         return this;
     }
 
+    public LsHistoryCommand objectsOnly() {
+        setObjectsOnly(true);
+        return this;
+    }
+
     public LsHistoryCommand pathsInView(String... pathsInView) {
         setPathsInView(pathsInView);
         return this;
@@ -213,6 +230,10 @@ public class LsHistoryCommand implements CleartoolCommand {
         this.numberOfLastEvents = numberOfLastEvents;
     }
 
+    public void setObjectsOnly(boolean objectsOnly) {
+        this.objectsOnly = objectsOnly;
+    }
+
     public void setPathsInView(String[] pathsInView) {
         this.pathsInView = pathsInView;
     }
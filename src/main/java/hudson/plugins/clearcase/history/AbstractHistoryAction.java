@@ -29,7 +29,11 @@ import static hudson.plugins.clearcase.util.OutputFormat.LINEEND;
 import hudson.FilePath;
 import hudson.plugins.clearcase.AbstractClearCaseScm.ChangeSetLevel;
 import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.action.ChangeLogWriter;
+import hudson.plugins.clearcase.polling.PollingScheduler;
+import hudson.plugins.clearcase.util.ClearCaseUtils;
 import hudson.plugins.clearcase.util.ClearToolFormatHandler;
+import hudson.plugins.clearcase.util.SpillingSorter;
 import hudson.scm.ChangeLogSet.Entry;
 
 import java.io.BufferedReader;
@@ -38,10 +42,17 @@ import java.io.Reader;
 import java.text.MessageFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -55,15 +66,29 @@ import org.apache.commons.lang.Validate;
  */
 public abstract class AbstractHistoryAction implements HistoryAction {
 
-    private static final Logger LOG = Logger.getLogger(AbstractHistoryAction.class.getName());
-
-    protected ClearTool         cleartool;
-    protected String            extendedViewPath;
-    protected boolean           isDynamicView;
-    boolean                     useRecurse;
-    private ChangeSetLevel      changeset;
-    private Filter              filter;
-    private FilePath            updtFile;
+    /**
+     * The longest object selectors of a describe reading the comments of the history reused from a poll, see {@link ClearCaseUtils#chunkSelectors}.
+     */
+    static final int            COMMENTS_MAX_LENGTH = Integer.getInteger(AbstractHistoryAction.class.getName() + ".commentsMaxLength", 6000);
+
+    private static final Logger LOG                 = Logger.getLogger(AbstractHistoryAction.class.getName());
+
+    protected ClearTool             cleartool;
+    protected String                extendedViewPath;
+    protected boolean               isDynamicView;
+    boolean                         useRecurse;
+    private ChangeDetectionStrategy changeDetectionStrategy = new LsHistoryStrategy();
+    private ChangeSetLevel          changeset;
+    private boolean                 commentsNeeded          = true;
+    private Filter                  filter;
+    private HistoryMirror           historyMirror;
+    private long                    historyMirrorMaxAge;
+    private PolledHistory           polledHistory;
+    private PolledHistory           recordedHistory;
+    private boolean                 recordHistory;
+    private SeenEventStore          seenEvents;
+    private FilePath                updtFile;
+    private Map<String, Date>       vobSince = Collections.emptyMap();
 
     public AbstractHistoryAction(ClearTool cleartool, boolean isDynamicView, Filter filter, ChangeSetLevel changeset, boolean useRecurse) {
         this.cleartool = cleartool;
@@ -86,6 +111,10 @@ public abstract class AbstractHistoryAction implements HistoryAction {
         return changelog;
     }
 
+    public ChangeDetectionStrategy getChangeDetectionStrategy() {
+        return changeDetectionStrategy;
+    }
+
     public ChangeSetLevel getChangeset() {
         return changeset;
     }
@@ -95,9 +124,22 @@ public abstract class AbstractHistoryAction implements HistoryAction {
     }
 
     public String getLsHistoryFormat() {
+        if (!needComments()) {
+            // One line per event
+            return getHistoryFormatHandler().getFormat();
+        }
         return MessageFormat.format("{0}{1}{2}", getHistoryFormatHandler().getFormat(), COMMENT, LINEEND);
     }
 
+    /**
+     * Returns the filtered history read by the last {@link #hasChanges(Date, String, String, String[], String[])} call, if it was recorded.
+     * 
+     * @return the history, or null if it wasn't fully read or is too large to be kept
+     */
+    public PolledHistory getRecordedHistory() {
+        return recordedHistory;
+    }
+
     public FilePath getUpdtFile() {
         return updtFile;
     }
@@ -105,12 +147,29 @@ public abstract class AbstractHistoryAction implements HistoryAction {
     @Override
     public boolean hasChanges(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths) throws IOException, InterruptedException {
         if (needsLsHistoryForHasChanges(viewTag, viewPaths)) {
-            List<HistoryEntry> historyEntries = runAndFilterLsHistory(time, viewPath, viewTag, branchNames, viewPaths);
-            return historyEntries.size() > 0;
+            ChangeDetectionStrategy strategy = changeDetectionStrategy;
+            if (!strategy.isApplicable(this)) {
+                LOG.log(Level.FINE, "{0} change detection not applicable, using lshistory", strategy.getName());
+                strategy = new LsHistoryStrategy();
+            }
+            return strategy.hasChanges(this, time, viewPath, viewTag, branchNames, viewPaths);
         }
         return false;
     }
 
+    public void setChangeDetectionStrategy(ChangeDetectionStrategy changeDetectionStrategy) {
+        Validate.notNull(changeDetectionStrategy);
+        this.changeDetectionStrategy = changeDetectionStrategy;
+    }
+
+    /**
+     * Tells whether the caller reads the comments of the history entries, true by default. Comments often make most of the lshistory output, they are left
+     * out when neither the caller nor the filters need them.
+     */
+    public void setCommentsNeeded(boolean commentsNeeded) {
+        this.commentsNeeded = commentsNeeded;
+    }
+
     /**
      * Sets the extended view path. The extended view path will be removed from file paths in the event. The extended view path is for example the view root +
      * view name; and this path shows up in the history and can be confusing for users.
@@ -122,31 +181,83 @@ public abstract class AbstractHistoryAction implements HistoryAction {
         this.extendedViewPath = path;
     }
 
+    /**
+     * Sets the history mirror to read the history from, null to run lshistory.
+     * 
+     * @param maxAge
+     *            how old the mirror may be, in milliseconds
+     */
+    public void setHistoryMirror(HistoryMirror historyMirror, long maxAge) {
+        this.historyMirror = historyMirror;
+        this.historyMirrorMaxAge = maxAge;
+    }
+
+    /**
+     * Sets the history read by the poll that triggered the build. The history is then only read since the poll, if it is read with the same parameters.
+     */
+    public void setPolledHistory(PolledHistory polledHistory) {
+        this.polledHistory = polledHistory;
+    }
+
+    /**
+     * Records the filtered history read when checking for changes, see {@link #getRecordedHistory()}.
+     */
+    public void setRecordHistory(boolean recordHistory) {
+        this.recordHistory = recordHistory;
+    }
+
+    @Override
+    public void setSeenEvents(SeenEventStore seenEvents) {
+        this.seenEvents = seenEvents;
+    }
+
     @Override
     public void setUpdtFile(FilePath updtFile) {
         this.updtFile = updtFile;
     }
 
+    @Override
+    public void setVobSince(Map<String, Date> vobSince) {
+        this.vobSince = vobSince == null ? Collections.<String, Date> emptyMap() : vobSince;
+    }
+
+    /**
+     * Writes the changes since the given time to the change log writer. This default implementation builds the change log in memory, history actions able
+     * to process the history as a stream override it.
+     * 
+     * @return the number of change log entries written
+     */
+    public int writeChanges(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths, ChangeLogWriter writer)
+            throws IOException, InterruptedException {
+        return writeEntries(getChanges(time, viewPath, viewTag, branchNames, viewPaths), writer);
+    }
+
     protected abstract List<? extends Entry> buildChangelog(String viewPath, List<HistoryEntry> entries) throws IOException, InterruptedException;
 
     protected List<HistoryEntry> filterEntries(List<HistoryEntry> entries) throws IOException, InterruptedException {
         if (filter == null) {
             LOG.fine("no filter");
-            return entries;
+            return filterSeenEvents(entries);
         }
         List<HistoryEntry> filtered = new ArrayList<HistoryEntry>();
         for (HistoryEntry entry : entries) {
-            boolean accepted = filter.accept(entry);
-            LOG.log(Level.FINE, "filter={0} entry={1} accepted={2}", new Object[] { filter, entry, accepted });
-            if (accepted) {
+            if (accept(entry)) {
                 filtered.add(entry);
             }
         }
-        return filtered;
+        return filterSeenEvents(filtered);
     }
 
     protected abstract ClearToolFormatHandler getHistoryFormatHandler();
 
+    /**
+     * Returns true if the filtered lshistory lists changes since the given time.
+     */
+    boolean hasHistoryChanges(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths) throws IOException,
+    InterruptedException {
+        return !runAndFilterLsHistory(time, viewPath, viewTag, branchNames, viewPaths).isEmpty();
+    }
+
     protected boolean needsLsHistoryForGetChanges(String viewTag, String[] loadRules) throws IOException, InterruptedException {
         // check if right changeset level is enabled (all changesets except NONE needs LsHistory call)
         // it is also true if runLsHistory will call another method, e.g. not lshistory, but parse update files
@@ -183,14 +294,103 @@ public abstract class AbstractHistoryAction implements HistoryAction {
         List<HistoryEntry> historyEntries;
 
         prepareViewForHistory(viewTag);
+        String key = getHistoryKey(time, viewTag, branchNames, viewPaths);
+        long startedAt = System.currentTimeMillis();
         try {
-            historyEntries = retrieveHistoryEntries(time, viewPath, branchNames, viewPaths);
+            if (canReusePolledHistory(key, time)) {
+                historyEntries = retrieveHistoryEntries(polledHistory.getDeltaSince(), viewPath, branchNames, viewPaths);
+                Set<HistoryEntry> delta = new HashSet<HistoryEntry>(historyEntries);
+                historyEntries.addAll(getReusedEntries(viewPath, delta));
+                LOG.log(Level.FINE, "{0} history entries since {1}, {2} reused from the poll", new Object[] { delta.size(), polledHistory.getDeltaSince(),
+                        polledHistory.size() });
+            } else {
+                historyEntries = retrieveHistoryEntries(time, viewPath, branchNames, viewPaths);
+            }
         } catch (ParseException ex) {
             historyEntries = Collections.emptyList();
         }
+        if (recordHistory) {
+            recordedHistory = record(key, startedAt, historyEntries);
+        }
         return historyEntries;
     }
 
+    /**
+     * Runs lshistory and sends the filtered entries to the given sink as soon as they are complete, without keeping the history in memory. Unlike
+     * {@link #filterEntries(List)}, seen events are recorded once the whole history is processed.
+     */
+    protected void streamHistory(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths, SpillingSorter.Sink<HistoryEntry> sink)
+            throws IOException, InterruptedException {
+        Validate.notNull(viewPath);
+        prepareViewForHistory(viewTag);
+        SeenEventStore accepted = seenEvents == null ? null : new SeenEventStore();
+        int count = 0;
+        Set<HistoryEntry> delta = null;
+        Date since = time;
+        if (canReusePolledHistory(getHistoryKey(time, viewTag, branchNames, viewPaths), time)) {
+            delta = new HashSet<HistoryEntry>();
+            since = polledHistory.getDeltaSince();
+        }
+        for (Map.Entry<Date, String[]> window : groupViewPathsBySince(since, viewPaths).entrySet()) {
+            for (String branchName : normalizeBranches(branchNames)) {
+                BufferedReader reader = getLsHistoryBufferedReader(window.getKey(), viewPath, window.getValue(), branchName);
+                try {
+                    HistoryEntry pending = null;
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        if (gotACleartoolError(line)) {
+                            processError(line);
+                            continue;
+                        }
+                        Matcher matcher = getHistoryFormatHandler().checkLine(line);
+                        if (startOfLsHistoryEntry(matcher)) {
+                            // Comment lines follow the event line, so an entry is complete once the next one starts
+                            count += emit(pending, accepted, sink);
+                            pending = parseEventLine(matcher, line).normalize(extendedViewPath);
+                            if (delta != null) {
+                                delta.add(pending);
+                            }
+                        } else {
+                            tryToAttachLineToPreviousEntry(pending, line);
+                        }
+                    }
+                    count += emit(pending, accepted, sink);
+                } catch (ParseException e) {
+                    LOG.log(Level.WARNING, "Unable to parse the history of " + viewPath, e);
+                } finally {
+                    reader.close();
+                }
+            }
+        }
+        if (delta != null) {
+            for (HistoryEntry entry : getReusedEntries(viewPath, delta)) {
+                count += emit(entry, accepted, sink);
+            }
+            LOG.log(Level.FINE, "{0} history entries since {1}, {2} reused from the poll", new Object[] { delta.size(), since, polledHistory.size() });
+        }
+        if (accepted != null) {
+            seenEvents.addAll(accepted);
+        }
+        LOG.log(Level.FINE, "@{0} {1} history entries streamed", new Object[] { time, count });
+    }
+
+    /**
+     * Writes the given change log entries.
+     * 
+     * @return the number of entries written
+     */
+    protected int writeEntries(List<? extends Entry> entries, ChangeLogWriter writer) throws IOException {
+        for (Entry entry : entries) {
+            writer.write(entry);
+        }
+        return entries.size();
+    }
+
+    private boolean accept(HistoryEntry entry) {
+        boolean accepted = filter == null || filter.accept(entry);
+        LOG.log(Level.FINE, "filter={0} entry={1} accepted={2}", new Object[] { filter, entry, accepted });
+        return accepted;
+    }
+
     private HistoryEntry buildHistoryEntry(Collection<HistoryEntry> history, String line, Matcher matcher) throws IOException, InterruptedException,
     ParseException {
         HistoryEntry currentEntry;
@@ -199,20 +399,130 @@ public abstract class AbstractHistoryAction implements HistoryAction {
         return currentEntry;
     }
 
+    /**
+     * The history of the poll is reused as is, the history windows of multi-site VOBs are computed per build.
+     */
+    private boolean canReusePolledHistory(String key, Date time) {
+        return polledHistory != null && vobSince.isEmpty() && polledHistory.isReusableFor(key, time);
+    }
+
+    private int emit(HistoryEntry entry, SeenEventStore accepted, SpillingSorter.Sink<HistoryEntry> sink) throws IOException, InterruptedException {
+        if (entry == null || !accept(entry)) {
+            return 0;
+        }
+        if (accepted != null) {
+            if (seenEvents.contains(entry)) {
+                LOG.log(Level.FINE, "entry={0} already attributed to a previous build", entry);
+                return 0;
+            }
+            accepted.add(entry);
+        }
+        sink.accept(entry);
+        return 1;
+    }
+
+    private List<HistoryEntry> filterSeenEvents(List<HistoryEntry> entries) {
+        if (seenEvents == null) {
+            return entries;
+        }
+        List<HistoryEntry> unseen = new ArrayList<HistoryEntry>(entries.size());
+        for (HistoryEntry entry : entries) {
+            if (seenEvents.contains(entry)) {
+                LOG.log(Level.FINE, "entry={0} already attributed to a previous build", entry);
+            } else {
+                unseen.add(entry);
+            }
+        }
+        // Recorded once all entries are checked, the same event may legitimately be listed twice by a single history run
+        for (HistoryEntry entry : unseen) {
+            seenEvents.add(entry);
+        }
+        return unseen;
+    }
+
+    /**
+     * Comments are left out of the key, the change log reads them for a history polled without them.
+     */
+    private String getHistoryKey(Date time, String viewTag, String[] branchNames, String[] viewPaths) {
+        return StringUtils.join(new Object[] { time.getTime(), viewTag, extendedViewPath, StringUtils.join(normalizeBranches(branchNames), ','),
+                StringUtils.join(viewPaths, ','), useRecurse, getHistoryFormatHandler().getFormat() }, '|');
+    }
+
     private BufferedReader getLsHistoryBufferedReader(Date time, String viewPath, String[] viewPaths, String branchName) throws IOException,
     InterruptedException {
         return new BufferedReader(getLsHistoryReader(time, viewPath, viewPaths, branchName));
     }
 
     private Reader getLsHistoryReader(Date time, String viewPath, String[] viewPaths, String branchName) throws IOException, InterruptedException {
+        if (historyMirror != null && !needMinorEvents()) {
+            Reader reader = historyMirror.lshistory(cleartool, getHistoryFormatHandler(), getLsHistoryFormat(), time, viewPath, extendedViewPath, branchName,
+                    viewPaths, useRecurse, historyMirrorMaxAge);
+            if (reader != null) {
+                return reader;
+            }
+        }
         return cleartool.lshistory(getLsHistoryFormat(), time, viewPath, branchName, viewPaths, needMinorEvents(), useRecurse);
     }
 
+    /**
+     * Returns the entries of the polled history that were not read again since the poll. Polls leave comments out, they are then read for these entries.
+     */
+    private List<HistoryEntry> getReusedEntries(String viewPath, Set<HistoryEntry> delta) throws IOException, InterruptedException {
+        List<HistoryEntry> reused = new ArrayList<HistoryEntry>();
+        for (HistoryEntry entry : polledHistory.getEntries()) {
+            if (!delta.contains(entry)) {
+                reused.add(entry);
+            }
+        }
+        if (!polledHistory.hasComments() && needComments()) {
+            readComments(viewPath, reused);
+        }
+        return reused;
+    }
+
+    private static String getVersionSelector(HistoryEntry entry) {
+        return entry.getElement() + "@@" + entry.getVersionId();
+    }
+
     private boolean gotACleartoolError(String line) {
         return line.startsWith("cleartool: Error:");
     }
 
-    private boolean needMinorEvents() {
+    Map<Date, String[]> groupViewPathsBySince(Date time, String[] viewPaths) {
+        if (vobSince.isEmpty() || viewPaths == null) {
+            return Collections.singletonMap(time, viewPaths);
+        }
+        Map<Date, List<String>> groups = new LinkedHashMap<Date, List<String>>();
+        for (String path : viewPaths) {
+            Date since = vobSince.get(PollingScheduler.getVobTag(path));
+            if (since == null) {
+                since = time;
+            }
+            List<String> paths = groups.get(since);
+            if (paths == null) {
+                paths = new ArrayList<String>();
+                groups.put(since, paths);
+            }
+            paths.add(path);
+        }
+        Map<Date, String[]> result = new LinkedHashMap<Date, String[]>();
+        for (Map.Entry<Date, List<String>> group : groups.entrySet()) {
+            result.put(group.getKey(), group.getValue().toArray(new String[group.getValue().size()]));
+        }
+        return result;
+    }
+
+    /**
+     * The mirror is shared with the change logs, it is read with their format. Filters that don't tell whether they read the comments get them.
+     */
+    boolean needComments() {
+        if (commentsNeeded || historyMirror != null) {
+            return true;
+        }
+        return filter != null && (!(filter instanceof CommentsAwareFilter) || ((CommentsAwareFilter) filter).requiresComments());
+    }
+
+    boolean needMinorEvents() {
         return (filter != null) && (filter.requiresMinorEvents());
     }
 
@@ -223,7 +533,7 @@ public abstract class AbstractHistoryAction implements HistoryAction {
                 !ArrayUtils.isEmpty(loadRules);
     }
 
-    private String[] normalizeBranches(String[] branchNames) {
+    String[] normalizeBranches(String[] branchNames) {
         if (ArrayUtils.isEmpty(branchNames)) {
             // If no branch was specified lshistory should be called
             // without branch filtering.
@@ -233,7 +543,7 @@ public abstract class AbstractHistoryAction implements HistoryAction {
         return branchNames;
     }
 
-    private void prepareViewForHistory(String viewTag) throws IOException, InterruptedException {
+    void prepareViewForHistory(String viewTag) throws IOException, InterruptedException {
         if (isDynamicView) {
             cleartool.startView(viewTag);
         }
@@ -243,13 +553,66 @@ public abstract class AbstractHistoryAction implements HistoryAction {
         // TODO: better error handling
     }
 
+    /**
+     * Reads the comments of entries read without them, describing their versions in chunks. Entries the version of which can't be described keep no comment.
+     */
+    private void readComments(String viewPath, List<HistoryEntry> entries) throws IOException, InterruptedException {
+        Set<String> selectors = new LinkedHashSet<String>();
+        for (HistoryEntry entry : entries) {
+            selectors.add(getVersionSelector(entry));
+        }
+        Map<String, String> comments = new HashMap<String, String>();
+        for (String[] chunk : ClearCaseUtils.chunkSelectors(new ArrayList<String>(selectors), COMMENTS_MAX_LENGTH)) {
+            List<HistoryEntry> described = new ArrayList<HistoryEntry>();
+            try {
+                BufferedReader reader = new BufferedReader(cleartool.describe(getLsHistoryFormat(), viewPath, chunk));
+                try {
+                    parseLsHistory(reader, described);
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to read the comments of " + Arrays.asList(chunk), e);
+            } catch (ParseException e) {
+                LOG.log(Level.WARNING, "Unable to read the comments of " + Arrays.asList(chunk), e);
+            }
+            for (HistoryEntry entry : described) {
+                comments.put(getVersionSelector(entry), entry.getComment());
+            }
+        }
+        for (HistoryEntry entry : entries) {
+            String comment = comments.get(getVersionSelector(entry));
+            if (StringUtils.isNotEmpty(comment) && StringUtils.isEmpty(entry.getComment())) {
+                entry.appendComment(comment);
+            }
+        }
+    }
+
+    private PolledHistory record(String key, long startedAt, List<HistoryEntry> historyEntries) {
+        if (!vobSince.isEmpty()) {
+            return null;
+        }
+        List<HistoryEntry> accepted = new ArrayList<HistoryEntry>();
+        for (HistoryEntry entry : historyEntries) {
+            if (accept(entry)) {
+                if (accepted.size() == PolledHistory.MAX_ENTRIES) {
+                    return null;
+                }
+                accepted.add(entry);
+            }
+        }
+        return new PolledHistory(key, startedAt, accepted, needComments());
+    }
+
     private List<HistoryEntry> retrieveHistoryEntries(Date time, String viewPath, String[] branchNames, String[] viewPaths) throws IOException,
     InterruptedException, ParseException {
         List<HistoryEntry> historyEntries = new ArrayList<HistoryEntry>();
-        for (String branchName : normalizeBranches(branchNames)) {
-            BufferedReader bufferedReader = getLsHistoryBufferedReader(time, viewPath, viewPaths, branchName);
-            parseLsHistory(bufferedReader, historyEntries);
-            bufferedReader.close();
+        for (Map.Entry<Date, String[]> window : groupViewPathsBySince(time, viewPaths).entrySet()) {
+            for (String branchName : normalizeBranches(branchNames)) {
+                BufferedReader bufferedReader = getLsHistoryBufferedReader(window.getKey(), viewPath, window.getValue(), branchName);
+                parseLsHistory(bufferedReader, historyEntries);
+                bufferedReader.close();
+            }
         }
         return historyEntries;
     }
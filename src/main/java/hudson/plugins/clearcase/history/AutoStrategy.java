@@ -0,0 +1,172 @@
+package hudson.plugins.clearcase.history;
+
+import hudson.plugins.clearcase.ClearToolLauncher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Picks the fastest strategy for a job. The first poll, and then one poll per re-evaluation period, runs all the applicable candidates on the real load
+ * rules of the job and times them; lshistory gives the answer of that poll, and a candidate that misses changes lshistory found is discarded. The other polls
+ * use the selected strategy. Selections are kept in memory, per job, and follow the job when it is renamed or deleted.
+ */
+public class AutoStrategy implements ChangeDetectionStrategy {
+
+    static final class Selection {
+        private final String                  signature;
+        private final ChangeDetectionStrategy strategy;
+        private final long                    time;
+
+        Selection(String signature, ChangeDetectionStrategy strategy, long time) {
+            this.signature = signature;
+            this.strategy = strategy;
+            this.time = time;
+        }
+
+        ChangeDetectionStrategy getStrategy() {
+            return strategy;
+        }
+
+        boolean isValid(String signature, long now) {
+            return this.signature.equals(signature) && now - time < REEVALUATION_PERIOD;
+        }
+    }
+
+    static final long                           REEVALUATION_PERIOD = TimeUnit.HOURS.toMillis(Long.getLong(AutoStrategy.class.getName()
+                                                                            + ".reevaluationHours", 24));
+
+    private static final Logger                 LOG                 = Logger.getLogger(AutoStrategy.class.getName());
+
+    private static final Map<String, Selection> SELECTIONS          = new ConcurrentHashMap<String, Selection>();
+
+    /**
+     * Drops the selection of a deleted job.
+     */
+    public static void forget(String key) {
+        SELECTIONS.remove(key);
+    }
+
+    /**
+     * Moves the selection of a renamed job to its new name.
+     */
+    public static void rename(String oldKey, String newKey) {
+        Selection selection = SELECTIONS.remove(oldKey);
+        if (selection != null) {
+            SELECTIONS.put(newKey, selection);
+        }
+    }
+
+    static Selection getSelection(String key) {
+        return SELECTIONS.get(key);
+    }
+
+    static void reset() {
+        SELECTIONS.clear();
+    }
+
+    private final List<ChangeDetectionStrategy> candidates;
+
+    private final String                        key;
+
+    public AutoStrategy(String key) {
+        this(key, new LsHistoryStrategy(), new FindCreatedSinceStrategy(), new UpdtPreviewStrategy());
+    }
+
+    /**
+     * @param reference
+     *            the strategy giving the answer of benchmarking polls
+     */
+    AutoStrategy(String key, ChangeDetectionStrategy reference, ChangeDetectionStrategy... others) {
+        this.key = key;
+        this.candidates = new ArrayList<ChangeDetectionStrategy>();
+        this.candidates.add(reference);
+        this.candidates.addAll(Arrays.asList(others));
+    }
+
+    @Override
+    public String getName() {
+        return ChangeDetection.AUTO.getName();
+    }
+
+    @Override
+    public boolean hasChanges(AbstractHistoryAction action, Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths)
+            throws IOException, InterruptedException {
+        String signature = Arrays.toString(branchNames) + Arrays.toString(viewPaths);
+        Selection selection = SELECTIONS.get(key);
+        if (selection != null && selection.isValid(signature, System.currentTimeMillis()) && selection.getStrategy().isApplicable(action)) {
+            return selection.getStrategy().hasChanges(action, time, viewPath, viewTag, branchNames, viewPaths);
+        }
+        return benchmark(action, signature, time, viewPath, viewTag, branchNames, viewPaths);
+    }
+
+    @Override
+    public boolean isApplicable(AbstractHistoryAction action) {
+        return true;
+    }
+
+    /**
+     * Returns the current value of the timer the candidates are timed with, in nanoseconds.
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private boolean benchmark(AbstractHistoryAction action, String signature, Date time, String viewPath, String viewTag, String[] branchNames,
+            String[] viewPaths) throws IOException, InterruptedException {
+        ChangeDetectionStrategy reference = candidates.get(0);
+        long start = nanoTime();
+        boolean changes = reference.hasChanges(action, time, viewPath, viewTag, branchNames, viewPaths);
+        long fastest = nanoTime() - start;
+        ChangeDetectionStrategy selected = reference;
+        StringBuilder report = new StringBuilder("Change detection benchmark: ").append(reference.getName()).append(' ')
+                .append(TimeUnit.NANOSECONDS.toMillis(fastest)).append(" ms");
+        for (ChangeDetectionStrategy candidate : candidates.subList(1, candidates.size())) {
+            if (!candidate.isApplicable(action)) {
+                continue;
+            }
+            report.append(", ").append(candidate.getName()).append(' ');
+            boolean detected;
+            start = nanoTime();
+            try {
+                if (candidate instanceof ProbingStrategy) {
+                    // Only the probe runs on polls without changes, which are the most frequent ones
+                    detected = ((ProbingStrategy) candidate).probe(action, time, viewPath, viewTag, branchNames, viewPaths);
+                } else {
+                    detected = candidate.hasChanges(action, time, viewPath, viewTag, branchNames, viewPaths);
+                }
+            } catch (IOException e) {
+                report.append("failed");
+                continue;
+            }
+            long elapsed = nanoTime() - start;
+            if (changes && !detected) {
+                report.append("missed changes");
+                continue;
+            }
+            report.append(TimeUnit.NANOSECONDS.toMillis(elapsed)).append(" ms");
+            if (elapsed < fastest) {
+                fastest = elapsed;
+                selected = candidate;
+            }
+        }
+        report.append(" -> ").append(selected.getName());
+        SELECTIONS.put(key, new Selection(signature, selected, System.currentTimeMillis()));
+        log(action, report.toString());
+        return changes;
+    }
+
+    private void log(AbstractHistoryAction action, String message) {
+        LOG.fine(key + ": " + message);
+        ClearToolLauncher launcher = action.cleartool.getLauncher();
+        if (launcher != null && launcher.getListener() != null) {
+            launcher.getListener().getLogger().println(message);
+        }
+    }
+}
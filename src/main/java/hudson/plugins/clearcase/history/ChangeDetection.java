@@ -0,0 +1,73 @@
+package hudson.plugins.clearcase.history;
+
+import hudson.plugins.clearcase.ucm.ActivityFingerprintStrategy;
+
+/**
+ * The change detection strategies a job can be configured with.
+ */
+public enum ChangeDetection {
+    /**
+     * UCM only, compares the fingerprints of the activities of the stream, see {@link ActivityFingerprintStrategy}
+     */
+    ACTIVITIES("activities"),
+    /**
+     * Benchmarks the other strategies on the job and uses the fastest one, see {@link AutoStrategy}
+     */
+    AUTO("auto"),
+    /**
+     * Probes the load rules with cleartool find, see {@link FindCreatedSinceStrategy}
+     */
+    FIND("find"),
+    /**
+     * Runs lshistory, the default
+     */
+    LSHISTORY("lshistory"),
+    /**
+     * Probes the snapshot view with a preview of its update, see {@link UpdtPreviewStrategy}
+     */
+    UPDT("updt");
+
+    private String name;
+
+    private ChangeDetection(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Creates the strategy.
+     * 
+     * @param key
+     *            identifies the job, auto mode remembers its choice per key
+     */
+    public ChangeDetectionStrategy createStrategy(String key) {
+        switch (this) {
+        case ACTIVITIES:
+            return new ActivityFingerprintStrategy();
+        case AUTO:
+            return new AutoStrategy(key);
+        case FIND:
+            return new FindCreatedSinceStrategy();
+        case UPDT:
+            return new UpdtPreviewStrategy();
+        default:
+            return new LsHistoryStrategy();
+        }
+    }
+
+    public static ChangeDetection defaultDetection() {
+        return ChangeDetection.LSHISTORY;
+    }
+
+    public static ChangeDetection fromString(String str) {
+        for (ChangeDetection detection : values()) {
+            if (detection.name.equals(str)) {
+                return detection;
+            }
+        }
+        return ChangeDetection.defaultDetection();
+    }
+}
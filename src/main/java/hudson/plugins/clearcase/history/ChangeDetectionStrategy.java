@@ -0,0 +1,24 @@
+package hudson.plugins.clearcase.history;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Decides whether there are changes to build, on behalf of {@link AbstractHistoryAction#hasChanges(Date, String, String, String[], String[])}. Strategies
+ * differ by the cleartool commands they run, and so by their cost on a given set of load rules.
+ */
+public interface ChangeDetectionStrategy {
+
+    String getName();
+
+    /**
+     * Returns true if the strategy can be used with the given history action, e.g. some strategies require a snapshot view.
+     */
+    boolean isApplicable(AbstractHistoryAction action);
+
+    /**
+     * Returns true if there are changes since the given time. The view is known to exist and the load rules are not empty.
+     */
+    boolean hasChanges(AbstractHistoryAction action, Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths)
+            throws IOException, InterruptedException;
+}
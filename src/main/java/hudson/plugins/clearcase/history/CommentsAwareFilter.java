@@ -0,0 +1,11 @@
+package hudson.plugins.clearcase.history;
+
+/**
+ * A filter that tells whether it reads the comments of the entries. Comments are left out of the history read for polling unless a filter needs them;
+ * filters that don't implement this interface are expected to need them.
+ */
+public interface CommentsAwareFilter extends Filter {
+
+    public boolean requiresComments();
+
+}
@@ -29,7 +29,7 @@ import org.apache.commons.lang.StringUtils;
 /**
  * @author Henrik L. Hansen (henrik.lynggaard@gmail.com)
  */
-public class DefaultFilter implements Filter {
+public class DefaultFilter implements CommentsAwareFilter {
 
     @Override
     public boolean accept(HistoryEntry entry) {
@@ -46,6 +46,11 @@ public class DefaultFilter implements Filter {
         return true;
     }
 
+    @Override
+    public boolean requiresComments() {
+        return false;
+    }
+
     @Override
     public boolean requiresMinorEvents() {
         return false;
@@ -29,7 +29,7 @@ import java.util.regex.Pattern;
 /**
  * @author Henrik L. Hansen (henrik.lynggaard@gmail.com)
  */
-public class DestroySubBranchFilter implements Filter {
+public class DestroySubBranchFilter implements CommentsAwareFilter {
 
     private static final Pattern DESTROYED_SUB_BRANCH_PATTERN = Pattern.compile("destroy sub-branch \".+\" of branch");
 
@@ -41,6 +41,11 @@ public class DestroySubBranchFilter implements Filter {
         return true;
     }
 
+    @Override
+    public boolean requiresComments() {
+        return false;
+    }
+
     @Override
     public boolean requiresMinorEvents() {
         return false;
@@ -27,7 +27,7 @@ package hudson.plugins.clearcase.history;
 /**
  * @author Henrik L. Hansen (henrik.lynggaard@gmail.com)
  */
-public class FileFilter extends FieldFilter {
+public class FileFilter extends FieldFilter implements CommentsAwareFilter {
 
     public FileFilter(Type type, String patternText) {
         super(type, patternText);
@@ -38,6 +38,11 @@ public class FileFilter extends FieldFilter {
         return accept(entry.getElement());
     }
 
+    @Override
+    public boolean requiresComments() {
+        return false;
+    }
+
     @Override
     public boolean requiresMinorEvents() {
         return false;
@@ -35,7 +35,7 @@ import java.util.logging.Logger;
  * 
  * @author vlatombe
  */
-public class FilterChain implements Filter {
+public class FilterChain implements CommentsAwareFilter {
 
     private final Collection<Filter> filters;
 
@@ -60,6 +60,16 @@ public class FilterChain implements Filter {
         return Collections.unmodifiableCollection(filters);
     }
 
+    @Override
+    public boolean requiresComments() {
+        for (Filter f : filters) {
+            if (!(f instanceof CommentsAwareFilter) || ((CommentsAwareFilter) f).requiresComments()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public boolean requiresMinorEvents() {
         for (Filter f : filters) {
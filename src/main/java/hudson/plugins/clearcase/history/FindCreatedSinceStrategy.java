@@ -0,0 +1,79 @@
+package hudson.plugins.clearcase.history;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Probes the load rules for versions created since the last build (<code>cleartool find -version "created_since(...)" -print</code>). The query is
+ * evaluated by the VOB server instead of listing the whole history of the VOBs, which is much cheaper on large VOBs. Unlike <code>lshistory -all</code>,
+ * only the elements below the load rules are searched.
+ */
+public class FindCreatedSinceStrategy extends ProbingStrategy {
+
+    static String getVersionQuery(Date since, String branchName) {
+        // Same date-time syntax as lshistory -since
+        SimpleDateFormat formatter = new SimpleDateFormat("d-MMM-yy.HH:mm:ss'UTC'Z", Locale.US);
+        formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String query = "created_since(" + formatter.format(since).toLowerCase() + ")";
+        if (StringUtils.isNotEmpty(branchName)) {
+            query += " && brtype(" + branchName + ")";
+        }
+        return query;
+    }
+
+    /**
+     * Returns true if the output of find lists a version other than the version 0 of a new branch.
+     */
+    static boolean hasNewVersions(BufferedReader reader) throws IOException {
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (line.startsWith("cleartool: Error:")) {
+                throw new IOException(line);
+            }
+            line = line.trim();
+            if (StringUtils.isNotEmpty(line) && !line.endsWith("/0") && !line.endsWith("\\0")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return ChangeDetection.FIND.getName();
+    }
+
+    /**
+     * Not applicable when the filters need minor events, e.g. label changes, which find doesn't report.
+     */
+    @Override
+    public boolean isApplicable(AbstractHistoryAction action) {
+        return !action.needMinorEvents();
+    }
+
+    @Override
+    protected boolean probe(AbstractHistoryAction action, Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths)
+            throws IOException, InterruptedException {
+        action.prepareViewForHistory(viewTag);
+        for (Map.Entry<Date, String[]> window : action.groupViewPathsBySince(time, viewPaths).entrySet()) {
+            for (String branchName : action.normalizeBranches(branchNames)) {
+                BufferedReader reader = new BufferedReader(action.cleartool.findVersions(viewPath, window.getValue(),
+                        getVersionQuery(window.getKey(), branchName)));
+                try {
+                    if (hasNewVersions(reader)) {
+                        return true;
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        }
+        return false;
+    }
+}
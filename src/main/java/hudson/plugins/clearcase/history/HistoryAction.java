@@ -35,6 +35,7 @@ import hudson.scm.ChangeLogSet;
 import java.io.IOException;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author hlyh
@@ -76,6 +77,22 @@ public interface HistoryAction {
      */
     public boolean hasChanges(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths) throws IOException, InterruptedException;
 
+    /**
+     * Sets the events already attributed to previous builds. Such events are ignored, and accepted events are added to the store.
+     * 
+     * @param seenEvents
+     *            the seen events, or null to disable de-duplication
+     */
+    public void setSeenEvents(SeenEventStore seenEvents);
+
     public void setUpdtFile(FilePath updtFile);
 
+    /**
+     * Sets per VOB history start dates, overriding the time given to {@link #getChanges} and {@link #hasChanges} for the view paths in these VOBs.
+     * 
+     * @param vobSince
+     *            start dates keyed by VOB tag (see {@link hudson.plugins.clearcase.polling.PollingScheduler#getVobTag(String)})
+     */
+    public void setVobSince(Map<String, Date> vobSince);
+
 }
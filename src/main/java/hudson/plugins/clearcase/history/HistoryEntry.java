@@ -28,27 +28,64 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 /**
+ * A history event. Entries are kept in memory for the whole history run, so they are stored compactly: the values repeated across entries (user, event,
+ * operation, activity) are interned, element paths share their prefixes in a {@link PathTrie}, the date is stored as epoch millis and the raw line only as
+ * a 64 bits hash. Entries with a line are told apart by its hash, the others by their fields.
+ * 
  * @author Henrik L. Hansen (henrik.lynggaard@gmail.com)
  */
 public class HistoryEntry {
 
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT  = new ThreadLocal<SimpleDateFormat>() {
+                                                           @Override
+                                                           protected SimpleDateFormat initialValue() {
+                                                               return new SimpleDateFormat(DATE_PATTERN);
+                                                           }
+                                                       };
+
+    private static final String                        DATE_PATTERN = "yyyyMMdd.HHmmss";
+
+    private static final long                          NO_DATE      = Long.MIN_VALUE;
+
+    private static final Interner<String>              POOL         = Interners.newWeakInterner();
+
+    static long hashLine(String line) {
+        if (line == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < line.length(); i++) {
+            hash ^= line.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static String intern(String value) {
+        return value == null ? null : POOL.intern(value);
+    }
+
     String        activityHeadline;
     String        activityName = "undefined_for_non_ucm";
-    StringBuilder commentBuilder = new StringBuilder();
-    Date          date;
-    String        dateText;
-    String        element;
+    String        comment;
+    long          date         = NO_DATE;
+    PathTrie.Node element;
     String        event;
-    String        line;
+    boolean       hasLine;
+    long          lineHash;
     String        operation;
     String        user;
     String        versionId;
 
     public HistoryEntry appendComment(String commentFragment) {
-        commentBuilder.append(commentFragment);
+        comment = comment == null ? commentFragment : comment.concat(commentFragment);
         return this;
     }
 
@@ -64,10 +101,14 @@ public class HistoryEntry {
             return false;
         }
         final HistoryEntry other = (HistoryEntry) obj;
-        if ((this.line == null) ? (other.line != null) : !this.line.equals(other.line)) {
-            return false;
+        if (this.hasLine || other.hasLine) {
+            return this.hasLine == other.hasLine && this.lineHash == other.lineHash;
         }
-        return true;
+        // Interned paths of live entries are the same node
+        return this.date == other.date && this.element == other.element && ObjectUtils.equals(this.versionId, other.versionId)
+                && ObjectUtils.equals(this.event, other.event) && ObjectUtils.equals(this.operation, other.operation)
+                && ObjectUtils.equals(this.user, other.user) && ObjectUtils.equals(this.activityName, other.activityName)
+                && ObjectUtils.equals(this.comment, other.comment);
     }
 
     public String getActivityHeadline() {
@@ -79,29 +120,25 @@ public class HistoryEntry {
     }
 
     public String getComment() {
-        return StringUtils.chomp(commentBuilder.toString());
+        return StringUtils.chomp(StringUtils.defaultString(comment));
     }
 
     public Date getDate() {
-        return date;
+        return date == NO_DATE ? null : new Date(date);
     }
 
     public String getDateText() {
-        return dateText;
+        return date == NO_DATE ? null : DATE_FORMAT.get().format(new Date(date));
     }
 
     public String getElement() {
-        return element;
+        return element == null ? null : element.getPath();
     }
 
     public String getEvent() {
         return event;
     }
 
-    public String getLine() {
-        return line;
-    }
-
     public String getOperation() {
         return operation;
     }
@@ -122,13 +159,19 @@ public class HistoryEntry {
 
     @Override
     public int hashCode() {
-        int hash = 5;
-        hash = 17 * hash + (this.line != null ? this.line.hashCode() : 0);
-        return hash;
+        if (hasLine) {
+            return (int) (lineHash ^ (lineHash >>> 32));
+        }
+        int hash = (int) (date ^ (date >>> 32));
+        hash = 31 * hash + ObjectUtils.hashCode(element);
+        return 31 * hash + ObjectUtils.hashCode(versionId);
     }
 
     public HistoryEntry normalize(String viewPath) {
-        element = StringUtils.removeStart(element, viewPath);
+        String path = getElement();
+        if (path != null && StringUtils.isNotEmpty(viewPath) && path.startsWith(viewPath)) {
+            setElement(path.substring(viewPath.length()));
+        }
         return this;
     }
 
@@ -137,33 +180,35 @@ public class HistoryEntry {
     }
 
     public void setActivityName(String activityName) {
-        this.activityName = activityName;
+        this.activityName = intern(activityName);
     }
 
     public void setDateText(String dateText) throws ParseException {
-        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd.HHmmss");
-        date = format.parse(dateText);
-        this.dateText = dateText;
+        date = DATE_FORMAT.get().parse(dateText).getTime();
     }
 
     public void setElement(String element) {
-        this.element = element;
+        this.element = PathTrie.getInstance().intern(element);
     }
 
     public void setEvent(String event) {
-        this.event = event;
+        this.event = intern(event);
     }
 
+    /**
+     * Sets the raw lshistory line of this entry. Only its hash is kept, to tell entries apart.
+     */
     public void setLine(String line) {
-        this.line = line;
+        this.hasLine = line != null;
+        this.lineHash = hashLine(line);
     }
 
     public void setOperation(String operation) {
-        this.operation = operation;
+        this.operation = intern(operation);
     }
 
     public void setUser(String user) {
-        this.user = user;
+        this.user = intern(user);
     }
 
     public void setVersionId(String versionId) {
@@ -172,9 +217,9 @@ public class HistoryEntry {
 
     @Override
     public String toString() {
-        return "HistoryEntry{" + "date=" + date + ", dateText=" + dateText + ", element=" + element + ", versionId=" + versionId + ", event=" + event
-                + ", user=" + user + ", operation=" + operation + ", activityName=" + activityName + ", commentBuilder=" + commentBuilder
-                + ", activityHeadline=" + activityHeadline + ", line=" + line + '}';
+        return "HistoryEntry{" + "date=" + getDate() + ", dateText=" + getDateText() + ", element=" + getElement() + ", versionId=" + versionId + ", event="
+                + event + ", user=" + user + ", operation=" + operation + ", activityName=" + activityName + ", comment=" + comment + ", activityHeadline="
+                + activityHeadline + ", line=" + Long.toHexString(lineHash) + '}';
     }
 
 }
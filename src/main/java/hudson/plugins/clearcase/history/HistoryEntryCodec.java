@@ -0,0 +1,43 @@
+package hudson.plugins.clearcase.history;
+
+import hudson.plugins.clearcase.util.SpillingSorter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes history entries to spill files, see {@link SpillingSorter}.
+ */
+public class HistoryEntryCodec implements SpillingSorter.Codec<HistoryEntry> {
+
+    @Override
+    public HistoryEntry read(DataInput in) throws IOException {
+        HistoryEntry entry = new HistoryEntry();
+        entry.date = in.readLong();
+        entry.lineHash = in.readLong();
+        entry.setUser(SpillingSorter.readString(in));
+        entry.setElement(SpillingSorter.readString(in));
+        entry.setVersionId(SpillingSorter.readString(in));
+        entry.setEvent(SpillingSorter.readString(in));
+        entry.setOperation(SpillingSorter.readString(in));
+        entry.setActivityName(SpillingSorter.readString(in));
+        entry.setActivityHeadline(SpillingSorter.readString(in));
+        entry.comment = SpillingSorter.readString(in);
+        return entry;
+    }
+
+    @Override
+    public void write(DataOutput out, HistoryEntry entry) throws IOException {
+        out.writeLong(entry.date);
+        out.writeLong(entry.lineHash);
+        SpillingSorter.writeString(out, entry.user);
+        SpillingSorter.writeString(out, entry.getElement());
+        SpillingSorter.writeString(out, entry.versionId);
+        SpillingSorter.writeString(out, entry.event);
+        SpillingSorter.writeString(out, entry.operation);
+        SpillingSorter.writeString(out, entry.activityName);
+        SpillingSorter.writeString(out, entry.activityHeadline);
+        SpillingSorter.writeString(out, entry.comment);
+    }
+}
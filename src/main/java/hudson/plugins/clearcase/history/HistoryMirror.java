@@ -0,0 +1,194 @@
+package hudson.plugins.clearcase.history;
+
+import hudson.model.Hudson;
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.polling.PollingScheduler;
+import hudson.plugins.clearcase.util.ClearToolFormatHandler;
+import hudson.plugins.clearcase.util.SpillingSorter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * A local copy of the history of the VOBs, stored under JENKINS_HOME and shared by all the jobs. The history of each VOB is fetched once with
+ * <code>lshistory -all</code>, then kept up to date with <code>lshistory -since</code> the last sync; polls and change logs read it instead of running
+ * lshistory on the whole window since their last build. Syncs of a VOB are serialized, so that jobs polling the same VOB at the same time share one sync.
+ * <p>
+ * The mirror only holds major events; the history actions whose filters need minor events keep running lshistory.
+ * </p>
+ */
+public class HistoryMirror {
+
+    /**
+     * Reads the history spooled to a temporary file, and deletes the file when closed.
+     */
+    private static final class SpoolReader extends FilterReader {
+        private final File file;
+
+        SpoolReader(File file) throws IOException {
+            super(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            this.file = file;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (!file.delete()) {
+                    LOG.warning("Unable to delete " + file);
+                }
+            }
+        }
+    }
+
+    /**
+     * How old the mirror may be for a poll, so that polls of the same VOB share a sync. Events recorded meanwhile are found by the next poll, polls look back
+     * to the last build.
+     */
+    public static final long     POLL_MAX_AGE      = TimeUnit.SECONDS.toMillis(Long.getLong(HistoryMirror.class.getName() + ".pollMaxAge", 60));
+
+    /**
+     * Days of history kept, 0 to keep everything.
+     */
+    static final long            RETENTION         = TimeUnit.DAYS.toMillis(Long.getLong(HistoryMirror.class.getName() + ".retentionDays", 90));
+
+    /**
+     * How far before the last sync a sync starts, for the events replicated late by multi-site and the clock skew between the controller and the VOB
+     * servers.
+     */
+    static final long            SYNC_OVERLAP      = TimeUnit.MINUTES.toMillis(Long.getLong(HistoryMirror.class.getName() + ".syncOverlapMinutes", 60));
+
+    private static final Logger  LOG               = Logger.getLogger(HistoryMirror.class.getName());
+
+    private static HistoryMirror instance;
+
+    public static synchronized HistoryMirror getInstance() {
+        if (instance == null) {
+            instance = new HistoryMirror(new File(Hudson.getInstance().getRootDir(), "clearcase-history"));
+        }
+        return instance;
+    }
+
+    private final Map<String, VobHistoryLog> logs = new HashMap<String, VobHistoryLog>();
+
+    private final File                       rootDir;
+
+    HistoryMirror(File rootDir) {
+        this.rootDir = rootDir;
+    }
+
+    /**
+     * Returns the history of the given paths since the given date, as lshistory would print it in the given view. The VOBs of the paths are synced first.
+     * The history is spooled to a temporary file rather than held in memory, the file is deleted when the reader is closed.
+     *
+     * @param viewRoot
+     *            the view root printed at the beginning of the element paths (the extended view path)
+     * @param maxAge
+     *            how old the mirror may be, in milliseconds
+     * @return the history, or null if it can't be read from the mirror or starts before the history the mirror keeps
+     */
+    public Reader lshistory(ClearTool cleartool, ClearToolFormatHandler handler, String format, Date since, String viewPath, final String viewRoot,
+            String branchName, String[] pathsInView, boolean useRecurse, long maxAge) throws InterruptedException {
+        if (StringUtils.isEmpty(viewRoot) || ArrayUtils.isEmpty(pathsInView)) {
+            return null;
+        }
+        if (RETENTION > 0 && since.getTime() < System.currentTimeMillis() - RETENTION) {
+            // The pruned history would be fetched again on every call, and then pruned again
+            LOG.log(Level.FINE, "The history since {0} is older than the mirror keeps, running lshistory", since);
+            return null;
+        }
+        File spool = null;
+        Writer history = null;
+        try {
+            spool = File.createTempFile("clearcase", ".history");
+            history = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(spool), "UTF-8"));
+            final Writer writer = history;
+            for (Map.Entry<String, List<String>> vob : groupByVob(pathsInView).entrySet()) {
+                String vobTag = vob.getKey();
+                VobHistoryLog log = getLog(vobTag, format, viewRoot);
+                log.sync(cleartool, handler, format, viewPath, viewRoot, StringUtils.removeStart(vobTag, "/"), since.getTime(), maxAge);
+                String[] pathPrefixes = null;
+                if (useRecurse) {
+                    pathPrefixes = new String[vob.getValue().size()];
+                    for (int i = 0; i < pathPrefixes.length; i++) {
+                        pathPrefixes[i] = VobHistoryLog.normalizePath(vob.getValue().get(i));
+                    }
+                }
+                log.scan(since.getTime(), branchName, pathPrefixes, new SpillingSorter.Sink<VobHistoryLog.Record>() {
+                    @Override
+                    public void accept(VobHistoryLog.Record record) throws IOException {
+                        writer.write(record.getText(viewRoot));
+                    }
+                });
+            }
+            history.close();
+            Reader reader = new SpoolReader(spool);
+            spool = null;
+            return reader;
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to read the history from the mirror, running lshistory", e);
+            return null;
+        } finally {
+            if (spool != null) {
+                IOUtils.closeQuietly(history);
+                if (!spool.delete()) {
+                    LOG.warning("Unable to delete " + spool);
+                }
+            }
+        }
+    }
+
+    private synchronized VobHistoryLog getLog(String vobTag, String format, String viewRoot) throws IOException {
+        // The separators of the element paths depend on the OS of the view
+        String key = vobTag + '|' + format + '|' + (viewRoot.indexOf('\\') >= 0 ? '\\' : '/');
+        VobHistoryLog log = logs.get(key);
+        if (log == null) {
+            File dir = new File(rootDir, vobTag.replaceAll("\\W+", "_") + '-' + Integer.toHexString(key.hashCode()));
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Unable to create " + dir);
+            }
+            log = new VobHistoryLog(dir);
+            logs.put(key, log);
+        }
+        return log;
+    }
+
+    private Map<String, List<String>> groupByVob(String[] pathsInView) {
+        Map<String, List<String>> vobs = new LinkedHashMap<String, List<String>>();
+        for (String path : pathsInView) {
+            String vobTag = PollingScheduler.getVobTag(path);
+            if (vobTag == null) {
+                continue;
+            }
+            List<String> paths = vobs.get(vobTag);
+            if (paths == null) {
+                paths = new ArrayList<String>();
+                vobs.put(vobTag, paths);
+            }
+            paths.add(path);
+        }
+        return vobs;
+    }
+}
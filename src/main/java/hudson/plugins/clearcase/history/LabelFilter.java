@@ -28,7 +28,7 @@ package hudson.plugins.clearcase.history;
 /**
  * @author Krzysztof Malinowski (raspy@dev.java.net)
  */
-public class LabelFilter extends OperationFilter {
+public class LabelFilter extends OperationFilter implements CommentsAwareFilter {
 
     private static final String[] LABEL_OPERATIONS = { "mklabel", "rmlabel" };
 
@@ -36,6 +36,11 @@ public class LabelFilter extends OperationFilter {
         super(namePatterns);
     }
 
+    @Override
+    public boolean requiresComments() {
+        return false;
+    }
+
     @Override
     public boolean requiresMinorEvents() {
         return true;
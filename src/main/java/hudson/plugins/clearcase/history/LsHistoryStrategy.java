@@ -0,0 +1,26 @@
+package hudson.plugins.clearcase.history;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Detects changes with <code>cleartool lshistory</code>, the historical behavior. The other strategies confirm the changes they detect with this one.
+ */
+public class LsHistoryStrategy implements ChangeDetectionStrategy {
+
+    @Override
+    public String getName() {
+        return ChangeDetection.LSHISTORY.getName();
+    }
+
+    @Override
+    public boolean hasChanges(AbstractHistoryAction action, Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths)
+            throws IOException, InterruptedException {
+        return action.hasHistoryChanges(time, viewPath, viewTag, branchNames, viewPaths);
+    }
+
+    @Override
+    public boolean isApplicable(AbstractHistoryAction action) {
+        return true;
+    }
+}
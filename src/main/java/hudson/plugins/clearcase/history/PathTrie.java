@@ -0,0 +1,141 @@
+package hudson.plugins.clearcase.history;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shares the common prefixes of element paths. A path is stored as a reference to its last node; each node holds one path segment and a reference to its
+ * parent, so that the path of thousands of elements below the same view root is stored once.
+ * <p>
+ * Children are weakly referenced: a branch of the trie is collected once no history entry references its nodes anymore, and the references of collected
+ * nodes are removed from their parent through a {@link ReferenceQueue}. Lookups don't lock the trie, so that parallel history runs don't contend on it.
+ * </p>
+ */
+final class PathTrie {
+
+    /**
+     * The reference of a parent to one of its children, with what is needed to remove it once the child is collected.
+     */
+    private static final class ChildRef extends WeakReference<Node> {
+        private final Node   parent;
+        private final String segment;
+
+        ChildRef(Node child, ReferenceQueue<Node> queue) {
+            super(child, queue);
+            this.parent = child.parent;
+            this.segment = child.segment;
+        }
+    }
+
+    static final class Node {
+        private volatile ConcurrentMap<String, ChildRef> children;
+        private final int                                length;
+        private final Node                               parent;
+        private final String                             segment;
+
+        Node(Node parent, String segment) {
+            this.parent = parent;
+            this.segment = segment;
+            this.length = (parent == null ? 0 : parent.length) + segment.length();
+        }
+
+        String getPath() {
+            char[] path = new char[length];
+            int end = length;
+            for (Node node = this; node != null; node = node.parent) {
+                end -= node.segment.length();
+                node.segment.getChars(0, node.segment.length(), path, end);
+            }
+            return new String(path);
+        }
+
+        @Override
+        public String toString() {
+            return getPath();
+        }
+
+        private ConcurrentMap<String, ChildRef> getChildren() {
+            ConcurrentMap<String, ChildRef> result = children;
+            if (result == null) {
+                synchronized (this) {
+                    result = children;
+                    if (result == null) {
+                        // Most nodes are leaves or have a few children, and are seldom updated concurrently
+                        result = new ConcurrentHashMap<String, ChildRef>(4, 0.75f, 1);
+                        children = result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final PathTrie INSTANCE = new PathTrie();
+
+    static PathTrie getInstance() {
+        return INSTANCE;
+    }
+
+    private final ReferenceQueue<Node> collected = new ReferenceQueue<Node>();
+
+    private final Node                 root      = new Node(null, "");
+
+    private PathTrie() {
+    }
+
+    /**
+     * Returns the node of the given path, creating the missing nodes. Paths are split after each separator, so <code>/vobs/a</code> is made of
+     * <code>/</code>, <code>vobs/</code> and <code>a</code>.
+     */
+    Node intern(String path) {
+        if (path == null) {
+            return null;
+        }
+        expunge();
+        Node node = root;
+        int start = 0;
+        while (start < path.length()) {
+            int end = start;
+            while (end < path.length() && path.charAt(end) != '/' && path.charAt(end) != '\\') {
+                end++;
+            }
+            if (end < path.length()) {
+                end++;
+            }
+            node = getChild(node, path.substring(start, end));
+            start = end;
+        }
+        return node;
+    }
+
+    /**
+     * Removes the references of the collected nodes from their parent.
+     */
+    private void expunge() {
+        for (Reference<? extends Node> ref = collected.poll(); ref != null; ref = collected.poll()) {
+            ChildRef childRef = (ChildRef) ref;
+            // The parent may already reference a new node for the same segment
+            childRef.parent.getChildren().remove(childRef.segment, childRef);
+        }
+    }
+
+    private Node getChild(Node parent, String segment) {
+        ConcurrentMap<String, ChildRef> children = parent.getChildren();
+        while (true) {
+            ChildRef ref = children.get(segment);
+            Node child = ref == null ? null : ref.get();
+            if (child != null) {
+                return child;
+            }
+            child = new Node(parent, segment);
+            ChildRef childRef = new ChildRef(child, collected);
+            if (ref == null ? children.putIfAbsent(segment, childRef) == null : children.replace(segment, ref, childRef)) {
+                return child;
+            }
+            // Another thread added the child meanwhile
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package hudson.plugins.clearcase.history;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The filtered history read by a poll that found changes, handed to the change log of the build it triggers. The change log then only reads the history
+ * since the poll, instead of everything since the previous build.
+ */
+public class PolledHistory {
+
+    /**
+     * The most entries kept, the change log reads larger histories again.
+     */
+    static final int                 MAX_ENTRIES = Integer.getInteger(PolledHistory.class.getName() + ".maxEntries", 10000);
+
+    /**
+     * How far before the poll the change log starts reading the history, for the clock skew between the controller and the VOB servers.
+     */
+    static final long                OVERLAP     = TimeUnit.MINUTES.toMillis(Long.getLong(PolledHistory.class.getName() + ".overlapMinutes", 10));
+
+    private final List<HistoryEntry> entries;
+
+    private final boolean            hasComments;
+
+    private final String             key;
+
+    private final long               polledAt;
+
+    PolledHistory(String key, long polledAt, List<HistoryEntry> entries, boolean hasComments) {
+        this.key = key;
+        this.polledAt = polledAt;
+        this.entries = entries;
+        this.hasComments = hasComments;
+    }
+
+    public Date getPolledAt() {
+        return new Date(polledAt);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns false if the history was read without the comments, which the change log then reads for the entries it reuses.
+     */
+    boolean hasComments() {
+        return hasComments;
+    }
+
+    List<HistoryEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the date the history has to be read again from.
+     */
+    Date getDeltaSince() {
+        return new Date(polledAt - OVERLAP);
+    }
+
+    /**
+     * Returns true if this history was read with the same parameters, and if reading the history since the poll is shorter than since the given time.
+     */
+    boolean isReusableFor(String key, Date time) {
+        return this.key.equals(key) && getDeltaSince().after(time);
+    }
+}
@@ -0,0 +1,23 @@
+package hudson.plugins.clearcase.history;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Detects changes with a probe that is cheaper than lshistory but may report changes lshistory would filter out (seen events, excluded regions, user
+ * filters). A negative probe is trusted; a positive probe is confirmed with lshistory, which only runs when there is something to build.
+ */
+public abstract class ProbingStrategy implements ChangeDetectionStrategy {
+
+    @Override
+    public boolean hasChanges(AbstractHistoryAction action, Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths)
+            throws IOException, InterruptedException {
+        return probe(action, time, viewPath, viewTag, branchNames, viewPaths) && action.hasHistoryChanges(time, viewPath, viewTag, branchNames, viewPaths);
+    }
+
+    /**
+     * Returns true if there may be changes since the given time, false if there are none.
+     */
+    protected abstract boolean probe(AbstractHistoryAction action, Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths)
+            throws IOException, InterruptedException;
+}
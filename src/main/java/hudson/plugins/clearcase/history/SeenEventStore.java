@@ -0,0 +1,260 @@
+package hudson.plugins.clearcase.history;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact set of history events already attributed to a build, used to de-duplicate events showing up in overlapping history windows (multisite poll
+ * buffer).
+ * <p>
+ * An event is identified by a 64 bits hash of <code>element@@version</code>, operation and event time. Hashes are kept sorted along with the event time, so
+ * that events older than the history window can be pruned. A Bloom filter, rebuilt lazily and never persisted, answers most lookups of unseen events without
+ * searching the exact list.
+ * </p>
+ * <p>
+ * Added events are buffered, and merged into the sorted list at once when the buffer grows past a fraction of the list, so that recording the events of a
+ * history run doesn't copy the list for each of them.
+ * </p>
+ */
+public class SeenEventStore {
+
+    private static final int BITS_PER_EVENT = 10;
+
+    private static final int HASHES         = 4;
+
+    /**
+     * Minimum number of buffered events before they are merged.
+     */
+    private static final int MIN_PENDING    = 1024;
+
+    static long hash(HistoryEntry entry) {
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, entry.getElement());
+        hash = hash(hash, "@@");
+        hash = hash(hash, entry.getVersionId());
+        hash = hash(hash, "|");
+        hash = hash(hash, entry.getOperation());
+        hash = hash(hash, "|");
+        hash = hash(hash, entry.getDateText());
+        return hash;
+    }
+
+    private static long hash(long hash, String s) {
+        if (s == null) {
+            return hash;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private transient long[]          bloom;
+
+    private long[]                    keys  = new long[0];
+
+    /**
+     * The events added since the last merge, times by key.
+     */
+    private transient Map<Long, Long> pending;
+
+    private long[]                    times = new long[0];
+
+    public SeenEventStore() {
+    }
+
+    private SeenEventStore(long[] keys, long[] times) {
+        this.keys = keys;
+        this.times = times;
+    }
+
+    /**
+     * Records the given event as seen.
+     */
+    public synchronized void add(HistoryEntry entry) {
+        long key = hash(entry);
+        if (Arrays.binarySearch(keys, key) >= 0 || getPending().containsKey(key)) {
+            return;
+        }
+        pending.put(key, entry.getDate() == null ? 0 : entry.getDate().getTime());
+        if (bloom != null && size() * BITS_PER_EVENT <= bloom.length * 64) {
+            addToBloom(bloom, key);
+        } else {
+            bloom = null;
+        }
+        if (pending.size() >= Math.max(MIN_PENDING, keys.length / 4)) {
+            flush();
+        }
+    }
+
+    /**
+     * Records all the events of the given store as seen.
+     */
+    public void addAll(SeenEventStore other) {
+        long[] otherKeys;
+        long[] otherTimes;
+        synchronized (other) {
+            other.flush();
+            otherKeys = other.keys;
+            otherTimes = other.times;
+        }
+        synchronized (this) {
+            flush();
+            merge(otherKeys, otherTimes);
+            bloom = null;
+        }
+    }
+
+    public synchronized boolean contains(HistoryEntry entry) {
+        long key = hash(entry);
+        if (!mightContain(getBloom(), key)) {
+            return false;
+        }
+        return Arrays.binarySearch(keys, key) >= 0 || getPending().containsKey(key);
+    }
+
+    public synchronized SeenEventStore copy() {
+        flush();
+        return new SeenEventStore(keys.clone(), times.clone());
+    }
+
+    /**
+     * Forgets the events that happened before the given date. Such events are out of the next history window, so they can't show up again.
+     */
+    public synchronized void prune(Date since) {
+        flush();
+        long limit = since.getTime();
+        int kept = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (times[i] >= limit) {
+                kept++;
+            }
+        }
+        if (kept == keys.length) {
+            return;
+        }
+        long[] newKeys = new long[kept];
+        long[] newTimes = new long[kept];
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (times[i] >= limit) {
+                newKeys[j] = keys[i];
+                newTimes[j] = times[i];
+                j++;
+            }
+        }
+        keys = newKeys;
+        times = newTimes;
+        bloom = null;
+    }
+
+    public synchronized int size() {
+        return keys.length + getPending().size();
+    }
+
+    @Override
+    public String toString() {
+        return "SeenEventStore[size=" + size() + "]";
+    }
+
+    private void addToBloom(long[] filter, long key) {
+        int bits = filter.length * 64;
+        int h1 = (int) key;
+        int h2 = (int) (key >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bits;
+            filter[bit >>> 6] |= 1L << (bit & 63);
+        }
+    }
+
+    /**
+     * Merges the buffered events into the sorted list. The Bloom filter already holds them.
+     */
+    private void flush() {
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        long[] pendingKeys = new long[pending.size()];
+        int i = 0;
+        for (Long key : pending.keySet()) {
+            pendingKeys[i++] = key;
+        }
+        Arrays.sort(pendingKeys);
+        long[] pendingTimes = new long[pendingKeys.length];
+        for (i = 0; i < pendingKeys.length; i++) {
+            pendingTimes[i] = pending.get(pendingKeys[i]);
+        }
+        pending.clear();
+        merge(pendingKeys, pendingTimes);
+    }
+
+    private long[] getBloom() {
+        if (bloom == null) {
+            // Leave room for the events added during the next history run
+            long[] filter = new long[Math.max(1, (size() * 2 * BITS_PER_EVENT + 63) / 64)];
+            for (long key : keys) {
+                addToBloom(filter, key);
+            }
+            for (long key : getPending().keySet()) {
+                addToBloom(filter, key);
+            }
+            bloom = filter;
+        }
+        return bloom;
+    }
+
+    private Map<Long, Long> getPending() {
+        // Not restored by XStream
+        if (pending == null) {
+            pending = new HashMap<Long, Long>();
+        }
+        return pending;
+    }
+
+    /**
+     * Merges sorted keys and their times into the sorted list, keeping one copy of the keys present in both.
+     */
+    private void merge(long[] otherKeys, long[] otherTimes) {
+        long[] newKeys = new long[keys.length + otherKeys.length];
+        long[] newTimes = new long[newKeys.length];
+        int i = 0, j = 0, k = 0;
+        while (i < keys.length || j < otherKeys.length) {
+            if (j == otherKeys.length || (i < keys.length && keys[i] <= otherKeys[j])) {
+                if (j < otherKeys.length && keys[i] == otherKeys[j]) {
+                    j++;
+                }
+                newKeys[k] = keys[i];
+                newTimes[k++] = times[i++];
+            } else {
+                newKeys[k] = otherKeys[j];
+                newTimes[k++] = otherTimes[j++];
+            }
+        }
+        keys = Arrays.copyOf(newKeys, k);
+        times = Arrays.copyOf(newTimes, k);
+    }
+
+    private boolean mightContain(long[] filter, long key) {
+        int bits = filter.length * 64;
+        int h1 = (int) key;
+        int h2 = (int) (key >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bits;
+            if ((filter[bit >>> 6] & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merges the buffered events before the store is saved with the revision state.
+     */
+    private synchronized Object writeReplace() {
+        flush();
+        return this;
+    }
+}
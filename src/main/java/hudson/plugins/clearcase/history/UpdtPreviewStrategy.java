@@ -0,0 +1,69 @@
+package hudson.plugins.clearcase.history;
+
+import hudson.FilePath;
+import hudson.plugins.clearcase.CleartoolUpdateResult;
+import hudson.plugins.clearcase.UpdtEntry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.LineIterator;
+
+/**
+ * Probes a snapshot view with a preview of its update (<code>cleartool update -print</code>): there may be changes if the update would load new or updated
+ * versions. The config spec decides what is selected, so the branches and the history windows are not used.
+ */
+public class UpdtPreviewStrategy extends ProbingStrategy {
+
+    private static final Logger LOG = Logger.getLogger(UpdtPreviewStrategy.class.getName());
+
+    static boolean hasUpdates(InputStream updtLog) throws IOException {
+        LineIterator it = IOUtils.lineIterator(updtLog, "UTF-8");
+        while (it.hasNext()) {
+            UpdtEntry.State state = UpdtEntry.getEntryFromLine(it.nextLine()).getState();
+            if (state == UpdtEntry.State.NEW || state == UpdtEntry.State.UPDATED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return ChangeDetection.UPDT.getName();
+    }
+
+    @Override
+    public boolean isApplicable(AbstractHistoryAction action) {
+        return !action.isDynamicView && !action.needMinorEvents();
+    }
+
+    @Override
+    protected boolean probe(AbstractHistoryAction action, Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths)
+            throws IOException, InterruptedException {
+        CleartoolUpdateResult result = action.cleartool.previewUpdate(viewPath);
+        if (!result.hasUpdateFile()) {
+            // Can't tell, let lshistory decide
+            return true;
+        }
+        FilePath updtFile = result.getUpdateFile();
+        try {
+            InputStream is = updtFile.read();
+            try {
+                return hasUpdates(is);
+            } finally {
+                IOUtils.closeQuietly(is);
+            }
+        } finally {
+            try {
+                updtFile.delete();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Unable to delete " + updtFile, e);
+            }
+        }
+    }
+}
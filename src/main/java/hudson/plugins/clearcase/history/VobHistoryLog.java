@@ -0,0 +1,619 @@
+package hudson.plugins.clearcase.history;
+
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.util.ClearToolFormatHandler;
+import hudson.plugins.clearcase.util.SpillingSorter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * The mirrored history of one VOB, for one lshistory format. Events are appended to one partition file per day (UTC) and never rewritten; each partition
+ * has an index file listing the branch types and the path prefixes of its events, so that scans skip the partitions that can't match. A state file records
+ * the covered time range: from <code>start</code>, the earliest date synced, up to <code>watermark</code>, the time of the last sync.
+ * <p>
+ * Element paths are stored relative to the view, so that the history can be replayed in any view. Partitions cover disjoint days: scans read them newest
+ * first and sort one partition at a time, with a {@link SpillingSorter}, so that the memory used doesn't depend on the size of the history.
+ * </p>
+ */
+class VobHistoryLog {
+
+    /**
+     * A history event: the lines printed by lshistory for it, with the view root removed from the element path.
+     */
+    static final class Record {
+        private final String branchType;
+        private final long   date;
+        private final String element;
+        /**
+         * Where the view root was removed from the text, -1 if the element wasn't below the view root.
+         */
+        private final int    rootOffset;
+        private final String text;
+
+        Record(long date, String branchType, String element, int rootOffset, String text) {
+            this.date = date;
+            this.branchType = branchType;
+            this.element = element;
+            this.rootOffset = rootOffset;
+            this.text = text;
+        }
+
+        long getDate() {
+            return date;
+        }
+
+        /**
+         * Returns the lines of the event, as lshistory prints them in the view of the given root.
+         */
+        String getText(String viewRoot) {
+            if (rootOffset < 0) {
+                return text;
+            }
+            return text.substring(0, rootOffset) + viewRoot + text.substring(rootOffset);
+        }
+
+        boolean matches(String branchName, String[] pathPrefixes) {
+            if (StringUtils.isNotEmpty(branchName) && !branchName.equals(branchType)) {
+                return false;
+            }
+            return pathPrefixes == null || isBelow(element, pathPrefixes);
+        }
+    }
+
+    private static final class PartitionIndex {
+        private final Set<String> branchTypes  = new HashSet<String>();
+        private final Set<String> pathPrefixes = new HashSet<String>();
+
+        boolean matches(String branchName, String[] pathPrefixes) {
+            if (StringUtils.isNotEmpty(branchName) && !branchTypes.contains(branchName)) {
+                return false;
+            }
+            if (pathPrefixes == null) {
+                return true;
+            }
+            for (String prefix : this.pathPrefixes) {
+                for (String pathPrefix : pathPrefixes) {
+                    if (prefix.startsWith(pathPrefix) || pathPrefix.startsWith(prefix)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Reads and writes records in the format of the partition files.
+     */
+    private static final class RecordCodec implements SpillingSorter.Codec<Record> {
+        @Override
+        public Record read(DataInput in) throws IOException {
+            long date = in.readLong();
+            String branchType = SpillingSorter.readString(in);
+            String element = SpillingSorter.readString(in);
+            int rootOffset = in.readInt();
+            return new Record(date, branchType, element, rootOffset, SpillingSorter.readString(in));
+        }
+
+        @Override
+        public void write(DataOutput out, Record record) throws IOException {
+            out.writeLong(record.date);
+            SpillingSorter.writeString(out, record.branchType);
+            SpillingSorter.writeString(out, record.element);
+            out.writeInt(record.rootOffset);
+            SpillingSorter.writeString(out, record.text);
+        }
+    }
+
+    static final long                       DAY_MILLIS   = 24L * 60 * 60 * 1000;
+
+    private static final RecordCodec        CODEC        = new RecordCodec();
+
+    private static final String             DATA_SUFFIX  = ".log";
+
+    private static final String             INDEX_SUFFIX = ".idx";
+
+    private static final Logger             LOG          = Logger.getLogger(VobHistoryLog.class.getName());
+
+    private static final Comparator<Record> NEWEST_FIRST = new Comparator<Record>() {
+                                                             @Override
+                                                             public int compare(Record o1, Record o2) {
+                                                                 return o1.getDate() < o2.getDate() ? 1 : (o1.getDate() == o2.getDate() ? 0 : -1);
+                                                             }
+                                                         };
+
+    /**
+     * Number of path segments of the index path prefixes.
+     */
+    private static final int                PREFIX_DEPTH = 3;
+
+    /**
+     * Returns the branch type of a version id: the branch of /main/dev/3 is dev, and a branch id like /main/dev is its own branch.
+     */
+    static String getBranchType(String versionId) {
+        if (StringUtils.isBlank(versionId)) {
+            return null;
+        }
+        String[] segments = StringUtils.split(versionId.trim(), "/\\");
+        if (segments.length == 0) {
+            return null;
+        }
+        String last = segments[segments.length - 1];
+        if (StringUtils.isNumeric(last) || "CHECKEDOUT".equals(last)) {
+            return segments.length > 1 ? segments[segments.length - 2] : null;
+        }
+        return last;
+    }
+
+    /**
+     * Returns the first segments of a path, with '/' separators.
+     */
+    static String getPathPrefix(String path) {
+        String normalized = normalizePath(path);
+        int end = -1;
+        for (int i = 0; i < PREFIX_DEPTH; i++) {
+            end = normalized.indexOf('/', end + 1);
+            if (end < 0) {
+                return normalized;
+            }
+        }
+        return normalized.substring(0, end);
+    }
+
+    static boolean isBelow(String element, String[] pathPrefixes) {
+        String path = normalizePath(element);
+        for (String prefix : pathPrefixes) {
+            if (path.equals(prefix) || path.startsWith(prefix + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Normalizes a view relative path or load rule: '/' separators, without the leading separators and quotes.
+     */
+    static String normalizePath(String path) {
+        return StringUtils.stripEnd(StringUtils.stripStart(path.trim().replace('\\', '/'), "/\""), "/\"");
+    }
+
+    private static String getPartition(long date) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(date));
+    }
+
+    private final File                        dir;
+
+    private final Map<String, PartitionIndex> indexes  = new HashMap<String, PartitionIndex>();
+
+    private long                              lastSync;
+
+    /**
+     * How many records are sorted in memory before spilling.
+     */
+    private final int                         maxInMemory;
+
+    private long                              start    = -1;
+
+    private final Object                      syncLock = new Object();
+
+    private long                              watermark;
+
+    VobHistoryLog(File dir) {
+        this(dir, SpillingSorter.DEFAULT_MAX_IN_MEMORY);
+    }
+
+    VobHistoryLog(File dir, int maxInMemory) {
+        this.dir = dir;
+        this.maxInMemory = maxInMemory;
+        loadState();
+    }
+
+    /**
+     * Sends the events recorded since the given date to the given sink, newest first.
+     *
+     * @param branchName
+     *            the branch type, empty for all branches
+     * @param pathPrefixes
+     *            normalized paths the elements must be below, null for the whole VOB
+     */
+    synchronized void scan(final long since, final String branchName, final String[] pathPrefixes, SpillingSorter.Sink<? super Record> sink)
+            throws IOException, InterruptedException {
+        String first = getPartition(since);
+        List<String> partitions = listPartitions();
+        // Partitions are whole days, sorting each one gives the events newest first, like lshistory
+        Collections.reverse(partitions);
+        for (String partition : partitions) {
+            if (partition.compareTo(first) < 0) {
+                break;
+            }
+            if (!getIndex(partition).matches(branchName, pathPrefixes)) {
+                continue;
+            }
+            final SpillingSorter<Record> sorter = new SpillingSorter<Record>(NEWEST_FIRST, CODEC, maxInMemory);
+            try {
+                readPartition(partition, new SpillingSorter.Sink<Record>() {
+                    @Override
+                    public void accept(Record record) throws IOException {
+                        if (record.getDate() >= since && record.matches(branchName, pathPrefixes)) {
+                            sorter.add(record);
+                        }
+                    }
+                });
+                sorter.sortTo(sink);
+            } finally {
+                sorter.close();
+            }
+        }
+    }
+
+    /**
+     * Brings the log up to date for a query since the given date. The history before the covered range is fetched as a whole; otherwise only the events
+     * since the last sync are, with an overlap for the events replicated late. Nothing is fetched if the log was synced recently.
+     * <p>
+     * Syncs are serialized, but the log is only locked while the fetched events are appended, so that scans don't wait for lshistory.
+     * </p>
+     *
+     * @param vobPath
+     *            the path of the VOB in the view, relative to the view path
+     * @param viewRoot
+     *            the view root, as printed at the beginning of the element paths
+     * @param maxAge
+     *            how old the log may be
+     */
+    void sync(ClearTool cleartool, ClearToolFormatHandler handler, String format, String viewPath, String viewRoot, String vobPath, long since, long maxAge)
+            throws IOException, InterruptedException {
+        synchronized (syncLock) {
+            long now = System.currentTimeMillis();
+            long from;
+            boolean gap = start < 0 || since < start;
+            if (gap) {
+                from = since;
+            } else if (now - lastSync < maxAge) {
+                return;
+            } else {
+                from = Math.max(start, watermark - HistoryMirror.SYNC_OVERLAP);
+            }
+            SpillingSorter<Record> fetched = new SpillingSorter<Record>(NEWEST_FIRST, CODEC, maxInMemory);
+            try {
+                BufferedReader reader = new BufferedReader(cleartool.lshistory(format, new Date(from), viewPath, StringUtils.EMPTY, new String[] { vobPath },
+                        false, false));
+                try {
+                    parse(reader, handler, viewRoot, fetched);
+                } finally {
+                    reader.close();
+                }
+                synchronized (this) {
+                    append(fetched);
+                    if (gap) {
+                        start = from;
+                    }
+                    watermark = now;
+                    lastSync = now;
+                    prune(now);
+                    saveState();
+                }
+            } finally {
+                fetched.close();
+            }
+        }
+    }
+
+    private void addRecord(SpillingSorter<Record> records, Matcher event, StringBuilder text, String viewRoot) throws IOException {
+        if (event == null) {
+            return;
+        }
+        long date;
+        try {
+            HistoryEntry entry = new HistoryEntry();
+            entry.setDateText(event.group(1));
+            date = entry.getDate().getTime();
+        } catch (ParseException e) {
+            LOG.log(Level.FINE, "Skipping " + text, e);
+            return;
+        }
+        String element = event.group(3).trim();
+        int rootOffset = -1;
+        String recorded = text.toString();
+        if (StringUtils.isNotEmpty(viewRoot) && element.startsWith(viewRoot)) {
+            rootOffset = event.start(3) + event.group(3).indexOf(viewRoot);
+            element = element.substring(viewRoot.length());
+            recorded = recorded.substring(0, rootOffset) + recorded.substring(rootOffset + viewRoot.length());
+        }
+        records.add(new Record(date, getBranchType(event.group(4)), element, rootOffset, recorded));
+    }
+
+    /**
+     * Appends the fetched records that aren't in the log yet. The fetched records are sorted, so that the records of a partition are merged together: only
+     * the events already in that partition are held in memory to drop the duplicates.
+     */
+    private void append(SpillingSorter<Record> fetched) throws IOException, InterruptedException {
+        final Set<Long> known = new HashSet<Long>();
+        final List<Record> pending = new ArrayList<Record>();
+        final String[] current = new String[1];
+        final int[] counts = new int[2];
+        fetched.sortTo(new SpillingSorter.Sink<Record>() {
+            @Override
+            public void accept(Record record) throws IOException, InterruptedException {
+                String partition = getPartition(record.getDate());
+                if (!partition.equals(current[0])) {
+                    writePartition(pending);
+                    current[0] = partition;
+                    known.clear();
+                    if (new File(dir, partition + DATA_SUFFIX).exists()) {
+                        readPartition(partition, new SpillingSorter.Sink<Record>() {
+                            @Override
+                            public void accept(Record existing) {
+                                known.add(HistoryEntry.hashLine(existing.text));
+                            }
+                        });
+                    }
+                }
+                counts[0]++;
+                if (!known.add(HistoryEntry.hashLine(record.text))) {
+                    return;
+                }
+                counts[1]++;
+                if (pending.size() >= maxInMemory) {
+                    writePartition(pending);
+                }
+                pending.add(record);
+            }
+        });
+        writePartition(pending);
+        LOG.log(Level.FINE, "{0}: {1} events fetched, {2} new", new Object[] { dir, counts[0], counts[1] });
+    }
+
+    private PartitionIndex getIndex(String partition) throws IOException {
+        PartitionIndex index = indexes.get(partition);
+        if (index == null) {
+            index = new PartitionIndex();
+            File file = new File(dir, partition + INDEX_SUFFIX);
+            if (file.exists()) {
+                BufferedReader reader = new BufferedReader(new FileReader(file));
+                try {
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        if (line.startsWith("b ")) {
+                            index.branchTypes.add(line.substring(2));
+                        } else if (line.startsWith("p ")) {
+                            index.pathPrefixes.add(line.substring(2));
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+            indexes.put(partition, index);
+        }
+        return index;
+    }
+
+    private int length(String value) throws IOException {
+        return value == null ? 0 : value.getBytes("UTF-8").length;
+    }
+
+    private List<String> listPartitions() {
+        String[] names = dir.list();
+        List<String> partitions = new ArrayList<String>();
+        if (names != null) {
+            Arrays.sort(names);
+            for (String name : names) {
+                if (name.endsWith(DATA_SUFFIX)) {
+                    partitions.add(StringUtils.removeEnd(name, DATA_SUFFIX));
+                }
+            }
+        }
+        return partitions;
+    }
+
+    private void loadState() {
+        File file = new File(dir, "state");
+        if (!file.exists()) {
+            return;
+        }
+        Properties state = new Properties();
+        try {
+            InputStream is = new FileInputStream(file);
+            try {
+                state.load(is);
+            } finally {
+                is.close();
+            }
+            start = Long.parseLong(state.getProperty("start", "-1"));
+            watermark = Long.parseLong(state.getProperty("watermark", "0"));
+            lastSync = watermark;
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to read " + file + ", the history will be fetched again", e);
+        } catch (NumberFormatException e) {
+            LOG.log(Level.WARNING, "Unable to read " + file + ", the history will be fetched again", e);
+        }
+    }
+
+    private void parse(BufferedReader reader, ClearToolFormatHandler handler, String viewRoot, SpillingSorter<Record> records) throws IOException {
+        Matcher event = null;
+        StringBuilder text = new StringBuilder();
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (line.startsWith("cleartool: Error:")) {
+                // Never record a partial history
+                throw new IOException(line);
+            }
+            Matcher matcher = handler.checkLine(line);
+            if (matcher != null) {
+                addRecord(records, event, text, viewRoot);
+                event = matcher;
+                text.setLength(0);
+            }
+            if (event != null) {
+                text.append(line).append('\n');
+            }
+        }
+        addRecord(records, event, text, viewRoot);
+    }
+
+    private void prune(long now) {
+        if (HistoryMirror.RETENTION <= 0) {
+            return;
+        }
+        long cutoff = now - HistoryMirror.RETENTION;
+        String first = getPartition(cutoff);
+        for (String partition : listPartitions()) {
+            if (partition.compareTo(first) < 0) {
+                new File(dir, partition + DATA_SUFFIX).delete();
+                new File(dir, partition + INDEX_SUFFIX).delete();
+                indexes.remove(partition);
+            }
+        }
+        // Partitions are whole days
+        long kept = cutoff - cutoff % DAY_MILLIS;
+        if (start >= 0 && start < kept) {
+            start = kept;
+        }
+    }
+
+    /**
+     * Sends the records of a partition to the given sink, in the order they were written. A record truncated by a crash is dropped, so that the next records
+     * are appended at a record boundary.
+     */
+    private void readPartition(String partition, SpillingSorter.Sink<Record> sink) throws IOException, InterruptedException {
+        File file = new File(dir, partition + DATA_SUFFIX);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        long valid = 0;
+        boolean truncated = false;
+        try {
+            while (true) {
+                long date;
+                try {
+                    date = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    String branchType = SpillingSorter.readString(in);
+                    String element = SpillingSorter.readString(in);
+                    int rootOffset = in.readInt();
+                    String text = SpillingSorter.readString(in);
+                    sink.accept(new Record(date, branchType, element, rootOffset, text));
+                    valid += 8 + 4 + length(branchType) + 4 + length(element) + 4 + 4 + length(text);
+                } catch (EOFException e) {
+                    truncated = true;
+                    break;
+                }
+            }
+        } finally {
+            in.close();
+        }
+        if (truncated || valid < file.length()) {
+            LOG.log(Level.WARNING, "Dropping the truncated end of {0}", file);
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(valid);
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    private void saveState() throws IOException {
+        Properties state = new Properties();
+        state.setProperty("start", Long.toString(start));
+        state.setProperty("watermark", Long.toString(watermark));
+        File tmp = new File(dir, "state.tmp");
+        OutputStream os = new FileOutputStream(tmp);
+        try {
+            state.store(os, null);
+        } finally {
+            os.close();
+        }
+        File file = new File(dir, "state");
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Unable to write " + file);
+            }
+        }
+    }
+
+    private void updateIndex(String partition, List<Record> records) throws IOException {
+        PartitionIndex index = getIndex(partition);
+        StringBuilder added = new StringBuilder();
+        for (Record record : records) {
+            if (record.branchType != null && index.branchTypes.add(record.branchType)) {
+                added.append("b ").append(record.branchType).append('\n');
+            }
+            String prefix = getPathPrefix(record.element);
+            if (index.pathPrefixes.add(prefix)) {
+                added.append("p ").append(prefix).append('\n');
+            }
+        }
+        if (added.length() > 0) {
+            Writer writer = new FileWriter(new File(dir, partition + INDEX_SUFFIX), true);
+            try {
+                writer.write(added.toString());
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * Appends records of the same partition, and clears the list.
+     */
+    private void writePartition(List<Record> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        String partition = getPartition(records.get(0).getDate());
+        // The index is written first, an index listing more than its partition only costs a scan
+        updateIndex(partition, records);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Record record : records) {
+            CODEC.write(out, record);
+        }
+        out.close();
+        OutputStream os = new FileOutputStream(new File(dir, partition + DATA_SUFFIX), true);
+        try {
+            bytes.writeTo(os);
+        } finally {
+            os.close();
+        }
+        records.clear();
+    }
+}
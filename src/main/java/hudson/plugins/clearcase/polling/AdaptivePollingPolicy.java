@@ -0,0 +1,223 @@
+package hudson.plugins.clearcase.polling;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller wide policy adapting the polling interval of each job to its change rate and poll cost.
+ * <p>
+ * The cron spec of a job triggers the polls, the policy skips those that aren't due yet. A job is due once a fraction ({@link #RESPONSIVENESS}) of the
+ * expected time between two of its changes has elapsed since its last poll: jobs changing often are polled at every tick of their cron spec, dormant jobs
+ * less and less often. The interval is also kept above {@link #COST_FACTOR} times the average duration of the polls of the job, and bounded by the minimum
+ * and maximum intervals of the global configuration.
+ * </p>
+ * <p>
+ * A budget of cleartool commands per minute is shared by all the jobs. Each poll is charged the average number of commands run by the previous polls of the
+ * job; when the budget is exhausted, polls are skipped until it refills, unless the job hasn't been polled for the maximum interval.
+ * </p>
+ */
+public final class AdaptivePollingPolicy {
+
+    private static final class JobStats {
+        private double changeInterval = -1;
+        private double commands       = -1;
+        private double duration       = -1;
+        private long   lastChange;
+        private long   lastPoll;
+    }
+
+    /**
+     * Weight of the last poll in the averages.
+     */
+    static final double                        ALPHA          = 0.3;
+
+    /**
+     * The polls of a job take at most 1 / COST_FACTOR of its time.
+     */
+    static final int                           COST_FACTOR    = Integer.getInteger(AdaptivePollingPolicy.class.getName() + ".costFactor", 10);
+
+    /**
+     * Fraction of the expected time between two changes of a job after which it is polled again.
+     */
+    static final int                           RESPONSIVENESS = Integer.getInteger(AdaptivePollingPolicy.class.getName() + ".responsiveness", 10);
+
+    private static final AdaptivePollingPolicy INSTANCE       = new AdaptivePollingPolicy();
+
+    public static AdaptivePollingPolicy getInstance() {
+        return INSTANCE;
+    }
+
+    private int                         budget;
+
+    private double                      budgetLeft;
+
+    private long                        budgetRefilled;
+
+    private final Map<String, JobStats> jobStats = new ConcurrentHashMap<String, JobStats>();
+
+    AdaptivePollingPolicy() {
+    }
+
+    /**
+     * Decides whether the job is polled now, and if so charges the expected cost of the poll to the budget of cleartool commands.
+     *
+     * @param minInterval
+     *            the minimum interval between two polls of a job, in minutes
+     * @param maxInterval
+     *            the maximum interval between two polls of a job, in minutes
+     * @param commandsPerMinute
+     *            the cleartool commands all the polls may run per minute, 0 or less for unlimited
+     * @return 0 if the job is polled now, otherwise the time left until it is due, in milliseconds
+     */
+    public long acquire(String jobName, long now, int minInterval, int maxInterval, int commandsPerMinute) {
+        JobStats stats = jobStats.get(jobName);
+        if (stats == null) {
+            // Nothing learnt yet
+            return 0;
+        }
+        long interval = getIntervalMillis(jobName, now, minInterval, maxInterval);
+        long elapsed;
+        double cost;
+        synchronized (stats) {
+            elapsed = now - stats.lastPoll;
+            cost = Math.max(1, stats.commands);
+        }
+        if (elapsed < interval) {
+            return interval - elapsed;
+        }
+        if (commandsPerMinute <= 0) {
+            return 0;
+        }
+        boolean overdue = elapsed >= TimeUnit.MINUTES.toMillis(Math.max(minInterval, maxInterval));
+        synchronized (this) {
+            refill(now, commandsPerMinute);
+            if (budgetLeft < Math.min(cost, commandsPerMinute) && !overdue) {
+                // Time until the budget covers the poll
+                return Math.max(1, (long) ((Math.min(cost, commandsPerMinute) - budgetLeft) * TimeUnit.MINUTES.toMillis(1) / commandsPerMinute));
+            }
+            budgetLeft -= cost;
+        }
+        return 0;
+    }
+
+    /**
+     * Drops what was learnt about a deleted job.
+     */
+    public void forget(String jobName) {
+        synchronized (jobStats) {
+            jobStats.remove(jobName);
+        }
+    }
+
+    /**
+     * @return the cleartool commands left in the budget of the current minute
+     */
+    public synchronized long getBudgetLeft() {
+        return (long) budgetLeft;
+    }
+
+    /**
+     * Returns the interval between two polls of the given job.
+     */
+    public long getIntervalMillis(String jobName, long now, int minInterval, int maxInterval) {
+        long min = TimeUnit.MINUTES.toMillis(minInterval);
+        long max = Math.max(min, TimeUnit.MINUTES.toMillis(maxInterval));
+        JobStats stats = jobStats.get(jobName);
+        if (stats == null) {
+            return min;
+        }
+        double interval;
+        synchronized (stats) {
+            // The longer a job stays without changes, the less often it is polled
+            double expected = Math.max(stats.changeInterval, now - stats.lastChange);
+            interval = Math.max(expected / RESPONSIVENESS, stats.duration * COST_FACTOR);
+        }
+        return Math.min(max, Math.max(min, (long) interval));
+    }
+
+    /**
+     * @return true if the change rate of the job has been learnt or seeded
+     */
+    public boolean isKnown(String jobName) {
+        return jobStats.containsKey(jobName);
+    }
+
+    /**
+     * Records the outcome of a poll.
+     *
+     * @param duration
+     *            how long the poll took, in milliseconds
+     * @param commands
+     *            the cleartool commands run by the poll
+     */
+    public void record(String jobName, long now, long duration, int commands, boolean foundChanges) {
+        JobStats stats = getStats(jobName, now);
+        synchronized (stats) {
+            stats.lastPoll = now;
+            stats.duration = average(stats.duration, duration);
+            stats.commands = average(stats.commands, commands);
+            if (foundChanges) {
+                stats.changeInterval = average(stats.changeInterval, now - stats.lastChange);
+                stats.lastChange = now;
+            }
+        }
+    }
+
+    /**
+     * Keeps what was learnt about a renamed job under its new name.
+     */
+    public void rename(String oldName, String newName) {
+        synchronized (jobStats) {
+            JobStats stats = jobStats.remove(oldName);
+            if (stats != null) {
+                jobStats.put(newName, stats);
+            }
+        }
+    }
+
+    /**
+     * Seeds the change rate of a job not polled since startup with the dates of its last builds, most recent first.
+     */
+    public void seed(String jobName, long[] buildTimes) {
+        if (buildTimes.length == 0) {
+            return;
+        }
+        JobStats stats = new JobStats();
+        stats.lastChange = buildTimes[0];
+        for (int i = buildTimes.length - 1; i > 0; i--) {
+            stats.changeInterval = average(stats.changeInterval, buildTimes[i - 1] - buildTimes[i]);
+        }
+        synchronized (jobStats) {
+            if (!jobStats.containsKey(jobName)) {
+                jobStats.put(jobName, stats);
+            }
+        }
+    }
+
+    private double average(double average, double value) {
+        return average < 0 ? value : ALPHA * value + (1 - ALPHA) * average;
+    }
+
+    private JobStats getStats(String jobName, long now) {
+        synchronized (jobStats) {
+            JobStats stats = jobStats.get(jobName);
+            if (stats == null) {
+                stats = new JobStats();
+                stats.lastChange = now;
+                jobStats.put(jobName, stats);
+            }
+            return stats;
+        }
+    }
+
+    private void refill(long now, int commandsPerMinute) {
+        if (budget != commandsPerMinute) {
+            budget = commandsPerMinute;
+            budgetLeft = commandsPerMinute;
+        } else {
+            budgetLeft = Math.min(budget, budgetLeft + (double) (now - budgetRefilled) * budget / TimeUnit.MINUTES.toMillis(1));
+        }
+        budgetRefilled = now;
+    }
+}
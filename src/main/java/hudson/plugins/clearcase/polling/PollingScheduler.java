@@ -0,0 +1,438 @@
+package hudson.plugins.clearcase.polling;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Controller wide scheduler for ClearCase polling.
+ * <p>
+ * It spreads polls of jobs sharing the same cron spec with a deterministic per-job delay (jitter), deferring them to a timer rather than holding a polling
+ * thread during the delay, and limits the number of concurrent history operations
+ * (lshistory, describe) per VOB group. A VOB group is derived from the VOB tags found in the load rules of a job, optionally mapped to a server or region
+ * through the global configuration. When a group is saturated, waiting polls are served by priority: jobs whose last poll found changes first, then jobs that
+ * have not been polled for the longest time.
+ * </p>
+ */
+public final class PollingScheduler {
+
+    /**
+     * A permit to run history operations for a job on a set of VOB groups. Must be released once the operations are done.
+     */
+    public final class Slot implements Comparable<Slot> {
+        private final Collection<Gate> acquired = new ArrayList<Gate>();
+        private final Set<String>      groups;
+        private final long             idleMillis;
+        private final String           jobName;
+        private final boolean          lastPollFoundChanges;
+        private boolean                released;
+        private final long             sequence;
+        private long                   waitMillis;
+
+        Slot(String jobName, Set<String> groups, JobStats stats, long now) {
+            this.jobName = jobName;
+            this.groups = groups;
+            this.lastPollFoundChanges = stats != null && stats.foundChanges;
+            this.idleMillis = stats == null ? Long.MAX_VALUE : now - stats.lastPoll;
+            this.sequence = sequenceGenerator.incrementAndGet();
+        }
+
+        @Override
+        public int compareTo(Slot o) {
+            if (lastPollFoundChanges != o.lastPollFoundChanges) {
+                return lastPollFoundChanges ? -1 : 1;
+            }
+            if (idleMillis != o.idleMillis) {
+                return idleMillis > o.idleMillis ? -1 : 1;
+            }
+            return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+        }
+
+        public Set<String> getGroups() {
+            return groups;
+        }
+
+        public String getJobName() {
+            return jobName;
+        }
+
+        public long getWaitMillis() {
+            return waitMillis;
+        }
+
+        /**
+         * Releases the permits held by this slot.
+         *
+         * @param foundChanges
+         *            whether the poll found changes. Used to prioritize the next poll of the job.
+         */
+        public void release(boolean foundChanges) {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            releaseGates(acquired);
+            jobStats.put(jobName, new JobStats(System.currentTimeMillis(), foundChanges));
+        }
+
+        @Override
+        public String toString() {
+            return "Slot[job=" + jobName + ", groups=" + groups + ", waited=" + waitMillis + "ms]";
+        }
+    }
+
+    private static final class Gate {
+        private int                       running;
+        private final PriorityQueue<Slot> waiting = new PriorityQueue<Slot>();
+    }
+
+    private static final class JobStats {
+        private final boolean foundChanges;
+        private final long    lastPoll;
+
+        JobStats(long lastPoll, boolean foundChanges) {
+            this.lastPoll = lastPoll;
+            this.foundChanges = foundChanges;
+        }
+    }
+
+    /**
+     * How long a deferred poll is waited for once triggered by the timer, before the polls of its job are deferred again.
+     */
+    static final long                     DEFERRED_POLL_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
+    private static final PollingScheduler INSTANCE              = new PollingScheduler();
+
+    private static final Logger           LOG                   = Logger.getLogger(PollingScheduler.class.getName());
+
+    public static PollingScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the VOB groups matching the given load rules.
+     *
+     * @param loadRules
+     *            the load rules (or component root dirs) of a job
+     * @param groupMapping
+     *            lines of <code>regexp=group</code>; a VOB tag matching the regexp belongs to the group. VOB tags not matching any line are their own group.
+     */
+    public static Set<String> getVobGroups(String[] loadRules, String groupMapping) {
+        Set<String> groups = new TreeSet<String>();
+        if (loadRules == null) {
+            return groups;
+        }
+        Map<Pattern, String> mapping = parseGroupMapping(groupMapping);
+        for (String loadRule : loadRules) {
+            String vobTag = getVobTag(loadRule);
+            if (vobTag == null) {
+                continue;
+            }
+            String group = vobTag;
+            for (Map.Entry<Pattern, String> entry : mapping.entrySet()) {
+                if (entry.getKey().matcher(vobTag).matches()) {
+                    group = entry.getValue();
+                    break;
+                }
+            }
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * Extracts the VOB tag from a load rule. Separators are normalized to '/' so that the same VOB gets the same tag whatever the OS of the node.
+     */
+    public static String getVobTag(String loadRule) {
+        if (StringUtils.isBlank(loadRule)) {
+            return null;
+        }
+        String path = StringUtils.stripStart(loadRule.trim().replace('\\', '/'), "/\"");
+        String[] segments = StringUtils.split(path, '/');
+        if (segments.length == 0) {
+            return null;
+        }
+        if ("vobs".equals(segments[0]) && segments.length > 1) {
+            return "/vobs/" + StringUtils.removeEnd(segments[1], "\"");
+        }
+        return "/" + StringUtils.removeEnd(segments[0], "\"");
+    }
+
+    private static Map<Pattern, String> parseGroupMapping(String groupMapping) {
+        Map<Pattern, String> mapping = new LinkedHashMap<Pattern, String>();
+        if (StringUtils.isBlank(groupMapping)) {
+            return mapping;
+        }
+        for (String line : groupMapping.split("[\\r\\n]+")) {
+            int idx = line.lastIndexOf('=');
+            if (idx <= 0 || idx == line.length() - 1) {
+                continue;
+            }
+            try {
+                mapping.put(Pattern.compile(line.substring(0, idx).trim()), line.substring(idx + 1).trim());
+            } catch (PatternSyntaxException e) {
+                LOG.log(Level.WARNING, "Ignoring invalid VOB group mapping : " + line, e);
+            }
+        }
+        return mapping;
+    }
+
+    /**
+     * The time the deferred poll of each job is due, or 0 once the timer triggered it.
+     */
+    private final Map<String, Long>        deferredPolls     = new HashMap<String, Long>();
+
+    private final Map<String, Gate>        gates             = new ConcurrentHashMap<String, Gate>();
+
+    private final Map<String, JobStats>    jobStats          = new ConcurrentHashMap<String, JobStats>();
+
+    private final AtomicLong               maxWaitMillis     = new AtomicLong();
+
+    private final AtomicInteger            queueLength       = new AtomicInteger();
+
+    private final AtomicLong               sequenceGenerator = new AtomicLong();
+
+    private final ScheduledExecutorService timer             = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ClearCase polling jitter");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final AtomicLong               totalSlots        = new AtomicLong();
+
+    private final AtomicLong               totalWaitMillis   = new AtomicLong();
+
+    private PollingScheduler() {
+    }
+
+    /**
+     * Waits until the job is allowed to run history operations on the given VOB groups.
+     *
+     * @param jobName
+     *            the full name of the polled job
+     * @param groups
+     *            the VOB groups the job will query
+     * @param maxConcurrent
+     *            maximum number of concurrent polls per VOB group. 0 or less means unlimited.
+     * @return a slot to release once the history operations are done.
+     */
+    public Slot acquire(String jobName, Set<String> groups, int maxConcurrent) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        Set<String> sortedGroups = groups == null ? Collections.<String> emptySet() : Collections.unmodifiableSet(new TreeSet<String>(groups));
+        Slot slot = new Slot(jobName, sortedGroups, jobStats.get(jobName), start);
+        if (maxConcurrent > 0) {
+            // Groups are acquired in a stable order to avoid dead locks between jobs sharing several groups
+            for (String group : sortedGroups) {
+                Gate gate = getGate(group);
+                try {
+                    acquireGate(gate, slot, maxConcurrent);
+                } catch (InterruptedException e) {
+                    releaseGates(slot.acquired);
+                    throw e;
+                }
+                slot.acquired.add(gate);
+            }
+        }
+        slot.waitMillis = System.currentTimeMillis() - start;
+        totalSlots.incrementAndGet();
+        totalWaitMillis.addAndGet(slot.waitMillis);
+        updateMax(slot.waitMillis);
+        return slot;
+    }
+
+    /**
+     * Defers the poll of the given job by its jitter. The poll is expected to return at once without checking for changes, and the given task to trigger
+     * the deferred poll, so that no polling thread is held during the jitter. The deferred poll isn't deferred again, and the polls of the job are skipped
+     * while it is pending.
+     *
+     * @param maxJitterSeconds
+     *            the size of the jitter window. 0 or less disables jitter.
+     * @param poll
+     *            schedules a new poll of the job
+     * @return 0 if the poll is to run now, otherwise the time left until the deferred poll, in milliseconds
+     */
+    public long defer(final String jobName, int maxJitterSeconds, final Runnable poll) {
+        long jitter = getJitterMillis(jobName, maxJitterSeconds);
+        if (jitter == 0) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (deferredPolls) {
+            Long due = deferredPolls.get(jobName);
+            if (due != null && due.longValue() == 0) {
+                // Triggered by the timer
+                deferredPolls.remove(jobName);
+                return 0;
+            }
+            if (due != null && now < due.longValue() + DEFERRED_POLL_TIMEOUT) {
+                return Math.max(1, due.longValue() - now);
+            }
+            deferredPolls.put(jobName, now + jitter);
+        }
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (deferredPolls) {
+                    if (!deferredPolls.containsKey(jobName)) {
+                        // Forgotten meanwhile
+                        return;
+                    }
+                    deferredPolls.put(jobName, 0L);
+                }
+                try {
+                    poll.run();
+                } catch (RuntimeException e) {
+                    LOG.log(Level.WARNING, "Unable to trigger the deferred poll of " + jobName, e);
+                }
+            }
+        }, jitter, TimeUnit.MILLISECONDS);
+        return jitter;
+    }
+
+    /**
+     * Drops the deferred poll and the statistics of a deleted job.
+     */
+    public void forget(String jobName) {
+        synchronized (deferredPolls) {
+            deferredPolls.remove(jobName);
+        }
+        jobStats.remove(jobName);
+    }
+
+    /**
+     * @return the average time spent by polls waiting for a slot, since startup.
+     */
+    public long getAverageWaitMillis() {
+        long slots = totalSlots.get();
+        return slots == 0 ? 0 : totalWaitMillis.get() / slots;
+    }
+
+    /**
+     * Computes the delay applied to the polls of the given job. The delay is stable for a given job, so that its polling period is kept, but spreads jobs
+     * sharing the same cron spec over the jitter window.
+     *
+     * @param maxJitterSeconds
+     *            the size of the jitter window. 0 or less disables jitter.
+     */
+    public long getJitterMillis(String jobName, int maxJitterSeconds) {
+        if (maxJitterSeconds <= 0 || jobName == null) {
+            return 0;
+        }
+        long windowMillis = maxJitterSeconds * 1000L;
+        // String.hashCode is specified, so the jitter doesn't change across restarts
+        long hash = jobName.hashCode() & 0xffffffffL;
+        return (hash * 2654435761L & 0xffffffffL) % (windowMillis + 1);
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis.get();
+    }
+
+    /**
+     * @return the number of polls currently waiting for a slot.
+     */
+    public int getQueueLength() {
+        return queueLength.get();
+    }
+
+    /**
+     * @return the number of polls currently waiting for a slot on the given VOB group.
+     */
+    public int getQueueLength(String group) {
+        Gate gate = gates.get(group);
+        if (gate == null) {
+            return 0;
+        }
+        synchronized (gate) {
+            return gate.waiting.size();
+        }
+    }
+
+    public long getTotalSlots() {
+        return totalSlots.get();
+    }
+
+    /**
+     * Keeps the statistics of a renamed or moved job. Its deferred poll is dropped, the next poll being deferred again.
+     */
+    public void rename(String oldName, String newName) {
+        synchronized (deferredPolls) {
+            deferredPolls.remove(oldName);
+        }
+        JobStats stats = jobStats.remove(oldName);
+        if (stats != null) {
+            jobStats.put(newName, stats);
+        }
+    }
+
+    private void acquireGate(Gate gate, Slot slot, int maxConcurrent) throws InterruptedException {
+        synchronized (gate) {
+            gate.waiting.add(slot);
+            queueLength.incrementAndGet();
+            try {
+                while (gate.running >= maxConcurrent || gate.waiting.peek() != slot) {
+                    gate.wait();
+                }
+                gate.running++;
+            } finally {
+                gate.waiting.remove(slot);
+                queueLength.decrementAndGet();
+                gate.notifyAll();
+            }
+        }
+    }
+
+    private Gate getGate(String group) {
+        synchronized (gates) {
+            Gate gate = gates.get(group);
+            if (gate == null) {
+                gate = new Gate();
+                gates.put(group, gate);
+            }
+            return gate;
+        }
+    }
+
+    private void releaseGates(Collection<Gate> acquired) {
+        List<Gate> toRelease = new ArrayList<Gate>(acquired);
+        acquired.clear();
+        for (Gate gate : toRelease) {
+            synchronized (gate) {
+                gate.running--;
+                gate.notifyAll();
+            }
+        }
+    }
+
+    private void updateMax(long waitMillis) {
+        long current = maxWaitMillis.get();
+        while (waitMillis > current && !maxWaitMillis.compareAndSet(current, waitMillis)) {
+            current = maxWaitMillis.get();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package hudson.plugins.clearcase.polling;
+
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.command.CleartoolOutput;
+import hudson.plugins.clearcase.command.LsHistoryCommand;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Measures the replication lag of multisite VOBs, i.e. the time elapsed since the last synchronization packet was imported in the local replica. Events
+ * created on a remote replica after that time may still show up later, with their original time stamp.
+ * <p>
+ * Each replica is synchronized on its own schedule, so the lag of a VOB is the one of the replica it last heard from the longest time ago, rather than the
+ * time since the most recent import from any replica.
+ * </p>
+ * <p>
+ * Measures are shared by all jobs, and renewed at most every {@link #MEASURE_INTERVAL_MILLIS}. The lag of a VOB is the maximum of the last
+ * {@link #SAMPLES} measures, so that a single measure taken right after an import doesn't shrink the history window.
+ * </p>
+ */
+public final class ReplicaLagMonitor {
+
+    private static final class Samples {
+        private long                   measuredAt;
+        private final LinkedList<Long> values = new LinkedList<Long>();
+
+        long getMax() {
+            long max = -1;
+            for (Long value : values) {
+                max = Math.max(max, value);
+            }
+            return max;
+        }
+    }
+
+    static final long                      MEASURE_INTERVAL_MILLIS = 10 * 60 * 1000L;
+
+    static final int                       SAMPLES                 = 6;
+
+    private static final ReplicaLagMonitor INSTANCE                = new ReplicaLagMonitor();
+
+    private static final Logger            LOG                     = Logger.getLogger(ReplicaLagMonitor.class.getName());
+
+    public static ReplicaLagMonitor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the time elapsed since the oldest of the given imports, i.e. the lag of the replica that is the most behind, or -1 if there is no import.
+     */
+    static long computeLag(long now, Collection<Date> lastImports) {
+        long lag = -1;
+        for (Date lastImport : lastImports) {
+            lag = Math.max(lag, Math.max(0, now - lastImport.getTime()));
+        }
+        return lag;
+    }
+
+    /**
+     * Parses the output of <code>lshistory -fmt "%Nd|%e\n"</code> on replica objects.
+     *
+     * @return the date of the most recent synchronization import, or null if there is none.
+     */
+    static Date parseLastImport(Reader reader) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd.HHmmss");
+        Date last = null;
+        BufferedReader br = new BufferedReader(reader);
+        for (String line = br.readLine(); line != null; line = br.readLine()) {
+            int idx = line.indexOf('|');
+            if (idx <= 0 || !StringUtils.containsIgnoreCase(line.substring(idx + 1), "import")) {
+                continue;
+            }
+            try {
+                Date date = format.parse(line.substring(0, idx).trim());
+                if (last == null || date.after(last)) {
+                    last = date;
+                }
+            } catch (ParseException e) {
+                LOG.log(Level.FINE, "Ignoring line " + line, e);
+            }
+        }
+        return last;
+    }
+
+    private final Map<String, Samples> samples = new ConcurrentHashMap<String, Samples>();
+
+    private ReplicaLagMonitor() {
+    }
+
+    /**
+     * Returns the replication lag of the given VOB, measuring it if the last measure is too old.
+     *
+     * @return the lag in milliseconds, or -1 if it couldn't be measured (e.g. the VOB isn't replicated).
+     */
+    public long getLagMillis(ClearTool ct, String vobTag) throws InterruptedException {
+        Samples vobSamples = getSamples(vobTag);
+        synchronized (vobSamples) {
+            long now = System.currentTimeMillis();
+            if (now - vobSamples.measuredAt >= MEASURE_INTERVAL_MILLIS) {
+                vobSamples.measuredAt = now;
+                try {
+                    long lag = computeLag(now, getLastImports(ct, vobTag));
+                    if (lag >= 0) {
+                        vobSamples.values.addLast(lag);
+                        if (vobSamples.values.size() > SAMPLES) {
+                            vobSamples.values.removeFirst();
+                        }
+                    }
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Couldn't measure the replication lag of " + vobTag, e);
+                }
+            }
+            return vobSamples.getMax();
+        }
+    }
+
+    /**
+     * @return the date of the last import of each replica of the VOB. Replicas without any import, such as the local one, are not listed.
+     */
+    private List<Date> getLastImports(ClearTool ct, String vobTag) throws IOException, InterruptedException {
+        List<Date> lastImports = new ArrayList<Date>();
+        for (String replica : StringUtils.split(ct.lsreplica(vobTag, "%n\\n"), "\r\n")) {
+            if (StringUtils.isBlank(replica)) {
+                continue;
+            }
+            LsHistoryCommand lsHistory = ct.lshistory().objectsOnly().considerMinorEvents().numberOfLastEvents(10).format("%Nd|%e\\n")
+                    .viewPath(ct.getLauncher().getWorkspace()).pathsInView("replica:" + replica.trim() + "@" + vobTag);
+            CleartoolOutput output = lsHistory.execute(ct.getLauncher(), ct.getLauncher().getListener());
+            Reader reader = new InputStreamReader(output.getInputStream());
+            try {
+                Date date = parseLastImport(reader);
+                if (date != null) {
+                    lastImports.add(date);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return lastImports;
+    }
+
+    private Samples getSamples(String vobTag) {
+        synchronized (samples) {
+            Samples vobSamples = samples.get(vobTag);
+            if (vobSamples == null) {
+                vobSamples = new Samples();
+                samples.put(vobTag, vobSamples);
+            }
+            return vobSamples;
+        }
+    }
+}
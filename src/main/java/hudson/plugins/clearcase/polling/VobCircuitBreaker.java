@@ -0,0 +1,194 @@
+package hudson.plugins.clearcase.polling;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Controller wide circuit breaker for the VOB groups (VOB tags or servers, see {@link PollingScheduler#getVobGroups(String[], String)}) queried by polling.
+ * <p>
+ * After a number of consecutive failures on a VOB group, the circuit opens and polls touching this group are skipped. Once the open delay has elapsed, a
+ * single poll is let through as a probe (half open state). If it succeeds the circuit closes, otherwise it opens again for twice the previous delay (up to
+ * {@link #MAX_BACKOFF_FACTOR} times the configured delay).
+ * </p>
+ */
+public final class VobCircuitBreaker {
+
+    private static final class Circuit {
+        private long  averageLatency = -1;
+        private int   backoffFactor  = 1;
+        private int   failures;
+        private long  openUntil;
+        private long  probeStarted;
+        private State state          = State.CLOSED;
+    }
+
+    public static enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    /**
+     * Cleartool error messages meaning the VOB server couldn't be reached, as opposed to errors on a given element.
+     */
+    private static final Pattern           TRANSIENT_ERROR    = Pattern.compile(
+                                                                      "(?is).*(Unable to contact|Unable to connect|RPC: |timed out|not responding|Unable to get VOB|Unable to access VOB|Unable to open VOB|Network is unreachable).*");
+
+    static final int                       MAX_BACKOFF_FACTOR = 16;
+
+    private static final VobCircuitBreaker INSTANCE           = new VobCircuitBreaker();
+
+    public static VobCircuitBreaker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return true if the given cleartool output denotes an error reaching the VOB server.
+     */
+    public static boolean isTransientError(String output) {
+        return StringUtils.isNotEmpty(output) && TRANSIENT_ERROR.matcher(output).matches();
+    }
+
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<String, Circuit>();
+
+    private VobCircuitBreaker() {
+    }
+
+    /**
+     * Checks whether a request on the given VOB group can be attempted. In half open state, only one caller is allowed until the probe reports its result.
+     *
+     * @param openDelaySeconds
+     *            the base delay during which the circuit stays open
+     */
+    public boolean allowRequest(String group, int openDelaySeconds) {
+        Circuit circuit = circuits.get(group);
+        if (circuit == null) {
+            return true;
+        }
+        synchronized (circuit) {
+            long now = System.currentTimeMillis();
+            switch (circuit.state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now < circuit.openUntil) {
+                    return false;
+                }
+                circuit.state = State.HALF_OPEN;
+                circuit.probeStarted = now;
+                return true;
+            default:
+                // A probe that never reported back (e.g. poll aborted before running cleartool) must not keep the circuit stuck
+                if (now - circuit.probeStarted > openDelaySeconds * 1000L) {
+                    circuit.probeStarted = now;
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return the average latency of the requests on the given VOB group, or -1 if unknown.
+     */
+    public long getAverageLatencyMillis(String group) {
+        Circuit circuit = circuits.get(group);
+        if (circuit == null) {
+            return -1;
+        }
+        synchronized (circuit) {
+            return circuit.averageLatency;
+        }
+    }
+
+    public int getFailures(String group) {
+        Circuit circuit = circuits.get(group);
+        if (circuit == null) {
+            return 0;
+        }
+        synchronized (circuit) {
+            return circuit.failures;
+        }
+    }
+
+    /**
+     * @return the time left before a probe is allowed on the given VOB group, 0 if the circuit isn't open.
+     */
+    public long getRetryInMillis(String group) {
+        Circuit circuit = circuits.get(group);
+        if (circuit == null) {
+            return 0;
+        }
+        synchronized (circuit) {
+            return circuit.state == State.OPEN ? Math.max(0, circuit.openUntil - System.currentTimeMillis()) : 0;
+        }
+    }
+
+    public State getState(String group) {
+        Circuit circuit = circuits.get(group);
+        if (circuit == null) {
+            return State.CLOSED;
+        }
+        synchronized (circuit) {
+            return circuit.state;
+        }
+    }
+
+    /**
+     * Records a failed request on the given VOB group.
+     *
+     * @param failureThreshold
+     *            number of consecutive failures opening the circuit. 0 or less disables the circuit breaker.
+     * @param openDelaySeconds
+     *            the base delay during which the circuit stays open
+     */
+    public void recordFailure(String group, long latencyMillis, int failureThreshold, int openDelaySeconds) {
+        Circuit circuit = getCircuit(group);
+        synchronized (circuit) {
+            updateLatency(circuit, latencyMillis);
+            circuit.failures++;
+            if (failureThreshold <= 0) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (circuit.state == State.HALF_OPEN) {
+                circuit.backoffFactor = Math.min(MAX_BACKOFF_FACTOR, circuit.backoffFactor * 2);
+                circuit.state = State.OPEN;
+                circuit.openUntil = now + openDelaySeconds * 1000L * circuit.backoffFactor;
+            } else if (circuit.state == State.CLOSED && circuit.failures >= failureThreshold) {
+                circuit.backoffFactor = 1;
+                circuit.state = State.OPEN;
+                circuit.openUntil = now + openDelaySeconds * 1000L;
+            }
+        }
+    }
+
+    /**
+     * Records a successful request on the given VOB group, closing its circuit.
+     */
+    public void recordSuccess(String group, long latencyMillis) {
+        Circuit circuit = getCircuit(group);
+        synchronized (circuit) {
+            updateLatency(circuit, latencyMillis);
+            circuit.failures = 0;
+            circuit.backoffFactor = 1;
+            circuit.state = State.CLOSED;
+        }
+    }
+
+    private Circuit getCircuit(String group) {
+        synchronized (circuits) {
+            Circuit circuit = circuits.get(group);
+            if (circuit == null) {
+                circuit = new Circuit();
+                circuits.put(group, circuit);
+            }
+            return circuit;
+        }
+    }
+
+    private void updateLatency(Circuit circuit, long latencyMillis) {
+        circuit.averageLatency = circuit.averageLatency < 0 ? latencyMillis : (circuit.averageLatency * 3 + latencyMillis) / 4;
+    }
+}
@@ -0,0 +1,53 @@
+package hudson.plugins.clearcase.ucm;
+
+import hudson.plugins.clearcase.history.AbstractHistoryAction;
+import hudson.plugins.clearcase.history.ChangeDetection;
+import hudson.plugins.clearcase.history.ProbingStrategy;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Probes a UCM stream by comparing the fingerprints of its activities (<code>cleartool lsactivity -in stream</code>) recorded in the old and new revision
+ * states. A checkin or a delivery to the stream changes the fingerprint; a single lsactivity per revision state is much cheaper than lshistory on the VOBs
+ * of the stream, which only runs when the fingerprints differ.
+ */
+public class ActivityFingerprintStrategy extends ProbingStrategy {
+
+    private static final Logger LOG = Logger.getLogger(ActivityFingerprintStrategy.class.getName());
+
+    private static String getFingerprint(UcmRevisionState state) {
+        return state != null ? state.getActivityFingerprint() : null;
+    }
+
+    @Override
+    public String getName() {
+        return ChangeDetection.ACTIVITIES.getName();
+    }
+
+    /**
+     * Only applicable to UCM streams the old and new revision states of which both have a fingerprint, states recorded before the fingerprint was configured
+     * have none.
+     */
+    @Override
+    public boolean isApplicable(AbstractHistoryAction action) {
+        if (!(action instanceof UcmHistoryAction)) {
+            return false;
+        }
+        UcmHistoryAction ucmAction = (UcmHistoryAction) action;
+        return getFingerprint(ucmAction.getOldBaseline()) != null && getFingerprint(ucmAction.getNewBaseline()) != null;
+    }
+
+    @Override
+    protected boolean probe(AbstractHistoryAction action, Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths)
+            throws IOException, InterruptedException {
+        UcmHistoryAction ucmAction = (UcmHistoryAction) action;
+        String oldFingerprint = getFingerprint(ucmAction.getOldBaseline());
+        String newFingerprint = getFingerprint(ucmAction.getNewBaseline());
+        boolean changed = !oldFingerprint.equals(newFingerprint);
+        LOG.log(Level.FINE, "Activity fingerprint {0} -> {1}", new Object[] { oldFingerprint, newFingerprint });
+        return changed;
+    }
+}
@@ -0,0 +1,221 @@
+package hudson.plugins.clearcase.ucm;
+
+import static hudson.plugins.clearcase.util.OutputFormat.NAME;
+import static hudson.plugins.clearcase.util.OutputFormat.UCM_ACTIVITY_CONTRIBUTING;
+import static hudson.plugins.clearcase.util.OutputFormat.UCM_ACTIVITY_HEADLINE;
+import static hudson.plugins.clearcase.util.OutputFormat.UCM_ACTIVITY_STREAM;
+import static hudson.plugins.clearcase.util.OutputFormat.USER_ID;
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.util.ClearCaseUtils;
+import hudson.plugins.clearcase.util.ClearToolFormatHandler;
+import hudson.plugins.clearcase.util.CommandExecutor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Fills the headline, stream and user of UCM activities, and follows the activities contributing to the integration activities, level by level: the
+ * activities of a level are listed by a few lsactivity commands run in parallel rather than one lsactivity each. Each lsactivity lists activities of the
+ * same PVOB, as its output only gives their simple names.
+ * <p>
+ * Activities already met (the given map) are not listed again, but shared by all the integration activities they contribute to.
+ * </p>
+ */
+class ActivityResolver {
+
+    /**
+     * Most characters of activity names passed to one lsactivity, so that the command line stays below the 8191 characters accepted by Windows.
+     */
+    static final int                            MAX_LENGTH              = Integer.getInteger(ActivityResolver.class.getName() + ".maxLength", 6000);
+
+    /**
+     * Lsactivity commands run at the same time for one level, within the limit of the {@link CommandExecutor} shared by all the jobs.
+     */
+    static final int                            THREADS                 = Integer.getInteger(ActivityResolver.class.getName() + ".threads", 4);
+
+    private static final ClearToolFormatHandler ACTIVITIES              = new ClearToolFormatHandler(NAME, UCM_ACTIVITY_HEADLINE, UCM_ACTIVITY_STREAM, USER_ID);
+
+    private static final ClearToolFormatHandler ACTIVITY                = new ClearToolFormatHandler(UCM_ACTIVITY_HEADLINE, UCM_ACTIVITY_STREAM, USER_ID);
+
+    private static final ClearToolFormatHandler INTEGRATION_ACTIVITIES  = new ClearToolFormatHandler(NAME, UCM_ACTIVITY_HEADLINE, UCM_ACTIVITY_STREAM,
+            USER_ID, UCM_ACTIVITY_CONTRIBUTING);
+
+    private static final ClearToolFormatHandler INTEGRATION_ACTIVITY    = new ClearToolFormatHandler(UCM_ACTIVITY_HEADLINE, UCM_ACTIVITY_STREAM, USER_ID,
+            UCM_ACTIVITY_CONTRIBUTING);
+
+    private final Map<String, UcmActivity>      activities;
+    private final ClearTool                     cleartool;
+    private final int                           maxDepth;
+    private final String                        viewPath;
+
+    /**
+     * @param maxDepth
+     *            levels of contributing activities to follow
+     * @param activities
+     *            the activities already met, by name. The contributing activities listed are added to it.
+     */
+    ActivityResolver(ClearTool cleartool, String viewPath, int maxDepth, Map<String, UcmActivity> activities) {
+        this.cleartool = cleartool;
+        this.viewPath = viewPath;
+        this.maxDepth = maxDepth;
+        this.activities = activities;
+    }
+
+    void resolve(Collection<UcmActivity> roots) throws IOException, InterruptedException {
+        List<UcmActivity> level = new ArrayList<UcmActivity>();
+        for (UcmActivity activity : roots) {
+            if (StringUtils.isBlank(activity.getName())) {
+                activity.setName("Unable to get activity name");
+            } else {
+                level.add(activity);
+            }
+        }
+        for (int depth = 0; !level.isEmpty(); depth++) {
+            Map<UcmActivity, String[]> contributors = list(level);
+            List<UcmActivity> next = new ArrayList<UcmActivity>();
+            if (depth < maxDepth) {
+                for (UcmActivity activity : level) {
+                    String[] names = contributors.get(activity);
+                    if (names == null) {
+                        continue;
+                    }
+                    for (String name : names) {
+                        UcmActivity contributing = activities.get(name);
+                        if (contributing == null) {
+                            contributing = new UcmActivity();
+                            contributing.setName(name);
+                            activities.put(name, contributing);
+                            next.add(contributing);
+                        }
+                        activity.addSubActivity(contributing);
+                    }
+                }
+            }
+            level = next;
+        }
+    }
+
+    private Map<String, UcmActivity> byName(List<UcmActivity> activities, boolean integration) {
+        Map<String, UcmActivity> byName = new LinkedHashMap<String, UcmActivity>();
+        for (UcmActivity activity : activities) {
+            if (activity.isIntegrationActivity() == integration) {
+                byName.put(activity.getName(), activity);
+            }
+        }
+        return byName;
+    }
+
+    /**
+     * Groups the names of the given activities by PVOB, the names without PVOB being grouped together.
+     */
+    private Collection<List<String>> byPvob(Collection<String> names) {
+        Map<String, List<String>> byPvob = new LinkedHashMap<String, List<String>>();
+        for (String name : names) {
+            String pvob = StringUtils.substringAfter(name, "@");
+            List<String> pvobNames = byPvob.get(pvob);
+            if (pvobNames == null) {
+                pvobNames = new ArrayList<String>();
+                byPvob.put(pvob, pvobNames);
+            }
+            pvobNames.add(name);
+        }
+        return byPvob.values();
+    }
+
+    /**
+     * Lists the activities of a level, returning the names of the activities contributing to its integration activities. Integration activities are listed
+     * apart, as only they need their contributing activities.
+     */
+    private Map<UcmActivity, String[]> list(List<UcmActivity> level) throws IOException, InterruptedException {
+        List<Callable<Map<UcmActivity, String[]>>> tasks = new ArrayList<Callable<Map<UcmActivity, String[]>>>();
+        for (boolean integration : new boolean[] { true, false }) {
+            final boolean listContributors = integration;
+            final Map<String, UcmActivity> byName = byName(level, integration);
+            for (List<String> pvobNames : byPvob(byName.keySet())) {
+                for (final String[] chunk : ClearCaseUtils.chunkSelectors(pvobNames, MAX_LENGTH)) {
+                    tasks.add(new Callable<Map<UcmActivity, String[]>>() {
+                        @Override
+                        public Map<UcmActivity, String[]> call() throws IOException, InterruptedException {
+                            return list(chunk, byName, listContributors);
+                        }
+                    });
+                }
+            }
+        }
+        Map<UcmActivity, String[]> contributors = new IdentityHashMap<UcmActivity, String[]>();
+        for (Map<UcmActivity, String[]> result : CommandExecutor.invokeAll(tasks, THREADS)) {
+            contributors.putAll(result);
+        }
+        return contributors;
+    }
+
+    /**
+     * Lists a chunk of activities with a single lsactivity, each output line starting with the name of its activity. Activities missing from the output, or
+     * all of them when one can't be listed, are listed again one at a time.
+     */
+    private Map<UcmActivity, String[]> list(String[] names, Map<String, UcmActivity> byName, boolean integration) throws IOException,
+            InterruptedException {
+        Map<UcmActivity, String[]> contributors = new IdentityHashMap<UcmActivity, String[]>();
+        if (names.length == 1) {
+            UcmActivity activity = byName.get(names[0]);
+            ClearToolFormatHandler handler = integration ? INTEGRATION_ACTIVITY : ACTIVITY;
+            BufferedReader reader = new BufferedReader(cleartool.lsactivity(names[0], handler.getFormat(), viewPath));
+            try {
+                Matcher matcher = handler.checkLine(reader.readLine());
+                if (matcher != null) {
+                    read(activity, matcher, 0, integration, contributors);
+                }
+            } finally {
+                reader.close();
+            }
+            return contributors;
+        }
+        // %n prints the simple name, whatever the selector given, which is unique as the chunk is within one PVOB
+        Map<String, UcmActivity> bySimpleName = new LinkedHashMap<String, UcmActivity>();
+        for (String name : names) {
+            bySimpleName.put(StringUtils.substringBefore(StringUtils.removeStart(name, "activity:"), "@"), byName.get(name));
+        }
+        ClearToolFormatHandler handler = integration ? INTEGRATION_ACTIVITIES : ACTIVITIES;
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(cleartool.lsactivity(names, handler.getFormat(), viewPath));
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                Matcher matcher = handler.checkLine(line);
+                if (matcher != null) {
+                    UcmActivity activity = bySimpleName.remove(matcher.group(1));
+                    if (activity != null) {
+                        read(activity, matcher, 1, integration, contributors);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // One of the activities can't be listed
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+        for (UcmActivity activity : bySimpleName.values()) {
+            contributors.putAll(list(new String[] { activity.getName() }, byName, integration));
+        }
+        return contributors;
+    }
+
+    private void read(UcmActivity activity, Matcher matcher, int offset, boolean integration, Map<UcmActivity, String[]> contributors) {
+        activity.setHeadline(matcher.group(offset + 1));
+        activity.setStream(matcher.group(offset + 2));
+        activity.setUser(matcher.group(offset + 3));
+        if (integration) {
+            contributors.put(activity, StringUtils.split(matcher.group(offset + 4), ' '));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package hudson.plugins.clearcase.ucm;
+
+import hudson.plugins.clearcase.ClearTool;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * The ClearCase work left to a baseline publisher once the build result is known: promotion, recommendation, unlock... It holds everything it needs, so that
+ * it can be run later by the {@link BaselinePublicationQueue}, after a restart if need be.
+ */
+public abstract class BaselinePublication {
+
+    /**
+     * @return the stream the publications of which are run one at a time, in the order of the builds
+     */
+    public abstract String getStream();
+
+    /**
+     * Runs the publication. It may be run again after a failure, so each of its steps must be harmless to repeat.
+     */
+    public abstract void publish(ClearTool clearTool, PrintStream logger) throws IOException, InterruptedException;
+}
@@ -0,0 +1,61 @@
+package hudson.plugins.clearcase.ucm;
+
+import hudson.model.Action;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Records on a build the outcome of its baseline publication run by the {@link BaselinePublicationQueue}.
+ */
+@ExportedBean
+public class BaselinePublicationAction implements Action {
+
+    public static enum State {
+        DONE, FAILED, QUEUED, RETRYING
+    }
+
+    private int    attempts;
+
+    private String log;
+
+    private State  state = State.QUEUED;
+
+    @Exported(visibility = 3)
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    /**
+     * @return the output of the last attempt
+     */
+    public String getLog() {
+        return log;
+    }
+
+    @Exported(visibility = 3)
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+
+    synchronized void record(State state, int attempts, String log) {
+        this.state = state;
+        this.attempts = attempts;
+        this.log = log;
+    }
+}
@@ -0,0 +1,327 @@
+package hudson.plugins.clearcase.ucm;
+
+import hudson.AbortException;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Computer;
+import hudson.model.Hudson;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.plugins.clearcase.ClearCaseUcmSCM;
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.ucm.BaselinePublicationAction.State;
+import hudson.scm.SCM;
+import hudson.util.StreamTaskListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Controller wide queue of the baseline publications left by the builds, so that the builds release their executor as soon as their result is known. The
+ * queue is saved under JENKINS_HOME and resumed after a restart.
+ * <p>
+ * A few publications run at the same time, but those of a stream run one at a time in the order of the builds. A failed publication is retried up to
+ * {@link #ATTEMPTS} times before the next ones of its stream run. The outcome is recorded on the build with a {@link BaselinePublicationAction}.
+ * </p>
+ * <p>
+ * Publications run on the node the build ran on, like the rest of the ClearCase work. They wait for that node while it is offline, as it is after a restart
+ * until its agent reconnects, and fail without retry once it is gone.
+ * </p>
+ */
+public class BaselinePublicationQueue {
+
+    /**
+     * A publication waiting in the queue, and the build it comes from.
+     */
+    static final class Entry {
+        private int                       attempts;
+        private final int                 buildNumber;
+        private final String              job;
+        private final BaselinePublication publication;
+
+        Entry(String job, int buildNumber, BaselinePublication publication) {
+            this.job = job;
+            this.buildNumber = buildNumber;
+            this.publication = publication;
+        }
+
+        @Override
+        public String toString() {
+            return job + " #" + buildNumber;
+        }
+    }
+
+    /**
+     * Thrown when the node a publication runs on is offline, the publication is tried again once the node is back.
+     */
+    static final class NodeOfflineException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        NodeOfflineException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Times a publication is tried.
+     */
+    static final int                        ATTEMPTS    = Integer.getInteger(BaselinePublicationQueue.class.getName() + ".attempts", 3);
+
+    /**
+     * Time between two attempts of a publication.
+     */
+    static final long                       RETRY_DELAY = TimeUnit.SECONDS.toMillis(Long.getLong(BaselinePublicationQueue.class.getName()
+            + ".retryDelaySeconds", 60));
+
+    /**
+     * Publications run at the same time.
+     */
+    static final int                        THREADS     = Integer.getInteger(BaselinePublicationQueue.class.getName() + ".threads", 2);
+
+    private static final Logger             LOG         = Logger.getLogger(BaselinePublicationQueue.class.getName());
+
+    private static BaselinePublicationQueue instance;
+
+    /**
+     * @return the queue of the controller, or null outside of a running controller
+     */
+    public static synchronized BaselinePublicationQueue getInstance() {
+        if (instance == null && Hudson.getInstance() != null) {
+            instance = new BaselinePublicationQueue(new XmlFile(new File(Hudson.getInstance().getRootDir(), "clearcase-baseline-publications.xml")));
+        }
+        return instance;
+    }
+
+    /**
+     * Runs the publications left by the previous start.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void resume() {
+        BaselinePublicationQueue queue = getInstance();
+        if (queue != null) {
+            queue.dispatch();
+        }
+    }
+
+    private final List<Entry>              entries = new ArrayList<Entry>();
+
+    private final ScheduledExecutorService executor;
+
+    private final XmlFile                  file;
+
+    private final long                     retryDelay;
+
+    /**
+     * Streams with a publication running or waiting for its next attempt.
+     */
+    private final Set<String>              streams = new HashSet<String>();
+
+    BaselinePublicationQueue(XmlFile file) {
+        this(file, RETRY_DELAY);
+    }
+
+    @SuppressWarnings("unchecked")
+    BaselinePublicationQueue(XmlFile file, long retryDelay) {
+        this.file = file;
+        this.retryDelay = retryDelay;
+        if (file.exists()) {
+            try {
+                entries.addAll((List<Entry>) file.read());
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to read the queued baseline publications from " + file, e);
+            }
+        }
+        this.executor = new ScheduledThreadPoolExecutor(THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ClearCase baseline publication");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queues the publication of a build, which is recorded on the build as queued.
+     */
+    public void add(AbstractBuild<?, ?> build, BaselinePublication publication) throws IOException {
+        build.addAction(new BaselinePublicationAction());
+        build.save();
+        synchronized (this) {
+            entries.add(new Entry(build.getProject().getFullName(), build.getNumber(), publication));
+            save();
+        }
+        dispatch();
+    }
+
+    /**
+     * @return the number of publications waiting or running
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Creates the cleartool the publication runs with, on the node the build ran on.
+     * 
+     * @throws AbortException
+     *             if the node is gone, the publication is then not retried
+     * @throws NodeOfflineException
+     *             if the node is offline, the publication then waits for it
+     */
+    ClearTool createClearTool(AbstractBuild<?, ?> build, TaskListener listener) throws IOException, InterruptedException {
+        SCM scm = build.getProject().getScm();
+        if (!(scm instanceof ClearCaseUcmSCM)) {
+            throw new AbortException("Not a UCM clearcase SCM, cannot publish the baseline");
+        }
+        Node node = build.getBuiltOn();
+        if (node == null) {
+            throw new AbortException("The node " + build.getBuiltOnStr() + " the build ran on is gone, cannot publish the baseline");
+        }
+        Computer computer = node.toComputer();
+        if (computer == null || computer.isOffline()) {
+            throw new NodeOfflineException("The node " + build.getBuiltOnStr() + " the build ran on is offline");
+        }
+        return ((ClearCaseUcmSCM) scm).createClearTool(build, node.createLauncher(listener));
+    }
+
+    /**
+     * Starts the first publication of each stream that has none running.
+     */
+    synchronized void dispatch() {
+        for (final Entry entry : entries) {
+            if (streams.add(entry.publication.getStream())) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        publish(entry);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * @return the build the entry comes from, or null if it was deleted
+     */
+    AbstractBuild<?, ?> getBuild(Entry entry) {
+        AbstractProject<?, ?> project = Hudson.getInstance().getItemByFullName(entry.job, AbstractProject.class);
+        return project != null ? project.getBuildByNumber(entry.buildNumber) : null;
+    }
+
+    /**
+     * @return the publications waiting or running, in the order they were queued
+     */
+    synchronized List<Entry> getEntries() {
+        return new ArrayList<Entry>(entries);
+    }
+
+    private synchronized void finish(Entry entry) {
+        entries.remove(entry);
+        streams.remove(entry.publication.getStream());
+        save();
+        dispatch();
+    }
+
+    private void publish(final Entry entry) {
+        AbstractBuild<?, ?> build = getBuild(entry);
+        if (build == null) {
+            LOG.log(Level.INFO, "Build {0} is gone, its baseline publication is dropped", entry);
+            finish(entry);
+            return;
+        }
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        StreamTaskListener listener = new StreamTaskListener(log);
+        State state;
+        boolean retry = true;
+        boolean interrupted = false;
+        try {
+            entry.publication.publish(createClearTool(build, listener), listener.getLogger());
+            state = State.DONE;
+        } catch (NodeOfflineException e) {
+            // Not an attempt, the publication waits for the node
+            LOG.log(Level.FINE, "{0}, the baseline publication of {1} waits for it", new Object[] { e.getMessage(), entry });
+            schedule(entry);
+            return;
+        } catch (InterruptedException e) {
+            // Counted as a failed attempt, so that the stream isn't left blocked; a publication interrupted by a shutdown is run again at the next start
+            listener.getLogger().println("Interrupted while publishing the baseline");
+            state = State.FAILED;
+            interrupted = true;
+        } catch (AbortException e) {
+            listener.getLogger().println(e.getMessage());
+            state = State.FAILED;
+            retry = false;
+        } catch (Exception e) {
+            listener.getLogger().println("Failed to publish the baseline: " + e);
+            LOG.log(Level.FINE, "Failed to publish the baseline of " + entry, e);
+            state = State.FAILED;
+        }
+        synchronized (this) {
+            entry.attempts++;
+            if (state == State.FAILED && retry && entry.attempts < ATTEMPTS) {
+                state = State.RETRYING;
+                // Steps already made are recorded by the publication
+                save();
+            }
+        }
+        listener.getLogger().flush();
+        record(build, state, entry.attempts, log.toString());
+        if (state == State.RETRYING) {
+            schedule(entry);
+        } else {
+            finish(entry);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void record(AbstractBuild<?, ?> build, State state, int attempts, String log) {
+        BaselinePublicationAction action = build.getAction(BaselinePublicationAction.class);
+        if (action == null) {
+            action = new BaselinePublicationAction();
+            build.addAction(action);
+        }
+        action.record(state, attempts, log);
+        try {
+            build.save();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to record the baseline publication of " + build, e);
+        }
+    }
+
+    private synchronized void save() {
+        try {
+            file.write(new ArrayList<Entry>(entries));
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to save the queued baseline publications to " + file, e);
+        }
+    }
+
+    /**
+     * Runs the entry again after the retry delay, its stream stays busy meanwhile.
+     */
+    private void schedule(final Entry entry) {
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                publish(entry);
+            }
+        }, retryDelay, TimeUnit.MILLISECONDS);
+    }
+}
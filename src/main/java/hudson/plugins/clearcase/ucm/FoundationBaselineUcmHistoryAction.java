@@ -24,6 +24,7 @@
 package hudson.plugins.clearcase.ucm;
 
 import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.action.ChangeLogWriter;
 import hudson.plugins.clearcase.history.Filter;
 import hudson.plugins.clearcase.ucm.service.FacadeService;
 import hudson.scm.ChangeLogSet.Entry;
@@ -53,4 +54,10 @@ public class FoundationBaselineUcmHistoryAction extends UcmHistoryAction {
         return hasChangesOnBaseline(time, viewPath, viewTag, branchNames, viewPaths);
     }
 
+    @Override
+    public int writeChanges(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths, ChangeLogWriter writer)
+            throws IOException, InterruptedException {
+        return writeEntries(getChanges(time, viewPath, viewTag, branchNames, viewPaths), writer);
+    }
+
 }
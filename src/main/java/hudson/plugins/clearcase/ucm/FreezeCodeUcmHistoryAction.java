@@ -31,15 +31,19 @@ import hudson.model.Run;
 import hudson.plugins.clearcase.Baseline;
 import hudson.plugins.clearcase.ClearCaseDataAction;
 import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.action.ChangeLogWriter;
 import hudson.plugins.clearcase.action.UcmDynamicCheckoutAction;
 import hudson.plugins.clearcase.history.Filter;
 import hudson.plugins.clearcase.history.HistoryEntry;
 import hudson.plugins.clearcase.ucm.service.FacadeService;
+import hudson.plugins.clearcase.ucm.service.StreamService;
 import hudson.scm.ChangeLogSet.Entry;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.io.StringReader;
+import java.text.MessageFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -47,10 +51,27 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class FreezeCodeUcmHistoryAction extends UcmHistoryAction {
-    private static final String       BASELINE_COMMENT = "hudson_poll_";
-    private static final String       BASELINE_NAME    = "hudson_poll_";
+    /**
+     * What a job found on its stream the last time it polled without finding changes.
+     */
+    private static final class Probe {
+        private final String fingerprint;
+        private final int    skipped;
+
+        Probe(String fingerprint, int skipped) {
+            this.fingerprint = fingerprint;
+            this.skipped = skipped;
+        }
+    }
+
+    private static final String                       BASELINE_COMMENT = "hudson_poll_";
+    private static final String                       BASELINE_NAME    = "hudson_poll_";
+
+    private static final ConcurrentMap<String, Probe> PROBES           = new ConcurrentHashMap<String, Probe>();
 
     private final AbstractBuild<?, ?> build;
     private final String              stream;
@@ -120,6 +141,36 @@ public class FreezeCodeUcmHistoryAction extends UcmHistoryAction {
 
     @Override
     public boolean hasChanges(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths) throws IOException, InterruptedException {
+        String viewName = UcmDynamicCheckoutAction.getConfiguredStreamViewName(build.getProject().getName(), getStream());
+        String key = build.getProject().getFullName() + '\n' + getStream();
+        PrintStream logger = cleartool.getLauncher().getListener().getLogger();
+
+        // check for new work on the stream before making a baseline
+        String fingerprint = probe(viewName);
+        Probe probe = PROBES.get(key);
+        if (probe != null && probe.fingerprint.equals(fingerprint)) {
+            PROBES.put(key, new Probe(fingerprint, probe.skipped + 1));
+            logger.println(MessageFormat.format("No new work on stream {0} since the last poll, no baseline made ({1} poll baseline(s) skipped)",
+                    getStream(), probe.skipped + 1));
+            return false;
+        }
+        boolean changes = hasChangesSinceLastBuild();
+        if (changes) {
+            // new work is only acknowledged once a build has used it
+            PROBES.remove(key);
+        } else {
+            PROBES.put(key, new Probe(fingerprint, probe == null ? 0 : probe.skipped));
+        }
+        return changes;
+    }
+
+    @Override
+    public int writeChanges(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths, ChangeLogWriter writer)
+            throws IOException, InterruptedException {
+        return writeEntries(getChanges(time, viewPath, viewTag, branchNames, viewPaths), writer);
+    }
+
+    private boolean hasChangesSinceLastBuild() throws IOException, InterruptedException {
         // make baseline on the configured stream.
         SimpleDateFormat formatter = new SimpleDateFormat("d-MMM-yy_HH_mm_ss", Locale.US);
         formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
@@ -198,6 +249,15 @@ public class FreezeCodeUcmHistoryAction extends UcmHistoryAction {
         return changedVersionList;
     }
 
+    /**
+     * @return a fingerprint of the foundation baselines of the stream and of its activities, which changes when new work is rebased, delivered or checked in
+     */
+    private String probe(String viewName) throws IOException, InterruptedException {
+        StreamService streamService = getFacadeService().getStreamService();
+        String foundationBaselines = cleartool.lsstream(getStream(), null, "%[found_bls]Xp");
+        return foundationBaselines + '\n' + streamService.getActivityFingerprint(streamService.parse(getStream()), viewName);
+    }
+
     private List<HistoryEntry> translateChangedVersionsToEnteries(List<String> changedVerionsList) throws IOException, InterruptedException {
         List<HistoryEntry> entries = new ArrayList<HistoryEntry>();
         StringBuilder entriesDesc = new StringBuilder();
@@ -0,0 +1,97 @@
+package hudson.plugins.clearcase.ucm;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Hudson;
+import hudson.model.TaskListener;
+import hudson.plugins.clearcase.ClearCaseUcmSCM;
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.ucm.model.Stream;
+import hudson.plugins.clearcase.ucm.model.UcmSelector;
+import hudson.plugins.clearcase.ucm.service.StreamCache;
+import hudson.plugins.clearcase.util.BuildVariableResolver;
+import hudson.util.LogTaskListener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fills the {@link StreamCache} in the background once the jobs are loaded, with the streams of the UCM jobs, so that their first polls find the
+ * baselines of their stream already read.
+ * <p>
+ * The cache lives on the controller, so only the jobs polling on the controller are considered: like the polling, cleartool runs in the workspace of the
+ * last build having one, with the variables of that build.
+ * </p>
+ */
+public final class StreamCachePrefetcher {
+
+    private static final Logger LOG = Logger.getLogger(StreamCachePrefetcher.class.getName());
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void prefetch() {
+        final Hudson hudson = Hudson.getInstance();
+        final List<AbstractProject<?, ?>> projects = new ArrayList<AbstractProject<?, ?>>();
+        for (AbstractProject<?, ?> project : hudson.getAllItems(AbstractProject.class)) {
+            if (!project.isDisabled() && project.getScm() instanceof ClearCaseUcmSCM) {
+                projects.add(project);
+            }
+        }
+        if (projects.isEmpty()) {
+            return;
+        }
+        Thread thread = new Thread("ClearCase UCM stream cache prefetch") {
+            @Override
+            public void run() {
+                // Looking for the builds with a workspace may load them, so it isn't done while Hudson starts
+                Map<String, AbstractBuild<?, ?>> streams = getStreamsPolledOnController(hudson, projects);
+                TaskListener listener = new LogTaskListener(LOG, Level.FINE);
+                for (Map.Entry<String, AbstractBuild<?, ?>> stream : streams.entrySet()) {
+                    AbstractBuild<?, ?> build = stream.getValue();
+                    ClearCaseUcmSCM scm = (ClearCaseUcmSCM) build.getProject().getScm();
+                    try {
+                        ClearTool clearTool = scm.createClearTool(new BuildVariableResolver(build),
+                                scm.createClearToolLauncher(listener, build.getWorkspace(), hudson.createLauncher(listener)));
+                        StreamCache.getInstance().prefetch(clearTool, UcmSelector.parse(stream.getKey(), Stream.class).getSelector());
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (Exception e) {
+                        LOG.log(Level.WARNING, "Unable to prefetch the baselines of the stream " + stream.getKey(), e);
+                    }
+                }
+                LOG.log(Level.FINE, "Baselines of {0} stream(s) prefetched", streams.size());
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the streams of the given jobs whose polling runs on the controller, with the build the polling would run cleartool for. One job per stream is
+     * enough.
+     */
+    private static Map<String, AbstractBuild<?, ?>> getStreamsPolledOnController(Hudson hudson, List<AbstractProject<?, ?>> projects) {
+        Map<String, AbstractBuild<?, ?>> streams = new LinkedHashMap<String, AbstractBuild<?, ?>>();
+        for (AbstractProject<?, ?> project : projects) {
+            String stream = ((ClearCaseUcmSCM) project.getScm()).getStream();
+            // Streams depending on build parameters are only known at build time
+            if (stream == null || stream.indexOf('$') >= 0 || streams.containsKey(stream)) {
+                continue;
+            }
+            // The polling runs on the node of the last build having a workspace, and builds at once without one
+            AbstractBuild<?, ?> build = project.getSomeBuildWithWorkspace();
+            if (build != null && build.getBuiltOn() == hudson) {
+                streams.put(stream, build);
+            }
+        }
+        return streams;
+    }
+
+    private StreamCachePrefetcher() {
+    }
+}
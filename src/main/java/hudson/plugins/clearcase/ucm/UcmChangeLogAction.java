@@ -31,9 +31,6 @@ import static hudson.plugins.clearcase.util.OutputFormat.LINEEND;
 import static hudson.plugins.clearcase.util.OutputFormat.NAME_ELEMENTNAME;
 import static hudson.plugins.clearcase.util.OutputFormat.NAME_VERSIONID;
 import static hudson.plugins.clearcase.util.OutputFormat.OPERATION;
-import static hudson.plugins.clearcase.util.OutputFormat.UCM_ACTIVITY_CONTRIBUTING;
-import static hudson.plugins.clearcase.util.OutputFormat.UCM_ACTIVITY_HEADLINE;
-import static hudson.plugins.clearcase.util.OutputFormat.UCM_ACTIVITY_STREAM;
 import static hudson.plugins.clearcase.util.OutputFormat.UCM_VERSION_ACTIVITY;
 import static hudson.plugins.clearcase.util.OutputFormat.USER_ID;
 import hudson.plugins.clearcase.ClearTool;
@@ -61,11 +58,9 @@ import java.util.regex.Matcher;
  */
 public class UcmChangeLogAction implements ChangeLogAction {
 
-    private static final String[]    ACTIVITY_FORMAT             = { UCM_ACTIVITY_HEADLINE, UCM_ACTIVITY_STREAM, USER_ID, };
     // full lshistory output and parsing
     private static final String[]    HISTORY_FORMAT              = { DATE_NUMERIC, NAME_ELEMENTNAME, NAME_VERSIONID, UCM_VERSION_ACTIVITY, EVENT, OPERATION,
         USER_ID                                             };
-    private static final String[]    INTEGRATION_ACTIVITY_FORMAT = { UCM_ACTIVITY_HEADLINE, UCM_ACTIVITY_STREAM, USER_ID, UCM_ACTIVITY_CONTRIBUTING };
 
     private Map<String, UcmActivity> activityNameToEntry         = new HashMap<String, UcmActivity>();
 
@@ -131,51 +126,9 @@ public class UcmChangeLogAction implements ChangeLogAction {
         this.extendedViewPath = path;
     }
 
-    private void callLsActivity(UcmActivity activity, String viewname, int numberOfContributingActivitiesToFollow) throws IOException, InterruptedException {
-        ClearToolFormatHandler handler = null;
-        if (activity.isIntegrationActivity()) {
-            handler = new ClearToolFormatHandler(INTEGRATION_ACTIVITY_FORMAT);
-        } else {
-            handler = new ClearToolFormatHandler(ACTIVITY_FORMAT);
-        }
-
-        BufferedReader reader = new BufferedReader(cleartool.lsactivity(activity.getName(), handler.getFormat(), viewname));
-
-        String line = reader.readLine();
-        Matcher matcher = handler.checkLine(line);
-        if (matcher != null) {
-            activity.setHeadline(matcher.group(1));
-            activity.setStream(matcher.group(2));
-            activity.setUser(matcher.group(3));
-
-            if (activity.isIntegrationActivity() && numberOfContributingActivitiesToFollow > 0) {
-
-                String contributingActivities = matcher.group(4);
-
-                for (String contributing : contributingActivities.split(" ")) {
-
-                    UcmActivity subActivity = null;
-                    UcmActivity cachedActivity = activityNameToEntry.get(contributing);
-
-                    if (cachedActivity == null) {
-                        subActivity = new UcmActivity();
-                        subActivity.setName(contributing);
-                        callLsActivity(subActivity, viewname, --numberOfContributingActivitiesToFollow);
-                        activityNameToEntry.put(contributing, subActivity);
-                    } else {
-                        /* do deep copy */
-                        subActivity = new UcmActivity(cachedActivity);
-                    }
-                    activity.addSubActivity(subActivity);
-                }
-            }
-        }
-
-        reader.close();
-    }
-
     private List<UcmActivity> parseHistory(BufferedReader reader, String viewname) throws InterruptedException, IOException {
         List<UcmActivity> result = new ArrayList<UcmActivity>();
+        List<UcmActivity> unresolved = new ArrayList<UcmActivity>();
         try {
             StringBuilder commentBuilder = new StringBuilder();
             String line = reader.readLine();
@@ -232,7 +185,7 @@ public class UcmChangeLogAction implements ChangeLogAction {
                             activity = new UcmActivity();
                             activity.setName(activityName);
                             if (activityName.length() != 0) {
-                                callLsActivity(activity, viewname, 1);
+                                unresolved.add(activity);
                             } else {
                                 activity.setHeadline("Unknown activity");
                                 activity.setUser("Unknown");
@@ -255,6 +208,7 @@ public class UcmChangeLogAction implements ChangeLogAction {
             if (currentFile != null) {
                 currentFile.setComment(commentBuilder.toString());
             }
+            new ActivityResolver(cleartool, viewname, 1, activityNameToEntry).resolve(unresolved);
         } catch (ParseException ex) {
             IOException ioe = new IOException("Could not parse cleartool output");
             ioe.setStackTrace(ex.getStackTrace());
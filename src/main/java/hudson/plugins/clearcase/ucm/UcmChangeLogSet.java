@@ -83,42 +83,49 @@ public class UcmChangeLogSet extends ChangeLogSet<UcmActivity> {
     public static void saveToChangeLog(OutputStream outputStream, List<UcmActivity> history) throws IOException {
         PrintStream stream = new PrintStream(outputStream, false, "UTF-8");
 
-        stream.println("<?xml version='1.0' encoding='UTF-8'?>");
-        stream.println("<history>");
+        ClearCaseChangeLogSet.writeHeader(stream);
         for (UcmActivity entry : history) {
-            stream.println("\t<entry>");
-            String[] activityValues = getEntryAsStrings(entry);
-            for (int tag = 0; tag < ACTIVITY_TAGS.length; tag++) {
-                stream.print("\t\t<");
-                stream.print(UcmChangeLogSet.ACTIVITY_TAGS[tag]);
+            writeEntry(stream, entry);
+        }
+        ClearCaseChangeLogSet.writeFooter(stream);
+        stream.close();
+    }
+
+    /**
+     * Writes a single activity as xml, between {@link ClearCaseChangeLogSet#writeHeader(PrintStream)} and
+     * {@link ClearCaseChangeLogSet#writeFooter(PrintStream)}.
+     */
+    public static void writeEntry(PrintStream stream, UcmActivity entry) {
+        stream.println("\t<entry>");
+        String[] activityValues = getEntryAsStrings(entry);
+        for (int tag = 0; tag < ACTIVITY_TAGS.length; tag++) {
+            stream.print("\t\t<");
+            stream.print(UcmChangeLogSet.ACTIVITY_TAGS[tag]);
+            stream.print('>');
+            stream.print(ClearCaseChangeLogSet.escapeForXml(activityValues[tag]));
+            stream.print("</");
+            stream.print(UcmChangeLogSet.ACTIVITY_TAGS[tag]);
+            stream.println('>');
+        }
+        for (UcmActivity subActivity : entry.getSubActivities()) {
+            writeSubActivity(stream, subActivity);
+        }
+        for (UcmActivity.File file : entry.getFiles()) {
+            stream.println("\t\t<file>");
+            String[] fileValues = getFileAsStrings(file);
+            for (int tag = 0; tag < FILE_TAGS.length; tag++) {
+                stream.print("\t\t\t<");
+                stream.print(UcmChangeLogSet.FILE_TAGS[tag]);
                 stream.print('>');
-                stream.print(ClearCaseChangeLogSet.escapeForXml(activityValues[tag]));
+                stream.print(ClearCaseChangeLogSet.escapeForXml(fileValues[tag]));
                 stream.print("</");
-                stream.print(UcmChangeLogSet.ACTIVITY_TAGS[tag]);
+                stream.print(UcmChangeLogSet.FILE_TAGS[tag]);
                 stream.println('>');
+
             }
-            for (UcmActivity subActivity : entry.getSubActivities()) {
-                writeSubActivity(stream, subActivity);
-            }
-            for (UcmActivity.File file : entry.getFiles()) {
-                stream.println("\t\t<file>");
-                String[] fileValues = getFileAsStrings(file);
-                for (int tag = 0; tag < FILE_TAGS.length; tag++) {
-                    stream.print("\t\t\t<");
-                    stream.print(UcmChangeLogSet.FILE_TAGS[tag]);
-                    stream.print('>');
-                    stream.print(ClearCaseChangeLogSet.escapeForXml(fileValues[tag]));
-                    stream.print("</");
-                    stream.print(UcmChangeLogSet.FILE_TAGS[tag]);
-                    stream.println('>');
-
-                }
-                stream.println("\t\t</file>");
-            }
-            stream.println("\t</entry>");
+            stream.println("\t\t</file>");
         }
-        stream.println("</history>");
-        stream.close();
+        stream.println("\t</entry>");
     }
 
     private static String[] getEntryAsStrings(UcmActivity entry) {
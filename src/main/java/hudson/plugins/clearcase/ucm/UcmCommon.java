@@ -29,6 +29,8 @@ import hudson.plugins.clearcase.Baseline;
 import hudson.plugins.clearcase.ClearTool;
 import hudson.plugins.clearcase.ClearTool.DiffBlOptions;
 import hudson.plugins.clearcase.Component;
+import hudson.plugins.clearcase.ucm.service.DiffBlCache;
+import hudson.plugins.clearcase.ucm.service.StreamCache;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -149,13 +151,19 @@ public class UcmCommon {
      */
     public static List<String> getDiffBlVersions(ClearTool clearTool, String viewRootDirectory, String bl1, String bl2) throws IOException,
     InterruptedException {
-        Reader rd = clearTool.diffbl(EnumSet.of(DiffBlOptions.VERSIONS), bl1, bl2, viewRootDirectory);
+        DiffBlCache diffBlCache = DiffBlCache.getInstance();
+        Reader rd;
+        if (diffBlCache != null) {
+            rd = diffBlCache.diffbl(clearTool, EnumSet.of(DiffBlOptions.VERSIONS), bl1, bl2, viewRootDirectory);
+        } else {
+            rd = clearTool.diffbl(EnumSet.of(DiffBlOptions.VERSIONS), bl1, bl2, viewRootDirectory);
+        }
 
         BufferedReader br = new BufferedReader(rd);
 
         List<String> versionList = new ArrayList<String>();
         // remove ">>" from result
-        for (String line = br.readLine(); br.ready(); line = br.readLine()) {
+        for (String line = br.readLine(); line != null; line = br.readLine()) {
             if (line.startsWith(">>")) {
                 line = line.replaceAll(">>", "");
                 versionList.add(line.trim());
@@ -333,7 +341,12 @@ public class UcmCommon {
             }
             sb.append(bl.getBaselineName());
         }
-        clearTool.rebaseDynamic(viewName, sb.toString());
+        try {
+            clearTool.rebaseDynamic(viewName, sb.toString());
+        } finally {
+            // The stream of the view isn't known here
+            StreamCache.getInstance().invalidateAll();
+        }
     }
 
     private static List<Baseline> getBaselinesDesc(ClearTool clearTool, String stream, String format) throws IOException, InterruptedException {
@@ -29,17 +29,16 @@ import static hudson.plugins.clearcase.util.OutputFormat.EVENT;
 import static hudson.plugins.clearcase.util.OutputFormat.NAME_ELEMENTNAME;
 import static hudson.plugins.clearcase.util.OutputFormat.NAME_VERSIONID;
 import static hudson.plugins.clearcase.util.OutputFormat.OPERATION;
-import static hudson.plugins.clearcase.util.OutputFormat.UCM_ACTIVITY_CONTRIBUTING;
-import static hudson.plugins.clearcase.util.OutputFormat.UCM_ACTIVITY_HEADLINE;
-import static hudson.plugins.clearcase.util.OutputFormat.UCM_ACTIVITY_STREAM;
 import static hudson.plugins.clearcase.util.OutputFormat.UCM_VERSION_ACTIVITY;
 import static hudson.plugins.clearcase.util.OutputFormat.USER_ID;
 import hudson.model.TaskListener;
 import hudson.plugins.clearcase.AbstractClearCaseScm.ChangeSetLevel;
 import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.action.ChangeLogWriter;
 import hudson.plugins.clearcase.history.AbstractHistoryAction;
 import hudson.plugins.clearcase.history.Filter;
 import hudson.plugins.clearcase.history.HistoryEntry;
+import hudson.plugins.clearcase.history.HistoryEntryCodec;
 import hudson.plugins.clearcase.ucm.model.ActivitiesDelta;
 import hudson.plugins.clearcase.ucm.model.Activity;
 import hudson.plugins.clearcase.ucm.model.Baseline;
@@ -47,9 +46,10 @@ import hudson.plugins.clearcase.ucm.model.Component;
 import hudson.plugins.clearcase.ucm.service.BaselineService;
 import hudson.plugins.clearcase.ucm.service.FacadeService;
 import hudson.plugins.clearcase.util.ClearToolFormatHandler;
+import hudson.plugins.clearcase.util.CommandExecutor;
+import hudson.plugins.clearcase.util.SpillingSorter;
 import hudson.scm.ChangeLogSet.Entry;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.text.MessageFormat;
@@ -58,13 +58,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 
 /**
@@ -74,15 +77,37 @@ public class UcmHistoryAction extends AbstractHistoryAction {
 
     static final Logger                  LOG                               = Logger.getLogger(UcmHistoryAction.class.getName());
 
-    private static final String[]        ACTIVITY_FORMAT                   = { UCM_ACTIVITY_HEADLINE, UCM_ACTIVITY_STREAM, USER_ID, };
+    /**
+     * Activities built from the history before being listed together and written.
+     */
+    private static final int             ACTIVITIES_PER_WRITE              = 100;
+
+    /**
+     * Baseline comparisons run at the same time for one poll, within the limit of the {@link CommandExecutor} shared by all the jobs.
+     */
+    static final int                     DIFFBL_THREADS                    = Integer.getInteger(UcmHistoryAction.class.getName() + ".diffblThreads", 4);
 
     private static final String[]        HISTORY_FORMAT                    = { DATE_NUMERIC, USER_ID, NAME_ELEMENTNAME, NAME_VERSIONID, EVENT, OPERATION,
         UCM_VERSION_ACTIVITY                                          };
 
-    private static final String[]        INTEGRATION_ACTIVITY_FORMAT       = { UCM_ACTIVITY_HEADLINE, UCM_ACTIVITY_STREAM, USER_ID, UCM_ACTIVITY_CONTRIBUTING };
-
     private static final int             MAX_DEPTH_CONTRIBUTING_ACTIVITIES = 3;
 
+    private static final Comparator<HistoryEntry> BY_ACTIVITY = new Comparator<HistoryEntry>() {
+        @Override
+        public int compare(HistoryEntry o1, HistoryEntry o2) {
+            return ObjectUtils.compare(o1.getActivityName(), o2.getActivityName());
+        }
+    };
+
+    private static final Comparator<Component> BY_SELECTOR = new Comparator<Component>() {
+        @Override
+        public int compare(Component o1, Component o2) {
+            return ObjectUtils.compare(o1 == null ? null : o1.getSelector(), o2 == null ? null : o2.getSelector());
+        }
+    };
+
+    private List<ComponentDelta>         componentDeltas;
+
     private EntryListAdapter             entryListAdapter                  = new EntryListAdapter();
 
     private FacadeService                facadeService;
@@ -123,6 +148,38 @@ public class UcmHistoryAction extends AbstractHistoryAction {
         this.facadeService = facadeService;
     }
 
+    /**
+     * Streams the history: entries are sorted by activity, spilling to disk when there are too many of them, so that activities are built and written one
+     * at a time. Activities are written in name order.
+     */
+    @Override
+    public int writeChanges(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths, ChangeLogWriter writer)
+            throws IOException, InterruptedException {
+        int count = writeEntries(getChangesOnBaseline(time, viewPath, viewTag, branchNames, viewPaths), writer);
+        if (!needsLsHistoryForGetChanges(viewTag, viewPaths)) {
+            return count;
+        }
+        final SpillingSorter<HistoryEntry> sorter = new SpillingSorter<HistoryEntry>(BY_ACTIVITY, new HistoryEntryCodec());
+        try {
+            streamHistory(time, viewPath, viewTag, branchNames, viewPaths, new SpillingSorter.Sink<HistoryEntry>() {
+                @Override
+                public void accept(HistoryEntry entry) throws IOException {
+                    sorter.add(entry);
+                }
+            });
+            if (needsHistoryOnAllBranches() && oldBaseline != null) {
+                for (HistoryEntry entry : filterEntries(compareBaselines(viewPath))) {
+                    sorter.add(entry);
+                }
+            }
+            ActivityWriter activityWriter = new ActivityWriter(viewPath, writer);
+            sorter.sortTo(activityWriter);
+            return count + activityWriter.flush();
+        } finally {
+            sorter.close();
+        }
+    }
+
     @Override
     protected List<Entry> buildChangelog(String viewPath, List<HistoryEntry> entries) throws IOException, InterruptedException {
         List<Entry> result = new ArrayList<Entry>();
@@ -132,45 +189,26 @@ public class UcmHistoryAction extends AbstractHistoryAction {
 
             UcmActivity activity = activityMap.get(entry.getActivityName());
             if (activity == null) {
-                activity = new UcmActivity();
-                activity.setName(entry.getActivityName());
-                activity.setUser(entry.getUser());
+                activity = createActivity(entry);
                 activityMap.put(entry.getActivityName(), activity);
                 result.add(activity);
             }
-            if (entry.getElement() != null) {
-                UcmActivity.File currentFile = new UcmActivity.File();
-                currentFile.setComment(entry.getComment());
-                currentFile.setDate(entry.getDate());
-                currentFile.setDateStr(entry.getDateText());
-                currentFile.setEvent(entry.getEvent());
-                currentFile.setName(entry.getElement());
-                currentFile.setOperation(entry.getOperation());
-                currentFile.setVersion(entry.getVersionId());
-                activity.addFile(currentFile);
-            }
+            addFile(activity, entry);
         }
 
+        List<UcmActivity> activities = new ArrayList<UcmActivity>();
         for (Entry activity : result) {
-            callLsActivity(activityMap, (UcmActivity) activity, viewPath, MAX_DEPTH_CONTRIBUTING_ACTIVITIES);
+            activities.add((UcmActivity) activity);
         }
+        new ActivityResolver(cleartool, viewPath, MAX_DEPTH_CONTRIBUTING_ACTIVITIES, activityMap).resolve(activities);
 
         return result;
     }
 
     protected List<HistoryEntry> compareBaselines(String viewPath) throws IOException, InterruptedException {
-        Map<Component, Baseline> from = toMap(getOldBaseline().getBaselines());
-        Map<Component, Baseline> to = toMap(getNewBaseline().getBaselines());
         List<HistoryEntry> historyEntries = new ArrayList<HistoryEntry>();
-        for (java.util.Map.Entry<Component, Baseline> entry : from.entrySet()) {
-            Baseline oldBl = entry.getValue();
-            Baseline newBl;
-            Component component = entry.getKey();
-            if ((newBl = to.get(component)) == null) {
-                LOG.warning(MessageFormat.format("Skipping {0} since there is no new baseline for component {1}.", oldBl, component));
-                continue;
-            }
-            historyEntries.addAll(entryListAdapter.adapt(facadeService.getBaselineService().compare(oldBl, newBl)));
+        for (ComponentDelta componentDelta : getComponentDeltas()) {
+            historyEntries.addAll(entryListAdapter.adapt(componentDelta.delta));
         }
         return historyEntries;
     }
@@ -181,25 +219,18 @@ public class UcmHistoryAction extends AbstractHistoryAction {
             return Collections.emptyList();
         if (getNewBaseline() == null)
             return Collections.emptyList();
-        Map<Component, Baseline> from = toMap(getOldBaseline().getBaselines());
-        Map<Component, Baseline> to = toMap(getNewBaseline().getBaselines());
         List<Entry> entries = new ArrayList<Entry>();
-        for (java.util.Map.Entry<Component, Baseline> entry : from.entrySet()) {
-            Baseline oldBl = entry.getValue();
-            Baseline newBl;
-            Component component = entry.getKey();
-            if ((newBl = to.get(component)) == null) {
-                LOG.warning(MessageFormat.format("Skipping {0} since there is no new baseline for component {1}.", oldBl, component));
-                continue;
-            }
+        for (ComponentDelta componentDelta : getComponentDeltas()) {
+            Baseline oldBl = componentDelta.oldBaseline;
+            Baseline newBl = componentDelta.newBaseline;
             if (oldBl.equals(newBl)) {
                 continue;
             }
             UcmActivity rebaseActivity = new UcmActivity();
-            String componentName = component == null ? "??" : component.getName();
+            String componentName = componentDelta.component == null ? "??" : componentDelta.component.getName();
             rebaseActivity.setName("rebase_" + componentName);
             rebaseActivity.setHeadline(MessageFormat.format("Rebase on component {0} : {1} → {2}", componentName, oldBl.getName(), newBl.getName()));
-            ActivitiesDelta blComparison = getFacadeService().getBaselineService().compare(oldBl, newBl);
+            ActivitiesDelta blComparison = componentDelta.delta;
             fillSubActivities(rebaseActivity, UcmActivity.MODIFIER_ADD, blComparison.getRight());
             fillSubActivities(rebaseActivity, UcmActivity.MODIFIER_DELETE, blComparison.getLeft());
             entries.add(rebaseActivity);
@@ -287,6 +318,20 @@ public class UcmHistoryAction extends AbstractHistoryAction {
         return result;
     }
 
+    private void addFile(UcmActivity activity, HistoryEntry entry) {
+        if (entry.getElement() != null) {
+            UcmActivity.File currentFile = new UcmActivity.File();
+            currentFile.setComment(entry.getComment());
+            currentFile.setDate(entry.getDate());
+            currentFile.setDateStr(entry.getDateText());
+            currentFile.setEvent(entry.getEvent());
+            currentFile.setName(entry.getElement());
+            currentFile.setOperation(entry.getOperation());
+            currentFile.setVersion(entry.getVersionId());
+            activity.addFile(currentFile);
+        }
+    }
+
     private Map<Component, Baseline> addBaselineToResult(Baseline baseline, Map<Component, Baseline> result) throws IOException, InterruptedException {
         Baseline oldValue;
         BaselineService baselineService = getFacadeService().getBaselineService();
@@ -297,46 +342,62 @@ public class UcmHistoryAction extends AbstractHistoryAction {
         return result;
     }
 
-    private void callLsActivity(Map<String, UcmActivity> activityMap, UcmActivity activity, String viewPath, int numberOfContributingActivitiesToFollow)
-            throws IOException, InterruptedException {
-        ClearToolFormatHandler handler = new ClearToolFormatHandler(activity.isIntegrationActivity() ? INTEGRATION_ACTIVITY_FORMAT : ACTIVITY_FORMAT);
-        if (StringUtils.isBlank(activity.getName())) {
-            activity.setName("Unable to get activity name");
-            return;
-        }
-
-        BufferedReader reader = new BufferedReader(cleartool.lsactivity(activity.getName(), handler.getFormat(), viewPath));
-
-        String line = reader.readLine();
-        Matcher matcher = handler.checkLine(line);
-        if (matcher != null) {
-            activity.setHeadline(matcher.group(1));
-            activity.setStream(matcher.group(2));
-            activity.setUser(matcher.group(3));
-
-            if (activity.isIntegrationActivity() && numberOfContributingActivitiesToFollow > 0) {
-
-                String contributingActivities = matcher.group(4);
-
-                for (String contributing : contributingActivities.split(" ")) {
-
-                    UcmActivity subActivity = null;
-                    UcmActivity cachedActivity = activityMap.get(contributing);
+    private UcmActivity createActivity(HistoryEntry entry) {
+        UcmActivity activity = new UcmActivity();
+        activity.setName(entry.getActivityName());
+        activity.setUser(entry.getUser());
+        return activity;
+    }
 
-                    if (cachedActivity == null) {
-                        subActivity = new UcmActivity();
-                        subActivity.setName(contributing);
-                        callLsActivity(activityMap, subActivity, viewPath, --numberOfContributingActivitiesToFollow);
-                        activityMap.put(contributing, subActivity);
-                    } else {
-                        /* do deep copy */
-                        subActivity = new UcmActivity(cachedActivity);
-                    }
-                    activity.addSubActivity(subActivity);
+    /**
+     * Compares the old and new baselines of each component, running the diffbl of the changed components in parallel. The comparisons are made once per
+     * action, and sorted by component.
+     */
+    private List<ComponentDelta> getComponentDeltas() throws IOException, InterruptedException {
+        if (componentDeltas != null) {
+            return componentDeltas;
+        }
+        Map<Component, Baseline> from = toMap(getOldBaseline().getBaselines());
+        Map<Component, Baseline> to = toMap(getNewBaseline().getBaselines());
+        List<Component> components = new ArrayList<Component>(from.keySet());
+        Collections.sort(components, BY_SELECTOR);
+        List<ComponentDelta> deltas = new ArrayList<ComponentDelta>();
+        int changed = 0;
+        for (Component component : components) {
+            Baseline oldBl = from.get(component);
+            Baseline newBl;
+            if ((newBl = to.get(component)) == null) {
+                LOG.warning(MessageFormat.format("Skipping {0} since there is no new baseline for component {1}.", oldBl, component));
+                continue;
+            }
+            deltas.add(new ComponentDelta(component, oldBl, newBl));
+            if (!oldBl.equals(newBl)) {
+                changed++;
+            }
+        }
+        if (changed > 0) {
+            final BaselineService baselineService = getFacadeService().getBaselineService();
+            List<ComponentDelta> changedDeltas = new ArrayList<ComponentDelta>(changed);
+            List<Callable<ActivitiesDelta>> tasks = new ArrayList<Callable<ActivitiesDelta>>(changed);
+            for (final ComponentDelta componentDelta : deltas) {
+                if (componentDelta.oldBaseline.equals(componentDelta.newBaseline)) {
+                    continue;
                 }
+                changedDeltas.add(componentDelta);
+                tasks.add(new Callable<ActivitiesDelta>() {
+                    @Override
+                    public ActivitiesDelta call() throws IOException {
+                        return baselineService.compare(componentDelta.oldBaseline, componentDelta.newBaseline);
+                    }
+                });
+            }
+            List<ActivitiesDelta> results = CommandExecutor.invokeAll(tasks, DIFFBL_THREADS);
+            for (int i = 0; i < changedDeltas.size(); i++) {
+                changedDeltas.get(i).delta = results.get(i);
             }
         }
-        reader.close();
+        componentDeltas = deltas;
+        return deltas;
     }
 
     private void fillSubActivities(UcmActivity rootActivity, String modifier, Collection<Activity> subActivities) {
@@ -353,4 +414,71 @@ public class UcmHistoryAction extends AbstractHistoryAction {
         return ChangeSetLevel.ALL.equals(getChangeset());
     }
 
+    /**
+     * The comparison of the old and new baselines of a component.
+     */
+    private static class ComponentDelta {
+        private final Component component;
+        private ActivitiesDelta delta = ActivitiesDelta.EMPTY;
+        private final Baseline  newBaseline;
+        private final Baseline  oldBaseline;
+
+        ComponentDelta(Component component, Baseline oldBaseline, Baseline newBaseline) {
+            this.component = component;
+            this.oldBaseline = oldBaseline;
+            this.newBaseline = newBaseline;
+        }
+    }
+
+    /**
+     * Builds activities out of history entries sorted by activity, and writes them by batches of {@link #ACTIVITIES_PER_WRITE} once they are complete.
+     */
+    private class ActivityWriter implements SpillingSorter.Sink<HistoryEntry> {
+        private int                            count;
+        private UcmActivity                    current;
+        private final List<UcmActivity>        pending       = new ArrayList<UcmActivity>();
+        private final ActivityResolver         resolver;
+        // Only contributing activities are cached, to be shared by the integration activities they contribute to
+        private final Map<String, UcmActivity> subActivities = new HashMap<String, UcmActivity>();
+        private final ChangeLogWriter          writer;
+
+        ActivityWriter(String viewPath, ChangeLogWriter writer) {
+            this.resolver = new ActivityResolver(cleartool, viewPath, MAX_DEPTH_CONTRIBUTING_ACTIVITIES, subActivities);
+            this.writer = writer;
+        }
+
+        @Override
+        public void accept(HistoryEntry entry) throws IOException, InterruptedException {
+            if (current == null || !ObjectUtils.equals(current.getName(), entry.getActivityName())) {
+                complete();
+                current = createActivity(entry);
+            }
+            addFile(current, entry);
+        }
+
+        int flush() throws IOException, InterruptedException {
+            complete();
+            writePending();
+            return count;
+        }
+
+        private void complete() throws IOException, InterruptedException {
+            if (current != null) {
+                pending.add(current);
+                current = null;
+                if (pending.size() >= ACTIVITIES_PER_WRITE) {
+                    writePending();
+                }
+            }
+        }
+
+        private void writePending() throws IOException, InterruptedException {
+            resolver.resolve(pending);
+            for (UcmActivity activity : pending) {
+                writer.write(activity);
+                count++;
+            }
+            pending.clear();
+        }
+    }
 }
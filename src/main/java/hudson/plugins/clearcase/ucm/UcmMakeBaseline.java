@@ -38,7 +38,9 @@ import hudson.plugins.clearcase.Baseline;
 import hudson.plugins.clearcase.ClearCaseUcmSCM;
 import hudson.plugins.clearcase.ClearTool;
 import hudson.plugins.clearcase.ClearTool.DefaultPromotionLevel;
+import hudson.plugins.clearcase.ucm.service.StreamCache;
 import hudson.plugins.clearcase.util.BuildVariableResolver;
+import hudson.plugins.clearcase.util.ClearCaseUtils;
 import hudson.scm.SCM;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
@@ -46,9 +48,19 @@ import hudson.tasks.Notifier;
 import hudson.tasks.Publisher;
 import hudson.util.VariableResolver;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import net.sf.json.JSONObject;
@@ -96,14 +108,118 @@ public class UcmMakeBaseline extends Notifier {
 
         @Override
         public Notifier newInstance(StaplerRequest req, JSONObject formData) throws FormException {
-            Notifier n = new UcmMakeBaseline(req.getParameter("mkbl.namepattern"), req.getParameter("mkbl.commentpattern"),
+            UcmMakeBaseline n = new UcmMakeBaseline(req.getParameter("mkbl.namepattern"), req.getParameter("mkbl.commentpattern"),
                     req.getParameter("mkbl.lock") != null, req.getParameter("mkbl.recommend") != null, req.getParameter("mkbl.fullBaseline") != null,
                     req.getParameter("mkbl.identical") != null, req.getParameter("mkbl.rebaseDynamicView") != null, req.getParameter("mkbl.dynamicViewName"),
                     req.getParameter("mkbl.promote") != null, req.getParameter("mkbl.promotionLevel"), req.getParameter("mkbl.demote") != null,
                     req.getParameter("mkbl.demotionLevel"));
+            n.setQueuePublication(req.getParameter("mkbl.queuePublication") != null);
             return n;
         }
     }
+
+    /**
+     * What is left to do on the baselines once the build result is known, run by the build or queued.
+     */
+    public static class Publication extends BaselinePublication {
+
+        private List<String> baselines = new ArrayList<String>();
+
+        private String       promotionLevel;
+
+        private String       rebaseViewTag;
+
+        private String       recommendStream;
+
+        private final String stream;
+
+        public Publication(String stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public String getStream() {
+            return stream;
+        }
+
+        @Override
+        public void publish(final ClearTool clearTool, final PrintStream logger) throws IOException, InterruptedException {
+            List<Callable<Void>> steps = new ArrayList<Callable<Void>>();
+            if ((promotionLevel != null && !baselines.isEmpty()) || recommendStream != null) {
+                steps.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException, InterruptedException {
+                        // The stream recommends its latest baselines of the right promotion level, so they are promoted first
+                        if (promotionLevel != null && !baselines.isEmpty()) {
+                            long start = System.currentTimeMillis();
+                            for (String[] chunk : ClearCaseUtils.chunkSelectors(baselines, MAX_LENGTH)) {
+                                clearTool.setBaselinePromotionLevel(chunk, promotionLevel);
+                            }
+                            logStep(logger, "Set " + baselines.size() + " baseline(s) to " + promotionLevel, start);
+                        }
+                        if (recommendStream != null) {
+                            long start = System.currentTimeMillis();
+                            clearTool.recommendBaseline(recommendStream);
+                            logStep(logger, "Recommended the baselines of " + recommendStream, start);
+                        }
+                        return null;
+                    }
+                });
+            }
+            if (rebaseViewTag != null && !baselines.isEmpty()) {
+                steps.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException, InterruptedException {
+                        long start = System.currentTimeMillis();
+                        // rebase accepts a comma separated list of baselines
+                        for (String[] chunk : ClearCaseUtils.chunkSelectors(baselines, MAX_LENGTH)) {
+                            clearTool.rebaseDynamic(rebaseViewTag, StringUtils.join(chunk, ','));
+                        }
+                        logStep(logger, "Rebased " + rebaseViewTag + " on " + baselines.size() + " baseline(s)", start);
+                        return null;
+                    }
+                });
+            }
+            try {
+                run(steps);
+            } finally {
+                if (rebaseViewTag != null && !baselines.isEmpty()) {
+                    // The stream of the view isn't known here
+                    StreamCache.getInstance().invalidateAll();
+                }
+            }
+        }
+
+        /**
+         * Rebases the dynamic view on the baselines.
+         */
+        public void rebase(String viewTag) {
+            this.rebaseViewTag = viewTag;
+        }
+
+        public void recommend(String stream) {
+            this.recommendStream = stream;
+        }
+
+        /**
+         * Sets the promotion level of the baselines.
+         */
+        public void setBaselines(List<String> baselines, String promotionLevel) {
+            this.baselines = new ArrayList<String>(baselines);
+            this.promotionLevel = promotionLevel;
+        }
+
+        private boolean isEmpty() {
+            return (promotionLevel == null || baselines.isEmpty()) && recommendStream == null && (rebaseViewTag == null || baselines.isEmpty());
+        }
+    }
+    /**
+     * Most characters of baseline names passed to one chbl, lsbl or rebase, so that the command line stays below the 8191 characters accepted by Windows.
+     */
+    static final int                 MAX_LENGTH           = Integer.getInteger(UcmMakeBaseline.class.getName() + ".maxLength", 6000);
+
+    private static final String      BASELINE_COMPONENT   = "%Xn %[component]Xp\\n";
+
     private static final String      ENV_CC_BASELINE_NAME = "CC_BASELINE_NAME";
 
     @SuppressWarnings("unused")
@@ -131,6 +247,8 @@ public class UcmMakeBaseline extends Notifier {
 
     private final boolean            promote;
 
+    private boolean                  queuePublication;
+
     private final String             promotionLevel;
 
     private transient List<String>   readWriteComponents  = null;
@@ -213,6 +331,10 @@ public class UcmMakeBaseline extends Notifier {
         return this.promote;
     }
 
+    public boolean isQueuePublication() {
+        return this.queuePublication;
+    }
+
     public boolean isRebaseDynamicView() {
         return this.rebaseDynamicView;
     }
@@ -235,23 +357,19 @@ public class UcmMakeBaseline extends Notifier {
             VariableResolver<String> variableResolver = new BuildVariableResolver(build);
             ClearTool clearTool = ucm.createClearTool(variableResolver, ucm.createClearToolLauncher(listener, build.getWorkspace(), launcher));
 
+            Publication publication = new Publication(ucm.getStream(variableResolver));
             Result result = build.getResult();
             if (result.equals(Result.SUCCESS)) {
-                if (this.promote) {
-                    // On success, promote all current baselines in stream
-                    for (String baselineName : this.latestBaselines) {
-                        promoteBaseline(clearTool, baselineName);
-                    }
-                }
+                List<String> baselines = this.latestBaselines != null ? this.latestBaselines : new ArrayList<String>();
+                // On success, promote all current baselines in stream
+                publication.setBaselines(baselines, this.promote ? getPromotionLevelOrDefault() : null);
                 if (this.recommend) {
-                    recommendBaseline(clearTool, ucm.getStream(variableResolver));
+                    publication.recommend(ucm.getStream(variableResolver));
                 }
 
                 // Rebase a dynamic view
                 if (this.rebaseDynamicView) {
-                    for (String baseline : this.latestBaselines) {
-                        rebaseDynamicView(clearTool, Util.replaceMacro(this.dynamicViewName, variableResolver), baseline);
-                    }
+                    publication.rebase(Util.replaceMacro(this.dynamicViewName, variableResolver));
                 }
             } else if (result.equals(Result.FAILURE) && this.demote) {
 
@@ -272,14 +390,27 @@ public class UcmMakeBaseline extends Notifier {
                     if (realBaselineName == null) {
                         listener.getLogger().println("Couldn't find baseline name for " + baseline.getBaselineName());
                     } else {
-                        demoteBaseline(clearTool, realBaselineName);
                         alreadyRejected.add(realBaselineName);
                     }
                 }
+                publication.setBaselines(alreadyRejected, getDemotionLevelOrDefault());
             }
 
-            if (this.lockStream && this.streamSuccessfullyLocked) {
-                unlockStream(clearTool, ucm.getStream());
+            try {
+                BaselinePublicationQueue queue = BaselinePublicationQueue.getInstance();
+                if (!publication.isEmpty()) {
+                    if (this.queuePublication && queue != null) {
+                        queue.add(build, publication);
+                        listener.getLogger().println("Baseline publication queued, " + queue.size() + " publication(s) in the queue");
+                    } else {
+                        publication.publish(clearTool, listener.getLogger());
+                    }
+                }
+            } finally {
+                // The stream is unlocked by the build, so that the next build can lock it
+                if (this.lockStream && this.streamSuccessfullyLocked) {
+                    unlockStream(clearTool, ucm.getStream());
+                }
             }
         } else {
             listener.fatalError("Not a UCM clearcase SCM, cannot create baseline");
@@ -312,7 +443,12 @@ public class UcmMakeBaseline extends Notifier {
                 String viewTag = ucm.getViewName(variableResolver);
                 this.readWriteComponents = getReadWriteComponent(clearTool, viewTag);
                 if (!readWriteComponents.isEmpty()) {
-                    this.createdBaselines = makeBaseline(clearTool, viewTag, variableResolver);
+                    try {
+                        this.createdBaselines = makeBaseline(clearTool, viewTag, variableResolver);
+                    } finally {
+                        // The latest baselines of the stream changed, even if mkbl failed on some components
+                        StreamCache.getInstance().invalidate(ucm.getStream(variableResolver));
+                    }
                     this.latestBaselines = getLatestBaselineNames(clearTool, viewTag);
                     addBuildParameter(build);
                 }
@@ -328,6 +464,13 @@ public class UcmMakeBaseline extends Notifier {
 
     }
 
+    /**
+     * Queues the work left on the baselines once the build result is known, rather than run it while the build holds its executor.
+     */
+    public void setQueuePublication(boolean queuePublication) {
+        this.queuePublication = queuePublication;
+    }
+
     private void addBuildParameter(AbstractBuild<?, ?> build) {
         if (!CollectionUtils.isEmpty(this.latestBaselines)) {
             ArrayList<ParameterValue> parameters = new ArrayList<ParameterValue>();
@@ -337,11 +480,6 @@ public class UcmMakeBaseline extends Notifier {
         }
     }
 
-    private void demoteBaseline(ClearTool clearTool, String baselineName) throws InterruptedException, IOException {
-        final String demotionLevel = StringUtils.isNotEmpty(this.demotionLevel) ? this.demotionLevel : DefaultPromotionLevel.REJECTED.toString();
-        clearTool.setBaselinePromotionLevel(baselineName, demotionLevel);
-    }
-
     /**
      * Get the component binding to the baseline
      * 
@@ -360,20 +498,58 @@ public class UcmMakeBaseline extends Notifier {
         throw new IOException("Incorrect output. Received " + output);
     }
 
+    /**
+     * Get the components binding to the baselines, with a few lsbl listing many baselines each. The baselines missing from their output, or all of them when
+     * one can't be listed, are listed again one at a time.
+     * 
+     * @return the component names by baseline name
+     */
+    private Map<String, String> getComponentsforBaselines(ClearTool clearTool, List<String> baselineNames) throws InterruptedException, IOException {
+        Map<String, String> components = new HashMap<String, String>();
+        for (String[] chunk : ClearCaseUtils.chunkSelectors(baselineNames, MAX_LENGTH)) {
+            try {
+                BufferedReader reader = new BufferedReader(new StringReader(clearTool.lsbl(chunk, BASELINE_COMPONENT)));
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    String[] fields = StringUtils.split(line.trim(), ' ');
+                    if (fields.length == 2 && fields[1].startsWith("component:")) {
+                        components.put(StringUtils.removeStart(fields[0], "baseline:"), StringUtils.removeStart(fields[1], "component:"));
+                    }
+                }
+            } catch (IOException e) {
+                // One of the baselines can't be listed
+            }
+        }
+        for (String baselineName : baselineNames) {
+            if (!components.containsKey(baselineName)) {
+                components.put(baselineName, getComponentforBaseline(clearTool, baselineName));
+            }
+        }
+        return components;
+    }
+
+    private String getDemotionLevelOrDefault() {
+        return StringUtils.isNotEmpty(this.demotionLevel) ? this.demotionLevel : DefaultPromotionLevel.REJECTED.toString();
+    }
+
     private List<String> getLatestBaselineNames(ClearTool clearTool, String viewTag) throws Exception {
 
         String output = clearTool.lsstream(null, viewTag, "%[latest_bls]Xp");
         String prefix = "baseline:";
         if (StringUtils.startsWith(output, prefix)) {
-            List<String> baselineNames = new ArrayList<String>();
+            List<String> latestBaselineNames = new ArrayList<String>();
             String[] baselineNamesSplit = output.split(prefix);
             for (String baselineName : baselineNamesSplit) {
                 String baselineNameTrimmed = baselineName.trim();
                 if (StringUtils.isNotEmpty(baselineNameTrimmed)) {
-                    // Retrict to baseline bind to read/write component
-                    String blComp = getComponentforBaseline(clearTool, baselineNameTrimmed);
-                    if (this.readWriteComponents.contains(blComp))
-                        baselineNames.add(baselineNameTrimmed);
+                    latestBaselineNames.add(baselineNameTrimmed);
+                }
+            }
+            // Retrict to baseline bind to read/write component
+            Map<String, String> components = getComponentsforBaselines(clearTool, latestBaselineNames);
+            List<String> baselineNames = new ArrayList<String>();
+            for (String baselineName : latestBaselineNames) {
+                if (this.readWriteComponents.contains(components.get(baselineName))) {
+                    baselineNames.add(baselineName);
                 }
             }
             return baselineNames;
@@ -382,6 +558,10 @@ public class UcmMakeBaseline extends Notifier {
 
     }
 
+    private String getPromotionLevelOrDefault() {
+        return StringUtils.isNotEmpty(this.promotionLevel) ? this.promotionLevel : DefaultPromotionLevel.BUILT.toString();
+    }
+
     /**
      * Retrieve the read/write component list with PVOB
      * 
@@ -418,6 +598,10 @@ public class UcmMakeBaseline extends Notifier {
         return clearTool.lock("Locked by Hudson", "stream:" + stream);
     }
 
+    private static void logStep(PrintStream logger, String step, long start) {
+        logger.println(step + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
     private List<Baseline> makeBaseline(ClearTool clearTool, String viewTag, VariableResolver<String> variableResolver) throws Exception {
         String baselineName = Util.replaceMacro(namePattern, variableResolver);
         String baselineComment = Util.replaceMacro(commentPattern, variableResolver);
@@ -425,17 +609,34 @@ public class UcmMakeBaseline extends Notifier {
 
     }
 
-    private void promoteBaseline(ClearTool clearTool, String baselineName) throws InterruptedException, IOException {
-        final String promotionLevel = StringUtils.isNotEmpty(this.promotionLevel) ? this.promotionLevel : DefaultPromotionLevel.BUILT.toString();
-        clearTool.setBaselinePromotionLevel(baselineName, promotionLevel);
-    }
-
-    private void rebaseDynamicView(ClearTool clearTool, String viewTag, String baselineName) throws InterruptedException, IOException {
-        clearTool.rebaseDynamic(viewTag, baselineName);
-    }
-
-    private void recommendBaseline(ClearTool clearTool, String stream) throws InterruptedException, IOException {
-        clearTool.recommendBaseline(stream);
+    /**
+     * Runs the independent steps at the same time.
+     */
+    private static void run(List<Callable<Void>> steps) throws IOException, InterruptedException {
+        if (steps.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(steps.size());
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>(steps.size());
+            for (Callable<Void> step : steps) {
+                results.add(executor.submit(step));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     private void unlockStream(ClearTool clearTool, String stream) throws IOException, InterruptedException {
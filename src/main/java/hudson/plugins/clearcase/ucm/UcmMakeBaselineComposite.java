@@ -35,7 +35,10 @@ import hudson.plugins.clearcase.ClearCaseUcmSCM;
 import hudson.plugins.clearcase.ClearTool;
 import hudson.plugins.clearcase.ClearTool.DefaultPromotionLevel;
 import hudson.plugins.clearcase.ClearToolLauncher;
+import hudson.plugins.clearcase.ucm.service.StreamCache;
 import hudson.plugins.clearcase.util.BuildVariableResolver;
+import hudson.plugins.clearcase.util.ClearCaseUtils;
+import hudson.plugins.clearcase.util.CommandExecutor;
 import hudson.scm.SCM;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
@@ -46,11 +49,18 @@ import hudson.util.VariableResolver;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.PrintStream;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import net.sf.json.JSONObject;
 
@@ -88,19 +98,150 @@ public class UcmMakeBaselineComposite extends Notifier {
 
         @Override
         public Notifier newInstance(StaplerRequest req, JSONObject formData) throws FormException {
-            Notifier p = new UcmMakeBaselineComposite(req.getParameter("mkbl.compositenamepattern"), req.getParameter("mkbl.compositestreamselector"),
-                    req.getParameter("mkbl.compositecomponentname"), req.getParameter("mkbl.extractinfofile") != null, req.getParameter("mkbl.filename"),
-                    req.getParameter("mkbl.recommend") != null);
+            UcmMakeBaselineComposite p = new UcmMakeBaselineComposite(req.getParameter("mkbl.compositenamepattern"),
+                    req.getParameter("mkbl.compositestreamselector"), req.getParameter("mkbl.compositecomponentname"),
+                    req.getParameter("mkbl.extractinfofile") != null, req.getParameter("mkbl.filename"), req.getParameter("mkbl.recommend") != null);
+            p.setQueuePublication(req.getParameter("mkbl.queuePublication") != null);
             return p;
         }
     }
-    private final String  compositeComponentName;
-    private final String  compositeNamePattern;
-    private final String  compositeStreamSelector;
-    private final boolean extractInfoFile;
-    private final String  fileName;
 
-    private boolean       recommend;
+    /**
+     * The composite baseline to make once the build is successful, made by the build or queued.
+     */
+    public static class Publication extends BaselinePublication {
+        private final String compositeBaselineName;
+        private final String compositeComponentName;
+        private final String compositeStreamSelector;
+        private boolean      made;
+        private final String pvob;
+        private final String recommendStream;
+
+        /**
+         * @param recommendStream
+         *            the stream the baselines of which are recommended once the composite baseline is made, or null
+         */
+        public Publication(String compositeBaselineName, String compositeStreamSelector, String compositeComponentName, String pvob, String recommendStream) {
+            this.compositeBaselineName = compositeBaselineName;
+            this.compositeStreamSelector = compositeStreamSelector;
+            this.compositeComponentName = compositeComponentName;
+            this.pvob = pvob;
+            this.recommendStream = recommendStream;
+        }
+
+        @Override
+        public String getStream() {
+            return compositeStreamSelector;
+        }
+
+        @Override
+        public void publish(ClearTool clearTool, PrintStream logger) throws IOException, InterruptedException {
+            // mkbl fails on an existing baseline, it isn't made again when the publication is retried
+            if (!made) {
+                try {
+                    makeCompositeBaseline(clearTool);
+                } finally {
+                    StreamCache.getInstance().invalidate(compositeStreamSelector);
+                }
+                made = true;
+            }
+            promoteCompositeBaselineToBuiltLevel(clearTool);
+            if (recommendStream != null) {
+                clearTool.recommendBaseline(recommendStream);
+            }
+        }
+
+        /**
+         * Make the composite baseline, depending on the baselines of all the other components of the composite stream
+         * 
+         * @throws IOException
+         * @throws InterruptedException
+         */
+        private void makeCompositeBaseline(ClearTool clearTool) throws IOException, InterruptedException {
+
+            // Get the component list (with pvob suffix) and a view containing the composite component, with a single lsstream
+            String output = clearTool.lsstream(this.compositeStreamSelector, null, COMPONENTS_AND_VIEWS);
+            final String prefix = "component:";
+            List<String> componentList = new ArrayList<String>();
+            String compositeView = null;
+            for (String line : output.split("\n")) {
+                if (StringUtils.startsWith(line, prefix)) {
+                    for (String c : line.split(",\\s")) {
+                        if (StringUtils.startsWith(c, prefix)) {
+                            componentList.add(StringUtils.difference(prefix, c));
+                        } else {
+                            throw new IOException("Invalid format for component in output. Must starts with 'component:' : " + c);
+                        }
+                    }
+                } else if (StringUtils.isNotBlank(line)) {
+                    compositeView = line.trim().split(" ")[0];
+                }
+            }
+            if (compositeView == null) {
+                throw new IOException("There is no view attached to the stream '" + this.compositeStreamSelector + "'");
+            }
+
+            StringBuffer sb = new StringBuffer();
+            for (String comp : componentList) {
+                // Exclude the composite component
+                if (!comp.contains(compositeComponentName)) {
+                    sb.append(",").append(comp);
+                }
+            }
+            sb.delete(0, 1);
+            String dependsOn = sb.toString();
+
+            clearTool.mkbl(compositeBaselineName, compositeView, null, true, false, Arrays.asList(compositeComponentName), dependsOn, dependsOn);
+
+        }
+
+        /**
+         * Promote the composite baseline
+         * 
+         * @throws InterruptedException
+         * @throws IOException
+         */
+        private void promoteCompositeBaselineToBuiltLevel(ClearTool clearTool) throws InterruptedException, IOException {
+            clearTool.setBaselinePromotionLevel(compositeBaselineName + "@" + pvob, DefaultPromotionLevel.BUILT);
+        }
+    }
+
+    /**
+     * Lsbl commands run at the same time to find the components of the baselines the composite baseline depends on, the baselines of a PVOB being listed
+     * together. They run on the {@link CommandExecutor} shared by all the jobs.
+     */
+    static final int            THREADS              = Integer.getInteger(UcmMakeBaselineComposite.class.getName() + ".threads", 4);
+
+    /**
+     * The component of a baseline, quoted as in the composite baseline information file.
+     */
+    private static final String COMPONENT            = "\"%[component]p\"";
+
+    /**
+     * The selector of a baseline and its component, on one line per baseline.
+     */
+    private static final String BASELINE_COMPONENT   = "%Xn " + COMPONENT + "\\n";
+
+    /**
+     * The baselines a composite baseline depends on, as baseline:name@pvob selectors.
+     */
+    private static final String DEPENDENCIES         = "\"%[depends_on]Xp\"";
+
+    /**
+     * The components of the stream on a first line, its views on a second one.
+     */
+    private static final String COMPONENTS_AND_VIEWS = "%[components]XCp\\n%[views]p\\n";
+
+    private static final Logger LOG                  = Logger.getLogger(UcmMakeBaselineComposite.class.getName());
+
+    private final String        compositeComponentName;
+    private final String        compositeNamePattern;
+    private final String        compositeStreamSelector;
+    private final boolean       extractInfoFile;
+    private final String        fileName;
+    private boolean             queuePublication;
+
+    private boolean             recommend;
 
     private UcmMakeBaselineComposite(final String compositeNamePattern, final String compositeStreamSelector, final String compositeComponentName,
             final boolean extractInfoFile, final String fileName, boolean recommend) {
@@ -144,6 +285,10 @@ public class UcmMakeBaselineComposite extends Notifier {
         return this.extractInfoFile;
     }
 
+    public boolean isQueuePublication() {
+        return queuePublication;
+    }
+
     public boolean isRecommend() {
         return recommend;
     }
@@ -167,13 +312,22 @@ public class UcmMakeBaselineComposite extends Notifier {
                 try {
                     String compositeBaselineName = Util.replaceMacro(compositeNamePattern, new BuildVariableResolver(build));
                     String pvob = UcmCommon.getVob(compositeStreamSelector);
-                    makeCompositeBaseline(clearTool, compositeBaselineName, compositeStreamSelector, compositeComponentName, pvob);
-                    promoteCompositeBaselineToBuiltLevel(clearTool, compositeBaselineName, pvob);
-                    if (extractInfoFile) {
-                        processExtractInfoFile(clearTool, this.compositeComponentName, pvob, compositeBaselineName, this.fileName);
-                    }
-                    if (this.recommend) {
-                        clearTool.recommendBaseline(ucm.getStream());
+                    String recommendStream = this.recommend ? ucm.getStream() : null;
+                    BaselinePublicationQueue queue = BaselinePublicationQueue.getInstance();
+                    // The information file is written on the node of the build
+                    if (this.queuePublication && !extractInfoFile && queue != null) {
+                        queue.add(build, new Publication(compositeBaselineName, compositeStreamSelector, compositeComponentName, pvob, recommendStream));
+                        listener.getLogger().println("Composite baseline publication queued, " + queue.size() + " publication(s) in the queue");
+                    } else {
+                        // The baseline is recommended once the information file is written
+                        new Publication(compositeBaselineName, compositeStreamSelector, compositeComponentName, pvob, null).publish(clearTool,
+                                listener.getLogger());
+                        if (extractInfoFile) {
+                            processExtractInfoFile(clearTool, this.compositeComponentName, pvob, compositeBaselineName, this.fileName);
+                        }
+                        if (recommendStream != null) {
+                            clearTool.recommendBaseline(recommendStream);
+                        }
                     }
                 } catch (Exception ex) {
                     listener.getLogger().println("Failed to create baseline: " + ex);
@@ -196,6 +350,14 @@ public class UcmMakeBaselineComposite extends Notifier {
         return true;
     }
 
+    /**
+     * Queues the composite baseline once the build is successful, rather than make it while the build holds its executor. Not applicable when the
+     * composite baseline information is extracted in a file.
+     */
+    public void setQueuePublication(boolean queuePublication) {
+        this.queuePublication = queuePublication;
+    }
+
     public void setRecommend(boolean recommend) {
         this.recommend = recommend;
     }
@@ -212,8 +374,8 @@ public class UcmMakeBaselineComposite extends Notifier {
      * @throws IOException
      * @throws Exception
      */
-    private String getComponent(ClearTool clearTool, String baseline) throws IOException, InterruptedException {
-        String output = clearTool.lsbl(baseline, "\"%[component]p\"");
+    private static String getComponent(ClearTool clearTool, String baseline) throws IOException, InterruptedException {
+        String output = clearTool.lsbl(baseline, COMPONENT);
         if (output.contains("cleartool: Error")) {
             throw new IOException("Failed to make baseline, reason: " + output);
         }
@@ -221,86 +383,86 @@ public class UcmMakeBaselineComposite extends Notifier {
     }
 
     /**
-     * Retrieve all Clearcase UCM component (with pvob suffix) for a stream
+     * Retrieve the binding components of the baselines, with a few lsbl run in parallel, each listing baselines of the same PVOB.
      * 
-     * @param stream
-     *            the stream name like 'P_EngDesk_Product_3.2_int@\P_ORC'
-     * @param clearTool
-     *            the clearcase launcher
-     * @return component list attached to the stream like ['DocGen_PapeeteDoc@\P_ORC','DocMgt_Modulo@\P_ORC']
-     * @throws IOException
-     * @throws InterruptedException
+     * @return the components by baseline
      */
-    private List<String> getComponentList(ClearTool clearTool, String stream) throws IOException, InterruptedException {
-        String output = clearTool.lsstream(stream, null, "\"%[components]XCp\"");
-        String comp[] = output.split(",\\s");
-        List<String> result = new ArrayList<String>();
-        final String prefix = "component:";
-        for (String c : comp) {
-            if (StringUtils.startsWith(c, prefix)) {
-                result.add(StringUtils.difference(prefix, c));
-            } else {
-                throw new IOException("Invalid format for component in output. Must starts with 'component:' : " + c);
+    static Map<String, String> getComponents(final ClearTool clearTool, List<String> baselines) throws IOException, InterruptedException {
+        Map<String, List<String>> byPvob = new LinkedHashMap<String, List<String>>();
+        for (String baseline : baselines) {
+            String pvob = StringUtils.substringAfter(baseline, "@");
+            List<String> pvobBaselines = byPvob.get(pvob);
+            if (pvobBaselines == null) {
+                pvobBaselines = new ArrayList<String>();
+                byPvob.put(pvob, pvobBaselines);
             }
+            pvobBaselines.add(baseline);
         }
-
-        return result;
+        List<Callable<Map<String, String>>> tasks = new ArrayList<Callable<Map<String, String>>>();
+        for (List<String> pvobBaselines : byPvob.values()) {
+            for (final String[] chunk : ClearCaseUtils.chunkSelectors(pvobBaselines, UcmMakeBaseline.MAX_LENGTH)) {
+                tasks.add(new Callable<Map<String, String>>() {
+                    @Override
+                    public Map<String, String> call() throws IOException, InterruptedException {
+                        return listComponents(clearTool, chunk);
+                    }
+                });
+            }
+        }
+        Map<String, String> components = new HashMap<String, String>();
+        for (Map<String, String> result : CommandExecutor.invokeAll(tasks, THREADS)) {
+            components.putAll(result);
+        }
+        return components;
     }
 
     /**
-     * Pick up a view from a stream
-     * 
-     * @return a view attached to the stream
-     * @throws InterruptedException
-     * @throws IOException
+     * Lists the baselines the given composite baseline depends on.
+     *
+     * @return the baselines, as name@pvob selectors
      */
-    private String getOneViewFromStream(ClearTool clearTool, String stream) throws IOException, InterruptedException {
-        String output = clearTool.lsstream(stream, null, "\"%[views]p\"");
-        String resultLines[] = output.split("\n");
-        if (resultLines.length == 0) {
-            throw new IOException("There is no view attached to the stream '" + stream + "'");
+    static List<String> getDependencies(ClearTool clearTool, String compositeBaseline) throws IOException, InterruptedException {
+        String output = clearTool.lsbl(compositeBaseline, DEPENDENCIES);
+        if (output.contains("cleartool: Error")) {
+            throw new IOException("Failed to make baseline, reason: " + output);
         }
-        String viewsLines = resultLines[resultLines.length - 1];
-        return viewsLines.split(" ")[0];
-
+        List<String> baselines = new ArrayList<String>();
+        for (String baseline : StringUtils.split(StringUtils.remove(output, '"'))) {
+            baselines.add(StringUtils.removeStart(baseline, "baseline:"));
+        }
+        Collections.sort(baselines);
+        return baselines;
     }
 
     /**
-     * Make a composite baseline
-     * 
-     * @param compositeBaselineName
-     *            the composite baseline name
-     * @param compositeStream
-     *            the composite UCM Clearcase stream with Pvob like : 'P_EngDesk_Product_3.2_int@\P_ORC'
-     * @param compositeComponent
-     *            the composite UCM Clearcase component name like 'C_ Build_EngDesk'
-     * @param clearToolLauncher
-     *            the ClearCase launcher
-     * @param filePath
-     *            the filepath
-     * @throws Exception
+     * Lists the components of baselines of the same PVOB with a single lsbl, each output line starting with the selector of its baseline. Baselines missing
+     * from the output, or all of them when one can't be listed, are listed again one at a time.
      */
-    private void makeCompositeBaseline(ClearTool clearTool, String compositeBaselineName, String compositeStream, String compositeComponent, String pvob)
-            throws Exception {
-
-        // Get a view containing the composite component
-        String compositeView = getOneViewFromStream(clearTool, this.compositeStreamSelector);
-
-        // Get the component list (with pvob suffix) for the stream
-        List<String> componentList = getComponentList(clearTool, this.compositeStreamSelector);
-
-        StringBuffer sb = new StringBuffer();
-        for (String comp : componentList) {
-            // Exclude the composite component
-            if (!comp.contains(compositeComponent)) {
-                sb.append(",").append(comp);
+    private static Map<String, String> listComponents(ClearTool clearTool, String[] baselines) throws IOException, InterruptedException {
+        Map<String, String> components = new HashMap<String, String>();
+        if (baselines.length > 1) {
+            // %Xn prints baseline:name@pvob, whatever the selector given
+            Map<String, String> bySelector = new HashMap<String, String>();
+            for (String baseline : baselines) {
+                bySelector.put(StringUtils.removeStart(baseline, "baseline:"), baseline);
+            }
+            try {
+                for (String line : clearTool.lsbl(baselines, BASELINE_COMPONENT).split("\n")) {
+                    String baseline = bySelector.get(StringUtils.removeStart(StringUtils.substringBefore(line, " "), "baseline:"));
+                    if (baseline != null) {
+                        components.put(baseline, StringUtils.substringAfter(line, " ").trim());
+                    }
+                }
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Unable to list the components of the baselines together, listing them one at a time", e);
             }
         }
-        sb.delete(0, 1);
-        String dependsOn = sb.toString();
-
-        clearTool.mkbl(compositeBaselineName, compositeView, null, true, false, Arrays.asList(compositeComponent), dependsOn, dependsOn);
-
+        for (String baseline : baselines) {
+            if (!components.containsKey(baseline)) {
+                components.put(baseline, getComponent(clearTool, baseline));
+            }
+        }
+        return components;
     }
 
     /**
@@ -316,14 +478,8 @@ public class UcmMakeBaselineComposite extends Notifier {
      */
     private void processExtractInfoFile(ClearTool clearTool, String compositeComponnentName, String pvob, String compositeBaselineName, String fileName)
             throws Exception {
-        String output = clearTool.lsbl(compositeBaselineName + "@" + pvob, "\"%[depends_on]p\"");
-        if (output.contains("cleartool: Error")) {
-            throw new Exception("Failed to make baseline, reason: " + output);
-        }
-
-        String baselinesComp[] = output.split(" ");
-        List<String> baselineList = Arrays.asList(baselinesComp);
-        Collections.sort(baselineList);
+        List<String> baselineList = getDependencies(clearTool, compositeBaselineName + "@" + pvob);
+        Map<String, String> components = getComponents(clearTool, baselineList);
 
         Writer writer = null;
         try {
@@ -332,7 +488,7 @@ public class UcmMakeBaselineComposite extends Notifier {
             writer = new OutputStreamWriter(outputStream);
             writer.write("The composite baseline is '" + compositeBaselineName + "'");
             for (String baseLine : baselineList) {
-                writer.write("\nThe  baseline of component '" + getComponent(clearTool, baseLine) + "' is :" + baseLine);
+                writer.write("\nThe  baseline of component '" + components.get(baseLine) + "' is :" + StringUtils.substringBefore(baseLine, "@"));
             }
         } finally {
             if (writer != null) {
@@ -342,22 +498,4 @@ public class UcmMakeBaselineComposite extends Notifier {
 
     }
 
-    /**
-     * Promote the composite baseline
-     * 
-     * @param compositeBaselineName
-     *            the composite baseline name
-     * @param pvob
-     *            the vob name
-     * @param clearToolLauncher
-     *            the clearcase launcher
-     * @param filePath
-     *            the filepath
-     * @throws InterruptedException
-     * @throws IOException
-     */
-    private void promoteCompositeBaselineToBuiltLevel(ClearTool clearTool, String compositeBaselineName, String pvob) throws InterruptedException, IOException {
-        clearTool.setBaselinePromotionLevel(compositeBaselineName + "@" + pvob, DefaultPromotionLevel.BUILT);
-    }
-
 }
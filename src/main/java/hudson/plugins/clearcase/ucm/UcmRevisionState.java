@@ -27,6 +27,8 @@ package hudson.plugins.clearcase.ucm;
 import hudson.model.AbstractBuild;
 import hudson.plugins.clearcase.BuildTimeBased;
 import hudson.plugins.clearcase.LoadRulesAware;
+import hudson.plugins.clearcase.SeenEventsAware;
+import hudson.plugins.clearcase.history.SeenEventStore;
 import hudson.plugins.clearcase.ucm.model.Baseline;
 import hudson.scm.SCMRevisionState;
 
@@ -39,12 +41,19 @@ import org.kohsuke.stapler.Stapler;
 /**
  * Represents the repository state at a given point of time
  */
-public class UcmRevisionState extends SCMRevisionState implements BuildTimeBased, LoadRulesAware {
+public class UcmRevisionState extends SCMRevisionState implements BuildTimeBased, LoadRulesAware, SeenEventsAware {
+
+    /**
+     * Digest of the activities of the stream, null unless the activities change detection is configured.
+     */
+    private String           activityFingerprint;
 
     private final Baseline[] baselines;
 
     private final String[]   loadRules;
 
+    private SeenEventStore   seenEvents;
+
     private final long       timestamp;
 
     public UcmRevisionState(Baseline[] baselines, String[] loadRules, long timestamp) {
@@ -54,6 +63,10 @@ public class UcmRevisionState extends SCMRevisionState implements BuildTimeBased
         this.timestamp = timestamp;
     }
 
+    public String getActivityFingerprint() {
+        return activityFingerprint;
+    }
+
     public Baseline[] getBaselines() {
         return Arrays.copyOf(baselines, baselines.length);
     }
@@ -87,6 +100,11 @@ public class UcmRevisionState extends SCMRevisionState implements BuildTimeBased
         return Stapler.getCurrentRequest().findAncestorObject(AbstractBuild.class);
     }
 
+    @Override
+    public SeenEventStore getSeenEvents() {
+        return seenEvents;
+    }
+
     public long getTimestamp() {
         return timestamp;
     }
@@ -96,6 +114,15 @@ public class UcmRevisionState extends SCMRevisionState implements BuildTimeBased
         return "revisionState";
     }
 
+    public void setActivityFingerprint(String activityFingerprint) {
+        this.activityFingerprint = activityFingerprint;
+    }
+
+    @Override
+    public void setSeenEvents(SeenEventStore seenEvents) {
+        this.seenEvents = seenEvents;
+    }
+
     @Override
     public String toString() {
         return "UcmRevisionState[timestamp=" + timestamp + ", baselines=" + Arrays.asList(baselines) + ", loadRules=" + Arrays.asList(loadRules) + "]";
@@ -24,18 +24,31 @@
  */
 package hudson.plugins.clearcase.ucm;
 
+import hudson.plugins.clearcase.action.ChangeLogWriter;
 import hudson.plugins.clearcase.action.SaveChangeLogAction;
 import hudson.scm.ChangeLogSet.Entry;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.List;
 
 import org.apache.commons.lang.Validate;
 
 public class UcmSaveChangeLogAction implements SaveChangeLogAction {
 
+    @Override
+    public ChangeLogWriter openChangeLog(File changeLogFile) throws IOException {
+        return new ChangeLogWriter(changeLogFile) {
+            @Override
+            protected void writeEntry(PrintStream stream, Entry entry) {
+                Validate.isTrue(entry instanceof UcmActivity, "Unexpected change log entry ", entry);
+                UcmChangeLogSet.writeEntry(stream, (UcmActivity) entry);
+            }
+        };
+    }
+
     @Override
     public void saveChangeLog(File changeLogFile, List<? extends Entry> entries) throws IOException, InterruptedException {
         Validate.allElementsOfType(entries, UcmActivity.class);
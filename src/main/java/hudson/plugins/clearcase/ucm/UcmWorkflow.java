@@ -32,13 +32,20 @@ import hudson.plugins.clearcase.ucm.model.Baseline;
 import hudson.plugins.clearcase.ucm.model.Stream;
 import hudson.plugins.clearcase.ucm.service.FacadeService;
 import hudson.plugins.clearcase.ucm.service.StreamService;
+import hudson.plugins.clearcase.ucm.service.StreamSnapshotService;
+import hudson.plugins.clearcase.ucm.service.StreamSnapshotService.Snapshot;
 import hudson.plugins.clearcase.viewstorage.ViewStorage;
 import hudson.scm.SCMRevisionState;
 
 import java.io.IOException;
+import java.text.MessageFormat;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 public abstract class UcmWorkflow {
+
+    private boolean activityFingerprint;
+
     public abstract CheckoutAction createCheckoutAction(ClearTool cleartool, String stream, String[] viewPaths, String viewPath,
             ViewStorage decoratedViewStorage, AbstractBuild<?, ?> abstractBuild) throws IOException, InterruptedException;
 
@@ -47,16 +54,59 @@ public abstract class UcmWorkflow {
 
     public SCMRevisionState createRevisionState(ClearTool clearTool, TaskListener taskListener, Date date, String streamSelector, String[] loadRules)
             throws IOException, InterruptedException {
-        StreamService streamService = getFacadeService(clearTool).getStreamService();
-        Stream stream = streamService.parse(streamSelector);
-        Baseline[] foundationBaselines = streamService.getFoundationBaselines(stream);
-        return new UcmRevisionState(foundationBaselines, loadRules, date.getTime());
+        return createRevisionState(clearTool, taskListener, date, streamSelector, loadRules, null);
+    }
+
+    /**
+     * @param polledBuild
+     *            the last build when polling, the foundation baselines are then taken from the snapshot of the stream shared by all the jobs polling it; null
+     *            otherwise
+     */
+    public SCMRevisionState createRevisionState(ClearTool clearTool, TaskListener taskListener, Date date, String streamSelector, String[] loadRules,
+            AbstractBuild<?, ?> polledBuild) throws IOException, InterruptedException {
+        Baseline[] foundationBaselines;
+        if (polledBuild != null) {
+            Snapshot snapshot = getSnapshot(clearTool, streamSelector, polledBuild);
+            taskListener.getLogger().println(
+                    MessageFormat.format("Foundation baselines of {0} taken {1} s ago", streamSelector, TimeUnit.MILLISECONDS.toSeconds(snapshot.getAge())));
+            foundationBaselines = snapshot.getFoundationBaselines();
+        } else {
+            StreamService streamService = getFacadeService(clearTool).getStreamService();
+            Stream stream = streamService.parse(streamSelector);
+            foundationBaselines = streamService.getFoundationBaselines(stream);
+        }
+        UcmRevisionState revisionState = new UcmRevisionState(foundationBaselines, loadRules, date.getTime());
+        if (activityFingerprint) {
+            StreamService streamService = getFacadeService(clearTool).getStreamService();
+            revisionState.setActivityFingerprint(streamService.getActivityFingerprint(streamService.parse(streamSelector), "."));
+        }
+        return revisionState;
     }
 
     public String[] getAllRootDirsFor(ClearTool clearTool, String streamSelector) throws IOException, InterruptedException {
+        return getAllRootDirsFor(clearTool, streamSelector, null);
+    }
+
+    /**
+     * @param polledBuild
+     *            the last build when polling, the root directories are then taken from the snapshot of the stream shared by all the jobs polling it; null
+     *            otherwise
+     */
+    public String[] getAllRootDirsFor(ClearTool clearTool, String streamSelector, AbstractBuild<?, ?> polledBuild) throws IOException, InterruptedException {
+        if (polledBuild != null) {
+            return getSnapshot(clearTool, streamSelector, polledBuild).getRootDirs();
+        }
         return getFacadeService(clearTool).getAllRootDirsFor(streamSelector);
     }
 
+    /**
+     * @param activityFingerprint
+     *            if true, the revision states record the fingerprint of the activities of the stream, see {@link ActivityFingerprintStrategy}
+     */
+    public void setActivityFingerprint(boolean activityFingerprint) {
+        this.activityFingerprint = activityFingerprint;
+    }
+
     protected FacadeService getFacadeService(ClearTool clearTool) {
         return new FacadeService(clearTool);
     }
@@ -68,4 +118,18 @@ public abstract class UcmWorkflow {
         return null;
     }
 
+    /**
+     * Returns the snapshot of the stream, taken after the end of the polled build: a snapshot taken before may miss a rebase or a deliver of the build, and
+     * trigger another build.
+     */
+    private Snapshot getSnapshot(ClearTool clearTool, String streamSelector, AbstractBuild<?, ?> polledBuild) throws IOException, InterruptedException {
+        long notBefore;
+        if (polledBuild.isBuilding()) {
+            notBefore = System.currentTimeMillis();
+        } else {
+            notBefore = polledBuild.getTimeInMillis() + polledBuild.getDuration();
+        }
+        return StreamSnapshotService.getInstance().get(getFacadeService(clearTool), streamSelector, clearTool.getLauncher().isUnix(), notBefore);
+    }
+
 }
@@ -38,6 +38,23 @@ public class Baseline extends UcmSelector {
         init(selector);
     }
 
+    /**
+     * @return a copy of this baseline, whose component and dependencies can be resolved without changing this one
+     */
+    public Baseline copy() {
+        Baseline copy = new Baseline(getSelector());
+        if (component != null) {
+            copy.component = component.copy();
+        }
+        if (dependentBaselines != null) {
+            copy.dependentBaselines = new Baseline[dependentBaselines.length];
+            for (int i = 0; i < dependentBaselines.length; i++) {
+                copy.dependentBaselines[i] = dependentBaselines[i].copy();
+            }
+        }
+        return copy;
+    }
+
     public Component getComponent() {
         return component;
     }
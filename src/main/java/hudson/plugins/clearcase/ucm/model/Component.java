@@ -37,6 +37,15 @@ public class Component extends UcmSelector {
         init(selector);
     }
 
+    /**
+     * @return a copy of this component
+     */
+    public Component copy() {
+        Component copy = new Component(getSelector());
+        copy.rootDir = rootDir;
+        return copy;
+    }
+
     public String getRootDir() {
         return rootDir;
     }
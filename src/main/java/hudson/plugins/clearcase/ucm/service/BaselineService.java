@@ -38,6 +38,7 @@ import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Map;
@@ -53,10 +54,24 @@ public class BaselineService extends ClearcaseService {
     @SuppressWarnings("unused")
     private static final Logger   LOG          = Logger.getLogger(BaselineService.class.getName());
 
-    private Map<String, Baseline> baselinePool = new WeakHashMap<String, Baseline>();
+    private Map<String, Baseline> baselinePool = Collections.synchronizedMap(new WeakHashMap<String, Baseline>());
+
+    private final DiffBlCache     diffBlCache;
+
+    private final UcmObjectStore  store;
 
     BaselineService(ClearTool clearTool) {
+        this(clearTool, null, null);
+    }
+
+    BaselineService(ClearTool clearTool, UcmObjectStore store) {
+        this(clearTool, store, null);
+    }
+
+    BaselineService(ClearTool clearTool, UcmObjectStore store, DiffBlCache diffBlCache) {
         super(clearTool);
+        this.store = store;
+        this.diffBlCache = diffBlCache;
     }
 
     public ActivitiesDelta compare(Baseline from, Baseline to) throws IOException {
@@ -68,16 +83,26 @@ public class BaselineService extends ClearcaseService {
     }
 
     public ConfigSpec generateConfigSpec(Baseline[] baselines) throws IOException, InterruptedException {
+        boolean unix = clearTool.getLauncher().isUnix();
+        String[] selectors = new String[baselines.length];
+        for (int i = 0; i < baselines.length; i++) {
+            selectors[i] = baselines[i].getSelector();
+        }
+        if (store != null) {
+            String configSpec = store.getConfigSpec(selectors, unix);
+            if (configSpec != null) {
+                return new ConfigSpec(configSpec, unix);
+            }
+        }
         StringBuilder sb = new StringBuilder();
         Set<Baseline> baselineSet = new HashSet<Baseline>();
         for (Baseline baseline : baselines) {
             baselineSet.addAll(Arrays.asList(getDependentBaselines(baseline)));
         }
-        boolean unix = clearTool.getLauncher().isUnix();
         String fileSep = PathUtil.fileSepForOS(unix);
         String newLine = PathUtil.newLineForOS(unix);
         sb.append("element * CHECKEDOUT").append(newLine);
-        ComponentService componentService = new ComponentService(clearTool);
+        ComponentService componentService = new ComponentService(clearTool, store);
         for (Baseline baseline : baselineSet) {
             String rootDir = componentService.getRootDir(getComponent(baseline));
             if (StringUtils.isNotBlank(rootDir)) {
@@ -85,15 +110,27 @@ public class BaselineService extends ClearcaseService {
             }
         }
         sb.append("element * /main/0 -ucm -nocheckout").append(newLine);
+        if (store != null) {
+            store.putConfigSpec(selectors, unix, sb.toString());
+        }
         return new ConfigSpec(sb.toString(), unix);
     }
 
     public Component getComponent(Baseline baseline) throws IOException, InterruptedException {
+        if (baseline.getComponent() == null && store != null) {
+            String componentSelector = store.getComponent(baseline.getSelector());
+            if (componentSelector != null) {
+                baseline.setComponent(UcmSelector.parse(componentSelector, Component.class));
+            }
+        }
         if (baseline.getComponent() == null) {
             String output = IOUtils.toString(clearTool.describe("%[component]Xp", null, baseline.getSelector()));
             Component component = null;
             if (ClearCaseUtils.isCleartoolOutputValid(output)) {
                 component = UcmSelector.parse(output, Component.class);
+                if (store != null) {
+                    store.putComponent(baseline.getSelector(), component.getSelector());
+                }
             }
             baseline.setComponent(component);
         }
@@ -117,6 +154,16 @@ public class BaselineService extends ClearcaseService {
      * @throws InterruptedException
      */
     public Baseline[] getDependentBaselines(Baseline baseline) throws IOException, InterruptedException {
+        if (baseline.getDependentBaselines() == null && store != null) {
+            String[] selectors = store.getDependentBaselines(baseline.getSelector());
+            if (selectors != null) {
+                Baseline[] result = new Baseline[selectors.length];
+                for (int i = 0; i < selectors.length; i++) {
+                    result[i] = UcmSelector.parse(selectors[i], Baseline.class);
+                }
+                baseline.setDependentBaselines(result);
+            }
+        }
         if (baseline.getDependentBaselines() == null) {
             String output = clearTool.lsbl(baseline.getSelector(), "%[depends_on_closure]Xp");
             Baseline[] result = null;
@@ -128,6 +175,13 @@ public class BaselineService extends ClearcaseService {
                     result[i++] = UcmSelector.parse("baseline:" + s, Baseline.class);
                 }
                 baseline.setDependentBaselines(result);
+                if (store != null) {
+                    String[] selectors = new String[result.length];
+                    for (int j = 0; j < result.length; j++) {
+                        selectors[j] = result[j].getSelector();
+                    }
+                    store.putDependentBaselines(baseline.getSelector(), selectors);
+                }
             }
         }
         return baseline.getDependentBaselines();
@@ -144,10 +198,14 @@ public class BaselineService extends ClearcaseService {
 
     public Baseline parse(String selector) {
         String baselineSelector = stripPrefix(selector);
-        if (!baselinePool.containsKey(baselineSelector)) {
-            baselinePool.put(selector, UcmSelector.parse(baselineSelector, Baseline.class));
+        synchronized (baselinePool) {
+            Baseline baseline = baselinePool.get(baselineSelector);
+            if (baseline == null) {
+                baseline = UcmSelector.parse(baselineSelector, Baseline.class);
+                baselinePool.put(baselineSelector, baseline);
+            }
+            return baseline;
         }
-        return baselinePool.get(selector);
     }
 
     private ActivitiesDelta compare(Baseline from, Baseline to, EnumSet<DiffBlOptions> diffBlOptions, String viewPath) throws IOException {
@@ -156,7 +214,12 @@ public class BaselineService extends ClearcaseService {
         if (StringUtils.equals(fromSelector, toSelector)) {
             return ActivitiesDelta.EMPTY;
         }
-        Reader reader = clearTool.diffbl(diffBlOptions, fromSelector, toSelector, viewPath);
+        Reader reader;
+        if (diffBlCache != null) {
+            reader = diffBlCache.diffbl(clearTool, diffBlOptions, fromSelector, toSelector, viewPath);
+        } else {
+            reader = clearTool.diffbl(diffBlOptions, fromSelector, toSelector, viewPath);
+        }
         return ActivitiesDelta.parse(reader);
     }
 
@@ -36,8 +36,15 @@ import org.apache.commons.lang.StringUtils;
 
 public class ComponentService extends ClearcaseService {
 
+    private final UcmObjectStore store;
+
     ComponentService(ClearTool clearTool) {
+        this(clearTool, null);
+    }
+
+    ComponentService(ClearTool clearTool, UcmObjectStore store) {
         super(clearTool);
+        this.store = store;
     }
 
     /**
@@ -45,11 +52,18 @@ public class ComponentService extends ClearcaseService {
      * component.
      */
     public String getRootDir(Component component) throws IOException, InterruptedException {
+        boolean unix = store != null && clearTool.getLauncher().isUnix();
+        if (component.getRootDir() == null && store != null) {
+            component.setRootDir(store.getRootDir(component.getSelector(), unix));
+        }
         if (component.getRootDir() == null) {
             String output = IOUtils.toString(clearTool.describe("%[root_dir]Xp", null, component.getSelector()));
             String rootDir = null;
             if (ClearCaseUtils.isCleartoolOutputValid(output)) {
                 rootDir = output;
+                if (store != null) {
+                    store.putRootDir(component.getSelector(), unix, rootDir);
+                }
             }
             component.setRootDir(rootDir);
         }
@@ -0,0 +1,139 @@
+package hudson.plugins.clearcase.ucm.service;
+
+import hudson.Util;
+import hudson.model.Hudson;
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.ClearTool.DiffBlOptions;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Controller wide cache of the differences between two baselines, which never change once the baselines are made. It is kept under JENKINS_HOME and shared
+ * by all the builds and jobs comparing the same baselines, so that each diffbl is run once.
+ * <p>
+ * Only the activity or version lines of the diffbl output are kept, one file per comparison, named after the digest of the baselines, options and view
+ * compared. The least recently used comparisons are dropped beyond {@link #MAX_ENTRIES}.
+ * </p>
+ */
+public class DiffBlCache {
+
+    /**
+     * Comparisons kept on disk.
+     */
+    static final int            MAX_ENTRIES = Integer.getInteger(DiffBlCache.class.getName() + ".maxEntries", 1000);
+
+    private static final Logger LOG         = Logger.getLogger(DiffBlCache.class.getName());
+
+    private static DiffBlCache  instance;
+
+    /**
+     * @return the cache of the controller, or null outside of a running controller
+     */
+    public static synchronized DiffBlCache getInstance() {
+        if (instance == null && Hudson.getInstance() != null) {
+            instance = new DiffBlCache(new File(Hudson.getInstance().getRootDir(), "clearcase-diffbl-cache"), MAX_ENTRIES);
+        }
+        return instance;
+    }
+
+    private final File dir;
+
+    private final int  maxEntries;
+
+    DiffBlCache(File dir, int maxEntries) {
+        this.dir = dir;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the activity or version lines printed by diffbl for the given baselines, running it only if they aren't cached.
+     *
+     * @see ClearTool#diffbl(EnumSet, String, String, String)
+     */
+    public Reader diffbl(ClearTool clearTool, EnumSet<DiffBlOptions> options, String baseline1, String baseline2, String viewPath) throws IOException {
+        // Version lines hold the path of the view
+        File file = new File(dir, Util.getDigestOf(baseline1 + '\n' + baseline2 + '\n' + options + '\n' + viewPath));
+        String delta = read(file);
+        if (delta != null) {
+            return new StringReader(delta);
+        }
+        StringBuilder sb = new StringBuilder();
+        BufferedReader reader = new BufferedReader(clearTool.diffbl(options, baseline1, baseline2, viewPath));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith("<<") || line.startsWith(">>")) {
+                    sb.append(line).append('\n');
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        delta = sb.toString();
+        // diffbl doesn't report its errors, an empty output may come from one
+        if (delta.length() > 0) {
+            write(file, delta);
+        }
+        return new StringReader(delta);
+    }
+
+    private synchronized void evict() {
+        File[] files = dir.listFiles();
+        if (files == null || files.length <= maxEntries) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                long l1 = o1.lastModified();
+                long l2 = o2.lastModified();
+                return l1 < l2 ? -1 : l1 == l2 ? 0 : 1;
+            }
+        });
+        for (int i = 0; i < files.length - maxEntries; i++) {
+            if (!files[i].delete()) {
+                LOG.log(Level.FINE, "Unable to delete {0}", files[i]);
+            }
+        }
+    }
+
+    private synchronized String read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            String delta = FileUtils.readFileToString(file, "UTF-8");
+            // Last modification date is the last use
+            file.setLastModified(System.currentTimeMillis());
+            return delta;
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to read the baseline comparison " + file, e);
+            return null;
+        }
+    }
+
+    private synchronized void write(File file, String delta) {
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try {
+            FileUtils.writeStringToFile(tmp, delta, "UTF-8");
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Unable to rename " + tmp + " to " + file);
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to save the baseline comparison " + file, e);
+            tmp.delete();
+            return;
+        }
+        evict();
+    }
+}
@@ -42,12 +42,16 @@ public class FacadeService extends ClearcaseService {
     private final StreamService    streamService;
 
     public FacadeService(ClearTool clearTool) {
+        this(clearTool, UcmObjectStore.getInstance());
+    }
+
+    FacadeService(ClearTool clearTool, UcmObjectStore store) {
         super(clearTool);
         this.activityService = new ActivityService(clearTool);
-        this.baselineService = new BaselineService(clearTool);
-        this.componentService = new ComponentService(clearTool);
+        this.baselineService = new BaselineService(clearTool, store, DiffBlCache.getInstance());
+        this.componentService = new ComponentService(clearTool, store);
         this.projectService = new ProjectService(clearTool);
-        this.streamService = new StreamService(clearTool);
+        this.streamService = new StreamService(clearTool, StreamCache.getInstance());
     }
 
     public ActivityService getActivityService() {
@@ -0,0 +1,185 @@
+package hudson.plugins.clearcase.ucm.service;
+
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.ucm.model.Baseline;
+import hudson.plugins.clearcase.ucm.model.Stream;
+import hudson.plugins.clearcase.ucm.model.UcmSelector;
+import hudson.plugins.clearcase.util.ClearCaseUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Controller wide cache of the foundation and latest baselines of the UCM streams, shared by all the jobs and safe for concurrent use.
+ * <p>
+ * Both lists are read with a single <code>lsstream -fmt</code>, whose output is the fingerprint of the entry. An entry younger than {@link #MAX_AGE} is
+ * served as is; an older one is revalidated, and keeps its parsed baselines when the fingerprint hasn't changed. Jobs reading the same stream at the same
+ * time share one lsstream. Callers get copies of the baselines, which they may resolve further without affecting the other jobs.
+ * </p>
+ * <p>
+ * The steps making baselines or rebasing views {@link #invalidate(String) invalidate} the entries they change, so that they are revalidated on their next
+ * use instead of being served until they are {@link #MAX_AGE} old.
+ * </p>
+ */
+public final class StreamCache {
+
+    static final class Entry {
+        private final long       checkedAt;
+        private final String     fingerprint;
+        private final Baseline[] foundationBaselines;
+        private final Baseline[] latestBaselines;
+
+        Entry(String fingerprint, Baseline[] foundationBaselines, Baseline[] latestBaselines, long checkedAt) {
+            this.fingerprint = fingerprint;
+            this.foundationBaselines = foundationBaselines;
+            this.latestBaselines = latestBaselines;
+            this.checkedAt = checkedAt;
+        }
+
+        Baseline[] getFoundationBaselines() {
+            return copy(foundationBaselines);
+        }
+
+        Baseline[] getLatestBaselines() {
+            return copy(latestBaselines);
+        }
+
+        boolean isUsable(long now, long notBefore) {
+            return now - checkedAt < MAX_AGE && checkedAt >= notBefore;
+        }
+
+        private static Baseline[] copy(Baseline[] baselines) {
+            Baseline[] copy = new Baseline[baselines.length];
+            for (int i = 0; i < baselines.length; i++) {
+                copy[i] = baselines[i].copy();
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * The format of the fingerprint: the foundation baselines on the first line, the latest baselines on the second one.
+     */
+    static final String              FORMAT   = "%[found_bls]Xp\\n%[latest_bls]Xp\\n";
+
+    /**
+     * How long an entry is served without being revalidated.
+     */
+    static final long                MAX_AGE  = TimeUnit.SECONDS.toMillis(Long.getLong(StreamCache.class.getName() + ".maxAgeSeconds", 30));
+
+    private static final StreamCache INSTANCE = new StreamCache();
+
+    public static StreamCache getInstance() {
+        return INSTANCE;
+    }
+
+    private final ConcurrentMap<String, Entry>  entries = new ConcurrentHashMap<String, Entry>();
+
+    private final ConcurrentMap<String, Object> locks   = new ConcurrentHashMap<String, Object>();
+
+    StreamCache() {
+    }
+
+    /**
+     * Returns the baselines of the given stream, revalidating them if they are older than {@link #MAX_AGE}.
+     */
+    Entry get(ClearTool clearTool, String streamSelector) throws IOException, InterruptedException {
+        return get(clearTool, streamSelector, 0);
+    }
+
+    /**
+     * Returns the baselines of the given stream, revalidating them if they are older than {@link #MAX_AGE} or than the given time.
+     *
+     * @param notBefore
+     *            the time the baselines must be read after, e.g. the end of the last build, which may have rebased or delivered to the stream
+     */
+    Entry get(ClearTool clearTool, String streamSelector, long notBefore) throws IOException, InterruptedException {
+        Entry entry = entries.get(streamSelector);
+        if (entry != null && entry.isUsable(System.currentTimeMillis(), notBefore)) {
+            return entry;
+        }
+        synchronized (getLock(streamSelector)) {
+            entry = entries.get(streamSelector);
+            long now = System.currentTimeMillis();
+            if (entry != null && entry.isUsable(now, notBefore)) {
+                // Revalidated by another job meanwhile
+                return entry;
+            }
+            String fingerprint = StringUtils.defaultString(clearTool.lsstream(streamSelector, null, FORMAT));
+            if (entry != null && entry.fingerprint.equals(fingerprint)) {
+                entry = new Entry(fingerprint, entry.foundationBaselines, entry.latestBaselines, now);
+            } else {
+                String[] lines = fingerprint.split("\\r?\\n", -1);
+                Baseline[] foundationBaselines = parse(lines[0]);
+                if (foundationBaselines.length == 0) {
+                    throw new IOException("Unexpected output for command \"cleartool lsstream -fmt " + FORMAT + " " + streamSelector
+                            + "\" or no available baseline found");
+                }
+                entry = new Entry(fingerprint, foundationBaselines, parse(lines.length > 1 ? lines[1] : ""), now);
+            }
+            entries.put(streamSelector, entry);
+            return entry;
+        }
+    }
+
+    /**
+     * Revalidates the baselines of the given stream on its next use. The selector may omit the <code>stream:</code> prefix.
+     */
+    public void invalidate(String streamSelector) {
+        if (StringUtils.isBlank(streamSelector)) {
+            return;
+        }
+        String key = UcmSelector.parse(streamSelector, Stream.class).getSelector();
+        synchronized (getLock(key)) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                // The parsed baselines are kept in case the fingerprint didn't change
+                entries.put(key, new Entry(entry.fingerprint, entry.foundationBaselines, entry.latestBaselines, 0));
+            }
+        }
+    }
+
+    /**
+     * Revalidates the baselines of all the streams on their next use, for the changes whose stream isn't known, such as the rebase of a view.
+     */
+    public void invalidateAll() {
+        for (String streamSelector : entries.keySet()) {
+            invalidate(streamSelector);
+        }
+    }
+
+    /**
+     * Reads the baselines of the given stream ahead of its first use.
+     */
+    public void prefetch(ClearTool clearTool, String streamSelector) throws IOException, InterruptedException {
+        get(clearTool, streamSelector);
+    }
+
+    private Object getLock(String streamSelector) {
+        Object lock = locks.get(streamSelector);
+        if (lock == null) {
+            Object newLock = new Object();
+            lock = locks.putIfAbsent(streamSelector, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+    private Baseline[] parse(String line) {
+        List<Baseline> baselines = new ArrayList<Baseline>();
+        if (ClearCaseUtils.isCleartoolOutputValid(line)) {
+            for (String b : StringUtils.split(line)) {
+                baselines.add(UcmSelector.parse(b, Baseline.class));
+            }
+        }
+        return baselines.toArray(new Baseline[baselines.size()]);
+    }
+}
@@ -23,6 +23,7 @@
  */
 package hudson.plugins.clearcase.ucm.service;
 
+import hudson.Util;
 import hudson.plugins.clearcase.ClearTool;
 import hudson.plugins.clearcase.ConfigSpec;
 import hudson.plugins.clearcase.model.Versions;
@@ -34,6 +35,8 @@ import hudson.plugins.clearcase.util.ClearCaseUtils;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -46,16 +49,51 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 
 public class StreamService extends ClearcaseService {
+    /**
+     * One line per activity of the stream, with its versions.
+     */
+    static final String           ACTIVITY_FINGERPRINT_FORMAT = "%n %[versions]Np\\n";
+
+    private final StreamCache     cache;
+
     private Cache<String, Stream> streamPool = CacheBuilder.newBuilder().maximumSize(10).build();
 
     StreamService(ClearTool clearTool) {
+        this(clearTool, null);
+    }
+
+    StreamService(ClearTool clearTool, StreamCache cache) {
         super(clearTool);
+        this.cache = cache;
     }
 
     public boolean exists(Stream stream) throws IOException, InterruptedException {
         return clearTool.doesStreamExist(stream.getSelector());
     }
 
+    /**
+     * @return a digest of the activities of the given stream and of their versions, which changes whenever work is checked in or delivered to the stream
+     */
+    public String getActivityFingerprint(Stream stream, String viewPath) throws IOException, InterruptedException {
+        Reader reader = clearTool.lsactivityIn(stream.getSelector(), ACTIVITY_FINGERPRINT_FORMAT, viewPath);
+        BufferedReader br = new BufferedReader(reader);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            for (String line = br.readLine(); line != null; line = br.readLine()) {
+                if (ClearCaseUtils.isCleartoolOutputValid(line)) {
+                    digest.update(line.getBytes("UTF-8"));
+                    digest.update((byte) '\n');
+                }
+            }
+            return Util.toHexString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        } finally {
+            IOUtils.closeQuietly(br);
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
     /**
      * @return the current config spec for the given stream.
      * @throws IOException
@@ -74,6 +112,18 @@ public class StreamService extends ClearcaseService {
      * @returns the current foundation baselines for the given stream.
      */
     public Baseline[] getFoundationBaselines(Stream stream) throws IOException, InterruptedException {
+        return getFoundationBaselines(stream, 0);
+    }
+
+    /**
+     * @param notBefore
+     *            the time the baselines must be read after, when they come from the controller wide cache
+     * @returns the current foundation baselines for the given stream.
+     */
+    public Baseline[] getFoundationBaselines(Stream stream, long notBefore) throws IOException, InterruptedException {
+        if (cache != null) {
+            return cache.get(clearTool, stream.getSelector(), notBefore).getFoundationBaselines();
+        }
         Stream streamFromPool = getFromPool(stream);
         if (streamFromPool.getFoundationBaselines() == null) {
             streamFromPool.setFoundationBaselines(describeToBaselines(streamFromPool, "%[found_bls]Xp"));
@@ -85,6 +135,13 @@ public class StreamService extends ClearcaseService {
      * @return the latest baselines available on the given stream
      */
     public Baseline[] getLatestBaselines(Stream stream) throws IOException, InterruptedException {
+        if (cache != null) {
+            Baseline[] latestBaselines = cache.get(clearTool, stream.getSelector()).getLatestBaselines();
+            if (latestBaselines.length == 0) {
+                throw new IOException("No latest baseline found for " + stream.getSelector());
+            }
+            return latestBaselines;
+        }
         Stream streamFromPool = getFromPool(stream);
         if (streamFromPool.getLatestBaselines() == null) {
             streamFromPool.setLatestBaselines(describeToBaselines(streamFromPool, "%[latest_bls]Xp"));
@@ -169,12 +226,8 @@ public class StreamService extends ClearcaseService {
     }
 
     private Stream getFromPool(Stream stream) {
-        Stream streamFromPool = streamPool.getIfPresent(stream.getSelector());
-        if (streamFromPool == null) {
-            streamPool.put(stream.getSelector(), stream);
-            streamFromPool = stream;
-        }
-        return streamFromPool;
+        Stream streamFromPool = streamPool.asMap().putIfAbsent(stream.getSelector(), stream);
+        return streamFromPool == null ? stream : streamFromPool;
     }
 
 }
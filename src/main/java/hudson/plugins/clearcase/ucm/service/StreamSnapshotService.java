@@ -0,0 +1,119 @@
+package hudson.plugins.clearcase.ucm.service;
+
+import hudson.plugins.clearcase.ucm.model.Baseline;
+import hudson.plugins.clearcase.ucm.model.Stream;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller wide snapshots of the UCM streams being polled: the foundation baselines of a stream and the root directories of their components are computed
+ * once per {@link #MAX_AGE}, and handed to every job polling that stream. The root directories are printed with the separators of the node running
+ * cleartool, so Unix and Windows nodes get their own snapshots.
+ */
+public final class StreamSnapshotService {
+
+    /**
+     * The revision data of a stream at a given time. Callers get copies of the arrays and of the baselines.
+     */
+    public static final class Snapshot {
+        private final Baseline[] foundationBaselines;
+        private final String[]   rootDirs;
+        private final long       takenAt;
+
+        Snapshot(Baseline[] foundationBaselines, String[] rootDirs, long takenAt) {
+            this.foundationBaselines = foundationBaselines;
+            this.rootDirs = rootDirs;
+            this.takenAt = takenAt;
+        }
+
+        /**
+         * @return the time elapsed since the snapshot was taken, in milliseconds
+         */
+        public long getAge() {
+            return System.currentTimeMillis() - takenAt;
+        }
+
+        public Baseline[] getFoundationBaselines() {
+            Baseline[] copy = new Baseline[foundationBaselines.length];
+            for (int i = 0; i < foundationBaselines.length; i++) {
+                copy[i] = foundationBaselines[i].copy();
+            }
+            return copy;
+        }
+
+        public String[] getRootDirs() {
+            return rootDirs.clone();
+        }
+
+        boolean isUsable(long notBefore) {
+            return getAge() < MAX_AGE && takenAt >= notBefore;
+        }
+    }
+
+    /**
+     * How long a snapshot is handed to the jobs before being taken again.
+     */
+    static final long                          MAX_AGE  = TimeUnit.SECONDS.toMillis(Long.getLong(StreamSnapshotService.class.getName()
+            + ".maxAgeSeconds", 60));
+
+    private static final StreamSnapshotService INSTANCE = new StreamSnapshotService();
+
+    public static StreamSnapshotService getInstance() {
+        return INSTANCE;
+    }
+
+    private final ConcurrentMap<String, Object>   locks     = new ConcurrentHashMap<String, Object>();
+
+    private final ConcurrentMap<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
+
+    StreamSnapshotService() {
+    }
+
+    /**
+     * Returns the snapshot of the given stream, taking it again if it is older than {@link #MAX_AGE} or than the given time. Jobs asking for the same stream
+     * at the same time share one computation.
+     *
+     * @param unix
+     *            true if cleartool runs on a Unix node
+     * @param notBefore
+     *            the time the snapshot must be taken after, e.g. the end of the last build, which may have rebased or delivered to the stream
+     */
+    public Snapshot get(FacadeService facadeService, String streamSelector, boolean unix, long notBefore) throws IOException, InterruptedException {
+        StreamService streamService = facadeService.getStreamService();
+        Stream stream = streamService.parse(streamSelector);
+        String key = stream.getSelector() + (unix ? "|unix" : "|windows");
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot != null && snapshot.isUsable(notBefore)) {
+            return snapshot;
+        }
+        synchronized (getLock(key)) {
+            snapshot = snapshots.get(key);
+            if (snapshot != null && snapshot.isUsable(notBefore)) {
+                // Taken by another job meanwhile
+                return snapshot;
+            }
+            long now = System.currentTimeMillis();
+            // Read after notBefore, so that the root dirs below are computed from the same fresh baselines
+            Baseline[] foundationBaselines = streamService.getFoundationBaselines(stream, notBefore);
+            String[] rootDirs = facadeService.getAllRootDirsFor(streamSelector);
+            snapshot = new Snapshot(foundationBaselines, rootDirs.clone(), now);
+            snapshots.put(key, snapshot);
+            return snapshot;
+        }
+    }
+
+    private Object getLock(String key) {
+        Object lock = locks.get(key);
+        if (lock == null) {
+            Object newLock = new Object();
+            lock = locks.putIfAbsent(key, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+}
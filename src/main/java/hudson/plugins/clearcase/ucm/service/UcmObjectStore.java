@@ -0,0 +1,205 @@
+package hudson.plugins.clearcase.ucm.service;
+
+import hudson.model.Hudson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Controller wide store of the UCM facts that never change once the objects are created: the component of a baseline, the baselines it depends on, the root
+ * directory of a component and the config spec generated from a set of foundation baselines. It is shared by all the UCM jobs and persisted under
+ * JENKINS_HOME, so that these facts are asked to ClearCase once, not once per poll or build.
+ * <p>
+ * The facts are appended to a journal file, loaded on first use. The journal is rewritten with the current facts only when it is loaded with values
+ * replaced since, and when the replaced values add up to as many entries as the current facts.
+ * </p>
+ */
+public class UcmObjectStore {
+
+    private static final String         COMPONENT   = "component.";
+
+    private static final String         CONFIG_SPEC = "configspec.";
+
+    private static final String         DEPENDS_ON  = "depends.";
+
+    private static final Logger         LOG         = Logger.getLogger(UcmObjectStore.class.getName());
+
+    private static final String         ROOT_DIR    = "rootdir.";
+
+    private static UcmObjectStore       instance;
+
+    /**
+     * @return the store of the controller, or null outside of a running controller
+     */
+    public static synchronized UcmObjectStore getInstance() {
+        if (instance == null && Hudson.getInstance() != null) {
+            instance = new UcmObjectStore(new File(Hudson.getInstance().getRootDir(), "clearcase-ucm-objects.properties"));
+        }
+        return instance;
+    }
+
+    private final File                  file;
+
+    private Map<String, String>         facts;
+
+    /**
+     * Entries of the journal file, replaced values included.
+     */
+    private int                         journalEntries;
+
+    UcmObjectStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the selector of the component of the given baseline, or null if unknown
+     */
+    public String getComponent(String baselineSelector) {
+        return get(COMPONENT + baselineSelector);
+    }
+
+    /**
+     * @return the config spec generated for the given foundation baselines, or null if unknown
+     */
+    public String getConfigSpec(String[] baselineSelectors, boolean unix) {
+        return get(CONFIG_SPEC + getConfigSpecKey(baselineSelectors, unix));
+    }
+
+    /**
+     * @return the selectors of the baselines the given baseline depends on (itself included), or null if unknown
+     */
+    public String[] getDependentBaselines(String baselineSelector) {
+        String value = get(DEPENDS_ON + baselineSelector);
+        return value == null ? null : StringUtils.split(value);
+    }
+
+    /**
+     * @return the root directory of the given component, empty for a component without root directory such as a composite component, or null if unknown
+     */
+    public String getRootDir(String componentSelector, boolean unix) {
+        return get(ROOT_DIR + (unix ? "unix." : "windows.") + componentSelector);
+    }
+
+    public void putComponent(String baselineSelector, String componentSelector) {
+        put(COMPONENT + baselineSelector, componentSelector);
+    }
+
+    public void putConfigSpec(String[] baselineSelectors, boolean unix, String configSpec) {
+        put(CONFIG_SPEC + getConfigSpecKey(baselineSelectors, unix), configSpec);
+    }
+
+    public void putDependentBaselines(String baselineSelector, String[] dependentSelectors) {
+        put(DEPENDS_ON + baselineSelector, StringUtils.join(dependentSelectors, ' '));
+    }
+
+    public void putRootDir(String componentSelector, boolean unix, String rootDir) {
+        put(ROOT_DIR + (unix ? "unix." : "windows.") + componentSelector, rootDir);
+    }
+
+    /**
+     * Rewrites the journal with the current facts only.
+     */
+    private void compact() {
+        Properties properties = new Properties();
+        properties.putAll(facts);
+        File tmp = new File(file.getPath() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            properties.store(out, null);
+            out.close();
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Unable to rename " + tmp + " to " + file);
+                }
+            }
+            journalEntries = facts.size();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to compact the UCM objects of " + file, e);
+            IOUtils.closeQuietly(out);
+            tmp.delete();
+        }
+    }
+
+    private String get(String key) {
+        return getFacts().get(key);
+    }
+
+    private String getConfigSpecKey(String[] baselineSelectors, boolean unix) {
+        String[] sorted = baselineSelectors.clone();
+        Arrays.sort(sorted);
+        return (unix ? "unix." : "windows.") + StringUtils.join(sorted, ' ');
+    }
+
+    private synchronized Map<String, String> getFacts() {
+        if (facts == null) {
+            facts = new ConcurrentHashMap<String, String>();
+            if (file.exists()) {
+                Properties properties = new Properties();
+                try {
+                    // Properties are read as written, in ISO-8859-1 with escapes
+                    String journal = FileUtils.readFileToString(file, "ISO-8859-1");
+                    properties.load(new StringReader(journal));
+                    for (String line : journal.split("\\r?\\n")) {
+                        if (StringUtils.isNotBlank(line) && !line.startsWith("#")) {
+                            journalEntries++;
+                        }
+                    }
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Unable to read the UCM objects from " + file, e);
+                }
+                for (String key : properties.stringPropertyNames()) {
+                    facts.put(key, properties.getProperty(key));
+                }
+                if (journalEntries > facts.size()) {
+                    compact();
+                }
+            }
+        }
+        return facts;
+    }
+
+    private synchronized void put(String key, String value) {
+        if (value == null || value.equals(getFacts().put(key, value))) {
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty(key, value);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        OutputStream out = null;
+        try {
+            properties.store(buffer, null);
+            // Drop the date comment written by Properties
+            String entry = buffer.toString("ISO-8859-1").replaceFirst("^#.*\\r?\\n", "");
+            File dir = file.getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Unable to create " + dir);
+            }
+            out = new FileOutputStream(file, true);
+            out.write(entry.getBytes("ISO-8859-1"));
+            journalEntries++;
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to save the UCM object " + key + " to " + file, e);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+        if (journalEntries >= 2 * facts.size()) {
+            compact();
+        }
+    }
+}
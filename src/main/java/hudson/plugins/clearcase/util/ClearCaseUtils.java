@@ -23,7 +23,34 @@
  */
 package hudson.plugins.clearcase.util;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ClearCaseUtils {
+    /**
+     * Splits object selectors in chunks passed to a single command, each one holding at most maxLength characters of selectors.
+     */
+    public static List<String[]> chunkSelectors(List<String> selectors, int maxLength) {
+        List<String[]> chunks = new ArrayList<String[]>();
+        List<String> chunk = new ArrayList<String>();
+        int length = 0;
+        for (String selector : selectors) {
+            // Quotes and separator
+            int selectorLength = selector.length() + 3;
+            if (!chunk.isEmpty() && length + selectorLength > maxLength) {
+                chunks.add(chunk.toArray(new String[chunk.size()]));
+                chunk.clear();
+                length = 0;
+            }
+            chunk.add(selector);
+            length += selectorLength;
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk.toArray(new String[chunk.size()]));
+        }
+        return chunks;
+    }
+
     public static boolean isCleartoolOutputValid(String line) {
         return !line.startsWith("cleartool: Error:") && !line.startsWith("Process leaked file descriptors.");
     }
@@ -0,0 +1,114 @@
+package hudson.plugins.clearcase.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller wide pool of daemon threads running the cleartool commands that the history and baseline lookups split into parallel tasks. All the jobs
+ * share it, so that concurrent polls and builds don't run more than {@link #THREADS} of these commands at a time.
+ * <p>
+ * The number of threads can be changed with the <code>hudson.plugins.clearcase.util.CommandExecutor.threads</code> system property.
+ * </p>
+ */
+public final class CommandExecutor {
+
+    /**
+     * The threads of the pool, which run the tasks they submit themselves rather than wait for a thread of the pool.
+     */
+    private static final class PoolThread extends Thread {
+        PoolThread(Runnable target) {
+            super(target, "ClearCase command");
+            setDaemon(true);
+        }
+    }
+
+    /**
+     * Commands run at the same time by all the jobs.
+     */
+    static final int                        THREADS  = Integer.getInteger(CommandExecutor.class.getName() + ".threads", 8);
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(),
+                                                              new ThreadFactory() {
+                                                                  @Override
+                                                                  public Thread newThread(Runnable r) {
+                                                                      return new PoolThread(r);
+                                                                  }
+                                                              });
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private CommandExecutor() {
+    }
+
+    /**
+     * Runs the given tasks on the shared pool, at most <code>maxParallel</code> of them at a time, and returns their results in the order of the tasks. The
+     * first failure cancels the tasks still running and is rethrown. Tasks submitted from a thread of the pool are run one after the other by that thread.
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int maxParallel) throws IOException, InterruptedException {
+        List<T> results = new ArrayList<T>(tasks.size());
+        if (Thread.currentThread() instanceof PoolThread) {
+            // Waiting for the pool from one of its threads could exhaust it
+            for (Callable<T> task : tasks) {
+                results.add(call(task));
+            }
+            return results;
+        }
+        CompletionService<T> completionService = new ExecutorCompletionService<T>(EXECUTOR);
+        List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+        try {
+            while (futures.size() < Math.min(maxParallel, tasks.size())) {
+                futures.add(completionService.submit(tasks.get(futures.size())));
+            }
+            for (int done = 0; done < tasks.size(); done++) {
+                completionService.take().get();
+                if (futures.size() < tasks.size()) {
+                    futures.add(completionService.submit(tasks.get(futures.size())));
+                }
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    private static <T> T call(Callable<T> task) throws IOException, InterruptedException {
+        try {
+            return task.call();
+        } catch (IOException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static IOException unwrap(Throwable cause) throws InterruptedException {
+        if (cause instanceof InterruptedException) {
+            throw (InterruptedException) cause;
+        }
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException(cause);
+    }
+}
@@ -0,0 +1,209 @@
+package hudson.plugins.clearcase.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Sorts a stream of values with bounded memory. Values are buffered up to a threshold, then sorted and spilled to a temporary file; spilled runs are merged
+ * when the sorted values are read back.
+ * <p>
+ * The default threshold can be changed with the <code>hudson.plugins.clearcase.util.SpillingSorter.maxInMemory</code> system property.
+ * </p>
+ */
+public class SpillingSorter<T> implements Closeable {
+
+    /**
+     * Reads and writes values from/to spill files.
+     */
+    public interface Codec<T> {
+        T read(DataInput in) throws IOException;
+
+        void write(DataOutput out, T value) throws IOException;
+    }
+
+    /**
+     * Receives sorted values.
+     */
+    public interface Sink<T> {
+        void accept(T value) throws IOException, InterruptedException;
+    }
+
+    private static final class Run<T> {
+        private T                     head;
+        private final int             index;
+        private final DataInputStream in;
+
+        Run(int index, DataInputStream in) {
+            this.index = index;
+            this.in = in;
+        }
+    }
+
+    public static final int     DEFAULT_MAX_IN_MEMORY = Integer.getInteger(SpillingSorter.class.getName() + ".maxInMemory", 10000);
+
+    private static final Logger LOG                   = Logger.getLogger(SpillingSorter.class.getName());
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutput, String)}.
+     */
+    public static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Writes a nullable string of any length ({@link DataOutput#writeUTF(String)} is limited to 64k).
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private List<T>                     buffer = new ArrayList<T>();
+    private final Codec<T>              codec;
+    private final Comparator<? super T> comparator;
+    private final int                   maxInMemory;
+    private final List<File>            spills = new ArrayList<File>();
+
+    public SpillingSorter(Comparator<? super T> comparator, Codec<T> codec) {
+        this(comparator, codec, DEFAULT_MAX_IN_MEMORY);
+    }
+
+    public SpillingSorter(Comparator<? super T> comparator, Codec<T> codec, int maxInMemory) {
+        this.comparator = comparator;
+        this.codec = codec;
+        this.maxInMemory = Math.max(1, maxInMemory);
+    }
+
+    public void add(T value) throws IOException {
+        buffer.add(value);
+        if (buffer.size() >= maxInMemory) {
+            spill();
+        }
+    }
+
+    /**
+     * Deletes the spill files.
+     */
+    @Override
+    public void close() {
+        for (File spill : spills) {
+            if (!spill.delete()) {
+                LOG.warning("Unable to delete " + spill);
+            }
+        }
+        spills.clear();
+        buffer = new ArrayList<T>();
+    }
+
+    public int getSpillCount() {
+        return spills.size();
+    }
+
+    /**
+     * Sends all the values, sorted, to the given sink. Values with equal keys are sent in insertion order. The sorter is empty afterwards.
+     */
+    public void sortTo(Sink<? super T> sink) throws IOException, InterruptedException {
+        if (spills.isEmpty()) {
+            List<T> values = buffer;
+            buffer = new ArrayList<T>();
+            Collections.sort(values, comparator);
+            for (T value : values) {
+                sink.accept(value);
+            }
+            return;
+        }
+        if (!buffer.isEmpty()) {
+            spill();
+        }
+        mergeSpills(sink);
+        close();
+    }
+
+    private boolean advance(Run<T> run) throws IOException {
+        if (!run.in.readBoolean()) {
+            run.head = null;
+            return false;
+        }
+        run.head = codec.read(run.in);
+        return true;
+    }
+
+    private void mergeSpills(Sink<? super T> sink) throws IOException, InterruptedException {
+        PriorityQueue<Run<T>> runs = new PriorityQueue<Run<T>>(spills.size(), new Comparator<Run<T>>() {
+            @Override
+            public int compare(Run<T> o1, Run<T> o2) {
+                int result = comparator.compare(o1.head, o2.head);
+                // Runs were spilled in insertion order, keep it for equal values
+                return result != 0 ? result : o1.index - o2.index;
+            }
+        });
+        List<DataInputStream> streams = new ArrayList<DataInputStream>();
+        try {
+            for (int i = 0; i < spills.size(); i++) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(spills.get(i))));
+                streams.add(in);
+                Run<T> run = new Run<T>(i, in);
+                if (advance(run)) {
+                    runs.add(run);
+                }
+            }
+            while (!runs.isEmpty()) {
+                Run<T> run = runs.poll();
+                sink.accept(run.head);
+                if (advance(run)) {
+                    runs.add(run);
+                }
+            }
+        } finally {
+            for (DataInputStream in : streams) {
+                IOUtils.closeQuietly(in);
+            }
+        }
+    }
+
+    private void spill() throws IOException {
+        Collections.sort(buffer, comparator);
+        File file = File.createTempFile("clearcase", ".spill");
+        spills.add(file);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            for (T value : buffer) {
+                out.writeBoolean(true);
+                codec.write(out, value);
+            }
+            out.writeBoolean(false);
+        } finally {
+            out.close();
+        }
+        LOG.fine("Spilled " + buffer.size() + " values to " + file);
+        buffer = new ArrayList<T>();
+    }
+}
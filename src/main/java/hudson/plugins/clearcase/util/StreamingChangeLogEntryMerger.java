@@ -0,0 +1,143 @@
+package hudson.plugins.clearcase.util;
+
+import hudson.plugins.clearcase.ClearCaseChangeLogEntry;
+import hudson.plugins.clearcase.action.ChangeLogWriter;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Date;
+
+import org.apache.commons.lang.ObjectUtils;
+
+/**
+ * Merges change log entries like {@link ChangeLogEntryMerger}, with bounded memory. Entries are sorted by user, comment and date so that mergeable entries
+ * are adjacent; merged entries are then sorted by date, newest first. Both sorts spill to disk when there are too many entries.
+ */
+public class StreamingChangeLogEntryMerger implements Closeable {
+
+    static final SpillingSorter.Codec<ClearCaseChangeLogEntry> CODEC = new SpillingSorter.Codec<ClearCaseChangeLogEntry>() {
+        @Override
+        public ClearCaseChangeLogEntry read(DataInput in) throws IOException {
+            ClearCaseChangeLogEntry entry = new ClearCaseChangeLogEntry();
+            entry.setUser(SpillingSorter.readString(in));
+            entry.setComment(SpillingSorter.readString(in));
+            entry.setDate(new Date(in.readLong()));
+            int elements = in.readInt();
+            for (int i = 0; i < elements; i++) {
+                entry.addElement(new ClearCaseChangeLogEntry.FileElement(SpillingSorter.readString(in), SpillingSorter.readString(in), SpillingSorter
+                        .readString(in), SpillingSorter.readString(in)));
+            }
+            return entry;
+        }
+
+        @Override
+        public void write(DataOutput out, ClearCaseChangeLogEntry entry) throws IOException {
+            SpillingSorter.writeString(out, entry.getUser());
+            SpillingSorter.writeString(out, entry.getComment());
+            out.writeLong(entry.getDate().getTime());
+            out.writeInt(entry.getElements().size());
+            for (ClearCaseChangeLogEntry.FileElement element : entry.getElements()) {
+                SpillingSorter.writeString(out, element.getFile());
+                SpillingSorter.writeString(out, element.getVersion());
+                SpillingSorter.writeString(out, element.getAction());
+                SpillingSorter.writeString(out, element.getOperation());
+            }
+        }
+    };
+
+    private static final Comparator<ClearCaseChangeLogEntry> BY_DATE_DESCENDING = new Comparator<ClearCaseChangeLogEntry>() {
+        @Override
+        public int compare(ClearCaseChangeLogEntry o1, ClearCaseChangeLogEntry o2) {
+            return o2.getDate().compareTo(o1.getDate());
+        }
+    };
+
+    private static final Comparator<ClearCaseChangeLogEntry> BY_USER_COMMENT_DATE = new Comparator<ClearCaseChangeLogEntry>() {
+        @Override
+        public int compare(ClearCaseChangeLogEntry o1, ClearCaseChangeLogEntry o2) {
+            int result = ObjectUtils.compare(o1.getUser(), o2.getUser());
+            if (result == 0) {
+                result = ObjectUtils.compare(o1.getComment(), o2.getComment());
+            }
+            if (result == 0) {
+                result = o1.getDate().compareTo(o2.getDate());
+            }
+            return result;
+        }
+    };
+
+    private final SpillingSorter<ClearCaseChangeLogEntry> entries;
+
+    private final long                                    maxTimeDifference;
+
+    private final SpillingSorter<ClearCaseChangeLogEntry> merged;
+
+    public StreamingChangeLogEntryMerger(int maxTimeDifferenceMillis) {
+        this(maxTimeDifferenceMillis, SpillingSorter.DEFAULT_MAX_IN_MEMORY);
+    }
+
+    public StreamingChangeLogEntryMerger(int maxTimeDifferenceMillis, int maxInMemory) {
+        this.maxTimeDifference = maxTimeDifferenceMillis + 1000;
+        this.entries = new SpillingSorter<ClearCaseChangeLogEntry>(BY_USER_COMMENT_DATE, CODEC, maxInMemory);
+        this.merged = new SpillingSorter<ClearCaseChangeLogEntry>(BY_DATE_DESCENDING, CODEC, maxInMemory);
+    }
+
+    public void add(ClearCaseChangeLogEntry entry) throws IOException {
+        entries.add(entry);
+    }
+
+    @Override
+    public void close() {
+        entries.close();
+        merged.close();
+    }
+
+    /**
+     * Merges the added entries and writes them, newest first.
+     *
+     * @return the number of entries written
+     */
+    public int writeTo(final ChangeLogWriter writer) throws IOException, InterruptedException {
+        MergingSink mergingSink = new MergingSink();
+        entries.sortTo(mergingSink);
+        mergingSink.flush();
+        final int[] count = new int[1];
+        merged.sortTo(new SpillingSorter.Sink<ClearCaseChangeLogEntry>() {
+            @Override
+            public void accept(ClearCaseChangeLogEntry entry) throws IOException {
+                writer.write(entry);
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    private class MergingSink implements SpillingSorter.Sink<ClearCaseChangeLogEntry> {
+        private ClearCaseChangeLogEntry current;
+        private long                    newest;
+
+        @Override
+        public void accept(ClearCaseChangeLogEntry entry) throws IOException {
+            if (current != null && ObjectUtils.equals(current.getUser(), entry.getUser()) && ObjectUtils.equals(current.getComment(), entry.getComment())
+                    && entry.getDate().getTime() - newest < maxTimeDifference) {
+                // The entry date stays the oldest date of the merged entries
+                current.addElements(entry.getElements());
+                newest = entry.getDate().getTime();
+                return;
+            }
+            flush();
+            current = entry;
+            newest = entry.getDate().getTime();
+        }
+
+        void flush() throws IOException {
+            if (current != null) {
+                merged.add(current);
+                current = null;
+            }
+        }
+    }
+}
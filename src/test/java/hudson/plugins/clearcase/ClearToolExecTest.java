@@ -435,6 +435,15 @@ public class ClearToolExecTest extends AbstractWorkspaceTest {
                 eq(true));
     }
 
+    @Test
+    public void testSetBaselinePromotionLevelOfSeveralBaselines() throws Exception {
+        clearToolExec.setBaselinePromotionLevel(new String[] { "bl1@\\pvob", "bl2@\\pvob" }, "BUILT");
+
+        verify(ccLauncher).run(
+                eq(new String[] { "chbl", "-c", "Hudson set baseline to promotion level BUILT", "-level", "BUILT", "bl1@\\pvob", "bl2@\\pvob" }),
+                any(InputStream.class), any(OutputStream.class), any(FilePath.class), eq(true));
+    }
+
     @Test
     public void testSetcs() throws Exception {
         when(ccLauncher.getWorkspace()).thenReturn(workspace);
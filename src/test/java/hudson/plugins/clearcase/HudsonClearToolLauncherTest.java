@@ -24,6 +24,8 @@
  */
 package hudson.plugins.clearcase;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.verify;
@@ -127,4 +129,28 @@ public class HudsonClearToolLauncherTest extends AbstractWorkspaceTest {
 
         verify(taskListener, atLeastOnce()).getLogger();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCommandsRunOnOtherThreadsAreCounted() throws Exception {
+        when(taskListener.getLogger()).thenReturn(new PrintStream(new ByteArrayOutputStream()));
+        final ClearToolLauncher launcherImpl = new HudsonClearToolLauncherDummy("exec", "ccscm", taskListener, workspace, launcher);
+        int before = HudsonClearToolLauncher.getCommandsRun();
+
+        // Like the thread pools of the history actions
+        final Exception[] failure = new Exception[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    launcherImpl.run(new String[] { "a" }, null, null, null, true);
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertNull(failure[0]);
+        assertEquals(before + 1, HudsonClearToolLauncher.getCommandsRun());
+    }
+}
@@ -0,0 +1,79 @@
+package hudson.plugins.clearcase.action;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ViewPreUpdaterTest {
+
+    @Test
+    public void testQueuedUpdateIsCancelledAndRunningOneAwaited() throws Exception {
+        final CountDownLatch started = new CountDownLatch(ViewPreUpdater.MAX_PER_NODE);
+        final CountDownLatch release = new CountDownLatch(1);
+        ViewPreUpdater updater = new ViewPreUpdater();
+        for (int i = 0; i < ViewPreUpdater.MAX_PER_NODE; i++) {
+            SnapshotCheckoutAction running = mock(SnapshotCheckoutAction.class);
+            doAnswer(new Answer<Void>() {
+                @Override
+                public Void answer(InvocationOnMock invocation) throws Throwable {
+                    started.countDown();
+                    release.await();
+                    return null;
+                }
+            }).when(running).preUpdate(anyString());
+            assertTrue(updater.schedule("node", "running" + i, running));
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        SnapshotCheckoutAction queued = mock(SnapshotCheckoutAction.class);
+        assertTrue(updater.schedule("node", "queued", queued));
+        assertFalse(updater.schedule("node", "queued", queued));
+        assertFalse("A build on another node doesn't wait", updater.await("other", "queued"));
+        assertTrue(updater.isPending("node", "queued"));
+        assertFalse(updater.await("node", "queued"));
+        assertFalse(updater.isPending("node", "queued"));
+
+        release.countDown();
+        assertTrue(updater.await("node", "running0"));
+        assertFalse(updater.isPending("node", "running0"));
+        verify(queued, never()).preUpdate(anyString());
+    }
+
+    @Test
+    public void testStuckUpdateIsInterruptedAfterTimeout() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        ViewPreUpdater updater = new ViewPreUpdater();
+        SnapshotCheckoutAction stuck = mock(SnapshotCheckoutAction.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                started.countDown();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(10));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return null;
+            }
+        }).when(stuck).preUpdate(anyString());
+        assertTrue(updater.schedule("node", "stuck", stuck));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        assertFalse("The checkout updates the view itself", updater.await("node", "stuck", 50));
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertFalse(updater.isPending("node", "stuck"));
+    }
+}
@@ -26,16 +26,19 @@ package hudson.plugins.clearcase.base;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNull;
 import static org.mockito.Matchers.notNull;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import hudson.EnvVars;
+import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.Build;
 import hudson.model.AbstractProject;
@@ -49,13 +52,17 @@ import hudson.plugins.clearcase.ClearCaseSCM;
 import hudson.plugins.clearcase.ClearCaseSCMDummy;
 import hudson.plugins.clearcase.ClearTool;
 import hudson.plugins.clearcase.ClearToolLauncher;
+import hudson.plugins.clearcase.history.CommentsAwareFilter;
 import hudson.plugins.clearcase.history.DefaultFilter;
 import hudson.plugins.clearcase.history.DestroySubBranchFilter;
 import hudson.plugins.clearcase.history.FileFilter;
 import hudson.plugins.clearcase.history.Filter;
 import hudson.plugins.clearcase.history.FilterChain;
+import hudson.plugins.clearcase.history.HistoryEntry;
 import hudson.plugins.clearcase.history.LabelFilter;
+import hudson.plugins.clearcase.history.PolledHistory;
 import hudson.plugins.clearcase.util.BuildVariableResolver;
+import hudson.plugins.clearcase.util.ClearCaseUtils;
 import hudson.scm.ChangeLogSet;
 import hudson.scm.ChangeLogSet.Entry;
 import hudson.util.LogTaskListener;
@@ -66,6 +73,7 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -148,6 +156,29 @@ public class BaseHistoryActionTest extends AbstractWorkspaceTest {
         verifyCleartoolLsHistoryWithValidHistoryFormat();
     }
 
+    @Test
+    public void assertFormatLeavesOutUnneededComments() throws Exception {
+        when(cleartool.doesViewExist("viewTag")).thenReturn(Boolean.TRUE);
+        when(cleartoolLsHistoryWithAnyHistoryFormat()).thenReturn(
+                new StringReader("\"20070827.085901\" \"user\" \"Source\\File1.cs\" \"\\main\\1\" \"create version\" \"checkin\"\n"));
+
+        BaseHistoryAction action = new BaseHistoryAction(cleartool, false, new DefaultFilter(), 0);
+        action.setCommentsNeeded(false);
+        assertEquals("\\\"%Nd\\\" \\\"%u\\\" \\\"%En\\\" \\\"%Vn\\\" \\\"%e\\\" \\\"%o\\\" \\n", action.getLsHistoryFormat());
+        assertTrue(action.hasChanges(new Date(), "viewPath", "viewTag", new String[] { "Release_2_1_int" }, new String[] { "vobs/projects/Server" }));
+
+        CommentsAwareFilter commentFilter = mock(CommentsAwareFilter.class);
+        when(commentFilter.requiresComments()).thenReturn(Boolean.TRUE);
+        action = new BaseHistoryAction(cleartool, false, commentFilter, 0);
+        action.setCommentsNeeded(false);
+        assertEquals(VALID_HISTORY_FORMAT, action.getLsHistoryFormat());
+
+        // Filters that don't tell may read the comments
+        action = new BaseHistoryAction(cleartool, false, mock(Filter.class), 0);
+        action.setCommentsNeeded(false);
+        assertEquals(VALID_HISTORY_FORMAT, action.getLsHistoryFormat());
+    }
+
     @Test
     public void assertIgnoringDestroySubBranchEvent() throws Exception {
         when(cleartool.doesViewExist("viewTag")).thenReturn(Boolean.TRUE);
@@ -661,6 +692,56 @@ public class BaseHistoryActionTest extends AbstractWorkspaceTest {
         verifyCleartoolLsHistoryWithAnyHistoryFormat();
     }
 
+    @Test
+    public void testPolledHistoryIsReused() throws Exception {
+        String polledEvent = "\"20070827.085901\" \"user1\" \"Source\\File1.cs\" \"\\main\\1\" \"create version\" \"checkin\"\n";
+        String newEvent = "\"20070828.085901\" \"user2\" \"Source\\File2.cs\" \"\\main\\1\" \"create version\" \"checkin\"\n";
+        Date time = new Date(System.currentTimeMillis() - 86400000L);
+        when(cleartool.doesViewExist("viewTag")).thenReturn(Boolean.TRUE);
+        when(cleartoolLsHistoryWithAnyHistoryFormat()).thenReturn(new StringReader(polledEvent), new StringReader(newEvent + polledEvent));
+
+        BaseHistoryAction poll = new BaseHistoryAction(cleartool, false, null, 1000);
+        poll.setRecordHistory(true);
+        assertTrue(poll.hasChanges(time, "viewPath", "viewTag", new String[] { "branch" }, new String[] { "vob" }));
+        PolledHistory polledHistory = poll.getRecordedHistory();
+        assertNotNull(polledHistory);
+        assertEquals(1, polledHistory.size());
+
+        BaseHistoryAction changelog = new BaseHistoryAction(cleartool, false, null, 1000);
+        changelog.setPolledHistory(polledHistory);
+        List<ChangeLogSet.Entry> changes = changelog.getChanges(time, "viewPath", "viewTag", new String[] { "branch" }, new String[] { "vob" });
+        assertEquals("The event listed by the poll and again by the change log must be reported once", 2, changes.size());
+        // Only the poll reads the history since the previous build
+        verify(cleartool).lshistory(anyString(), eq(time), anyString(), anyString(), any(String[].class), eq(Boolean.FALSE), eq(Boolean.FALSE));
+        verify(cleartool, times(2)).lshistory(anyString(), any(Date.class), anyString(), anyString(), any(String[].class), eq(Boolean.FALSE),
+                eq(Boolean.FALSE));
+    }
+
+    @Test
+    public void testPolledHistoryWithoutCommentsIsReusedWithComments() throws Exception {
+        String polledEvent = "\"20070827.085901\" \"user1\" \"Source\\File1.cs\" \"\\main\\1\" \"create version\" \"checkin\"\n";
+        Date time = new Date(System.currentTimeMillis() - 86400000L);
+        when(cleartool.doesViewExist("viewTag")).thenReturn(Boolean.TRUE);
+        when(cleartoolLsHistoryWithAnyHistoryFormat()).thenReturn(new StringReader(polledEvent), new StringReader(""));
+        when(cleartool.describe(eq(VALID_HISTORY_FORMAT), eq("viewPath"), eq(new String[] { "Source\\File1.cs@@\\main\\1" }))).thenReturn(
+                new StringReader(polledEvent + "Fixed the build\n"));
+
+        BaseHistoryAction poll = new BaseHistoryAction(cleartool, false, new DefaultFilter(), 1000);
+        poll.setCommentsNeeded(false);
+        poll.setRecordHistory(true);
+        assertTrue(poll.hasChanges(time, "viewPath", "viewTag", new String[] { "branch" }, new String[] { "vob" }));
+        PolledHistory polledHistory = poll.getRecordedHistory();
+        assertNotNull("A poll without comments must still record its history", polledHistory);
+
+        BaseHistoryAction changelog = new BaseHistoryAction(cleartool, false, new DefaultFilter(), 1000);
+        changelog.setPolledHistory(polledHistory);
+        List<ChangeLogSet.Entry> changes = changelog.getChanges(time, "viewPath", "viewTag", new String[] { "branch" }, new String[] { "vob" });
+        assertEquals(1, changes.size());
+        assertEquals("Fixed the build", ((ClearCaseChangeLogEntry) changes.get(0)).getComment());
+        // Only the poll reads the history since the previous build
+        verify(cleartool).lshistory(anyString(), eq(time), anyString(), anyString(), any(String[].class), eq(Boolean.FALSE), eq(Boolean.FALSE));
+    }
+
     @Test
     public void testSorted() throws Exception {
 
@@ -722,6 +803,31 @@ public class BaseHistoryActionTest extends AbstractWorkspaceTest {
         assertEquals("File path is incorrect", "some_vob\\path\\to\\file.java", entry.getElements().get(0).getFile());
     }
 
+    @Test
+    public void testUpdtVersionsAreDescribedInChunks() throws Exception {
+        List<String[]> chunks = ClearCaseUtils.chunkSelectors(Arrays.asList("a@@/main/1", "b@@/main/1", "c@@/main/1"), 30);
+        assertEquals(2, chunks.size());
+        assertEquals(Arrays.asList("a@@/main/1", "b@@/main/1"), Arrays.asList(chunks.get(0)));
+        assertEquals(Arrays.asList("c@@/main/1"), Arrays.asList(chunks.get(1)));
+
+        createWorkspace();
+        try {
+            FilePath updtFile = workspace.child("update.updt");
+            updtFile.write("New:\ta\t/main/1\nUpdated:\tb\t/main/1\t/main/2\nUnloadDeleted:\tc\n", "UTF-8");
+            when(cleartool.describe(anyString(), eq("viewPath"), eq(new String[] { "a@@/main/1", "b@@/main/2" }))).thenThrow(new IOException());
+            when(cleartool.describe(anyString(), eq("viewPath"), eq("a@@/main/1"))).thenReturn(
+                    new StringReader("\"20070827.085901\" \"user\" \"a\" \"/main/1\" \"create version\" \"checkin\"\ncomment\n"));
+            when(cleartool.describe(anyString(), eq("viewPath"), eq("b@@/main/2"))).thenThrow(new IOException());
+
+            BaseHistoryAction action = new BaseHistoryAction(cleartool, false, null, 0);
+            List<HistoryEntry> history = action.parseUpdt(updtFile, "viewPath");
+            assertEquals("The versions of a chunk in error are described one by one", 1, history.size());
+            assertEquals("a", history.get(0).getElement());
+        } finally {
+            deleteWorkspace();
+        }
+    }
+
     @Test
     public void testUserOutput() throws Exception {
 
@@ -0,0 +1,61 @@
+package hudson.plugins.clearcase.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class LabelWatcherTest {
+
+    @Test
+    public void testCanWatch() {
+        assertTrue(LabelWatcher.canWatch(new String[] { "REL_1.0", "BUILD-42" }));
+        assertFalse(LabelWatcher.canWatch(new String[] { "REL_.*" }));
+        assertFalse(LabelWatcher.canWatch(new String[] { "" }));
+        assertFalse(LabelWatcher.canWatch(new String[0]));
+    }
+
+    @Test
+    public void testSummaryIsOrderIndependent() throws Exception {
+        String first = LabelWatcher.summarize(new StringReader("vobs/a/foo.c@@/main/1\nvobs/a/bar.c@@/main/3\n"));
+        String second = LabelWatcher.summarize(new StringReader("vobs/a/bar.c@@/main/3\r\nvobs/a/foo.c@@/main/1\r\n\r\n"));
+        assertEquals(first, second);
+        assertTrue(first.startsWith("2:"));
+    }
+
+    @Test
+    public void testSummaryChangesWhenLabelMoves() throws Exception {
+        String before = LabelWatcher.summarize(new StringReader("vobs/a/foo.c@@/main/1\n"));
+        String after = LabelWatcher.summarize(new StringReader("vobs/a/foo.c@@/main/2\n"));
+        assertFalse(before.equals(after));
+    }
+
+    @Test(expected = IOException.class)
+    public void testSummaryFailsOnError() throws Exception {
+        LabelWatcher.summarize(new StringReader("cleartool: Error: Label type not found: \"REL\".\n"));
+    }
+
+    @Test
+    public void testGetChangedLabels() {
+        Map<String, String> before = new HashMap<String, String>();
+        before.put("A", "1:1");
+        before.put("B", "2:2");
+        before.put("C", "3:3");
+        Map<String, String> after = new HashMap<String, String>();
+        after.put("A", "1:1");
+        after.put("B", "2:f");
+        after.put("D", "0:0");
+        Map<String, String> same = new HashMap<String, String>(before);
+        assertEquals(Collections.emptyList(), LabelWatcher.getChangedLabels(before, same));
+        assertEquals(3, LabelWatcher.getChangedLabels(before, after).size());
+        assertTrue(LabelWatcher.getChangedLabels(before, after).containsAll(Arrays.asList("B", "C", "D")));
+    }
+}
@@ -55,6 +55,20 @@ public class LsHistoryCommandTest {
         assertThat(cmd).doesNotContain("-recurse");
     }
     
+    @Test
+    public void testObjectsOnly(){
+        instance.objectsOnly().pathsInView("replica:site1@/vobs/a");
+        List<String> cmd = buildCmd();
+        assertThat(cmd).doesNotContain("-all", "-recurse");
+        assertThat(cmd).contains("replica:site1@/vobs/a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testObjectsOnlyAndUseRecurse(){
+        instance.objectsOnly().useRecurse();
+        buildCmd();
+    }
+    
     @Test
     public void testSince(){
         Date since = new Date(1);
@@ -0,0 +1,141 @@
+package hudson.plugins.clearcase.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import hudson.plugins.clearcase.ClearTool;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AutoStrategyTest {
+
+    /**
+     * Reads the fake timer the candidates advance.
+     */
+    private class TimedAutoStrategy extends AutoStrategy {
+        TimedAutoStrategy(ChangeDetectionStrategy reference, ChangeDetectionStrategy... others) {
+            super("job", reference, others);
+        }
+
+        @Override
+        long nanoTime() {
+            return nanos;
+        }
+    }
+
+    private class FixedStrategy extends ProbingStrategy {
+        private final long    delay;
+        private final String  name;
+        private int           probes;
+        private final boolean result;
+
+        FixedStrategy(String name, boolean result, long delay) {
+            this.name = name;
+            this.result = result;
+            this.delay = delay;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean hasChanges(AbstractHistoryAction action, Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths) {
+            return probe(action, time, viewPath, viewTag, branchNames, viewPaths);
+        }
+
+        @Override
+        public boolean isApplicable(AbstractHistoryAction action) {
+            return true;
+        }
+
+        @Override
+        protected boolean probe(AbstractHistoryAction action, Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths) {
+            probes++;
+            nanos += TimeUnit.MILLISECONDS.toNanos(delay);
+            return result;
+        }
+    }
+
+    private AbstractHistoryAction action;
+
+    private long                  nanos;
+
+    @Before
+    public void setUp() {
+        AutoStrategy.reset();
+        action = mock(AbstractHistoryAction.class);
+        action.cleartool = mock(ClearTool.class);
+    }
+
+    @After
+    public void tearDown() {
+        AutoStrategy.reset();
+    }
+
+    @Test
+    public void testFastestIsSelected() throws Exception {
+        FixedStrategy lshistory = new FixedStrategy("lshistory", false, 50);
+        FixedStrategy find = new FixedStrategy("find", false, 0);
+        AutoStrategy auto = new TimedAutoStrategy(lshistory, find);
+        String[] loadRules = { "vobs/a" };
+        assertFalse(auto.hasChanges(action, new Date(), "view", "tag", null, loadRules));
+        assertSame(find, AutoStrategy.getSelection("job").getStrategy());
+        assertFalse(auto.hasChanges(action, new Date(), "view", "tag", null, loadRules));
+        assertEquals(1, lshistory.probes);
+        assertEquals(2, find.probes);
+    }
+
+    @Test
+    public void testSelectionFollowsTheJob() throws Exception {
+        FixedStrategy lshistory = new FixedStrategy("lshistory", false, 0);
+        new TimedAutoStrategy(lshistory).hasChanges(action, new Date(), "view", "tag", null, new String[] { "vobs/a" });
+        AutoStrategy.rename("job", "folder/job");
+        assertNull(AutoStrategy.getSelection("job"));
+        assertSame(lshistory, AutoStrategy.getSelection("folder/job").getStrategy());
+        AutoStrategy.forget("folder/job");
+        assertNull(AutoStrategy.getSelection("folder/job"));
+    }
+
+    @Test
+    public void testLoadRulesChangeTriggersBenchmark() throws Exception {
+        FixedStrategy lshistory = new FixedStrategy("lshistory", false, 0);
+        AutoStrategy auto = new TimedAutoStrategy(lshistory);
+        auto.hasChanges(action, new Date(), "view", "tag", null, new String[] { "vobs/a" });
+        auto.hasChanges(action, new Date(), "view", "tag", null, new String[] { "vobs/b" });
+        assertEquals(2, lshistory.probes);
+    }
+
+    @Test
+    public void testStrategyMissingChangesIsDiscarded() throws Exception {
+        FixedStrategy lshistory = new FixedStrategy("lshistory", true, 50);
+        FixedStrategy find = new FixedStrategy("find", false, 0);
+        AutoStrategy auto = new TimedAutoStrategy(lshistory, find);
+        assertTrue(auto.hasChanges(action, new Date(), "view", "tag", null, new String[] { "vobs/a" }));
+        assertSame(lshistory, AutoStrategy.getSelection("job").getStrategy());
+    }
+
+    @Test
+    public void testFindVersionQuery() throws Exception {
+        Date since = new Date(1357381800000L); // 2013-01-05 10:30:00 UTC
+        assertEquals("created_since(5-jan-13.10:30:00utc+0000)", FindCreatedSinceStrategy.getVersionQuery(since, ""));
+        assertEquals("created_since(5-jan-13.10:30:00utc+0000) && brtype(dev)", FindCreatedSinceStrategy.getVersionQuery(since, "dev"));
+    }
+
+    @Test
+    public void testFindIgnoresVersionZero() throws Exception {
+        assertFalse(FindCreatedSinceStrategy.hasNewVersions(new BufferedReader(new StringReader("vobs/a/foo.c@@/main/dev/0\n\n"))));
+        assertTrue(FindCreatedSinceStrategy.hasNewVersions(new BufferedReader(new StringReader("vobs/a/foo.c@@/main/dev/0\nvobs/a/bar.c@@/main/dev/1\n"))));
+    }
+}
@@ -0,0 +1,100 @@
+package hudson.plugins.clearcase.history;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Compares the heap used by history entries with the former layout (raw line, date text, Date, comment builder and one String per field) and with the
+ * compact one. Not a unit test: run it with a fixed heap, e.g. <code>java -Xms512m -Xmx512m</code>, and look at the bytes per entry.
+ */
+public class HistoryEntryHeapBenchmark {
+
+    /**
+     * The former layout of {@link HistoryEntry}.
+     */
+    static class LegacyHistoryEntry {
+        String        activityName;
+        StringBuilder commentBuilder = new StringBuilder();
+        Date          date;
+        String        dateText;
+        String        element;
+        String        event;
+        String        line;
+        String        operation;
+        String        user;
+        String        versionId;
+    }
+
+    private static final int ENTRIES = 200000;
+
+    public static void main(String[] args) throws Exception {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : ENTRIES;
+        long legacy = measure(true, entries);
+        long compact = measure(false, entries);
+        System.out.println("Entries            : " + entries);
+        System.out.println("Legacy bytes/entry : " + legacy / entries);
+        System.out.println("Compact bytes/entry: " + compact / entries);
+    }
+
+    private static String[] fields(int i) {
+        String dateText = String.format("201301%02d.%02d%02d%02d", 1 + i % 28, i % 24, i % 60, (i / 60) % 60);
+        return new String[] { dateText, "user" + (i % 20), "/view/vobs/project/component" + (i % 30) + "/src/main/java/File" + (i % 2000) + ".java",
+                "/main/dev/" + (i % 50), "create version", "checkin", "activity" + (i % 500) };
+    }
+
+    private static long measure(boolean legacy, int count) throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd.HHmmss");
+        long before = usedMemory();
+        List<Object> entries = new ArrayList<Object>(count);
+        for (int i = 0; i < count; i++) {
+            String[] fields = fields(i);
+            StringBuilder lineBuilder = new StringBuilder();
+            for (String field : fields) {
+                lineBuilder.append('"').append(field).append("\" ");
+            }
+            String line = lineBuilder.toString();
+            if (legacy) {
+                LegacyHistoryEntry entry = new LegacyHistoryEntry();
+                entry.line = line;
+                entry.dateText = new String(fields[0]);
+                entry.date = format.parse(fields[0]);
+                entry.user = new String(fields[1]);
+                entry.element = new String(fields[2]);
+                entry.versionId = new String(fields[3]);
+                entry.event = new String(fields[4]);
+                entry.operation = new String(fields[5]);
+                entry.activityName = new String(fields[6]);
+                entry.commentBuilder.append("fix\n");
+                entries.add(entry);
+            } else {
+                HistoryEntry entry = new HistoryEntry();
+                entry.setLine(line);
+                entry.setDateText(fields[0]);
+                entry.setUser(new String(fields[1]));
+                entry.setElement(new String(fields[2]));
+                entry.setVersionId(new String(fields[3]));
+                entry.setEvent(new String(fields[4]));
+                entry.setOperation(new String(fields[5]));
+                entry.setActivityName(new String(fields[6]));
+                entry.appendComment("fix\n");
+                entries.add(entry);
+            }
+        }
+        long after = usedMemory();
+        if (entries.size() != count) {
+            throw new IllegalStateException();
+        }
+        return after - before;
+    }
+
+    private static long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,118 @@
+package hudson.plugins.clearcase.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.text.SimpleDateFormat;
+
+import org.junit.Test;
+
+public class HistoryEntryTest {
+
+    @Test
+    public void testElementSharesPrefix() {
+        HistoryEntry first = new HistoryEntry();
+        first.setElement("/view/vobs/a/foo.c");
+        HistoryEntry second = new HistoryEntry();
+        second.setElement("/view/vobs/a/bar.c");
+        assertEquals("/view/vobs/a/foo.c", first.getElement());
+        assertEquals("/view/vobs/a/bar.c", second.getElement());
+        assertSame(PathTrie.getInstance().intern("/view/vobs/a/"), PathTrie.getInstance().intern("/view/vobs/a/"));
+    }
+
+    @Test
+    public void testElementsInternedInParallelShareNodes() throws Exception {
+        final PathTrie.Node[] nodes = new PathTrie.Node[8];
+        Thread[] threads = new Thread[nodes.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    nodes[index] = PathTrie.getInstance().intern("/view/vobs/parallel/foo.c");
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (PathTrie.Node node : nodes) {
+            assertSame(nodes[0], node);
+        }
+        assertEquals("/view/vobs/parallel/foo.c", nodes[0].getPath());
+    }
+
+    @Test
+    public void testNormalize() {
+        HistoryEntry entry = new HistoryEntry();
+        entry.setElement("c:\\views\\view\\vobs\\a\\foo.c");
+        entry.normalize("c:\\views\\view\\");
+        assertEquals("vobs\\a\\foo.c", entry.getElement());
+        entry.normalize(null);
+        assertEquals("vobs\\a\\foo.c", entry.getElement());
+    }
+
+    @Test
+    public void testDate() throws Exception {
+        HistoryEntry entry = new HistoryEntry();
+        assertNull(entry.getDate());
+        assertNull(entry.getDateText());
+        entry.setDateText("20130102.101500");
+        assertEquals("20130102.101500", entry.getDateText());
+        assertEquals(new SimpleDateFormat("yyyyMMdd.HHmmss").parse("20130102.101500"), entry.getDate());
+    }
+
+    @Test
+    public void testInternedValues() {
+        HistoryEntry first = new HistoryEntry();
+        first.setUser(new String("user"));
+        HistoryEntry second = new HistoryEntry();
+        second.setUser(new String("user"));
+        assertSame(first.getUser(), second.getUser());
+    }
+
+    @Test
+    public void testIdentity() {
+        HistoryEntry first = new HistoryEntry();
+        first.setLine("\"20130102.101500\" \"user\" \"/vobs/a/foo.c\" \"/main/1\"");
+        HistoryEntry second = new HistoryEntry();
+        second.setLine("\"20130102.101500\" \"user\" \"/vobs/a/foo.c\" \"/main/1\"");
+        HistoryEntry third = new HistoryEntry();
+        third.setLine("\"20130102.101500\" \"user\" \"/vobs/a/foo.c\" \"/main/2\"");
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertFalse(first.equals(third));
+    }
+
+    @Test
+    public void testIdentityWithoutLine() throws Exception {
+        HistoryEntry first = new HistoryEntry();
+        first.setDateText("20130102.101500");
+        first.setElement("/vobs/a/foo.c");
+        first.setVersionId("/main/1");
+        HistoryEntry second = new HistoryEntry();
+        second.setDateText("20130102.101500");
+        second.setElement("/vobs/a/foo.c");
+        second.setVersionId("/main/1");
+        HistoryEntry third = new HistoryEntry();
+        third.setDateText("20130102.101500");
+        third.setElement("/vobs/a/foo.c");
+        third.setVersionId("/main/2");
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertFalse(first.equals(third));
+        second.setLine("\"20130102.101500\" \"user\" \"/vobs/a/foo.c\" \"/main/1\"");
+        assertFalse(first.equals(second));
+    }
+
+    @Test
+    public void testComment() {
+        HistoryEntry entry = new HistoryEntry();
+        assertEquals("", entry.getComment());
+        entry.appendComment("first").appendComment("\n").appendComment("second").appendComment("\n");
+        assertEquals("first\nsecond", entry.getComment());
+    }
+}
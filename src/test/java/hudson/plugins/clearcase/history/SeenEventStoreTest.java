@@ -0,0 +1,100 @@
+package hudson.plugins.clearcase.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.text.SimpleDateFormat;
+
+import org.junit.Test;
+
+public class SeenEventStoreTest {
+
+    private static HistoryEntry entry(String element, String version, String dateText) throws Exception {
+        HistoryEntry entry = new HistoryEntry();
+        entry.setElement(element);
+        entry.setVersionId(version);
+        entry.setOperation("checkin");
+        entry.setDateText(dateText);
+        return entry;
+    }
+
+    @Test
+    public void testContains() throws Exception {
+        SeenEventStore store = new SeenEventStore();
+        store.add(entry("/vobs/a/foo.c", "/main/1", "20130101.100000"));
+        assertTrue(store.contains(entry("/vobs/a/foo.c", "/main/1", "20130101.100000")));
+        assertFalse(store.contains(entry("/vobs/a/foo.c", "/main/2", "20130101.100000")));
+        assertFalse(store.contains(entry("/vobs/a/foo.c", "/main/1", "20130101.100001")));
+        store.add(entry("/vobs/a/foo.c", "/main/1", "20130101.100000"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testManyEntries() throws Exception {
+        SeenEventStore store = new SeenEventStore();
+        for (int i = 0; i < 1000; i++) {
+            store.add(entry("/vobs/a/file" + i, "/main/1", "20130101.100000"));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(store.contains(entry("/vobs/a/file" + i, "/main/1", "20130101.100000")));
+            assertFalse(store.contains(entry("/vobs/a/file" + i, "/main/2", "20130101.100000")));
+        }
+    }
+
+    @Test
+    public void testBufferedEntriesAreMerged() throws Exception {
+        SeenEventStore store = new SeenEventStore();
+        for (int i = 0; i < 5000; i++) {
+            HistoryEntry entry = entry("/vobs/a/file" + i, "/main/1", i < 2500 ? "20130101.100000" : "20130102.100000");
+            assertFalse(store.contains(entry));
+            store.add(entry);
+            assertTrue(store.contains(entry));
+        }
+        store.add(entry("/vobs/a/file0", "/main/1", "20130101.100000"));
+        assertEquals(5000, store.size());
+        SeenEventStore copy = store.copy();
+        assertEquals(5000, copy.size());
+        assertTrue(copy.contains(entry("/vobs/a/file4999", "/main/1", "20130102.100000")));
+        store.prune(new SimpleDateFormat("yyyyMMdd.HHmmss").parse("20130102.000000"));
+        assertEquals(2500, store.size());
+        assertFalse(store.contains(entry("/vobs/a/file0", "/main/1", "20130101.100000")));
+        assertTrue(store.contains(entry("/vobs/a/file4999", "/main/1", "20130102.100000")));
+    }
+
+    @Test
+    public void testPrune() throws Exception {
+        SeenEventStore store = new SeenEventStore();
+        store.add(entry("/vobs/a/old.c", "/main/1", "20130101.100000"));
+        store.add(entry("/vobs/a/new.c", "/main/1", "20130101.120000"));
+        store.prune(new SimpleDateFormat("yyyyMMdd.HHmmss").parse("20130101.110000"));
+        assertEquals(1, store.size());
+        assertFalse(store.contains(entry("/vobs/a/old.c", "/main/1", "20130101.100000")));
+        assertTrue(store.contains(entry("/vobs/a/new.c", "/main/1", "20130101.120000")));
+    }
+
+    @Test
+    public void testAddAll() throws Exception {
+        SeenEventStore store = new SeenEventStore();
+        store.add(entry("/vobs/a/foo.c", "/main/1", "20130101.100000"));
+        store.add(entry("/vobs/a/bar.c", "/main/1", "20130101.100000"));
+        SeenEventStore other = new SeenEventStore();
+        other.add(entry("/vobs/a/foo.c", "/main/1", "20130101.100000"));
+        other.add(entry("/vobs/a/baz.c", "/main/1", "20130101.100000"));
+        store.addAll(other);
+        assertEquals(3, store.size());
+        assertTrue(store.contains(entry("/vobs/a/baz.c", "/main/1", "20130101.100000")));
+        assertTrue(store.contains(entry("/vobs/a/bar.c", "/main/1", "20130101.100000")));
+    }
+
+    @Test
+    public void testCopyIsIndependent() throws Exception {
+        SeenEventStore store = new SeenEventStore();
+        store.add(entry("/vobs/a/foo.c", "/main/1", "20130101.100000"));
+        SeenEventStore copy = store.copy();
+        copy.add(entry("/vobs/a/bar.c", "/main/1", "20130101.100000"));
+        assertEquals(1, store.size());
+        assertEquals(2, copy.size());
+        assertFalse(store.contains(entry("/vobs/a/bar.c", "/main/1", "20130101.100000")));
+    }
+}
@@ -0,0 +1,153 @@
+package hudson.plugins.clearcase.history;
+
+import static hudson.plugins.clearcase.util.OutputFormat.DATE_NUMERIC;
+import static hudson.plugins.clearcase.util.OutputFormat.EVENT;
+import static hudson.plugins.clearcase.util.OutputFormat.NAME_ELEMENTNAME;
+import static hudson.plugins.clearcase.util.OutputFormat.NAME_VERSIONID;
+import static hudson.plugins.clearcase.util.OutputFormat.OPERATION;
+import static hudson.plugins.clearcase.util.OutputFormat.USER_ID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.util.ClearToolFormatHandler;
+import hudson.plugins.clearcase.util.SpillingSorter;
+
+import java.io.File;
+import java.io.StringReader;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class VobHistoryLogTest {
+
+    private static final ClearToolFormatHandler HANDLER = new ClearToolFormatHandler(DATE_NUMERIC, USER_ID, NAME_ELEMENTNAME, NAME_VERSIONID, EVENT,
+                                                                OPERATION);
+
+    @Rule
+    public TemporaryFolder                      folder  = new TemporaryFolder();
+
+    private ClearTool                           cleartool;
+
+    private long                                since;
+
+    private static String event(long date, String element, String version, String comment) {
+        return "\"" + new SimpleDateFormat("yyyyMMdd.HHmmss").format(new Date(date)) + "\" \"user\" \"" + element + "\" \"" + version
+                + "\" \"create version\" \"checkin\" \n" + comment + "\n";
+    }
+
+    private static List<VobHistoryLog.Record> scan(VobHistoryLog log, long since, String branchName, String[] pathPrefixes) throws Exception {
+        final List<VobHistoryLog.Record> records = new ArrayList<VobHistoryLog.Record>();
+        log.scan(since, branchName, pathPrefixes, new SpillingSorter.Sink<VobHistoryLog.Record>() {
+            @Override
+            public void accept(VobHistoryLog.Record record) {
+                records.add(record);
+            }
+        });
+        return records;
+    }
+
+    @Before
+    public void setUp() {
+        cleartool = mock(ClearTool.class);
+        since = System.currentTimeMillis() - 3600000L;
+    }
+
+    @Test
+    public void testBranchType() {
+        assertEquals("dev", VobHistoryLog.getBranchType("/main/dev/3"));
+        assertEquals("dev", VobHistoryLog.getBranchType("\\main\\dev\\CHECKEDOUT"));
+        assertEquals("dev", VobHistoryLog.getBranchType("/main/dev"));
+        assertEquals("main", VobHistoryLog.getBranchType("/main/0"));
+        assertNull(VobHistoryLog.getBranchType(""));
+    }
+
+    @Test
+    public void testScanReplaysInAnotherView() throws Exception {
+        String output = event(since + 2000, "/view/a/vobs/x/src/foo.c", "/main/dev/2", "second") + event(since + 1000, "/view/a/vobs/x/doc/bar.txt",
+                "/main/rel/1", "first\non two lines");
+        when(cleartool.lshistory(anyString(), any(Date.class), anyString(), anyString(), any(String[].class), anyBoolean(), anyBoolean())).thenReturn(
+                new StringReader(output));
+        VobHistoryLog log = new VobHistoryLog(folder.newFolder());
+        log.sync(cleartool, HANDLER, "fmt", "view", "/view/a/", "vobs/x", since, 0);
+
+        List<VobHistoryLog.Record> records = scan(log, since, "", null);
+        assertEquals(2, records.size());
+        assertEquals(event(since + 2000, "/view/b/vobs/x/src/foo.c", "/main/dev/2", "second"), records.get(0).getText("/view/b/"));
+        assertEquals(event(since + 1000, "/view/b/vobs/x/doc/bar.txt", "/main/rel/1", "first\non two lines"), records.get(1).getText("/view/b/"));
+
+        assertEquals(1, scan(log, since, "dev", null).size());
+        assertEquals(0, scan(log, since, "other", null).size());
+        assertEquals(1, scan(log, since, "", new String[] { "vobs/x/doc" }).size());
+        assertEquals(0, scan(log, since, "", new String[] { "vobs/x/do" }).size());
+        assertEquals(1, scan(log, since + 1500, "", null).size());
+    }
+
+    @Test
+    public void testHistoryOlderThanTheRetentionIsNotMirrored() throws Exception {
+        HistoryMirror mirror = new HistoryMirror(folder.newFolder());
+        Date old = new Date(System.currentTimeMillis() - HistoryMirror.RETENTION - VobHistoryLog.DAY_MILLIS);
+        assertNull(mirror.lshistory(cleartool, HANDLER, "fmt", old, "view", "/view/a/", "", new String[] { "vobs/x" }, true, 0));
+        verifyZeroInteractions(cleartool);
+    }
+
+    @Test
+    public void testOverlappingSyncsDontDuplicate() throws Exception {
+        String first = event(since + 1000, "/view/a/vobs/x/foo.c", "/main/1", "");
+        // The second sync fetches the first event again, with an event of the previous day
+        String second = event(since + 2000, "/view/a/vobs/x/foo.c", "/main/2", "") + first
+                + event(since - VobHistoryLog.DAY_MILLIS + 1000, "/view/a/vobs/x/foo.c", "/main/0", "");
+        when(cleartool.lshistory(anyString(), any(Date.class), anyString(), anyString(), any(String[].class), anyBoolean(), anyBoolean())).thenReturn(
+                new StringReader(first), new StringReader(second));
+        VobHistoryLog log = new VobHistoryLog(folder.newFolder());
+        log.sync(cleartool, HANDLER, "fmt", "view", "/view/a/", "vobs/x", since, 0);
+        log.sync(cleartool, HANDLER, "fmt", "view", "/view/a/", "vobs/x", since - VobHistoryLog.DAY_MILLIS, 0);
+        assertEquals(2, scan(log, since, "", null).size());
+        assertEquals(3, scan(log, since - VobHistoryLog.DAY_MILLIS, "", null).size());
+    }
+
+    @Test
+    public void testScanIsNewestFirstAcrossPartitionsAndSyncs() throws Exception {
+        long day = VobHistoryLog.DAY_MILLIS;
+        long origin = since - 3 * day;
+        String older = event(origin + 2 * day, "/view/a/vobs/x/a.c", "/main/3", "") + event(origin + 1000, "/view/a/vobs/x/a.c", "/main/2", "")
+                + event(origin, "/view/a/vobs/x/a.c", "/main/1", "");
+        String newer = event(origin + 2 * day + 1000, "/view/a/vobs/x/b.c", "/main/1", "");
+        when(cleartool.lshistory(anyString(), any(Date.class), anyString(), anyString(), any(String[].class), anyBoolean(), anyBoolean())).thenReturn(
+                new StringReader(older), new StringReader(newer));
+        // One record in memory, every sort spills
+        VobHistoryLog log = new VobHistoryLog(folder.newFolder(), 1);
+        log.sync(cleartool, HANDLER, "fmt", "view", "/view/a/", "vobs/x", origin, 0);
+        log.sync(cleartool, HANDLER, "fmt", "view", "/view/a/", "vobs/x", origin, 0);
+
+        List<VobHistoryLog.Record> records = scan(log, origin, "", null);
+        assertEquals(4, records.size());
+        for (int i = 1; i < records.size(); i++) {
+            assertTrue(records.get(i - 1).getDate() > records.get(i).getDate());
+        }
+    }
+
+    @Test
+    public void testStateIsPersisted() throws Exception {
+        when(cleartool.lshistory(anyString(), any(Date.class), anyString(), anyString(), any(String[].class), anyBoolean(), anyBoolean())).thenReturn(
+                new StringReader(event(since + 1000, "/view/a/vobs/x/foo.c", "/main/1", "")));
+        File dir = folder.newFolder();
+        new VobHistoryLog(dir).sync(cleartool, HANDLER, "fmt", "view", "/view/a/", "vobs/x", since, 0);
+        VobHistoryLog reloaded = new VobHistoryLog(dir);
+        // Synced recently, nothing is fetched
+        reloaded.sync(cleartool, HANDLER, "fmt", "view", "/view/a/", "vobs/x", since, Long.MAX_VALUE);
+        assertEquals(1, scan(reloaded, since, "", null).size());
+    }
+}
@@ -0,0 +1,70 @@
+package hudson.plugins.clearcase.polling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AdaptivePollingPolicyTest {
+
+    private static final long   MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private final AdaptivePollingPolicy policy = new AdaptivePollingPolicy();
+
+    @Test
+    public void testActiveJobIsPolledAtTheMinimumInterval() {
+        long now = 1000 * MINUTE;
+        assertFalse(policy.isKnown("active"));
+        policy.seed("active", new long[] { now - MINUTE, now - 11 * MINUTE, now - 21 * MINUTE });
+        assertTrue(policy.isKnown("active"));
+        assertEquals(0, policy.acquire("active", now, 1, 60, 0));
+        policy.record("active", now, 100, 2, false);
+        assertEquals(MINUTE, policy.getIntervalMillis("active", now, 1, 60));
+        assertEquals(MINUTE / 2, policy.acquire("active", now + MINUTE / 2, 1, 60, 0));
+        assertEquals(0, policy.acquire("active", now + MINUTE, 1, 60, 0));
+    }
+
+    @Test
+    public void testDeletedAndRenamedJobs() {
+        long now = 1000 * MINUTE;
+        policy.record("job", now, 100, 2, true);
+        policy.rename("job", "folder/job");
+        assertFalse(policy.isKnown("job"));
+        assertTrue(policy.isKnown("folder/job"));
+        policy.forget("folder/job");
+        assertFalse(policy.isKnown("folder/job"));
+    }
+
+    @Test
+    public void testDormantJobIsPolledAtTheMaximumInterval() {
+        long now = 100000 * MINUTE;
+        policy.seed("dormant", new long[] { now - TimeUnit.DAYS.toMillis(10), now - TimeUnit.DAYS.toMillis(20) });
+        policy.record("dormant", now, 100, 2, false);
+        assertEquals(60 * MINUTE, policy.getIntervalMillis("dormant", now, 1, 60));
+        assertTrue(policy.acquire("dormant", now + 30 * MINUTE, 1, 60, 0) > 0);
+        assertEquals(0, policy.acquire("dormant", now + 60 * MINUTE, 1, 60, 0));
+    }
+
+    @Test
+    public void testSlowPollsAreSpread() {
+        long now = 1000 * MINUTE;
+        policy.record("slow", now, 30000, 2, true);
+        assertEquals(5 * MINUTE, policy.getIntervalMillis("slow", now, 1, 60));
+    }
+
+    @Test
+    public void testCommandBudgetIsShared() {
+        long now = 1000 * MINUTE;
+        for (String job : new String[] { "a", "b", "c" }) {
+            policy.record(job, now, 100, 5, true);
+        }
+        now += 2 * MINUTE;
+        assertEquals(0, policy.acquire("a", now, 1, 60, 10));
+        assertEquals(0, policy.acquire("b", now, 1, 60, 10));
+        assertEquals(MINUTE / 2, policy.acquire("c", now, 1, 60, 10));
+        assertEquals(0, policy.acquire("c", now + MINUTE / 2, 1, 60, 10));
+    }
+}
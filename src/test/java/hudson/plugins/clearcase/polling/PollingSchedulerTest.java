@@ -0,0 +1,117 @@
+package hudson.plugins.clearcase.polling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class PollingSchedulerTest {
+
+    @Test
+    public void testGetVobTag() {
+        assertEquals("/vobs/foo", PollingScheduler.getVobTag("/vobs/foo/bar"));
+        assertEquals("/vobs/foo", PollingScheduler.getVobTag("vobs\\foo\\bar"));
+        assertEquals("/foo", PollingScheduler.getVobTag("\\foo\\bar"));
+        assertEquals("/foo", PollingScheduler.getVobTag("foo"));
+        assertEquals(null, PollingScheduler.getVobTag("  "));
+    }
+
+    @Test
+    public void testGetVobGroupsWithoutMapping() {
+        Set<String> groups = PollingScheduler.getVobGroups(new String[] { "/vobs/a/x", "/vobs/a/y", "/vobs/b" }, null);
+        assertEquals(new TreeSet<String>(Arrays.asList("/vobs/a", "/vobs/b")), groups);
+    }
+
+    @Test
+    public void testGetVobGroupsWithMapping() {
+        Set<String> groups = PollingScheduler.getVobGroups(new String[] { "/vobs/a/x", "/vobs/b", "/vobs/c" }, "/vobs/(a|b)=server1\n[invalid=server2");
+        assertEquals(new TreeSet<String>(Arrays.asList("server1", "/vobs/c")), groups);
+    }
+
+    @Test
+    public void testJitterIsStableAndBounded() {
+        PollingScheduler scheduler = PollingScheduler.getInstance();
+        assertEquals(0, scheduler.getJitterMillis("job", 0));
+        Set<Long> values = new HashSet<Long>();
+        for (int i = 0; i < 100; i++) {
+            long jitter = scheduler.getJitterMillis("job" + i, 60);
+            assertTrue(jitter >= 0 && jitter <= 60000);
+            assertEquals(jitter, scheduler.getJitterMillis("job" + i, 60));
+            values.add(jitter);
+        }
+        assertTrue(values.size() > 50);
+    }
+
+    @Test
+    public void testAcquireUnlimited() throws Exception {
+        PollingScheduler scheduler = PollingScheduler.getInstance();
+        PollingScheduler.Slot slot1 = scheduler.acquire("unlimited1", Collections.singleton("/vobs/unlimited"), 0);
+        PollingScheduler.Slot slot2 = scheduler.acquire("unlimited2", Collections.singleton("/vobs/unlimited"), 0);
+        assertEquals(0, scheduler.getQueueLength("/vobs/unlimited"));
+        slot1.release(false);
+        slot2.release(false);
+    }
+
+    @Test
+    public void testAcquireWaitsForRelease() throws Exception {
+        final PollingScheduler scheduler = PollingScheduler.getInstance();
+        final Set<String> groups = Collections.singleton("/vobs/limited");
+        PollingScheduler.Slot slot1 = scheduler.acquire("limited1", groups, 1);
+        final PollingScheduler.Slot[] slot2 = new PollingScheduler.Slot[1];
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    slot2[0] = scheduler.acquire("limited2", groups, 1);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        };
+        t.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getQueueLength("/vobs/limited") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, scheduler.getQueueLength("/vobs/limited"));
+        slot1.release(true);
+        t.join(5000);
+        assertEquals(0, scheduler.getQueueLength("/vobs/limited"));
+        assertEquals("limited2", slot2[0].getJobName());
+        slot2[0].release(false);
+    }
+
+    @Test
+    public void testPollIsDeferredWithoutHoldingThePollingThread() throws Exception {
+        PollingScheduler scheduler = PollingScheduler.getInstance();
+        final CountDownLatch triggered = new CountDownLatch(1);
+        Runnable poll = new Runnable() {
+            @Override
+            public void run() {
+                triggered.countDown();
+            }
+        };
+        assertEquals(0, scheduler.defer("deferred", 0, poll));
+        long jitter = scheduler.getJitterMillis("deferred", 2);
+        assertTrue(jitter > 0);
+
+        long start = System.currentTimeMillis();
+        assertEquals(jitter, scheduler.defer("deferred", 2, poll));
+        assertTrue("The poll returns at once", System.currentTimeMillis() - start < jitter);
+        // Polls are skipped while the deferred poll is pending
+        assertTrue(scheduler.defer("deferred", 2, poll) > 0);
+        assertTrue(triggered.await(5, TimeUnit.SECONDS));
+        // The deferred poll runs, the next one is deferred again
+        assertEquals(0, scheduler.defer("deferred", 2, poll));
+        assertEquals(jitter, scheduler.defer("deferred", 2, poll));
+        scheduler.forget("deferred");
+    }
+}
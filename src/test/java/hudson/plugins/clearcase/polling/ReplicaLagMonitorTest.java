@@ -0,0 +1,39 @@
+package hudson.plugins.clearcase.polling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringReader;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Test;
+
+public class ReplicaLagMonitorTest {
+
+    @Test
+    public void testComputeLagIsTheLagOfTheReplicaMostBehind() {
+        long now = 10 * 60 * 60 * 1000L;
+        assertEquals(3 * 60 * 60 * 1000L, ReplicaLagMonitor.computeLag(now, Arrays.asList(new Date(now - 60 * 1000L), new Date(now - 3 * 60 * 60 * 1000L),
+                new Date(now - 60 * 60 * 1000L))));
+        assertEquals(0, ReplicaLagMonitor.computeLag(now, Collections.singletonList(new Date(now + 60 * 1000L))));
+        assertEquals(-1, ReplicaLagMonitor.computeLag(now, Collections.<Date> emptyList()));
+    }
+
+    @Test
+    public void testParseLastImport() throws Exception {
+        String output = "20130102.101500|import sync from replica \"site2\" to replica \"site1\"\n"
+                + "20130102.120000|create replica \"site3\"\n"
+                + "20130102.110000|import sync from replica \"site3\" to replica \"site1\"\n"
+                + "garbage\n";
+        assertEquals(new SimpleDateFormat("yyyyMMdd.HHmmss").parse("20130102.110000"), ReplicaLagMonitor.parseLastImport(new StringReader(output)));
+    }
+
+    @Test
+    public void testParseLastImportWithoutImport() throws Exception {
+        assertNull(ReplicaLagMonitor.parseLastImport(new StringReader("20130102.120000|create replica \"site3\"\n")));
+        assertNull(ReplicaLagMonitor.parseLastImport(new StringReader("")));
+    }
+}
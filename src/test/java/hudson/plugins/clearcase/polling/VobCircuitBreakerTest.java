@@ -0,0 +1,67 @@
+package hudson.plugins.clearcase.polling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class VobCircuitBreakerTest {
+
+    private final VobCircuitBreaker breaker = VobCircuitBreaker.getInstance();
+
+    @Test
+    public void testIsTransientError() {
+        assertTrue(VobCircuitBreaker.isTransientError("cleartool: Error: Unable to contact albd_server on host 'vobsrv'"));
+        assertTrue(VobCircuitBreaker.isTransientError("foo\ncleartool: Error: RPC: Timed out\n"));
+        assertFalse(VobCircuitBreaker.isTransientError("cleartool: Error: Not a vob object: \"foo\"."));
+        assertFalse(VobCircuitBreaker.isTransientError(null));
+    }
+
+    @Test
+    public void testOpensAfterThreshold() {
+        String group = "/vobs/threshold";
+        breaker.recordFailure(group, 10, 2, 60);
+        assertEquals(VobCircuitBreaker.State.CLOSED, breaker.getState(group));
+        assertTrue(breaker.allowRequest(group, 60));
+        breaker.recordFailure(group, 10, 2, 60);
+        assertEquals(VobCircuitBreaker.State.OPEN, breaker.getState(group));
+        assertFalse(breaker.allowRequest(group, 60));
+        assertTrue(breaker.getRetryInMillis(group) > 0);
+    }
+
+    @Test
+    public void testDisabled() {
+        String group = "/vobs/disabled";
+        for (int i = 0; i < 10; i++) {
+            breaker.recordFailure(group, 10, 0, 60);
+        }
+        assertEquals(VobCircuitBreaker.State.CLOSED, breaker.getState(group));
+        assertTrue(breaker.allowRequest(group, 60));
+    }
+
+    @Test
+    public void testHalfOpenProbe() {
+        String group = "/vobs/probe";
+        breaker.recordFailure(group, 10, 1, 0);
+        assertEquals(VobCircuitBreaker.State.OPEN, breaker.getState(group));
+        // Open delay elapsed: a single probe is allowed
+        assertTrue(breaker.allowRequest(group, 60));
+        assertEquals(VobCircuitBreaker.State.HALF_OPEN, breaker.getState(group));
+        assertFalse(breaker.allowRequest(group, 60));
+        breaker.recordSuccess(group, 5);
+        assertEquals(VobCircuitBreaker.State.CLOSED, breaker.getState(group));
+        assertEquals(0, breaker.getFailures(group));
+        assertTrue(breaker.allowRequest(group, 60));
+    }
+
+    @Test
+    public void testFailedProbeReopens() {
+        String group = "/vobs/reopen";
+        breaker.recordFailure(group, 10, 1, 0);
+        assertTrue(breaker.allowRequest(group, 0));
+        breaker.recordFailure(group, 10, 1, 60);
+        assertEquals(VobCircuitBreaker.State.OPEN, breaker.getState(group));
+        assertTrue(breaker.getRetryInMillis(group) > 60 * 1000L);
+    }
+}
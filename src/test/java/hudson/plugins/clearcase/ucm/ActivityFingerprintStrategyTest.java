@@ -0,0 +1,55 @@
+package hudson.plugins.clearcase.ucm;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import hudson.plugins.clearcase.AbstractClearCaseScm.ChangeSetLevel;
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.ucm.model.Baseline;
+
+import java.util.Date;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ActivityFingerprintStrategyTest {
+
+    @Mock
+    ClearTool                           ct;
+
+    private ActivityFingerprintStrategy strategy = new ActivityFingerprintStrategy();
+
+    @Test
+    public void differentFingerprintsAreProbedAsChanges() throws Exception {
+        UcmHistoryAction action = createAction(state("a"), state("b"));
+        assertTrue(strategy.isApplicable(action));
+        assertTrue(strategy.probe(action, new Date(), "view", "view", new String[0], new String[] { "vob" }));
+    }
+
+    @Test
+    public void sameFingerprintsSkipLshistory() throws Exception {
+        UcmHistoryAction action = createAction(state("a"), state("a"));
+        assertTrue(strategy.isApplicable(action));
+        assertFalse(strategy.hasChanges(action, new Date(), "view", "view", new String[0], new String[] { "vob" }));
+        verifyZeroInteractions(ct);
+    }
+
+    @Test
+    public void statesWithoutFingerprintAreNotApplicable() {
+        assertFalse(strategy.isApplicable(createAction(state(null), state("a"))));
+        assertFalse(strategy.isApplicable(createAction(null, state("a"))));
+    }
+
+    private UcmHistoryAction createAction(UcmRevisionState oldBaseline, UcmRevisionState newBaseline) {
+        return new UcmHistoryAction(ct, false, null, oldBaseline, newBaseline, ChangeSetLevel.NONE, null);
+    }
+
+    private UcmRevisionState state(String activityFingerprint) {
+        UcmRevisionState state = new UcmRevisionState(new Baseline[0], new String[] { "vob" }, 0);
+        state.setActivityFingerprint(activityFingerprint);
+        return state;
+    }
+}
@@ -0,0 +1,236 @@
+package hudson.plugins.clearcase.ucm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import hudson.AbortException;
+import hudson.XmlFile;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.TaskListener;
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.ucm.BaselinePublicationAction.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BaselinePublicationQueueTest {
+
+    /**
+     * Records the order publications run in, and fails its first attempts.
+     */
+    static class TestPublication extends BaselinePublication {
+        static final List<String> EVENTS = Collections.synchronizedList(new ArrayList<String>());
+
+        private int               attempts;
+        private final int         failures;
+        private final String      name;
+        private final String      stream;
+
+        TestPublication(String name, String stream, int failures) {
+            this.name = name;
+            this.stream = stream;
+            this.failures = failures;
+        }
+
+        @Override
+        public String getStream() {
+            return stream;
+        }
+
+        @Override
+        public void publish(ClearTool clearTool, PrintStream logger) throws IOException, InterruptedException {
+            EVENTS.add("start " + name);
+            Thread.sleep(20);
+            EVENTS.add("end " + name);
+            if (attempts++ < failures) {
+                throw new IOException("cleartool failed");
+            }
+        }
+    }
+
+    private class TestQueue extends BaselinePublicationQueue {
+        private boolean buildGone;
+        private boolean nodeGone;
+        private int     offlineChecks;
+
+        TestQueue() {
+            super(file, 10);
+        }
+
+        @Override
+        ClearTool createClearTool(AbstractBuild<?, ?> build, TaskListener listener) throws IOException {
+            if (nodeGone) {
+                throw new AbortException("The node the build ran on is gone");
+            }
+            if (offlineChecks > 0) {
+                offlineChecks--;
+                throw new NodeOfflineException("The node the build ran on is offline");
+            }
+            return ct;
+        }
+
+        @Override
+        AbstractBuild<?, ?> getBuild(Entry entry) {
+            return buildGone ? null : build;
+        }
+    }
+
+    @Rule
+    public TemporaryFolder            folder = new TemporaryFolder();
+
+    @Mock
+    AbstractBuild                     build;
+
+    @Mock
+    ClearTool                         ct;
+
+    @Mock
+    AbstractProject                   project;
+
+    private BaselinePublicationAction action;
+
+    private XmlFile                   file;
+
+    @Test
+    public void deletedBuildIsDropped() throws Exception {
+        TestQueue queue = new TestQueue();
+        queue.buildGone = true;
+        queue.add(build, new TestPublication("1", "stream", 0));
+        awaitEmpty(queue);
+        assertTrue(TestPublication.EVENTS.isEmpty());
+    }
+
+    @Test
+    public void failedPublicationIsGivenUpAfterAttempts() throws Exception {
+        TestQueue queue = new TestQueue();
+        queue.add(build, new TestPublication("1", "stream", Integer.MAX_VALUE));
+        awaitEmpty(queue);
+        assertEquals(State.FAILED, action.getState());
+        assertEquals(BaselinePublicationQueue.ATTEMPTS, action.getAttempts());
+    }
+
+    @Test
+    public void failedPublicationIsRetried() throws Exception {
+        TestQueue queue = new TestQueue();
+        queue.add(build, new TestPublication("1", "stream", 1));
+        awaitEmpty(queue);
+        assertEquals(Arrays.asList("start 1", "end 1", "start 1", "end 1"), TestPublication.EVENTS);
+        assertEquals(State.DONE, action.getState());
+        assertEquals(2, action.getAttempts());
+    }
+
+    @Test
+    public void interruptedPublicationDoesntBlockItsStream() throws Exception {
+        TestQueue queue = new TestQueue();
+        queue.add(build, new TestPublication("1", "stream", 0) {
+            @Override
+            public void publish(ClearTool clearTool, PrintStream logger) throws InterruptedException {
+                EVENTS.add("interrupted 1");
+                throw new InterruptedException();
+            }
+        });
+        queue.add(build, new TestPublication("2", "stream", 0));
+        awaitEmpty(queue);
+        assertTrue(TestPublication.EVENTS.contains("end 2"));
+    }
+
+    @Test
+    public void publicationIsNotRetriedWhenTheNodeIsGone() throws Exception {
+        TestQueue queue = new TestQueue();
+        queue.nodeGone = true;
+        queue.add(build, new TestPublication("1", "stream", 0));
+        awaitEmpty(queue);
+        assertTrue(TestPublication.EVENTS.isEmpty());
+        assertEquals(State.FAILED, action.getState());
+        assertEquals(1, action.getAttempts());
+        assertTrue(action.getLog().contains("gone"));
+    }
+
+    @Test
+    public void publicationWaitsForTheOfflineNode() throws Exception {
+        TestQueue queue = new TestQueue();
+        // More checks than attempts, waiting for the node doesn't count as an attempt
+        queue.offlineChecks = BaselinePublicationQueue.ATTEMPTS + 1;
+        queue.add(build, new TestPublication("1", "stream", 0));
+        awaitEmpty(queue);
+        assertEquals(Arrays.asList("start 1", "end 1"), TestPublication.EVENTS);
+        assertEquals(State.DONE, action.getState());
+        assertEquals(1, action.getAttempts());
+    }
+
+    @Test
+    public void publicationsOfAStreamRunInBuildOrder() throws Exception {
+        TestQueue queue = new TestQueue();
+        queue.add(build, new TestPublication("1", "stream", 1));
+        queue.add(build, new TestPublication("2", "stream", 0));
+        queue.add(build, new TestPublication("3", "other", 0));
+        awaitEmpty(queue);
+        List<String> events = new ArrayList<String>(TestPublication.EVENTS);
+        // The second publication waits for the retry of the first one
+        assertEquals(events.lastIndexOf("end 1") + 1, events.indexOf("start 2"));
+        assertTrue(events.contains("end 3"));
+    }
+
+    @Test
+    public void queueIsResumedFromItsFile() throws Exception {
+        BaselinePublicationQueue.Entry first = new BaselinePublicationQueue.Entry("job", 1, new TestPublication("1", "stream", 0));
+        BaselinePublicationQueue.Entry second = new BaselinePublicationQueue.Entry("job", 2, new TestPublication("2", "stream", 0));
+        file.write(new ArrayList<BaselinePublicationQueue.Entry>(Arrays.asList(first, second)));
+
+        TestQueue resumed = new TestQueue();
+        assertEquals(2, resumed.size());
+        resumed.dispatch();
+        awaitEmpty(resumed);
+        assertEquals(Arrays.asList("start 1", "end 1", "start 2", "end 2"), TestPublication.EVENTS);
+        assertEquals("Finished publications are removed from the file", 0, new TestQueue().size());
+    }
+
+    @Test
+    public void queuedPublicationIsSaved() throws Exception {
+        TestQueue queue = new TestQueue() {
+            @Override
+            synchronized void dispatch() {
+                // Stopped before running anything
+            }
+        };
+        queue.add(build, new TestPublication("1", "stream", 0));
+        assertEquals(1, queue.getEntries().size());
+        assertEquals("The queue is saved as soon as a publication is added", 1, new TestQueue().size());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        TestPublication.EVENTS.clear();
+        file = new XmlFile(new File(folder.getRoot(), "publications.xml"));
+        action = new BaselinePublicationAction();
+        when(build.getProject()).thenReturn(project);
+        when(build.getNumber()).thenReturn(1);
+        when(build.getAction(BaselinePublicationAction.class)).thenReturn(action);
+        when(project.getFullName()).thenReturn("job");
+    }
+
+    private void awaitEmpty(BaselinePublicationQueue queue) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (queue.size() > 0) {
+            assertFalse("The queue is still running", System.currentTimeMillis() > deadline);
+            Thread.sleep(10);
+        }
+    }
+}
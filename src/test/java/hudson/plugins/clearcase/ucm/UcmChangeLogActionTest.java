@@ -31,6 +31,7 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNull;
 import static org.mockito.Matchers.notNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import hudson.plugins.clearcase.AbstractWorkspaceTest;
@@ -53,6 +54,30 @@ public class UcmChangeLogActionTest extends AbstractWorkspaceTest {
     @Mock
     private ClearTool cleartool;
 
+    @Test
+    public void assertContributingActivitiesOfSameNameInOtherPvobs() throws Exception {
+        when(
+                cleartool.lshistory(anyString(), (Date) isNull(), eq("VIEW_NAME"), eq("Release_2_1_int"), eq(new String[] { "VIEW_NAME" + File.separator
+                        + "vobs/projects/Server" }), eq(Boolean.FALSE), eq(Boolean.FALSE))).thenReturn(
+                                new StringReader("\"20080509.140451\" " + "\"vobs/projects/Server//config-admin-client\" "
+                                        + "\"/main/Product/Release_3_3_int/Release_3_3_jdk5/2\" " + "\"deliver.Release_3_3_jdk5.20080509.155359\" "
+                                        + "\"create directory version\" " + "\"checkin\" \"username\" "));
+        when(cleartool.lsactivity(eq("deliver.Release_3_3_jdk5.20080509.155359"), (String) notNull(), (String) notNull())).thenReturn(
+                new StringReader("\"Convert to Java 6\" " + "\"Release_3_3_jdk5\" " + "\"bob\" " + "\"activity:fix@\\pvob1 activity:fix@\\pvob2\" "));
+        when(cleartool.lsactivity(eq("activity:fix@\\pvob1"), (String) notNull(), (String) notNull())).thenReturn(
+                new StringReader("\"Fix in pvob1\" " + "\"Release_3_3\" " + "\"doe\" "));
+        when(cleartool.lsactivity(eq("activity:fix@\\pvob2"), (String) notNull(), (String) notNull())).thenReturn(
+                new StringReader("\"Fix in pvob2\" " + "\"Release_3_3\" " + "\"doe\" "));
+
+        UcmChangeLogAction action = new UcmChangeLogAction(cleartool, null);
+        List<UcmActivity> activities = action.getChanges(null, "VIEW_NAME", new String[] { "Release_2_1_int" }, new String[] { "vobs/projects/Server" });
+        List<UcmActivity> subActivities = activities.get(0).getSubActivities();
+        assertEquals("There should be 2 sub activities", 2, subActivities.size());
+        assertEquals("Headline of first sub activity is incorrect", "Fix in pvob1", subActivities.get(0).getHeadline());
+        assertEquals("Headline of second sub activity is incorrect", "Fix in pvob2", subActivities.get(1).getHeadline());
+        verify(cleartool, never()).lsactivity(any(String[].class), anyString(), anyString());
+    }
+
     @Test
     public void assertDestroySubBranchEventIsIgnored() throws Exception {
         when(
@@ -135,10 +160,11 @@ public class UcmChangeLogActionTest extends AbstractWorkspaceTest {
         when(cleartool.lsactivity(eq("deliver.Release_3_3_jdk5.20080509.155359"), (String) notNull(), (String) notNull())).thenReturn(
                 new StringReader("\"Convert to Java 6\" " + "\"Release_3_3_jdk5\" " + "\"bob\" "
                         + "\"maven2_Release_3_3.20080421.154619 maven2_Release_3_3.20080421.163355\" "));
-        when(cleartool.lsactivity(eq("maven2_Release_3_3.20080421.154619"), (String) notNull(), (String) notNull())).thenReturn(
-                new StringReader("\"Deliver maven2\" " + "\"Release_3_3\" " + "\"doe\" " + "\"John Doe\" "));
-        when(cleartool.lsactivity(eq("maven2_Release_3_3.20080421.163355"), (String) notNull(), (String) notNull())).thenReturn(
-                new StringReader("\"Deliver maven3\" " + "\"Release_3_3\" " + "\"doe\" " + "\"John Doe\" "));
+        when(
+                cleartool.lsactivity(eq(new String[] { "maven2_Release_3_3.20080421.154619", "maven2_Release_3_3.20080421.163355" }), (String) notNull(),
+                        (String) notNull())).thenReturn(
+                new StringReader("\"maven2_Release_3_3.20080421.163355\" " + "\"Deliver maven3\" " + "\"Release_3_3\" " + "\"doe\" \n"
+                        + "\"maven2_Release_3_3.20080421.154619\" " + "\"Deliver maven2\" " + "\"Release_3_3\" " + "\"doe\" \n"));
 
         UcmChangeLogAction action = new UcmChangeLogAction(cleartool, null);
         List<UcmActivity> activities = action.getChanges(null, "VIEW_NAME", new String[] { "Release_2_1_int" }, new String[] { "vobs/projects/Server" });
@@ -157,8 +183,9 @@ public class UcmChangeLogActionTest extends AbstractWorkspaceTest {
         verify(cleartool).lshistory(anyString(), (Date) isNull(), eq("VIEW_NAME"), eq("Release_2_1_int"),
                 eq(new String[] { "VIEW_NAME" + File.separator + "vobs/projects/Server" }), eq(Boolean.FALSE), eq(Boolean.FALSE));
         verify(cleartool).lsactivity(eq("deliver.Release_3_3_jdk5.20080509.155359"), (String) notNull(), (String) notNull());
-        verify(cleartool).lsactivity(eq("maven2_Release_3_3.20080421.154619"), (String) notNull(), (String) notNull());
-        verify(cleartool).lsactivity(eq("maven2_Release_3_3.20080421.163355"), (String) notNull(), (String) notNull());
+        verify(cleartool).lsactivity(eq(new String[] { "maven2_Release_3_3.20080421.154619", "maven2_Release_3_3.20080421.163355" }), (String) notNull(),
+                (String) notNull());
+        verify(cleartool, never()).lsactivity(eq("maven2_Release_3_3.20080421.154619"), (String) notNull(), (String) notNull());
     }
 
     @Test
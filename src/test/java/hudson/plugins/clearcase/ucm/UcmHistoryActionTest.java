@@ -33,12 +33,15 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNull;
 import static org.mockito.Matchers.notNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import hudson.Launcher;
 import hudson.model.AbstractBuild;
 import hudson.plugins.clearcase.AbstractClearCaseScm;
+import hudson.plugins.clearcase.AbstractClearCaseScm.ChangeSetLevel;
 import hudson.plugins.clearcase.AbstractWorkspaceTest;
 import hudson.plugins.clearcase.ClearCaseUcmSCM;
 import hudson.plugins.clearcase.ClearCaseUcmSCMDummy;
@@ -49,6 +52,12 @@ import hudson.plugins.clearcase.history.DestroySubBranchFilter;
 import hudson.plugins.clearcase.history.FileFilter;
 import hudson.plugins.clearcase.history.Filter;
 import hudson.plugins.clearcase.history.FilterChain;
+import hudson.plugins.clearcase.ucm.model.ActivitiesDelta;
+import hudson.plugins.clearcase.ucm.model.Baseline;
+import hudson.plugins.clearcase.ucm.model.Component;
+import hudson.plugins.clearcase.ucm.model.UcmSelector;
+import hudson.plugins.clearcase.ucm.service.BaselineService;
+import hudson.plugins.clearcase.ucm.service.FacadeService;
 import hudson.scm.ChangeLogSet;
 import hudson.util.VariableResolver;
 
@@ -256,10 +265,11 @@ public class UcmHistoryActionTest extends AbstractWorkspaceTest {
         when(cleartool.lsactivity(eq("deliver.Release_3_3_jdk5.20080509.155359"), (String) notNull(), (String) notNull())).thenReturn(
                 new StringReader("\"Convert to Java 6\" " + "\"Release_3_3_jdk5\" " + "\"bob\" "
                         + "\"maven2_Release_3_3.20080421.154619 maven2_Release_3_3.20080421.163355\" "));
-        when(cleartool.lsactivity(eq("maven2_Release_3_3.20080421.154619"), (String) notNull(), (String) notNull())).thenReturn(
-                new StringReader("\"Deliver maven2\" " + "\"Release_3_3\" " + "\"doe\" " + "\"John Doe\" "));
-        when(cleartool.lsactivity(eq("maven2_Release_3_3.20080421.163355"), (String) notNull(), (String) notNull())).thenReturn(
-                new StringReader("\"Deliver maven3\" " + "\"Release_3_3\" " + "\"doe\" " + "\"John Doe\" "));
+        when(
+                cleartool.lsactivity(eq(new String[] { "maven2_Release_3_3.20080421.154619", "maven2_Release_3_3.20080421.163355" }), (String) notNull(),
+                        (String) notNull())).thenReturn(
+                new StringReader("\"maven2_Release_3_3.20080421.163355\" " + "\"Deliver maven3\" " + "\"Release_3_3\" " + "\"doe\" \n"
+                        + "\"maven2_Release_3_3.20080421.154619\" " + "\"Deliver maven2\" " + "\"Release_3_3\" " + "\"doe\" \n"));
 
         UcmHistoryAction action = createUcmHistoryAction();
         List<ChangeLogSet.Entry> activities = action.getChanges(null, "IGNORED", "viewTag", new String[] { "Release_2_1_int" },
@@ -279,8 +289,9 @@ public class UcmHistoryActionTest extends AbstractWorkspaceTest {
         verify(cleartool).lshistory(anyString(), (Date) isNull(), eq("IGNORED"), eq("Release_2_1_int"), eq(new String[] { "vobs/projects/Server" }),
                 eq(Boolean.FALSE), eq(Boolean.FALSE));
         verify(cleartool).lsactivity(eq("deliver.Release_3_3_jdk5.20080509.155359"), (String) notNull(), (String) notNull());
-        verify(cleartool).lsactivity(eq("maven2_Release_3_3.20080421.154619"), (String) notNull(), (String) notNull());
-        verify(cleartool).lsactivity(eq("maven2_Release_3_3.20080421.154619"), (String) notNull(), (String) notNull());
+        verify(cleartool).lsactivity(eq(new String[] { "maven2_Release_3_3.20080421.154619", "maven2_Release_3_3.20080421.163355" }), (String) notNull(),
+                (String) notNull());
+        verify(cleartool, never()).lsactivity(eq("maven2_Release_3_3.20080421.154619"), (String) notNull(), (String) notNull());
     }
 
     @Test
@@ -389,6 +400,35 @@ public class UcmHistoryActionTest extends AbstractWorkspaceTest {
         assertTrue("The hasChanges() method did not report a change", hasChange);
     }
 
+    @Test
+    public void baselinesAreComparedOnceInComponentOrder() throws Exception {
+        Baseline oldA = UcmSelector.parse("baseline:a_1@\\pvob", Baseline.class);
+        Baseline newA = UcmSelector.parse("baseline:a_2@\\pvob", Baseline.class);
+        Baseline oldB = UcmSelector.parse("baseline:b_1@\\pvob", Baseline.class);
+        Baseline newB = UcmSelector.parse("baseline:b_2@\\pvob", Baseline.class);
+        Component a = UcmSelector.parse("component:a@\\pvob", Component.class);
+        Component b = UcmSelector.parse("component:b@\\pvob", Component.class);
+        FacadeService facadeService = mock(FacadeService.class);
+        BaselineService baselineService = mock(BaselineService.class);
+        when(facadeService.getBaselineService()).thenReturn(baselineService);
+        when(baselineService.getComponent(oldA)).thenReturn(a);
+        when(baselineService.getComponent(newA)).thenReturn(a);
+        when(baselineService.getComponent(oldB)).thenReturn(b);
+        when(baselineService.getComponent(newB)).thenReturn(b);
+        when(baselineService.compare(oldA, newA)).thenReturn(ActivitiesDelta.EMPTY);
+        when(baselineService.compare(oldB, newB)).thenReturn(ActivitiesDelta.EMPTY);
+
+        UcmHistoryAction action = new UcmHistoryAction(cleartool, false, null, new UcmRevisionState(new Baseline[] { oldB, oldA }, null, 0),
+                new UcmRevisionState(new Baseline[] { newA, newB }, null, 0), ChangeSetLevel.ALL, facadeService);
+        List<ChangeLogSet.Entry> entries = action.getChangesOnBaseline(null, "view", "viewTag", null, null);
+        action.compareBaselines("view");
+        assertEquals("There should be 2 rebase activities", 2, entries.size());
+        assertEquals("rebase_a", ((UcmActivity) entries.get(0)).getName());
+        assertEquals("rebase_b", ((UcmActivity) entries.get(1)).getName());
+        verify(baselineService, times(1)).compare(oldA, newA);
+        verify(baselineService, times(1)).compare(oldB, newB);
+    }
+
     private UcmHistoryAction createUcmHistoryAction() {
         return new UcmHistoryAction(cleartool, false, null, null, null, null, null);
     }
@@ -0,0 +1,103 @@
+package hudson.plugins.clearcase.ucm;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.ClearTool.DefaultPromotionLevel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UcmMakeBaselineTest {
+
+    @Mock
+    ClearTool   ct;
+
+    PrintStream logger = new PrintStream(new ByteArrayOutputStream());
+
+    @Test
+    public void baselinesArePromotedAtOnceBeforeRecommendation() throws Exception {
+        UcmMakeBaseline.Publication publication = new UcmMakeBaseline.Publication("stream@\\pvob");
+        publication.setBaselines(Arrays.asList("bl1@\\pvob", "bl2@\\pvob"), "BUILT");
+        publication.recommend("stream@\\pvob");
+        publication.rebase("dynview");
+        publication.publish(ct, logger);
+
+        InOrder inOrder = inOrder(ct);
+        inOrder.verify(ct).setBaselinePromotionLevel(new String[] { "bl1@\\pvob", "bl2@\\pvob" }, "BUILT");
+        inOrder.verify(ct).recommendBaseline("stream@\\pvob");
+        // The build unlocks the stream, not the publication
+        verify(ct, times(0)).unlock(anyString(), anyString());
+        verify(ct).rebaseDynamic("dynview", "bl1@\\pvob,bl2@\\pvob");
+        verify(ct, times(0)).setBaselinePromotionLevel(anyString(), any(String.class));
+    }
+
+    @Test
+    public void compositeBaselineIsNotMadeAgainWhenRetried() throws Exception {
+        when(ct.lsstream(eq("stream:composite@\\pvob"), anyString(), anyString())).thenReturn(
+                "component:comp1@\\pvob, component:composite@\\pvob\nview otherview");
+        doThrow(new IOException("chbl failed")).doNothing().when(ct).setBaselinePromotionLevel("bl@pvob", DefaultPromotionLevel.BUILT);
+        UcmMakeBaselineComposite.Publication publication = new UcmMakeBaselineComposite.Publication("bl", "stream:composite@\\pvob", "composite", "pvob",
+                null);
+        try {
+            publication.publish(ct, logger);
+        } catch (IOException e) {
+            // Retried by the queue
+        }
+        publication.publish(ct, logger);
+
+        verify(ct, times(1)).mkbl(eq("bl"), eq("view"), anyString(), anyBoolean(), anyBoolean(), anyListOf(String.class), eq("comp1@\\pvob"),
+                eq("comp1@\\pvob"));
+        verify(ct, times(2)).setBaselinePromotionLevel("bl@pvob", DefaultPromotionLevel.BUILT);
+        verify(ct, times(1)).lsstream(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void compositeDependenciesAreListedOneByOneWhenTheBatchFails() throws Exception {
+        when(ct.lsbl(any(String[].class), anyString())).thenThrow(new IOException("cleartool: Error: baseline not found"));
+        when(ct.lsbl("a@\\pvob1", "\"%[component]p\"")).thenReturn("\"comp1\"");
+        when(ct.lsbl("b@\\pvob1", "\"%[component]p\"")).thenReturn("\"comp2\"");
+
+        Map<String, String> components = UcmMakeBaselineComposite.getComponents(ct, Arrays.asList("a@\\pvob1", "b@\\pvob1"));
+        assertEquals("\"comp1\"", components.get("a@\\pvob1"));
+        assertEquals("\"comp2\"", components.get("b@\\pvob1"));
+    }
+
+    @Test
+    public void compositeDependenciesAreListedPerPvob() throws Exception {
+        when(ct.lsbl("composite@\\pvob", "\"%[depends_on]Xp\"")).thenReturn("\"baseline:b@\\pvob1 baseline:a@\\pvob1 baseline:c@\\pvob2\"");
+        // The batch prints the components quoted, like a single lsbl
+        when(ct.lsbl(new String[] { "a@\\pvob1", "b@\\pvob1" }, "%Xn \"%[component]p\"\\n")).thenReturn(
+                "baseline:a@\\pvob1 \"comp1\"\nbaseline:b@\\pvob1 \"comp2\"\n");
+        when(ct.lsbl("c@\\pvob2", "\"%[component]p\"")).thenReturn("\"comp3\"");
+
+        List<String> dependencies = UcmMakeBaselineComposite.getDependencies(ct, "composite@\\pvob");
+        assertEquals(Arrays.asList("a@\\pvob1", "b@\\pvob1", "c@\\pvob2"), dependencies);
+        Map<String, String> components = UcmMakeBaselineComposite.getComponents(ct, dependencies);
+        assertEquals("\"comp1\"", components.get("a@\\pvob1"));
+        assertEquals("\"comp2\"", components.get("b@\\pvob1"));
+        assertEquals("\"comp3\"", components.get("c@\\pvob2"));
+        verify(ct, times(1)).lsbl(any(String[].class), anyString());
+        verify(ct, times(0)).lsbl("a@\\pvob1", "\"%[component]p\"");
+    }
+}
@@ -0,0 +1,62 @@
+package hudson.plugins.clearcase.ucm.service;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.ClearTool.DiffBlOptions;
+import hudson.plugins.clearcase.ucm.model.ActivitiesDelta;
+import hudson.plugins.clearcase.ucm.model.Baseline;
+import hudson.plugins.clearcase.ucm.model.UcmSelector;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.EnumSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DiffBlCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    ClearTool              ct;
+
+    @Test
+    public void baselinesAreComparedOnceForAllServices() throws Exception {
+        File dir = new File(folder.getRoot(), "diffbl");
+        when(ct.diffbl(eq(EnumSet.of(DiffBlOptions.ACTIVITIES)), eq("baseline:b1@\\pvob"), eq("baseline:b2@\\pvob"), anyString())).thenReturn(
+                new StringReader("Comparing from baseline:b1@\\pvob\n>> activity:act1@\\pvob \"headline 1\"\n"));
+        Baseline b1 = UcmSelector.parse("baseline:b1@\\pvob", Baseline.class);
+        Baseline b2 = UcmSelector.parse("baseline:b2@\\pvob", Baseline.class);
+
+        ActivitiesDelta first = new BaselineService(ct, null, new DiffBlCache(dir, 10)).compare(b1, b2);
+        assertThat(first.getRight()).hasSize(1);
+        // Read back from disk, as after a restart
+        ActivitiesDelta second = new BaselineService(ct, null, new DiffBlCache(dir, 10)).compare(b1, b2);
+        assertThat(second.getRight()).hasSize(1);
+        assertThat(second.getRight().iterator().next().getHeadline()).isEqualTo("headline 1");
+        verify(ct, times(1)).diffbl(eq(EnumSet.of(DiffBlOptions.ACTIVITIES)), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void leastRecentlyUsedComparisonsAreDropped() throws Exception {
+        File dir = new File(folder.getRoot(), "diffbl");
+        DiffBlCache cache = new DiffBlCache(dir, 1);
+        when(ct.diffbl(eq(EnumSet.of(DiffBlOptions.VERSIONS)), anyString(), anyString(), anyString())).thenReturn(new StringReader(">> file@@/main/1\n"),
+                new StringReader(">> file@@/main/2\n"));
+        cache.diffbl(ct, EnumSet.of(DiffBlOptions.VERSIONS), "baseline:b1@\\pvob", "baseline:b2@\\pvob", "view");
+        cache.diffbl(ct, EnumSet.of(DiffBlOptions.VERSIONS), "baseline:b2@\\pvob", "baseline:b3@\\pvob", "view");
+        assertThat(dir.listFiles()).hasSize(1);
+    }
+}
@@ -0,0 +1,102 @@
+package hudson.plugins.clearcase.ucm.service;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.ucm.model.Baseline;
+import hudson.plugins.clearcase.ucm.model.Stream;
+import hudson.plugins.clearcase.ucm.model.UcmSelector;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StreamCacheTest {
+
+    @Mock
+    ClearTool ct;
+
+    @Test
+    public void baselinesAreReadOnceForAllServices() throws Exception {
+        StreamCache cache = new StreamCache();
+        when(ct.lsstream(eq("stream:name@\\pvob"), anyString(), eq(StreamCache.FORMAT))).thenReturn(
+                "baseline:found1@\\pvob baseline:found2@\\pvob\nbaseline:latest@\\pvob\n");
+        Stream stream = UcmSelector.parse("stream:name@\\pvob", Stream.class);
+
+        Baseline[] foundationBaselines = new StreamService(ct, cache).getFoundationBaselines(stream);
+        assertThat(foundationBaselines).hasSize(2);
+        assertThat(foundationBaselines[1].getName()).isEqualTo("found2");
+        Baseline[] latestBaselines = new StreamService(ct, cache).getLatestBaselines(stream);
+        assertThat(latestBaselines).hasSize(1);
+        assertThat(latestBaselines[0].getName()).isEqualTo("latest");
+        verify(ct, times(1)).lsstream(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void callersGetTheirOwnBaselines() throws Exception {
+        StreamCache cache = new StreamCache();
+        when(ct.lsstream(eq("stream:name@\\pvob"), anyString(), eq(StreamCache.FORMAT))).thenReturn("baseline:found@\\pvob\n\n");
+        Stream stream = UcmSelector.parse("stream:name@\\pvob", Stream.class);
+
+        Baseline[] first = new StreamService(ct, cache).getFoundationBaselines(stream);
+        first[0].setDependentBaselines(new Baseline[0]);
+        Baseline[] second = new StreamService(ct, cache).getFoundationBaselines(stream);
+        assertThat(second[0]).isEqualTo(first[0]).isNotSameAs(first[0]);
+        assertThat(second[0].getDependentBaselines()).isNull();
+    }
+
+    @Test
+    public void entryOlderThanTheLastBuildIsRevalidated() throws Exception {
+        StreamCache cache = new StreamCache();
+        when(ct.lsstream(eq("stream:name@\\pvob"), anyString(), eq(StreamCache.FORMAT))).thenReturn("baseline:old@\\pvob\n\n",
+                "baseline:new@\\pvob\n\n");
+        Stream stream = UcmSelector.parse("stream:name@\\pvob", Stream.class);
+
+        assertThat(new StreamService(ct, cache).getFoundationBaselines(stream)[0].getName()).isEqualTo("old");
+        // The last build ended after the entry was read, it may have rebased the stream
+        long endOfBuild = System.currentTimeMillis() + 1000;
+        assertThat(new StreamService(ct, cache).getFoundationBaselines(stream, endOfBuild)[0].getName()).isEqualTo("new");
+        verify(ct, times(2)).lsstream(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void invalidatedStreamIsReadAgain() throws Exception {
+        StreamCache cache = new StreamCache();
+        when(ct.lsstream(eq("stream:name@\\pvob"), anyString(), eq(StreamCache.FORMAT))).thenReturn("baseline:found@\\pvob\nbaseline:old@\\pvob\n",
+                "baseline:found@\\pvob\nbaseline:new@\\pvob\n");
+        Stream stream = UcmSelector.parse("stream:name@\\pvob", Stream.class);
+
+        assertThat(new StreamService(ct, cache).getLatestBaselines(stream)[0].getName()).isEqualTo("old");
+        // After a mkbl on the stream, given without its prefix
+        cache.invalidate("name@\\pvob");
+        assertThat(new StreamService(ct, cache).getLatestBaselines(stream)[0].getName()).isEqualTo("new");
+        verify(ct, times(2)).lsstream(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void rebaseInvalidatesAllStreams() throws Exception {
+        StreamCache cache = new StreamCache();
+        when(ct.lsstream(eq("stream:name@\\pvob"), anyString(), eq(StreamCache.FORMAT))).thenReturn("baseline:found@\\pvob\n\n");
+        Stream stream = UcmSelector.parse("stream:name@\\pvob", Stream.class);
+
+        new StreamService(ct, cache).getFoundationBaselines(stream);
+        cache.invalidateAll();
+        assertThat(new StreamService(ct, cache).getFoundationBaselines(stream)[0].getName()).isEqualTo("found");
+        verify(ct, times(2)).lsstream(anyString(), anyString(), anyString());
+    }
+
+    @Test(expected = IOException.class)
+    public void streamWithoutBaselineIsNotCached() throws Exception {
+        StreamCache cache = new StreamCache();
+        when(ct.lsstream(eq("stream:empty@\\pvob"), anyString(), eq(StreamCache.FORMAT))).thenReturn("\n\n");
+        new StreamService(ct, cache).getFoundationBaselines(UcmSelector.parse("stream:empty@\\pvob", Stream.class));
+    }
+}
@@ -55,6 +55,16 @@ public class StreamServiceTest {
         instance = new StreamService(ct);
     }
 
+    @Test
+    public void testGetActivityFingerprint() throws IOException, InterruptedException {
+        Stream stream = UcmSelector.parse("stream:name@\\pvob", Stream.class);
+        when(ct.lsactivityIn(eq("stream:name@\\pvob"), eq("%n %[versions]Np\\n"), anyString())).thenReturn(new StringReader("act1 file@@/main/1\n"),
+                new StringReader("act1 file@@/main/1\n"), new StringReader("act1 file@@/main/1 file@@/main/2\n"));
+        String fingerprint = instance.getActivityFingerprint(stream, "view");
+        assertEquals(fingerprint, instance.getActivityFingerprint(stream, "view"));
+        assertThat(instance.getActivityFingerprint(stream, "view")).isNotEqualTo(fingerprint);
+    }
+
     @Test
     public void testGetFoundationBaselines() throws IOException, InterruptedException {
         Stream stream = UcmSelector.parse("stream:name@\\pvob", Stream.class);
@@ -0,0 +1,70 @@
+package hudson.plugins.clearcase.ucm.service;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import hudson.plugins.clearcase.ucm.model.Baseline;
+import hudson.plugins.clearcase.ucm.model.Stream;
+import hudson.plugins.clearcase.ucm.model.UcmSelector;
+import hudson.plugins.clearcase.ucm.service.StreamSnapshotService.Snapshot;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StreamSnapshotServiceTest {
+
+    @Mock
+    FacadeService facadeService;
+
+    @Mock
+    StreamService streamService;
+
+    private Stream stream;
+
+    @Before
+    public void setUp() throws Exception {
+        stream = UcmSelector.parse("stream:name@\\pvob", Stream.class);
+        when(facadeService.getStreamService()).thenReturn(streamService);
+        when(streamService.parse("stream:name@\\pvob")).thenReturn(stream);
+        when(streamService.getFoundationBaselines(eq(stream), anyLong())).thenReturn(new Baseline[] { UcmSelector.parse("baseline:bl@\\pvob", Baseline.class) });
+        when(facadeService.getAllRootDirsFor("stream:name@\\pvob")).thenReturn(new String[] { "\\vob\\comp" });
+    }
+
+    @Test
+    public void snapshotIsTakenAgainAfterTheLastBuild() throws Exception {
+        StreamSnapshotService service = new StreamSnapshotService();
+        service.get(facadeService, "stream:name@\\pvob", false, 0);
+        // The last build ended after the snapshot, it may have rebased the stream
+        service.get(facadeService, "stream:name@\\pvob", false, System.currentTimeMillis() + 1000);
+        verify(streamService, times(2)).getFoundationBaselines(eq(stream), anyLong());
+    }
+
+    @Test
+    public void snapshotsAreTakenPerOs() throws Exception {
+        StreamSnapshotService service = new StreamSnapshotService();
+        service.get(facadeService, "stream:name@\\pvob", false, 0);
+        service.get(facadeService, "stream:name@\\pvob", true, 0);
+        service.get(facadeService, "stream:name@\\pvob", true, 0);
+        verify(facadeService, times(2)).getAllRootDirsFor("stream:name@\\pvob");
+    }
+
+    @Test
+    public void streamIsResolvedOnceForAllJobs() throws Exception {
+        StreamSnapshotService service = new StreamSnapshotService();
+
+        Snapshot first = service.get(facadeService, "stream:name@\\pvob", false, 0);
+        first.getRootDirs()[0] = "changed by a job";
+        Snapshot second = service.get(facadeService, "stream:name@\\pvob", false, 0);
+        assertThat(second.getRootDirs()).containsOnly("\\vob\\comp");
+        assertThat(second.getFoundationBaselines()[0].getName()).isEqualTo("bl");
+        verify(streamService, times(1)).getFoundationBaselines(eq(stream), anyLong());
+        verify(facadeService, times(1)).getAllRootDirsFor("stream:name@\\pvob");
+    }
+}
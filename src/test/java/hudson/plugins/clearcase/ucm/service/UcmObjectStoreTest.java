@@ -0,0 +1,107 @@
+package hudson.plugins.clearcase.ucm.service;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.ucm.model.Baseline;
+import hudson.plugins.clearcase.ucm.model.UcmSelector;
+
+import java.io.File;
+import java.io.StringReader;
+
+import org.apache.commons.io.FileUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UcmObjectStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock(answer = Answers.RETURNS_SMART_NULLS)
+    ClearTool              ct;
+
+    @Test
+    public void factsSurviveARestart() throws Exception {
+        File file = new File(folder.getRoot(), "objects.properties");
+        UcmObjectStore store = new UcmObjectStore(file);
+        store.putComponent("baseline:bl@\\pvob", "component:comp@\\pvob");
+        store.putDependentBaselines("baseline:bl@\\pvob", new String[] { "baseline:bl@\\pvob", "baseline:dep@\\pvob" });
+        store.putRootDir("component:comp@\\pvob", false, "\\vob\\comp");
+        store.putConfigSpec(new String[] { "baseline:b2@\\pvob", "baseline:b1@\\pvob" }, true, "element * CHECKEDOUT\nelement * /main/0\n");
+
+        UcmObjectStore reloaded = new UcmObjectStore(file);
+        assertThat(reloaded.getComponent("baseline:bl@\\pvob")).isEqualTo("component:comp@\\pvob");
+        assertThat(reloaded.getDependentBaselines("baseline:bl@\\pvob")).containsOnly("baseline:bl@\\pvob", "baseline:dep@\\pvob");
+        assertThat(reloaded.getRootDir("component:comp@\\pvob", false)).isEqualTo("\\vob\\comp");
+        assertThat(reloaded.getRootDir("component:comp@\\pvob", true)).isNull();
+        assertThat(reloaded.getConfigSpec(new String[] { "baseline:b1@\\pvob", "baseline:b2@\\pvob" }, true)).isEqualTo(
+                "element * CHECKEDOUT\nelement * /main/0\n");
+    }
+
+    @Test
+    public void componentIsDescribedOnceForAllServices() throws Exception {
+        UcmObjectStore store = new UcmObjectStore(new File(folder.getRoot(), "objects.properties"));
+        when(ct.describe(eq("%[component]Xp"), anyString(), eq("baseline:bl@\\pvob"))).thenReturn(new StringReader("component:comp@\\pvob"));
+
+        Baseline first = UcmSelector.parse("baseline:bl@\\pvob", Baseline.class);
+        assertThat(new BaselineService(ct, store).getComponent(first).getName()).isEqualTo("comp");
+        Baseline second = UcmSelector.parse("baseline:bl@\\pvob", Baseline.class);
+        assertThat(new BaselineService(ct, store).getComponent(second).getName()).isEqualTo("comp");
+        verify(ct, times(1)).describe(eq("%[component]Xp"), anyString(), eq("baseline:bl@\\pvob"));
+    }
+
+    @Test
+    public void emptyRootDirSurvivesARestart() throws Exception {
+        File file = new File(folder.getRoot(), "objects.properties");
+        new UcmObjectStore(file).putRootDir("component:composite@\\pvob", false, "");
+
+        assertThat(new UcmObjectStore(file).getRootDir("component:composite@\\pvob", false)).isEmpty();
+    }
+
+    @Test
+    public void journalIsCompactedOnLoad() throws Exception {
+        File file = new File(folder.getRoot(), "objects.properties");
+        FileUtils.writeStringToFile(file, "configspec.unix.bl=old\nconfigspec.unix.bl=new\ncomponent.bl=comp\n", "ISO-8859-1");
+
+        UcmObjectStore store = new UcmObjectStore(file);
+        assertThat(store.getConfigSpec(new String[] { "bl" }, true)).isEqualTo("new");
+        assertThat(getEntries(file)).isEqualTo(2);
+        assertThat(new UcmObjectStore(file).getComponent("bl")).isEqualTo("comp");
+    }
+
+    @Test
+    public void replacedValuesAreCompacted() throws Exception {
+        File file = new File(folder.getRoot(), "objects.properties");
+        UcmObjectStore store = new UcmObjectStore(file);
+        store.putComponent("baseline:bl@\\pvob", "component:comp@\\pvob");
+        store.putConfigSpec(new String[] { "baseline:bl@\\pvob" }, true, "element * /main/0\n");
+        store.putConfigSpec(new String[] { "baseline:bl@\\pvob" }, true, "element * /main/LATEST\n");
+        assertThat(getEntries(file)).isEqualTo(3);
+        store.putConfigSpec(new String[] { "baseline:bl@\\pvob" }, true, "element * CHECKEDOUT\n");
+        assertThat(getEntries(file)).isEqualTo(2);
+
+        assertThat(new UcmObjectStore(file).getConfigSpec(new String[] { "baseline:bl@\\pvob" }, true)).isEqualTo("element * CHECKEDOUT\n");
+    }
+
+    private static int getEntries(File file) throws Exception {
+        int entries = 0;
+        for (String line : FileUtils.readLines(file, "ISO-8859-1")) {
+            if (!line.startsWith("#")) {
+                entries++;
+            }
+        }
+        return entries;
+    }
+}
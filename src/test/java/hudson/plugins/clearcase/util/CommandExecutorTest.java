@@ -0,0 +1,82 @@
+package hudson.plugins.clearcase.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class CommandExecutorTest {
+
+    @Test(expected = IOException.class)
+    public void failureIsRethrown() throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        tasks.add(new Callable<Integer>() {
+            @Override
+            public Integer call() throws IOException {
+                throw new IOException("cleartool failed");
+            }
+        });
+        CommandExecutor.invokeAll(tasks, 2);
+    }
+
+    @Test
+    public void nestedTasksRunOnTheCallingThread() throws Exception {
+        List<Callable<List<Integer>>> tasks = new ArrayList<Callable<List<Integer>>>();
+        for (int i = 0; i < CommandExecutor.THREADS * 2; i++) {
+            tasks.add(new Callable<List<Integer>>() {
+                @Override
+                public List<Integer> call() throws Exception {
+                    return CommandExecutor.invokeAll(Arrays.asList(new Sleep(1, 10, new AtomicInteger(), new AtomicInteger())), 1);
+                }
+            });
+        }
+        for (List<Integer> result : CommandExecutor.invokeAll(tasks, CommandExecutor.THREADS)) {
+            assertEquals(Arrays.asList(1), result);
+        }
+    }
+
+    @Test
+    public void resultsAreInTheOrderOfTheTasks() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < 10; i++) {
+            tasks.add(new Sleep(i, (10 - i) * 5, running, maxRunning));
+        }
+        List<Integer> results = CommandExecutor.invokeAll(tasks, 3);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), results);
+        assertTrue("At most 3 tasks at a time, got " + maxRunning, maxRunning.get() <= 3);
+    }
+
+    private static class Sleep implements Callable<Integer> {
+        private final long          millis;
+        private final AtomicInteger maxRunning;
+        private final AtomicInteger running;
+        private final int           value;
+
+        Sleep(int value, long millis, AtomicInteger running, AtomicInteger maxRunning) {
+            this.value = value;
+            this.millis = millis;
+            this.running = running;
+            this.maxRunning = maxRunning;
+        }
+
+        @Override
+        public Integer call() throws InterruptedException {
+            int now = running.incrementAndGet();
+            synchronized (maxRunning) {
+                maxRunning.set(Math.max(maxRunning.get(), now));
+            }
+            Thread.sleep(millis);
+            running.decrementAndGet();
+            return value;
+        }
+    }
+}
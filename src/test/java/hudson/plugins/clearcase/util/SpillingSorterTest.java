@@ -0,0 +1,97 @@
+package hudson.plugins.clearcase.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SpillingSorterTest {
+
+    private static final SpillingSorter.Codec<String> CODEC = new SpillingSorter.Codec<String>() {
+        @Override
+        public String read(DataInput in) throws IOException {
+            return SpillingSorter.readString(in);
+        }
+
+        @Override
+        public void write(DataOutput out, String value) throws IOException {
+            SpillingSorter.writeString(out, value);
+        }
+    };
+
+    private static final Comparator<String>           FIRST_CHAR = new Comparator<String>() {
+        @Override
+        public int compare(String o1, String o2) {
+            return o1.charAt(0) - o2.charAt(0);
+        }
+    };
+
+    private static List<String> sort(SpillingSorter<String> sorter) throws Exception {
+        final List<String> result = new ArrayList<String>();
+        sorter.sortTo(new SpillingSorter.Sink<String>() {
+            @Override
+            public void accept(String value) {
+                result.add(value);
+            }
+        });
+        return result;
+    }
+
+    @Test
+    public void testSortInMemory() throws Exception {
+        SpillingSorter<String> sorter = new SpillingSorter<String>(FIRST_CHAR, CODEC, 10);
+        sorter.add("c1");
+        sorter.add("a1");
+        sorter.add("b1");
+        sorter.add("a2");
+        assertEquals(0, sorter.getSpillCount());
+        assertEquals(Arrays.asList("a1", "a2", "b1", "c1"), sort(sorter));
+    }
+
+    @Test
+    public void testSortWithSpills() throws Exception {
+        SpillingSorter<String> sorter = new SpillingSorter<String>(FIRST_CHAR, CODEC, 3);
+        try {
+            Random random = new Random(42);
+            for (int i = 0; i < 100; i++) {
+                sorter.add((char) ('a' + random.nextInt(26)) + Integer.toString(i));
+            }
+            assertTrue(sorter.getSpillCount() > 1);
+            List<String> sorted = sort(sorter);
+            assertEquals(100, sorted.size());
+            for (int i = 1; i < sorted.size(); i++) {
+                String previous = sorted.get(i - 1);
+                String current = sorted.get(i);
+                assertTrue(previous.charAt(0) <= current.charAt(0));
+                if (previous.charAt(0) == current.charAt(0)) {
+                    // insertion order is kept for equal values
+                    assertTrue(Integer.parseInt(previous.substring(1)) < Integer.parseInt(current.substring(1)));
+                }
+            }
+            assertEquals(0, sorter.getSpillCount());
+        } finally {
+            sorter.close();
+        }
+    }
+
+    @Test
+    public void testLongAndNullStrings() throws Exception {
+        StringBuilder longValue = new StringBuilder("z");
+        for (int i = 0; i < 70000; i++) {
+            longValue.append('x');
+        }
+        SpillingSorter<String> sorter = new SpillingSorter<String>(FIRST_CHAR, CODEC, 1);
+        sorter.add(longValue.toString());
+        sorter.add("aé");
+        assertEquals(Arrays.asList("aé", longValue.toString()), sort(sorter));
+    }
+}
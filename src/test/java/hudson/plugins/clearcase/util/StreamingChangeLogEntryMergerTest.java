@@ -0,0 +1,76 @@
+package hudson.plugins.clearcase.util;
+
+import static org.junit.Assert.assertEquals;
+import hudson.plugins.clearcase.ClearCaseChangeLogEntry;
+import hudson.plugins.clearcase.action.ChangeLogWriter;
+import hudson.scm.ChangeLogSet.Entry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamingChangeLogEntryMergerTest {
+
+    private File                          changeLogFile;
+    private List<ClearCaseChangeLogEntry> written;
+    private ChangeLogWriter               writer;
+
+    @Before
+    public void setUp() throws Exception {
+        changeLogFile = File.createTempFile("changelog", ".xml");
+        written = new ArrayList<ClearCaseChangeLogEntry>();
+        writer = new ChangeLogWriter(changeLogFile) {
+            @Override
+            protected void writeEntry(PrintStream stream, Entry entry) throws IOException {
+                written.add((ClearCaseChangeLogEntry) entry);
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        writer.close();
+        changeLogFile.delete();
+    }
+
+    @Test
+    public void testMergeWithSpills() throws Exception {
+        StreamingChangeLogEntryMerger merger = new StreamingChangeLogEntryMerger(5 * 1000, 2);
+        try {
+            merger.add(new ClearCaseChangeLogEntry(createDate(10, 1, 22), "user1", "action", "comment", "file1", "version"));
+            merger.add(new ClearCaseChangeLogEntry(createDate(10, 1, 25), "user1", "action", "comment", "file2", "version"));
+            merger.add(new ClearCaseChangeLogEntry(createDate(10, 1, 25), "user1", "action", "comment 2", "file2", "version"));
+            merger.add(new ClearCaseChangeLogEntry(createDate(10, 1, 25), "user2", "action", "comment", "file2", "version"));
+            merger.add(new ClearCaseChangeLogEntry(createDate(10, 1, 29), "user1", "action", "comment", "file3", "version"));
+            merger.add(new ClearCaseChangeLogEntry(createDate(10, 1, 1), "user1", "action", "comment", "file5", "version"));
+            assertEquals(4, merger.writeTo(writer));
+        } finally {
+            merger.close();
+        }
+        assertEquals(4, written.size());
+        assertEquals(4, writer.getEntryCount());
+        // newest first, merged entries dated with their oldest element
+        assertEquals(createDate(10, 1, 25), written.get(0).getDate());
+        assertEquals(createDate(10, 1, 25), written.get(1).getDate());
+        ClearCaseChangeLogEntry merged = written.get(2);
+        assertEquals(createDate(10, 1, 22), merged.getDate());
+        assertEquals("user1", merged.getUser());
+        assertEquals(3, merged.getElements().size());
+        assertEquals(createDate(10, 1, 1), written.get(3).getDate());
+    }
+
+    private Date createDate(int hour, int min, int sec) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2013, Calendar.JANUARY, 1, hour, min, sec);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTime();
+    }
+}